@@ -0,0 +1,29 @@
+#!/usr/bin/env bash
+# Persistence benchmark for the jlink image built by: mvn -Pappcds clean package
+#
+#   scripts/persistence-benchmark.sh [codec...]
+#
+# Generates the training data set, then for every codec (default: none deflate gzip) converts a
+# copy of it and measures load and save: wall time, JSON bytes and bytes on disk. Point DATA_ROOT
+# at the network mount to see what compression saves there.
+set -euo pipefail
+
+IMAGE=${IMAGE:-target/app}
+DATA_ROOT=${DATA_ROOT:-target/persistence-bench}
+CODECS=${*:-none deflate gzip}
+
+run() {
+    "$IMAGE/bin/java" "$@" -m javafxapp/com.example.hogwarts.PersistenceBenchmark
+}
+
+rm -rf "$DATA_ROOT"
+mkdir -p "$DATA_ROOT"
+"$IMAGE/bin/java" -Dhogwarts.dataDir="$DATA_ROOT/plain" \
+    -m javafxapp/com.example.hogwarts.StartupTraining --generate
+
+for codec in $CODECS; do
+    dir="$DATA_ROOT/$codec"
+    cp -r "$DATA_ROOT/plain" "$dir"
+    run -Dhogwarts.dataDir="$dir" -Dhogwarts.persist.codec="$codec" -Dhogwarts.bench.saves=1 > /dev/null # convert
+    run -Dhogwarts.dataDir="$dir" -Dhogwarts.persist.codec="$codec" | grep '^bench'
+done
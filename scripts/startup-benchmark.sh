@@ -0,0 +1,47 @@
+#!/usr/bin/env bash
+# Startup benchmark for the jlink image built by: mvn -Pappcds clean package
+#
+#   scripts/startup-benchmark.sh [runs]
+#
+# Runs the app in benchmark mode (auto login, exit at the dashboard) on the training data,
+# with and without the AppCDS archive, and prints the median time to first frame and to
+# dashboard. Set STARTUP_BUDGET_MS to fail (exit 1) when the AppCDS dashboard median is over budget.
+# Needs a display (use xvfb-run on a headless machine).
+set -euo pipefail
+
+IMAGE=${IMAGE:-target/app}
+DATA=${DATA:-target/cds-training}
+RUNS=${1:-10}
+BUDGET=${STARTUP_BUDGET_MS:-0}
+
+run() {
+    "$IMAGE/bin/java" "$@" -Dhogwarts.dataDir="$DATA" -Dhogwarts.startupBenchmark=true \
+        -m javafxapp/com.example.hogwarts.HogwartsApplication
+}
+
+median() {
+    sort -n | awk '{ v[NR] = $1 } END { print v[int((NR + 1) / 2)] }'
+}
+
+# measure <label> <jvm options...>; sets DASHBOARD_MEDIAN
+measure() {
+    local label=$1; shift
+    local first="" dashboard="" out
+    run "$@" > /dev/null # warm-up: page cache, font cache
+    for _ in $(seq "$RUNS"); do
+        out=$(run "$@")
+        first+="$(echo "$out" | sed -n 's/^startup first-frame=\([0-9]*\)ms$/\1/p')"$'\n'
+        dashboard+="$(echo "$out" | sed -n 's/^startup dashboard=\([0-9]*\)ms$/\1/p')"$'\n'
+    done
+    DASHBOARD_MEDIAN=$(printf '%s' "$dashboard" | median)
+    printf '%-8s first-frame %6s ms   dashboard %6s ms   (median of %s runs)\n' \
+        "$label" "$(printf '%s' "$first" | median)" "$DASHBOARD_MEDIAN" "$RUNS"
+}
+
+measure "no-cds" -Xshare:off
+measure "appcds" -XX:SharedArchiveFile="$IMAGE/lib/app.jsa" -Xshare:auto
+
+if [ "$BUDGET" -gt 0 ] && [ "$DASHBOARD_MEDIAN" -gt "$BUDGET" ]; then
+    echo "Startup budget exceeded: dashboard at ${DASHBOARD_MEDIAN} ms > ${BUDGET} ms"
+    exit 1
+fi
@@ -0,0 +1,53 @@
+package com.example.hogwarts;
+
+import com.example.hogwarts.data.DataStore;
+import com.example.hogwarts.data.MemoryReport;
+import com.example.hogwarts.view.ArtifactRow;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Date;
+
+/**
+ * Capacity report: loads the data in hogwarts.dataDir, prints the estimated bytes of every
+ * structure and projects the heap for a target catalog size.
+ *
+ *   -Dhogwarts.capacity.artifacts=1000000 -Dhogwarts.capacity.history=5000000
+ *   -Dhogwarts.capacity.headroom=2.0 (heap / live data, leaves room for GC and transient garbage)
+ *
+ * The sort and as-of indexes are built first, so their cost is part of the per-item figures.
+ */
+public class CapacityReport {
+    private static final long TARGET_ARTIFACTS = Long.getLong("hogwarts.capacity.artifacts", 1_000_000);
+    private static final long TARGET_HISTORY = Long.getLong("hogwarts.capacity.history", 5 * TARGET_ARTIFACTS);
+    private static final double HEADROOM = Double.parseDouble(System.getProperty("hogwarts.capacity.headroom", "2.0"));
+
+    public static void main(String[] args) throws Exception {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long before = memory.getHeapMemoryUsage().getUsed();
+
+        DataStore store = DataStore.getInstance();
+        store.getSortIndex();
+        store.getOwnershipAsOf(new Date());
+        System.gc();
+        long measured = memory.getHeapMemoryUsage().getUsed() - before;
+
+        MemoryReport report = store.getMemoryReport();
+        System.out.println("Current store: " + report);
+        System.out.printf("Measured heap growth while loading: %,d bytes (estimate %,d)%n%n", measured, report.getTotalBytes());
+
+        if (report.getArtifacts() == 0) {
+            System.out.println("No artifacts loaded, nothing to project from.");
+            return;
+        }
+        long live = report.projectBytes(TARGET_ARTIFACTS, TARGET_HISTORY);
+        long ui = TARGET_ARTIFACTS * ArtifactRow.ESTIMATED_BYTES;
+        System.out.printf("Projection for %,d artifacts and %,d history entries:%n", TARGET_ARTIFACTS, TARGET_HISTORY);
+        System.out.printf("  data layer               %,16d bytes%n", live);
+        System.out.printf("  artifact table rows      %,16d bytes (while the artifact tab is open)%n", ui);
+        System.out.printf("  live total               %,16d bytes%n", live + ui);
+        System.out.printf("  recommended heap         -Xmx%dm (x%.1f headroom)%n",
+                (long) Math.ceil((live + ui) * HEADROOM / (1 << 20)), HEADROOM);
+    }
+}
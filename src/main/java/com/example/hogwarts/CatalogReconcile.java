@@ -0,0 +1,32 @@
+package com.example.hogwarts;
+
+import com.example.hogwarts.data.CatalogReconciler;
+import com.example.hogwarts.data.DataStore;
+import com.example.hogwarts.data.ReconcileReport;
+
+import java.io.File;
+
+/**
+ * Reconciles the data in hogwarts.dataDir with an upstream catalog export and prints the
+ * diff (format: see CatalogFeed). A dry run unless told otherwise:
+ *
+ *   java -Dhogwarts.reconcile.apply=true -cp <classpath> com.example.hogwarts.CatalogReconcile feed.json[.gz]
+ *   -Dhogwarts.reconcile.deletes=false keeps local wizards and artifacts the feed no longer lists
+ */
+public class CatalogReconcile {
+    private static final boolean APPLY = Boolean.getBoolean("hogwarts.reconcile.apply");
+    private static final boolean DELETES = Boolean.parseBoolean(System.getProperty("hogwarts.reconcile.deletes", "true"));
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("usage: CatalogReconcile <feed.json>");
+            System.exit(2);
+        }
+        DataStore store = DataStore.getInstance();
+        ReconcileReport report = CatalogReconciler.reconcile(store, new File(args[0]), APPLY, DELETES);
+        System.out.print(report);
+        if (report.isApplied() && !report.getChanges().isEmpty()) {
+            store.saveAll();
+        }
+    }
+}
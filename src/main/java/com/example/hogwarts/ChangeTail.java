@@ -0,0 +1,48 @@
+package com.example.hogwarts;
+
+import com.example.hogwarts.data.ChangeReader;
+import com.example.hogwarts.data.ChangeRecord;
+import com.example.hogwarts.data.StoreConfig;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Prints the captured store changes (data/cdc, see ChangeCapture) a consumer has not processed
+ * yet and commits its offset after each batch, so the next run carries on where this one stopped:
+ *
+ *   java -Dhogwarts.dataDir=data -cp <classpath> com.example.hogwarts.ChangeTail reporting [fromSeq]
+ *   -Dhogwarts.cdc.follow=true keeps waiting for new changes
+ */
+public class ChangeTail {
+    private static final boolean FOLLOW = Boolean.getBoolean("hogwarts.cdc.follow");
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("usage: ChangeTail <consumer> [fromSeq]");
+            System.exit(2);
+        }
+        File dir = new File(StoreConfig.DATA_DIR, "cdc");
+        String consumer = args[0];
+        long after = args.length == 2 ? Long.parseLong(args[1]) - 1 : ChangeReader.committedOffset(dir, consumer);
+        try (ChangeReader reader = new ChangeReader(dir, after)) {
+            while (true) {
+                List<ChangeRecord> batch = reader.poll(1000);
+                if (batch.isEmpty()) {
+                    if (!FOLLOW) break;
+                    Thread.sleep(200);
+                    continue;
+                }
+                for (ChangeRecord r : batch) {
+                    System.out.println(r.getSeq() + "\t" + r.getTimestamp() + "\t" + r.getType() + "\tartifact=" + r.getArtifactId()
+                            + "\twizard=" + r.getWizardId() + "\tcondition=" + r.getCondition()
+                            + (r.getName() != null ? "\tname=" + r.getName() : ""));
+                }
+                ChangeReader.commitOffset(dir, consumer, reader.getLastSeq());
+            }
+        } catch (IllegalStateException e) {
+            System.err.println("ChangeTail: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
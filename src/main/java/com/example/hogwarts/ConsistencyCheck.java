@@ -0,0 +1,27 @@
+package com.example.hogwarts;
+
+import com.example.hogwarts.data.ConsistencyReport;
+import com.example.hogwarts.data.DataStore;
+
+/**
+ * Checks the data in hogwarts.dataDir for inconsistencies in the object graph (owners, wizard
+ * artifact lists, orphaned history, id counters) and prints what it found:
+ *
+ *   java -Dhogwarts.dataDir=data [-Dhogwarts.check.repair=true] -cp <classpath> com.example.hogwarts.ConsistencyCheck
+ *
+ * With repair, the fixed data is saved. Exits with 1 if problems remain.
+ */
+public class ConsistencyCheck {
+    private static final boolean REPAIR = Boolean.getBoolean("hogwarts.check.repair");
+
+    public static void main(String[] args) {
+        System.setProperty("hogwarts.check.startup", "false"); // this run replaces the background one
+        DataStore store = DataStore.getInstance();
+        ConsistencyReport report = store.checkConsistency(REPAIR);
+        System.out.print(report);
+        if (report.getRepairedCount() > 0) {
+            store.saveAll();
+        }
+        System.exit(report.getProblemCount() > report.getRepairedCount() ? 1 : 0);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.hogwarts;
+
+/**
+ * Log-linear latency histogram (16 sub-buckets per power of two, so about 6% resolution).
+ * Not thread-safe: each worker records into its own and the results are merged at the end.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKETS = 16;
+    private static final int POWERS = 40; // up to ~18 minutes in nanoseconds
+
+    private final long[] counts = new long[POWERS * SUB_BUCKETS];
+    private long total;
+    private long max;
+
+    void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts[bucket(nanos)]++;
+        total++;
+        if (nanos > max) max = nanos;
+    }
+
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    long count() {
+        return total;
+    }
+
+    long maxNanos() {
+        return max;
+    }
+
+    // Upper bound of the bucket holding the given percentile (0-100)
+    long percentileNanos(double percentile) {
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(percentile / 100.0 * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(upperBound(i), max);
+        }
+        return max;
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) nanos;
+        int power = 63 - Long.numberOfLeadingZeros(nanos);          // >= 4
+        int sub = (int) (nanos >>> (power - 4)) & (SUB_BUCKETS - 1); // next 4 bits
+        int index = (power - 3) * SUB_BUCKETS + sub;
+        return Math.min(index, POWERS * SUB_BUCKETS - 1);
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int power = index / SUB_BUCKETS + 3;
+        int sub = index % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (power - 4)) - 1;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.hogwarts;
+
+import com.example.hogwarts.data.DataStore;
+import com.example.hogwarts.data.IoStats;
+import com.example.hogwarts.data.StoreConfig;
+
+/**
+ * Measures load and save of the data in hogwarts.dataDir with the codec in hogwarts.persist.codec
+ * (see scripts/persistence-benchmark.sh). The first save converts the files to that codec,
+ * so run it twice to measure a load of compressed files.
+ */
+public class PersistenceBenchmark {
+    private static final int SAVES = Integer.getInteger("hogwarts.bench.saves", 3);
+
+    public static void main(String[] args) {
+        long start = System.nanoTime();
+        DataStore store = DataStore.getInstance();
+        long loadMillis = (System.nanoTime() - start) / 1_000_000;
+        report("load", loadMillis, store.getLoadStats());
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < SAVES; i++) {
+            start = System.nanoTime();
+            store.saveAll();
+            best = Math.min(best, (System.nanoTime() - start) / 1_000_000);
+        }
+        report("save", best, store.getLastSaveStats());
+    }
+
+    private static void report(String phase, long wallMillis, IoStats stats) {
+        if (stats == null) {
+            System.out.println("bench " + phase + " codec=" + StoreConfig.PERSIST_CODEC + " no data files");
+            return;
+        }
+        System.out.printf("bench %s codec=%s wall=%d ms json=%d disk=%d%n",
+                phase, stats.getCodec(), wallMillis, stats.getRawBytes(), stats.getDiskBytes());
+        System.out.println(stats);
+    }
+}
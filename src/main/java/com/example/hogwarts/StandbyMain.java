@@ -0,0 +1,31 @@
+package com.example.hogwarts;
+
+import com.example.hogwarts.data.DataStore;
+import com.example.hogwarts.data.ReplicationStandby;
+import com.example.hogwarts.data.StoreConfig;
+
+import java.io.File;
+
+/**
+ * Headless warm standby: follows the primary at hogwarts.replication.host/port and keeps its own
+ * copy of the data in hogwarts.dataDir (use a different directory than the primary).
+ * Prints the replication lag every hogwarts.replication.statusIntervalMs.
+ */
+public class StandbyMain {
+    private static final int STATUS_INTERVAL_MS = Integer.getInteger("hogwarts.replication.statusIntervalMs", 5000);
+
+    public static void main(String[] args) throws Exception {
+        DataStore store = DataStore.getInstance();
+        ReplicationStandby standby = new ReplicationStandby(store, StoreConfig.REPLICATION_HOST,
+                StoreConfig.REPLICATION_PORT, new File(StoreConfig.DATA_DIR));
+        standby.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(standby::close, "standby-shutdown"));
+
+        System.out.println("replication: following " + StoreConfig.REPLICATION_HOST + ":" + StoreConfig.REPLICATION_PORT
+                + ", data in " + StoreConfig.DATA_DIR);
+        while (true) {
+            Thread.sleep(STATUS_INTERVAL_MS);
+            System.out.println("replication: " + standby);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.hogwarts;
+
+import javafx.scene.Scene;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Startup timing marks, measured from JVM start.
+ * Enabled with -Dhogwarts.startupTrace=true; -Dhogwarts.startupBenchmark=true additionally
+ * logs in as admin automatically and exits once the dashboard is on screen.
+ * Each mark prints one line: "startup <phase>=<millis>ms".
+ */
+public final class StartupTrace {
+    public static final boolean BENCHMARK = Boolean.getBoolean("hogwarts.startupBenchmark");
+    private static final boolean ENABLED = BENCHMARK || Boolean.getBoolean("hogwarts.startupTrace");
+
+    private static final Instant JVM_START = ProcessHandle.current().info().startInstant().orElse(Instant.now());
+
+    private StartupTrace() {
+    }
+
+    public static void mark(String phase) {
+        if (!ENABLED) return;
+        System.out.println("startup " + phase + "=" + Duration.between(JVM_START, Instant.now()).toMillis() + "ms");
+    }
+
+    // Marks the phase once the scene has actually been laid out for the next frame, then runs andThen
+    public static void markAfterNextPulse(Scene scene, String phase, Runnable andThen) {
+        if (!ENABLED) return;
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            scene.removePostLayoutPulseListener(listener[0]);
+            mark(phase);
+            if (andThen != null) andThen.run();
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.hogwarts;
+
+import com.example.hogwarts.data.DataStore;
+import com.example.hogwarts.data.StoreConfig;
+import com.example.hogwarts.model.Artifact;
+import com.example.hogwarts.model.Wizard;
+import javafx.application.Application;
+
+import java.io.File;
+import java.util.Random;
+
+/**
+ * Entry point for the AppCDS training run and the startup benchmark (see the appcds profile).
+ * "--generate" writes a representative data set into hogwarts.dataDir and exits;
+ * without it the app is launched in benchmark mode (auto login, exit at the dashboard).
+ */
+public class StartupTraining {
+    private static final int WIZARDS = Integer.getInteger("hogwarts.training.wizards", 500);
+    private static final int ARTIFACTS = Integer.getInteger("hogwarts.training.artifacts", 20000);
+
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--generate")) {
+            generate();
+            return;
+        }
+        System.setProperty("hogwarts.startupBenchmark", "true");
+        Application.launch(HogwartsApplication.class, args);
+    }
+
+    private static void generate() {
+        if (new File(StoreConfig.DATA_DIR, "artifacts.json").exists()) {
+            System.out.println("Training data already present in " + StoreConfig.DATA_DIR);
+            return;
+        }
+        DataStore store = DataStore.getInstance();
+        Random random = new Random(42); // fixed seed: every run trains on the same data
+        Wizard[] wizards = new Wizard[WIZARDS];
+        for (int i = 0; i < WIZARDS; i++) {
+            wizards[i] = store.addWizard(new Wizard("Wizard " + i));
+        }
+        for (int i = 0; i < ARTIFACTS; i++) {
+            Artifact artifact = store.addArtifact(new Artifact("Artifact " + i, "Training artifact number " + i));
+            artifact.setCondition(10 + random.nextInt(91));
+            if (random.nextBoolean()) {
+                store.assignArtifactToWizard(artifact.getId(), wizards[random.nextInt(WIZARDS)].getId());
+            }
+        }
+        store.saveAll();
+        System.out.println("Wrote " + WIZARDS + " wizards and " + ARTIFACTS + " artifacts to " + StoreConfig.DATA_DIR);
+    }
+}
@@ -0,0 +1,325 @@
+package com.example.hogwarts;
+
+import com.example.hogwarts.controller.ArtifactController;
+import com.example.hogwarts.controller.Session;
+import com.example.hogwarts.controller.SessionManager;
+import com.example.hogwarts.controller.WizardController;
+import com.example.hogwarts.data.ArtifactQuery;
+import com.example.hogwarts.data.DataStore;
+import com.example.hogwarts.data.StoreConfig;
+import com.example.hogwarts.model.Artifact;
+import com.example.hogwarts.model.Wizard;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Soak test: drives ArtifactController and WizardController from many threads with a mixed
+ * workload and reports throughput, latency percentiles, heap and GC time while it runs.
+ * At the end the ownership invariants are checked; the exit code is 1 when one is broken.
+ *
+ *   -Dhogwarts.sim.threads=8 -Dhogwarts.sim.seconds=60 -Dhogwarts.sim.reportSeconds=10
+ *   -Dhogwarts.sim.mix=read:50,search:15,assign:15,repair:10,add:5,delete:5
+ *   -Dhogwarts.sim.wizards=200 -Dhogwarts.sim.artifacts=20000 (population before the run)
+ *
+ * Runs against hogwarts.dataDir; nothing is saved unless -Dhogwarts.sim.save=true.
+ */
+public class WorkloadSimulator {
+    enum Op { READ, SEARCH, ASSIGN, REPAIR, ADD, DELETE }
+
+    private static final boolean SAVE = Boolean.getBoolean("hogwarts.sim.save");
+
+    private final int threads;
+    private final int seconds;
+    private final int reportSeconds;
+    private final String mix;
+    private final int wizardCount;
+    private final int artifactCount;
+
+    private final DataStore store = DataStore.getInstance();
+    // All workers act through one service session, named in the audit trail
+    private final Session session = SessionManager.getInstance().openService("workload-simulator");
+    private final ArtifactController artifacts = new ArtifactController(session);
+    private final WizardController wizards = new WizardController(session);
+    private final Op[] weighted; // 100 slots, filled according to the mix
+
+    // Ids the workers pick from; ids of deleted artifacts simply miss
+    private final AtomicInteger maxArtifactId = new AtomicInteger();
+    private volatile int[] wizardIds;
+
+    private final AtomicLong[] opCounts = new AtomicLong[Op.values().length];
+    private final AtomicLong[] errorCounts = new AtomicLong[Op.values().length];
+    private final List<LatencyHistogram[]> histograms = Collections.synchronizedList(new ArrayList<>());
+    private volatile boolean running = true;
+
+    public static void main(String[] args) throws Exception {
+        int violations = new WorkloadSimulator().run();
+        System.exit(violations == 0 ? 0 : 1);
+    }
+
+    WorkloadSimulator() {
+        this(Integer.getInteger("hogwarts.sim.threads", 8), Integer.getInteger("hogwarts.sim.seconds", 60),
+                Integer.getInteger("hogwarts.sim.reportSeconds", 10),
+                System.getProperty("hogwarts.sim.mix", "read:50,search:15,assign:15,repair:10,add:5,delete:5"),
+                Integer.getInteger("hogwarts.sim.wizards", 200), Integer.getInteger("hogwarts.sim.artifacts", 20000));
+    }
+
+    // For a bounded run, e.g. from a test; the system properties are not read
+    WorkloadSimulator(int threads, int seconds, int reportSeconds, String mix, int wizards, int artifacts) {
+        this.threads = threads;
+        this.seconds = seconds;
+        this.reportSeconds = reportSeconds;
+        this.mix = mix;
+        this.wizardCount = wizards;
+        this.artifactCount = artifacts;
+        this.weighted = parseMix(mix);
+        for (int i = 0; i < opCounts.length; i++) {
+            opCounts[i] = new AtomicLong();
+            errorCounts[i] = new AtomicLong();
+        }
+    }
+
+    int run() throws InterruptedException {
+        populate();
+        System.out.printf("sim: %d threads, %d s, mix %s, %d wizards, %d artifacts%n",
+                threads, seconds, mix, wizardIds.length, store.findAllArtifacts().size());
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        long[] gcBefore = gcTotals();
+
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    work();
+                } finally {
+                    done.countDown();
+                }
+            }, "sim-worker-" + t);
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        long lastOps = 0;
+        long lastReport = start;
+        while (System.nanoTime() < end) {
+            Thread.sleep(Math.min(reportSeconds * 1000L, Math.max(1, (end - System.nanoTime()) / 1_000_000)));
+            long now = System.nanoTime();
+            long ops = totalOps();
+            long[] gc = gcTotals();
+            System.out.printf("sim: t=%3ds %,9.0f ops/s heap=%,d MB gc=%d ms (%d collections) artifacts=%d%n",
+                    (now - start) / 1_000_000_000L, (ops - lastOps) * 1e9 / (now - lastReport),
+                    memory.getHeapMemoryUsage().getUsed() >> 20, gc[1] - gcBefore[1], gc[0] - gcBefore[0],
+                    store.findAllArtifacts().size());
+            lastOps = ops;
+            lastReport = now;
+        }
+        running = false;
+        done.await();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long[] gcAfter = gcTotals();
+        System.gc();
+        long heapAfter = memory.getHeapMemoryUsage().getUsed();
+        report(elapsed, heapBefore, heapAfter, gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1]);
+
+        int violations = checkInvariants();
+        if (SAVE) store.saveAll();
+        return violations;
+    }
+
+    //----------------------------------------------------------------------
+    // Workload
+    //----------------------------------------------------------------------
+
+    private void populate() {
+        for (int i = store.findAllWizards().size(); i < wizardCount; i++) {
+            wizards.addWizard("Sim Wizard " + i);
+        }
+        refreshWizardIds();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = store.findAllArtifacts().size(); i < artifactCount; i++) {
+            Artifact a = artifacts.addArtifact("Sim Artifact " + i, "Generated by the workload simulator, number " + i);
+            if (random.nextBoolean()) {
+                wizards.assignArtifactToWizard(store.findWizardById(randomWizardId(random)), a);
+            }
+        }
+        for (Artifact a : store.findAllArtifacts()) {
+            maxArtifactId.accumulateAndGet(a.getId(), Math::max);
+        }
+    }
+
+    private void work() {
+        Op[] ops = Op.values();
+        LatencyHistogram[] latencies = new LatencyHistogram[ops.length];
+        for (int i = 0; i < ops.length; i++) latencies[i] = new LatencyHistogram();
+        histograms.add(latencies);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running) {
+            Op op = weighted[random.nextInt(weighted.length)];
+            long t0 = System.nanoTime();
+            try {
+                execute(op, random);
+            } catch (NoSuchElementException e) {
+                // the artifact was deleted by another worker in the meantime: expected
+            } catch (RuntimeException e) {
+                if (errorCounts[op.ordinal()].incrementAndGet() <= 3) {
+                    System.err.println("sim: " + op + " failed: " + e);
+                }
+            }
+            latencies[op.ordinal()].record(System.nanoTime() - t0);
+            opCounts[op.ordinal()].incrementAndGet();
+        }
+    }
+
+    private void execute(Op op, ThreadLocalRandom random) {
+        switch (op) {
+            case READ -> {
+                Artifact a = store.findArtifactById(randomArtifactId(random));
+                if (a != null) {
+                    a.getOwnerName();
+                    store.getHistoryByArtifactId(a.getId()).size();
+                }
+            }
+            case SEARCH -> {
+                String needle = "artifact " + random.nextInt(1000);
+                long hits = artifacts.findArtifacts(ArtifactQuery.all().nameContains(needle)).count();
+            }
+            case ASSIGN -> {
+                Artifact a = store.findArtifactById(randomArtifactId(random));
+                Wizard w = store.findWizardById(randomWizardId(random));
+                if (a != null && w != null) {
+                    if (a.hasOwner() && random.nextInt(4) == 0) {
+                        artifacts.unassignArtifactOwner(a.getId());
+                    } else {
+                        wizards.assignArtifactToWizard(w, a);
+                    }
+                }
+            }
+            case REPAIR -> artifacts.repairArtifactTo(randomArtifactId(random), random.nextInt(101));
+            case ADD -> {
+                Artifact a = artifacts.addArtifact("Sim Artifact " + random.nextInt(1_000_000), "Added during the run");
+                maxArtifactId.accumulateAndGet(a.getId(), Math::max);
+            }
+            case DELETE -> artifacts.deleteArtifact(randomArtifactId(random));
+        }
+    }
+
+    private int randomArtifactId(ThreadLocalRandom random) {
+        return 1 + random.nextInt(Math.max(1, maxArtifactId.get()));
+    }
+
+    private int randomWizardId(ThreadLocalRandom random) {
+        int[] ids = wizardIds;
+        return ids[random.nextInt(ids.length)];
+    }
+
+    private void refreshWizardIds() {
+        wizardIds = store.findAllWizards().stream().mapToInt(Wizard::getId).toArray();
+    }
+
+    //----------------------------------------------------------------------
+    // Results
+    //----------------------------------------------------------------------
+
+    private long totalOps() {
+        long total = 0;
+        for (AtomicLong c : opCounts) total += c.get();
+        return total;
+    }
+
+    private void report(double seconds, long heapBefore, long heapAfter, long gcCount, long gcMillis) {
+        System.out.printf("%nsim: %,d ops in %.1f s = %,.0f ops/s%n", totalOps(), seconds, totalOps() / seconds);
+        System.out.printf("%-7s %12s %10s %9s %9s %9s %9s %9s %7s%n",
+                "op", "count", "ops/s", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us", "errors");
+        for (Op op : Op.values()) {
+            LatencyHistogram merged = new LatencyHistogram();
+            synchronized (histograms) {
+                for (LatencyHistogram[] h : histograms) merged.add(h[op.ordinal()]);
+            }
+            if (merged.count() == 0) continue;
+            System.out.printf("%-7s %,12d %,10.0f %9.1f %9.1f %9.1f %9.1f %9.1f %7d%n",
+                    op.name().toLowerCase(), merged.count(), merged.count() / seconds,
+                    merged.percentileNanos(50) / 1e3, merged.percentileNanos(90) / 1e3,
+                    merged.percentileNanos(99) / 1e3, merged.percentileNanos(99.9) / 1e3,
+                    merged.maxNanos() / 1e3, errorCounts[op.ordinal()].get());
+        }
+        System.out.printf("heap after GC: %,d MB -> %,d MB (%+,d MB), GC: %d collections, %d ms (%.2f%% of the run)%n",
+                heapBefore >> 20, heapAfter >> 20, (heapAfter - heapBefore) >> 20, gcCount, gcMillis,
+                100.0 * gcMillis / (seconds * 1000));
+    }
+
+    private static long[] gcTotals() {
+        long count = 0, millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[] { count, millis };
+    }
+
+    // Ownership must agree in both directions once the workers have stopped
+    private int checkInvariants() {
+        List<String> violations = new ArrayList<>();
+        Map<Integer, Integer> listedBy = new HashMap<>();
+        for (Wizard w : store.findAllWizards()) {
+            for (Artifact a : w.getArtifacts()) {
+                Integer other = listedBy.put(a.getId(), w.getId());
+                if (other != null) {
+                    violations.add("artifact " + a.getId() + " is listed by wizards " + other + " and " + w.getId());
+                }
+                if (a.getOwner() != w) {
+                    violations.add("artifact " + a.getId() + " is listed by wizard " + w.getId() + " but owned by " + a.getOwnerName());
+                }
+                if (store.findArtifactById(a.getId()) != a) {
+                    violations.add("wizard " + w.getId() + " lists artifact " + a.getId() + " which is not in the store");
+                }
+            }
+        }
+        for (Artifact a : store.findAllArtifacts()) {
+            if (!a.hasOwner()) continue;
+            Wizard owner = a.getOwner();
+            if (store.findWizardById(owner.getId()) != owner) {
+                violations.add("artifact " + a.getId() + " is owned by wizard " + owner.getId() + " which is not in the store");
+            } else if (!owner.getArtifacts().contains(a)) {
+                violations.add("artifact " + a.getId() + " points to wizard " + owner.getId() + " which does not list it");
+            }
+        }
+        for (int i = 0; i < Math.min(20, violations.size()); i++) {
+            System.out.println("INVARIANT VIOLATED: " + violations.get(i));
+        }
+        System.out.println("invariants: " + (violations.isEmpty() ? "ok" : violations.size() + " violations")
+                + " (" + store.findAllWizards().size() + " wizards, " + store.findAllArtifacts().size()
+                + " artifacts, data dir " + StoreConfig.DATA_DIR + ")");
+        return violations.size();
+    }
+
+    private static Op[] parseMix(String mix) {
+        Map<Op, Integer> weights = new EnumMap<>(Op.class);
+        int total = 0;
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split(":");
+            int weight = Integer.parseInt(kv[1].trim());
+            weights.put(Op.valueOf(kv[0].trim().toUpperCase()), weight);
+            total += weight;
+        }
+        if (total <= 0) throw new IllegalArgumentException("Empty workload mix: " + mix);
+        Op[] slots = new Op[total];
+        int i = 0;
+        for (Map.Entry<Op, Integer> e : weights.entrySet()) {
+            for (int n = 0; n < e.getValue(); n++) slots[i++] = e.getKey();
+        }
+        return slots;
+    }
+}
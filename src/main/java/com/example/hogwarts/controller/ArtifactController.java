@@ -1,54 +1,140 @@
 package com.example.hogwarts.controller;
 
+import com.example.hogwarts.data.ArtifactQuery;
+import com.example.hogwarts.data.ArtifactSortIndex;
+import com.example.hogwarts.data.AuditRecord;
+import com.example.hogwarts.data.AuditTrail;
 import com.example.hogwarts.data.DataStore;
+import com.example.hogwarts.data.QueryPlan;
+import com.example.hogwarts.data.SearchEvent;
 import com.example.hogwarts.model.Artifact;
+import com.example.hogwarts.model.History;
 import java.util.Collection;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.stream.Stream;
 
 public class ArtifactController {
     private final DataStore store = DataStore.getInstance();
+    private final AuditTrail audit = AuditTrail.getInstance();
+    // Who is acting: permissions are checked against it, and the undo log and audit entries are theirs
+    private final Session session;
+
+    public ArtifactController(Session session) {
+        this.session = session;
+    }
 
     public Collection<Artifact> findAllArtifacts() {
         return this.store.findAllArtifacts();
     }
 
+    // Artifacts matching the query, streamed from the store's cheapest access path
+    public Stream<Artifact> findArtifacts(ArtifactQuery query) {
+        return this.store.query(query);
+    }
+
+    public QueryPlan explain(ArtifactQuery query) {
+        return this.store.plan(query);
+    }
+
+    // Page map of the artifact table in the given order: every artifact, or those whose name
+    // contains the text, case-insensitive (search bar). Walks the sort index; not for the FX thread
+    public ArtifactSortIndex.PageMap pageArtifacts(List<ArtifactSortIndex.SortKey> order, String nameContains, int pageSize) {
+        ArtifactSortIndex index = this.store.getSortIndex();
+        if (nameContains == null || nameContains.isEmpty()) {
+            return index.pageMap(order, null, pageSize);
+        }
+        SearchEvent event = SearchEvent.start("searchByName", nameContains);
+        ArtifactSortIndex.PageMap pages = index.pageMap(order, ArtifactQuery.all().nameContains(nameContains), pageSize);
+        event.finish(pages.getScanned(), pages.size());
+        return pages;
+    }
+
     public Artifact addArtifact(String name, String description) {
-        Artifact artifact = new Artifact(name, description);
-        return this.store.addArtifact(artifact);
+        this.session.require(Permission.EDIT_ARTIFACTS);
+        ControllerEvent event = ControllerEvent.start("addArtifact", -1, -1);
+        try {
+            Artifact artifact = new Artifact(name, description);
+            this.store.addArtifact(artifact);
+            this.session.getCommandLog().record(new Commands.AddArtifact(artifact));
+            this.audit.record(this.session.getUser(), "addArtifact", artifact.getId(), AuditRecord.NONE,
+                    AuditRecord.NONE, artifact.getCondition());
+            return artifact;
+        } finally {
+            event.finish();
+        }
     }
 
     public void updateArtifact(int id, String newName, String newDesc) {
-        Artifact artifact = this.store.findArtifactById(id);
-        if(artifact == null) {
-            throw new NoSuchElementException("Artifact with ID " + id + " not found.");
+        this.session.require(Permission.EDIT_ARTIFACTS);
+        ControllerEvent event = ControllerEvent.start("updateArtifact", id, -1);
+        try {
+            Artifact artifact = this.store.findArtifactById(id);
+            if(artifact == null) {
+                throw new NoSuchElementException("Artifact with ID " + id + " not found.");
+            }
+            String oldName = artifact.getName();
+            String oldDesc = artifact.getDescription();
+            this.store.updateArtifact(id, newName, newDesc);
+            this.session.getCommandLog().record(new Commands.UpdateArtifact(id, oldName, oldDesc, artifact.getName(), artifact.getDescription()));
+            this.audit.record(this.session.getUser(), "updateArtifact", id, AuditRecord.NONE,
+                    artifact.getCondition(), artifact.getCondition());
+        } finally {
+            event.finish();
         }
-        artifact.setName(newName);
-        artifact.setDescription(newDesc);
-
     }
     public void unassignArtifactOwner(int id){
-        Artifact artifact = this.store.findArtifactById(id);
-        if(artifact == null) {
-            throw new NoSuchElementException("Artifact with ID " + id + " not found.");
+        this.session.require(Permission.MAINTAIN);
+        ControllerEvent event = ControllerEvent.start("unassignArtifact", id, -1);
+        try {
+            Artifact artifact = this.store.findArtifactById(id);
+            if(artifact == null) {
+                throw new NoSuchElementException("Artifact with ID " + id + " not found.");
+            }
+            int oldOwnerId = Commands.ownerIdOf(artifact);
+            // Let the store detach the artifact so the owner's list is updated too; the wear is
+            // applied in the same step, so nobody sees one without the other
+            int oldCondition = this.store.transferArtifact(id, History.NO_WIZARD, c -> c - 5);
+            if (oldCondition < 0) return;
+            this.session.getCommandLog().record(new Commands.ChangeOwner(id, oldOwnerId, -1, oldCondition, artifact.getCondition()));
+            this.audit.record(this.session.getUser(), "unassignArtifact", id, oldOwnerId, oldCondition, artifact.getCondition());
+        } finally {
+            event.finish();
         }
-        artifact.unassignOwner();
-        artifact.reduceConditionByFive();
-        this.store.unassignArtifactFromWizard(artifact.getId());
     }
 
     public void deleteArtifact(int id) {
-        this.store.deleteArtifactById(id);
+        this.session.require(Permission.EDIT_ARTIFACTS);
+        ControllerEvent event = ControllerEvent.start("deleteArtifact", id, -1);
+        try {
+            Artifact artifact = this.store.findArtifactById(id);
+            if (artifact == null) return;
+            int ownerId = Commands.ownerIdOf(artifact);
+            this.store.deleteArtifactById(id);
+            this.session.getCommandLog().record(new Commands.DeleteArtifact(artifact, ownerId));
+            this.audit.record(this.session.getUser(), "deleteArtifact", id, ownerId, artifact.getCondition(), AuditRecord.NONE);
+        } finally {
+            event.finish();
+        }
     }
 
     public void repairArtifactTo(int id, int repairAmount) {
-        Artifact artifact = this.store.findArtifactById(id);
-        if(artifact == null) {
-            throw new NoSuchElementException("Artifact with ID " + id + " not found.");
+        this.session.require(Permission.MAINTAIN);
+        ControllerEvent event = ControllerEvent.start("repairArtifact", id, -1);
+        try {
+            Artifact artifact = this.store.findArtifactById(id);
+            if(artifact == null) {
+                throw new NoSuchElementException("Artifact with ID " + id + " not found.");
+            }
+            int oldCondition = artifact.getCondition();
+            int newCondition = artifact.getCondition() + repairAmount;
+            //Set condition bounds between 0 and 100
+            this.store.setArtifactCondition(id, newCondition);
+            this.session.getCommandLog().record(new Commands.Repair(id, oldCondition, artifact.getCondition()));
+            this.audit.record(this.session.getUser(), "repairArtifact", id, AuditRecord.NONE, oldCondition, artifact.getCondition());
+        } finally {
+            event.finish();
         }
-        int newCondition = artifact.getCondition() + repairAmount;
-        //Set condition bounds between 0 and 100
-        artifact.setCondition(newCondition);
     }
 
 }
-
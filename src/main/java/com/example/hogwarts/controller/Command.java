@@ -0,0 +1,37 @@
+package com.example.hogwarts.controller;
+
+import com.example.hogwarts.data.DataStore;
+
+/**
+ * A mutation recorded in the CommandLog.
+ * Implementations keep only what is needed to invert the change (ids and old values),
+ * never a copy of the store.
+ */
+public abstract class Command {
+    // Rough per-command overhead: object header, fields and the ring slot
+    protected static final long BASE_BYTES = 48;
+
+    public abstract String describe();
+
+    public abstract void undo(DataStore store);
+
+    public abstract void redo(DataStore store);
+
+    // Artifact and wizard the command changes, for the audit trail; -1 when there is none
+    public int artifactId() {
+        return -1;
+    }
+
+    public int wizardId() {
+        return -1;
+    }
+
+    // Estimated heap retained by this command, used to bound the log's memory
+    public long estimatedBytes() {
+        return BASE_BYTES;
+    }
+
+    protected static long stringBytes(String s) {
+        return s == null ? 0 : 40 + 2L * s.length();
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.hogwarts.controller;
+
+import com.example.hogwarts.data.AuditRecord;
+import com.example.hogwarts.data.AuditTrail;
+import com.example.hogwarts.data.DataStore;
+import com.example.hogwarts.model.Artifact;
+
+/**
+ * Bounded undo/redo log of one session (see Session.getCommandLog), so a user only ever
+ * undoes their own actions. Commands live in a fixed-size ring buffer; the oldest ones are dropped when either
+ * the entry limit or the estimated memory limit is exceeded.
+ */
+public class CommandLog {
+    static final int MAX_ENTRIES = Integer.getInteger("hogwarts.undo.maxEntries", 256);
+    private static final long MAX_BYTES = Long.getLong("hogwarts.undo.maxBytes", 4L * 1024 * 1024);
+
+    private final Session owner;
+    private final Command[] ring;
+    private int head;       // slot of the oldest command
+    private int undoCount;  // commands that can be undone, starting at head
+    private int redoCount;  // commands after those that can be redone
+    private long bytes;     // estimated bytes retained by undo + redo entries
+
+    CommandLog(Session owner, int capacity) {
+        this.owner = owner;
+        this.ring = new Command[capacity];
+    }
+
+    // Records a command that has just been applied; clears the redo history
+    public synchronized void record(Command command) {
+        for (int i = 0; i < redoCount; i++) {
+            int slot = slot(undoCount + i);
+            bytes -= ring[slot].estimatedBytes();
+            ring[slot] = null;
+        }
+        redoCount = 0;
+
+        if (undoCount == ring.length) {
+            dropOldest();
+        }
+        ring[slot(undoCount)] = command;
+        undoCount++;
+        bytes += command.estimatedBytes();
+
+        while (bytes > MAX_BYTES && undoCount > 1) {
+            dropOldest();
+        }
+    }
+
+    public synchronized boolean canUndo() {
+        return undoCount > 0;
+    }
+
+    public synchronized boolean canRedo() {
+        return redoCount > 0;
+    }
+
+    // Undoes the most recent command; returns it, or null if there was nothing to undo
+    public synchronized Command undo() {
+        owner.require(Permission.MAINTAIN);
+        ControllerEvent event = ControllerEvent.start("undo", -1, -1);
+        try {
+            if (undoCount == 0) return null;
+            Command command = ring[slot(undoCount - 1)];
+            int before = conditionOf(command.artifactId());
+            command.undo(DataStore.getInstance());
+            audit("undo " + command.describe(), command, before);
+            undoCount--;
+            redoCount++;
+            return command;
+        } finally {
+            event.finish();
+        }
+    }
+
+    public synchronized Command redo() {
+        owner.require(Permission.MAINTAIN);
+        ControllerEvent event = ControllerEvent.start("redo", -1, -1);
+        try {
+            if (redoCount == 0) return null;
+            Command command = ring[slot(undoCount)];
+            int before = conditionOf(command.artifactId());
+            command.redo(DataStore.getInstance());
+            audit("redo " + command.describe(), command, before);
+            undoCount++;
+            redoCount--;
+            return command;
+        } finally {
+            event.finish();
+        }
+    }
+
+    public synchronized String peekUndo() {
+        return undoCount == 0 ? null : ring[slot(undoCount - 1)].describe();
+    }
+
+    public synchronized String peekRedo() {
+        return redoCount == 0 ? null : ring[slot(undoCount)].describe();
+    }
+
+    public synchronized long estimatedBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return undoCount + redoCount;
+    }
+
+    private void audit(String operation, Command command, int conditionBefore) {
+        AuditTrail.getInstance().record(owner.getUser(), operation, command.artifactId(), command.wizardId(),
+                conditionBefore, conditionOf(command.artifactId()));
+    }
+
+    private static int conditionOf(int artifactId) {
+        Artifact artifact = artifactId < 0 ? null : DataStore.getInstance().findArtifactById(artifactId);
+        return artifact == null ? AuditRecord.NONE : artifact.getCondition();
+    }
+
+    private void dropOldest() {
+        bytes -= ring[head].estimatedBytes();
+        ring[head] = null;
+        head = (head + 1) % ring.length;
+        undoCount--;
+    }
+
+    private int slot(int offset) {
+        return (head + offset) % ring.length;
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.hogwarts.controller;
+
+import com.example.hogwarts.data.DataStore;
+import com.example.hogwarts.model.Artifact;
+import com.example.hogwarts.model.Wizard;
+
+// Inverse operations recorded by ArtifactController and WizardController
+final class Commands {
+    private static final int NO_OWNER = -1;
+
+    private Commands() {
+    }
+
+    static int ownerIdOf(Artifact artifact) {
+        return artifact.hasOwner() ? artifact.getOwner().getId() : NO_OWNER;
+    }
+
+    private static void setCondition(DataStore store, int artifactId, int condition) {
+        store.setArtifactCondition(artifactId, condition);
+    }
+
+    static final class AddArtifact extends Command {
+        private final Artifact artifact;
+
+        AddArtifact(Artifact artifact) {
+            this.artifact = artifact;
+        }
+
+        @Override
+        public int artifactId() { return artifact.getId(); }
+
+        @Override
+        public String describe() { return "add artifact " + artifact.getName(); }
+
+        @Override
+        public void undo(DataStore store) { store.deleteArtifactById(artifact.getId()); }
+
+        @Override
+        public void redo(DataStore store) { store.restoreArtifact(artifact); }
+    }
+
+    static final class UpdateArtifact extends Command {
+        private final int id;
+        private final String oldName, oldDesc, newName, newDesc;
+
+        UpdateArtifact(int id, String oldName, String oldDesc, String newName, String newDesc) {
+            this.id = id;
+            this.oldName = oldName;
+            this.oldDesc = oldDesc;
+            this.newName = newName;
+            this.newDesc = newDesc;
+        }
+
+        @Override
+        public int artifactId() { return id; }
+
+        @Override
+        public String describe() { return "edit artifact " + newName; }
+
+        @Override
+        public void undo(DataStore store) { apply(store, oldName, oldDesc); }
+
+        @Override
+        public void redo(DataStore store) { apply(store, newName, newDesc); }
+
+        private void apply(DataStore store, String name, String desc) {
+            store.updateArtifact(id, name, desc);
+        }
+
+        @Override
+        public long estimatedBytes() {
+            return BASE_BYTES + stringBytes(oldName) + stringBytes(oldDesc) + stringBytes(newName) + stringBytes(newDesc);
+        }
+    }
+
+    static final class DeleteArtifact extends Command {
+        private final Artifact artifact;
+        private final int ownerId;
+
+        DeleteArtifact(Artifact artifact, int ownerId) {
+            this.artifact = artifact;
+            this.ownerId = ownerId;
+        }
+
+        @Override
+        public int artifactId() { return artifact.getId(); }
+
+        @Override
+        public int wizardId() { return ownerId; }
+
+        @Override
+        public String describe() { return "delete artifact " + artifact.getName(); }
+
+        @Override
+        public void undo(DataStore store) {
+            store.restoreArtifact(artifact); // the history stayed in the store
+            if (ownerId != NO_OWNER) {
+                store.restoreOwnership(artifact.getId(), ownerId);
+            }
+        }
+
+        @Override
+        public void redo(DataStore store) { store.deleteArtifactById(artifact.getId()); }
+
+        @Override
+        public long estimatedBytes() { return BASE_BYTES; }
+    }
+
+    // Covers assign and unassign: both change the owner and knock 5 off the condition
+    static final class ChangeOwner extends Command {
+        private final int artifactId;
+        private final int oldOwnerId, newOwnerId;
+        private final int oldCondition, newCondition;
+
+        ChangeOwner(int artifactId, int oldOwnerId, int newOwnerId, int oldCondition, int newCondition) {
+            this.artifactId = artifactId;
+            this.oldOwnerId = oldOwnerId;
+            this.newOwnerId = newOwnerId;
+            this.oldCondition = oldCondition;
+            this.newCondition = newCondition;
+        }
+
+        @Override
+        public int artifactId() { return artifactId; }
+
+        @Override
+        public int wizardId() { return newOwnerId == NO_OWNER ? oldOwnerId : newOwnerId; }
+
+        @Override
+        public String describe() {
+            return newOwnerId == NO_OWNER ? "unassign artifact " + artifactId : "assign artifact " + artifactId;
+        }
+
+        // Owner and condition change together, as they did when the command was recorded
+        @Override
+        public void undo(DataStore store) { store.transferArtifact(artifactId, oldOwnerId, c -> oldCondition); }
+
+        @Override
+        public void redo(DataStore store) { store.transferArtifact(artifactId, newOwnerId, c -> newCondition); }
+    }
+
+    static final class Repair extends Command {
+        private final int artifactId;
+        private final int oldCondition, newCondition;
+
+        Repair(int artifactId, int oldCondition, int newCondition) {
+            this.artifactId = artifactId;
+            this.oldCondition = oldCondition;
+            this.newCondition = newCondition;
+        }
+
+        @Override
+        public int artifactId() { return artifactId; }
+
+        @Override
+        public String describe() { return "repair artifact " + artifactId; }
+
+        @Override
+        public void undo(DataStore store) { setCondition(store, artifactId, oldCondition); }
+
+        @Override
+        public void redo(DataStore store) { setCondition(store, artifactId, newCondition); }
+    }
+
+    static final class AddWizard extends Command {
+        private final Wizard wizard;
+
+        AddWizard(Wizard wizard) {
+            this.wizard = wizard;
+        }
+
+        @Override
+        public int wizardId() { return wizard.getId(); }
+
+        @Override
+        public String describe() { return "add wizard " + wizard.getName(); }
+
+        @Override
+        public void undo(DataStore store) { store.deleteWizardById(wizard.getId()); }
+
+        @Override
+        public void redo(DataStore store) { store.restoreWizard(wizard); }
+    }
+
+    static final class RenameWizard extends Command {
+        private final int id;
+        private final String oldName, newName;
+
+        RenameWizard(int id, String oldName, String newName) {
+            this.id = id;
+            this.oldName = oldName;
+            this.newName = newName;
+        }
+
+        @Override
+        public int wizardId() { return id; }
+
+        @Override
+        public String describe() { return "rename wizard " + newName; }
+
+        @Override
+        public void undo(DataStore store) { apply(store, oldName); }
+
+        @Override
+        public void redo(DataStore store) { apply(store, newName); }
+
+        private void apply(DataStore store, String name) {
+            store.renameWizard(id, name);
+        }
+
+        @Override
+        public long estimatedBytes() { return BASE_BYTES + stringBytes(oldName) + stringBytes(newName); }
+    }
+
+    // Bulk operation: undo only touches the wizard and the artifacts it owned
+    static final class DeleteWizard extends Command {
+        private final Wizard wizard;
+        private final int[] artifactIds;
+
+        DeleteWizard(Wizard wizard, int[] artifactIds) {
+            this.wizard = wizard;
+            this.artifactIds = artifactIds;
+        }
+
+        @Override
+        public int wizardId() { return wizard.getId(); }
+
+        @Override
+        public String describe() { return "delete wizard " + wizard.getName(); }
+
+        @Override
+        public void undo(DataStore store) {
+            store.restoreWizard(wizard);
+            for (int artifactId : artifactIds) {
+                store.restoreOwnership(artifactId, wizard.getId());
+            }
+        }
+
+        @Override
+        public void redo(DataStore store) { store.deleteWizardById(wizard.getId()); }
+
+        @Override
+        public long estimatedBytes() { return BASE_BYTES + 16 + 4L * artifactIds.length; }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.hogwarts.controller;
+
+import com.example.hogwarts.data.TracedOperation;
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A controller action as the user triggered it; when it runs on the FX thread its
+ * duration is time the UI could not repaint.
+ */
+@Name("hogwarts.ControllerAction")
+@Label("Controller Action")
+@Category({ "Hogwarts", "UI" })
+final class ControllerEvent extends TracedOperation {
+    // Compared by name so controllers stay usable without a started toolkit (simulator, tools)
+    private static final String FX_THREAD = "JavaFX Application Thread";
+
+    @Label("Action")
+    String action;
+
+    @Label("Artifact Id")
+    int artifactId;
+
+    @Label("Wizard Id")
+    int wizardId;
+
+    @Label("FX Thread")
+    boolean fxThread;
+
+    static ControllerEvent start(String action, int artifactId, int wizardId) {
+        ControllerEvent event = new ControllerEvent();
+        event.action = action;
+        event.artifactId = artifactId;
+        event.wizardId = wizardId;
+        event.fxThread = FX_THREAD.equals(Thread.currentThread().getName());
+        event.start();
+        return event;
+    }
+
+    @Override
+    protected String describe() {
+        return (fxThread ? "FX thread " : "") + action + " (artifact " + artifactId + ", wizard " + wizardId + ")";
+    }
+}
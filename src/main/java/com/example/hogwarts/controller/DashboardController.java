@@ -1,6 +1,5 @@
 package com.example.hogwarts.controller;
 
-import com.example.hogwarts.data.DataStore;
 import com.example.hogwarts.view.DashboardView;
 import com.example.hogwarts.view.LoginView;
 import javafx.scene.Scene;
@@ -9,18 +8,21 @@ import javafx.scene.layout.StackPane;
 public class DashboardController {
     private final DashboardView dashboardView;
     private final LoginView loginView;
+    private final Session session;
 
-    public DashboardController(DashboardView dashboardView, LoginView loginView) {
+    public DashboardController(DashboardView dashboardView, LoginView loginView, Session session) {
         this.dashboardView = dashboardView;
         this.loginView = loginView;
+        this.session = session;
         this.dashboardView.setController(this);
     }
 
     public void handleLogout() {
         StackPane rootPane = (StackPane) this.dashboardView.getParent();
 
-        // Clear the current user session
-        DataStore.getInstance().setCurrentUser(null);
+        this.dashboardView.dispose();
+        // End this user's session; other sessions are not affected
+        SessionManager.getInstance().close(this.session);
         // Clear the form fields in the login view
         this.loginView.getUserField().clear();
         this.loginView.getPassField().clear();
@@ -1,9 +1,9 @@
 package com.example.hogwarts.controller;
 
-import com.example.hogwarts.data.DataStore;
-import com.example.hogwarts.model.User;
+import com.example.hogwarts.StartupTrace;
 import com.example.hogwarts.view.DashboardView;
 import com.example.hogwarts.view.LoginView;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
@@ -16,16 +16,17 @@ public class LoginController {
     }
 
     public void handleLogin(String username, String password) {
-        User user = DataStore.getInstance().authenticate(username, password);
-        if (user != null) { // User authenticated successfully
-            // Save the authenticated user
-            DataStore.getInstance().setCurrentUser(user);
-            DashboardView dashboardView = new DashboardView(); // Create the dashboard view ONLY after successful login
-            DashboardController dashboardController = new DashboardController(dashboardView, this.loginView); // Create the controller for the dashboard view
+        Session session = SessionManager.getInstance().open(username, password);
+        if (session != null) { // User authenticated successfully
+            // The session carries the user through the dashboard's views and controllers
+            DashboardView dashboardView = new DashboardView(session); // Create the dashboard view ONLY after successful login
+            DashboardController dashboardController = new DashboardController(dashboardView, this.loginView, session); // Create the controller for the dashboard view
 
             Scene scene = this.loginView.getScene();
             if (scene != null) {
                 scene.setRoot(dashboardView); // Replace the login view with the dashboard view
+                // Startup benchmark: dashboard is the last phase, quit once it is drawn
+                StartupTrace.markAfterNextPulse(scene, "dashboard", StartupTrace.BENCHMARK ? Platform::exit : null);
 //                Stage stage = (Stage) scene.getWindow();
 //                stage.setWidth(800);
 //                stage.setHeight(600);
@@ -0,0 +1,25 @@
+package com.example.hogwarts.controller;
+
+import com.example.hogwarts.model.Role;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * What a session may do. The set for each role is built once and shared by every session
+ * of that role, so a permission check is a single bit test.
+ */
+public enum Permission {
+    VIEW,            // browse artifacts, wizards and history
+    MAINTAIN,        // repair and unassign artifacts, undo/redo own actions
+    EDIT_ARTIFACTS,  // add, edit and delete artifacts
+    MANAGE_WIZARDS;  // add, rename and delete wizards, assign artifacts
+
+    private static final Set<Permission> ADMIN = Collections.unmodifiableSet(EnumSet.allOf(Permission.class));
+    private static final Set<Permission> USER = Collections.unmodifiableSet(EnumSet.of(VIEW, MAINTAIN));
+
+    public static Set<Permission> grantedTo(Role role) {
+        return role == Role.ADMIN ? ADMIN : USER;
+    }
+}
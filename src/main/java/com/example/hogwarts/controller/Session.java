@@ -0,0 +1,106 @@
+package com.example.hogwarts.controller;
+
+import com.example.hogwarts.model.Role;
+import com.example.hogwarts.model.User;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One logged-in user: who they are, what they may do and their preferences. Permissions
+ * are resolved when the session is opened; the preference map and the undo log are only
+ * created once they are first used, so an idle session is a single small object.
+ * Sessions are opened and closed through SessionManager.
+ */
+public final class Session {
+    private final long id;
+    private final User user;
+    private final Set<Permission> permissions;
+    private final long openedAt;
+    private volatile long lastUsed;
+    private volatile boolean closed;
+    private volatile Map<String, String> preferences;
+    private volatile CommandLog commandLog;
+
+    Session(long id, User user) {
+        this.id = id;
+        this.user = user;
+        this.permissions = Permission.grantedTo(user.getRole());
+        this.openedAt = System.currentTimeMillis();
+        this.lastUsed = openedAt;
+    }
+
+    public long getId() { return id; }
+    public User getUser() { return user; }
+    public Role getRole() { return user.getRole(); }
+    public long getOpenedAt() { return openedAt; }
+    public long getLastUsed() { return lastUsed; }
+    public boolean isClosed() { return closed; }
+
+    public boolean can(Permission permission) {
+        return permissions.contains(permission);
+    }
+
+    // Guards a controller action; also marks the session as in use
+    void require(Permission permission) {
+        if (closed) {
+            throw new IllegalStateException(this + " is closed");
+        }
+        lastUsed = System.currentTimeMillis();
+        if (!permissions.contains(permission)) {
+            throw new SecurityException(user.getUsername() + " may not " + permission.name().toLowerCase().replace('_', ' '));
+        }
+    }
+
+    public String getPreference(String key, String defaultValue) {
+        Map<String, String> prefs = preferences;
+        if (prefs == null) return defaultValue;
+        return prefs.getOrDefault(key, defaultValue);
+    }
+
+    public void setPreference(String key, String value) {
+        Map<String, String> prefs = preferences;
+        if (prefs == null) {
+            synchronized (this) {
+                prefs = preferences;
+                if (prefs == null) {
+                    prefs = new ConcurrentHashMap<>(4);
+                    preferences = prefs;
+                }
+            }
+        }
+        if (value == null) prefs.remove(key);
+        else prefs.put(key, value);
+    }
+
+    // This user's own undo/redo history
+    public CommandLog getCommandLog() {
+        CommandLog log = commandLog;
+        if (log == null) {
+            synchronized (this) {
+                log = commandLog;
+                if (log == null) {
+                    log = new CommandLog(this, CommandLog.MAX_ENTRIES);
+                    commandLog = log;
+                }
+            }
+        }
+        return log;
+    }
+
+    // Estimated bytes retained by the undo log, 0 while it was never used
+    long undoBytes() {
+        CommandLog log = commandLog;
+        return log == null ? 0 : log.estimatedBytes();
+    }
+
+    void markClosed() {
+        closed = true;
+    }
+
+    @Override
+    public String toString() {
+        return "Session " + id + " (" + user.getUsername() + ", " + user.getRole() + ")";
+    }
+}
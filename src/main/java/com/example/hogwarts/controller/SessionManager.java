@@ -0,0 +1,106 @@
+package com.example.hogwarts.controller;
+
+import com.example.hogwarts.data.DataStore;
+import com.example.hogwarts.data.StoreConfig;
+import com.example.hogwarts.data.StoreMetrics;
+import com.example.hogwarts.model.Role;
+import com.example.hogwarts.model.User;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Open sessions of all users working against the one DataStore. Opening a session is an
+ * authentication plus one small object; there is no per-session thread or timer. With
+ * hogwarts.session.idleMinutes set, sessions unused for that long are closed by a sweep
+ * that runs at most once a minute, piggybacked on open().
+ */
+public class SessionManager {
+    private static final long SWEEP_INTERVAL_MS = 60_000;
+
+    private static volatile SessionManager instance;
+
+    private final DataStore store = DataStore.getInstance();
+    private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong idCounter = new AtomicLong(1);
+    private final AtomicLong lastSweep = new AtomicLong(System.currentTimeMillis());
+    private final LongAdder expired = new LongAdder();
+
+    SessionManager() {
+        StoreMetrics metrics = StoreMetrics.getInstance();
+        metrics.registerGauge("sessions.active", sessions::size);
+        metrics.registerGauge("sessions.opened", () -> idCounter.get() - 1);
+        metrics.registerGauge("sessions.expired", expired::sum);
+        metrics.registerGauge("sessions.undoBytes", () -> {
+            long bytes = 0;
+            for (Session s : sessions.values()) bytes += s.undoBytes();
+            return bytes;
+        });
+    }
+
+    public static SessionManager getInstance() {
+        if (instance == null) {
+            synchronized (SessionManager.class) {
+                if (instance == null) {
+                    instance = new SessionManager();
+                }
+            }
+        }
+        return instance;
+    }
+
+    // Returns the new session, or null if the credentials are wrong
+    public Session open(String username, String password) {
+        User user = this.store.authenticate(username, password);
+        return user == null ? null : open(user);
+    }
+
+    // Session for a tool or background job (simulator, scheduled tasks); named after it in the audit trail
+    public Session openService(String name) {
+        return open(new User(name, null, Role.ADMIN));
+    }
+
+    private Session open(User user) {
+        sweepIdle();
+        Session session = new Session(idCounter.getAndIncrement(), user);
+        this.sessions.put(session.getId(), session);
+        return session;
+    }
+
+    // The open session with this id, or null
+    public Session get(long id) {
+        return this.sessions.get(id);
+    }
+
+    public void close(Session session) {
+        if (session == null) return;
+        session.markClosed();
+        this.sessions.remove(session.getId());
+    }
+
+    public Collection<Session> getSessions() {
+        return Collections.unmodifiableCollection(this.sessions.values());
+    }
+
+    public int getActiveCount() {
+        return this.sessions.size();
+    }
+
+    private void sweepIdle() {
+        if (StoreConfig.SESSION_IDLE_MINUTES <= 0) return;
+        long now = System.currentTimeMillis();
+        long last = lastSweep.get();
+        if (now - last < SWEEP_INTERVAL_MS || !lastSweep.compareAndSet(last, now)) return;
+        long cutoff = now - StoreConfig.SESSION_IDLE_MINUTES * 60_000L;
+        for (Session s : this.sessions.values()) {
+            if (s.getLastUsed() < cutoff) {
+                close(s);
+                expired.increment();
+            }
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package com.example.hogwarts.controller;
 
+import com.example.hogwarts.data.ArtifactQuery;
+import com.example.hogwarts.data.AuditRecord;
+import com.example.hogwarts.data.AuditTrail;
 import com.example.hogwarts.data.DataStore;
+import com.example.hogwarts.data.QueryPlan;
+import com.example.hogwarts.data.SearchEvent;
 import com.example.hogwarts.model.Artifact;
 import com.example.hogwarts.model.History;
 import com.example.hogwarts.model.Wizard;
@@ -11,38 +16,111 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 public class WizardController {
+    // Artifacts below this condition need repair before they can be assigned
+    public static final int MIN_ASSIGN_CONDITION = 10;
+
     private final DataStore store = DataStore.getInstance();
+    private final AuditTrail audit = AuditTrail.getInstance();
+    // Who is acting: permissions are checked against it, and the undo log and audit entries are theirs
+    private final Session session;
+
+    public WizardController(Session session) {
+        this.session = session;
+    }
 
     public Collection<Wizard> findAllWizards() {
         return this.store.findAllWizards();
     }
 
     public Wizard addWizard(String name) {
-        Wizard wizard = new Wizard(name);
-        return this.store.addWizard(wizard);
+        this.session.require(Permission.MANAGE_WIZARDS);
+        ControllerEvent event = ControllerEvent.start("addWizard", -1, -1);
+        try {
+            Wizard wizard = new Wizard(name);
+            this.store.addWizard(wizard);
+            this.session.getCommandLog().record(new Commands.AddWizard(wizard));
+            this.audit.record(this.session.getUser(), "addWizard", AuditRecord.NONE, wizard.getId(),
+                    AuditRecord.NONE, AuditRecord.NONE);
+            return wizard;
+        } finally {
+            event.finish();
+        }
     }
 
     public void updateWizard(int id, String newName) {
-        Wizard wizard = this.store.findWizardById(id);
-        if(wizard == null) {
-            throw new IllegalArgumentException("Wizard with ID " + id + " not found.");
+        this.session.require(Permission.MANAGE_WIZARDS);
+        ControllerEvent event = ControllerEvent.start("renameWizard", -1, id);
+        try {
+            Wizard wizard = this.store.findWizardById(id);
+            if(wizard == null) {
+                throw new IllegalArgumentException("Wizard with ID " + id + " not found.");
+            }
+            String oldName = wizard.getName();
+            this.store.renameWizard(id, newName);
+            this.session.getCommandLog().record(new Commands.RenameWizard(id, oldName, newName));
+            this.audit.record(this.session.getUser(), "renameWizard", AuditRecord.NONE, id, AuditRecord.NONE, AuditRecord.NONE);
+        } finally {
+            event.finish();
         }
-        wizard.setName(newName);
     }
 
     public void deleteWizard(int id) {
-        this.store.deleteWizardById(id);
+        this.session.require(Permission.MANAGE_WIZARDS);
+        ControllerEvent event = ControllerEvent.start("deleteWizard", -1, id);
+        try {
+            Wizard wizard = this.store.findWizardById(id);
+            if (wizard == null) return;
+            // Remember only the ids it owned so undo is proportional to the wizard, not the store
+            int[] owned = this.store.ownedArtifacts(id).stream().mapToInt(Artifact::getId).toArray();
+            this.store.deleteWizardById(id);
+            this.session.getCommandLog().record(new Commands.DeleteWizard(wizard, owned));
+            this.audit.record(this.session.getUser(), "deleteWizard", AuditRecord.NONE, id, AuditRecord.NONE, AuditRecord.NONE);
+        } finally {
+            event.finish();
+        }
     }
 
     public boolean assignArtifactToWizard(Wizard wizard, Artifact artifact) {
-        artifact.reduceConditionByFive();
-        // DataSore (store) records the assignment in history
-        return this.store.assignArtifactToWizard(artifact.getId(), wizard.getId());
+        this.session.require(Permission.MANAGE_WIZARDS);
+        ControllerEvent event = ControllerEvent.start("assignArtifact", artifact.getId(), wizard.getId());
+        try {
+            int oldOwnerId = Commands.ownerIdOf(artifact);
+            // DataSore (store) records the assignment in history, with the wear applied in the same step
+            int oldCondition = this.store.transferArtifact(artifact.getId(), wizard.getId(), c -> c - 5);
+            boolean assigned = oldCondition >= 0;
+            if (assigned) {
+                this.session.getCommandLog().record(new Commands.ChangeOwner(artifact.getId(), oldOwnerId, wizard.getId(), oldCondition, artifact.getCondition()));
+                this.audit.record(this.session.getUser(), "assignArtifact", artifact.getId(), wizard.getId(),
+                        oldCondition, artifact.getCondition());
+            }
+            return assigned;
+        } finally {
+            event.finish();
+        }
+    }
+
+    // Unassigned artifacts in good enough condition to be assigned, matching the typed text, in
+    // id order from the first id above afterId (the last one shown, Integer.MIN_VALUE for the first
+    // page). The read starts at that key, so a page costs the same however deep it is.
+    public List<Artifact> findAssignableArtifacts(String text, int afterId, int limit) {
+        ArtifactQuery query = ArtifactQuery.all().unassigned()
+                .conditionBetween(MIN_ASSIGN_CONDITION, 100)
+                .nameContains(text)
+                .afterId(afterId).limit(limit);
+        return page("assignableArtifacts", query);
+    }
+
+    // One page of a wizard's artifacts, optionally narrowed by name; paged by id like the above
+    public List<Artifact> findWizardArtifacts(int wizardId, String text, int afterId, int limit) {
+        ArtifactQuery query = ArtifactQuery.all().ownedBy(wizardId).nameContains(text).afterId(afterId).limit(limit);
+        return page("wizardArtifacts", query);
     }
 
-    public List<Artifact> getUnassignedArtifacts() {
-        return this.store.findAllArtifacts().stream()
-                .filter(a -> a.getOwner() == null || a.getOwner().getName().equals("--"))
-                .collect(Collectors.toList());//idk
+    private List<Artifact> page(String source, ArtifactQuery query) {
+        QueryPlan plan = this.store.plan(query);
+        SearchEvent event = SearchEvent.start(source, plan);
+        List<Artifact> page = plan.stream().collect(Collectors.toList());
+        event.finish((int) plan.getEstimatedRows(), page.size());
+        return page;
     }
 }
@@ -0,0 +1,70 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.Artifact;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+// Shared JSON layout of an artifact (artifacts.json and the shard files)
+final class ArtifactJson {
+    static final int NO_OWNER = -1;
+
+    private ArtifactJson() {
+    }
+
+    static void write(JsonGenerator gen, Artifact a) throws IOException {
+        write(gen, a.getId(), a.getName(), a.getDescription(), a.getCondition(), a.hasOwner() ? a.getOwner().getId() : NO_OWNER);
+    }
+
+    static void write(JsonGenerator gen, StoreSnapshot.ArtifactState a) throws IOException {
+        write(gen, a.getId(), a.getName(), a.getDescription(), a.getCondition(), a.getOwnerId());
+    }
+
+    private static void write(JsonGenerator gen, int id, String name, String description, int condition, int ownerId)
+            throws IOException {
+        gen.writeStartObject();
+        gen.writeNumberField("id", id);
+        gen.writeStringField("name", name);
+        gen.writeStringField("description", description);
+        gen.writeNumberField("condition", condition);
+        if (ownerId != NO_OWNER) {
+            gen.writeNumberField("ownerId", ownerId);
+        }
+        gen.writeEndObject();
+    }
+
+    // Parser must be positioned on START_OBJECT; the owner is returned separately since
+    // it can only be linked once the wizards are loaded
+    static Loaded read(JsonParser parser) throws IOException {
+        int id = 0, ownerId = NO_OWNER, condition = 100;
+        String name = null, description = null;
+        while (parser.nextToken() != JsonToken.END_OBJECT) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "id": id = parser.getIntValue(); break;
+                case "name": name = parser.getText(); break;
+                case "description": description = parser.getText(); break;
+                case "condition": condition = parser.getIntValue(); break;
+                case "ownerId": ownerId = parser.getIntValue(); break;
+                default: parser.skipChildren(); break;
+            }
+        }
+        Artifact a = new Artifact(name, description);
+        a.setId(id);
+        a.setCondition(condition);
+        return new Loaded(a, ownerId);
+    }
+
+    static final class Loaded {
+        final Artifact artifact;
+        final int ownerId;
+
+        Loaded(Artifact artifact, int ownerId) {
+            this.artifact = artifact;
+            this.ownerId = ownerId;
+        }
+    }
+}
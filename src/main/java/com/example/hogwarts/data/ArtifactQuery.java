@@ -0,0 +1,135 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.Artifact;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Filters, order and paging over the artifacts, run by DataStore.query(). Built with the
+ * fluent setters, e.g. ArtifactQuery.all().unassigned().conditionBetween(0, 40).limit(50);
+ * all filters must hold. DataStore.plan() shows which access path a query takes.
+ */
+public class ArtifactQuery {
+    private int minCondition = 0;
+    private int maxCondition = 100;
+    private Integer ownerId;          // null: any owner (or none)
+    private boolean unassigned;
+    private String nameContains;      // case-insensitive, null: any name
+    private List<ArtifactSortIndex.SortKey> order = List.of();
+    private Integer afterId;          // null: from the start
+    private int offset;
+    private int limit = Integer.MAX_VALUE;
+
+    public static ArtifactQuery all() {
+        return new ArtifactQuery();
+    }
+
+    public ArtifactQuery conditionBetween(int min, int max) {
+        this.minCondition = min;
+        this.maxCondition = max;
+        return this;
+    }
+
+    public ArtifactQuery ownedBy(int wizardId) {
+        this.ownerId = wizardId;
+        return this;
+    }
+
+    public ArtifactQuery unassigned() {
+        this.unassigned = true;
+        return this;
+    }
+
+    // Blank text matches every name
+    public ArtifactQuery nameContains(String text) {
+        this.nameContains = text == null || text.isEmpty() ? null : text;
+        return this;
+    }
+
+    public ArtifactQuery orderBy(List<ArtifactSortIndex.SortKey> order) {
+        this.order = List.copyOf(order);
+        return this;
+    }
+
+    public ArtifactQuery orderBy(ArtifactSortIndex.Column column, boolean ascending) {
+        List<ArtifactSortIndex.SortKey> keys = new ArrayList<>(order);
+        keys.add(new ArtifactSortIndex.SortKey(column, ascending));
+        this.order = List.copyOf(keys);
+        return this;
+    }
+
+    /**
+     * Keyset paging: only artifacts with an id above the given one, in id order (replaces any
+     * order). Passing the last id of a page reads the next page from that key on, so deep
+     * pages cost no more than the first and rows added or removed meanwhile shift nothing.
+     */
+    public ArtifactQuery afterId(int id) {
+        this.afterId = id;
+        this.order = List.of(new ArtifactSortIndex.SortKey(ArtifactSortIndex.Column.ID, true));
+        return this;
+    }
+
+    public ArtifactQuery offset(int offset) {
+        this.offset = Math.max(0, offset);
+        return this;
+    }
+
+    public ArtifactQuery limit(int limit) {
+        this.limit = Math.max(0, limit);
+        return this;
+    }
+
+    public int getMinCondition() { return minCondition; }
+    public int getMaxCondition() { return maxCondition; }
+    public Integer getOwnerId() { return ownerId; }
+    public boolean isUnassigned() { return unassigned; }
+    public String getNameContains() { return nameContains; }
+    public List<ArtifactSortIndex.SortKey> getOrder() { return order; }
+    public Integer getAfterId() { return afterId; }
+    public int getOffset() { return offset; }
+    public int getLimit() { return limit; }
+
+    // Filters that narrow the condition range below 0..100
+    boolean hasConditionRange() {
+        return minCondition > 0 || maxCondition < 100;
+    }
+
+    // True when no artifact can match
+    boolean isContradictory() {
+        return minCondition > maxCondition || (unassigned && ownerId != null) || limit == 0;
+    }
+
+    public boolean matches(Artifact a) {
+        if (afterId != null && a.getId() <= afterId) return false;
+        if (a.getCondition() < minCondition || a.getCondition() > maxCondition) return false;
+        if (unassigned && a.hasOwner()) return false;
+        if (ownerId != null && (!a.hasOwner() || a.getOwner().getId() != ownerId)) return false;
+        return nameContains == null || containsIgnoreCase(a.getName(), nameContains);
+    }
+
+    // Substring test without lower-casing (and copying) every name
+    static boolean containsIgnoreCase(String text, String part) {
+        int last = text.length() - part.length();
+        for (int i = 0; i <= last; i++) {
+            if (text.regionMatches(true, i, part, 0, part.length())) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        List<String> parts = new ArrayList<>();
+        if (hasConditionRange()) parts.add("condition " + minCondition + ".." + maxCondition);
+        if (ownerId != null) parts.add("owner " + ownerId);
+        if (unassigned) parts.add("unassigned");
+        if (nameContains != null) parts.add("name ~ \"" + nameContains + "\"");
+        for (ArtifactSortIndex.SortKey key : order) {
+            parts.add("order " + key.getColumn() + (key.isAscending() ? " asc" : " desc"));
+        }
+        if (afterId != null) parts.add("after id " + afterId);
+        if (offset > 0) parts.add("offset " + offset);
+        if (limit != Integer.MAX_VALUE) parts.add("limit " + limit);
+        return "ArtifactQuery[" + String.join(", ", parts) + "]";
+    }
+}
@@ -0,0 +1,673 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.Artifact;
+import com.example.hogwarts.model.Wizard;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Sorted indexes over the artifacts, kept up to date from store events.
+ * Each artifact is represented by an immutable Entry holding its precomputed sort keys
+ * (case-insensitive collation keys for name and owner), so ordering never calls
+ * compareToIgnoreCase. An index exists per requested column combination: the single-column
+ * ones are built up front, a multi-column order is built the first time it is asked for (by
+ * prepare(), which sorts outside the lock) and maintained from then on. Ties always fall back
+ * to the id, so orders are stable.
+ * The entries also carry what ArtifactQuery filters on, so the query planner can walk
+ * an index range and test the filters without loading the artifacts, and the artifact table
+ * can read an order a page at a time (PageMap) by key rather than by skipping rows.
+ */
+public class ArtifactSortIndex implements StoreListener {
+    public enum Column { ID, NAME, OWNER, CONDITION }
+
+    public static final class SortKey {
+        private final Column column;
+        private final boolean ascending;
+
+        public SortKey(Column column, boolean ascending) {
+            this.column = column;
+            this.ascending = ascending;
+        }
+
+        public Column getColumn() { return column; }
+        public boolean isAscending() { return ascending; }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SortKey other && other.column == column && other.ascending == ascending;
+        }
+
+        @Override
+        public int hashCode() {
+            return column.hashCode() * 2 + (ascending ? 1 : 0);
+        }
+    }
+
+    // Multi-column indexes kept alive at once; the least recently used one is dropped
+    private static final int MAX_INDEXES = 8;
+
+    private final DataStore store;
+    private final Collator collator;
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final LinkedHashMap<List<SortKey>, TreeSet<Entry>> indexes = new LinkedHashMap<>(16, 0.75f, true);
+    // Indexes being sorted by prepare(); they collect the changes made meanwhile
+    private final List<Build> builds = new ArrayList<>();
+    // Artifacts per condition value and unowned artifacts, for the planner's row estimates
+    private final int[] conditionCounts = new int[101];
+    private int unowned;
+
+    // Entries one cursor batch may examine, so a selective filter does not hold the index (and the store) for long
+    private static final int MAX_SCAN_PER_BATCH = 4096;
+
+    ArtifactSortIndex(DataStore store) {
+        this.store = store;
+        this.collator = Collator.getInstance();
+        this.collator.setStrength(Collator.SECONDARY); // ignore case, keep accents
+    }
+
+    // Reads every artifact again; events that arrive meanwhile are applied afterwards and are idempotent
+    synchronized void rebuild() {
+        clear();
+        for (Artifact artifact : store.findAllArtifacts()) {
+            Entry entry = newEntry(artifact);
+            entries.put(entry.id, entry);
+            count(entry, 1);
+        }
+        for (Column column : Column.values()) {
+            index(List.of(new SortKey(column, true)));
+        }
+    }
+
+    // Builds the index of an order that has none, sorting a copy of the entries outside the lock so
+    // writers (whose events update the index) are not held up; the changes made while it sorts are
+    // applied before the index is put in place. Returns at once when the order is already indexed.
+    public void prepare(List<SortKey> order) {
+        Build build = new Build();
+        Entry[] sorted;
+        synchronized (this) {
+            if (indexes.containsKey(order)) return;
+            sorted = entries.values().toArray(new Entry[0]);
+            builds.add(build);
+        }
+        Comparator<Entry> comparator = comparator(order);
+        Arrays.sort(sorted, comparator);
+        synchronized (this) {
+            // Not in builds any more when a rebuild cleared the index meanwhile
+            if (!builds.remove(build) || indexes.containsKey(order)) return;
+            TreeSet<Entry> index = new TreeSet<>(new SortedRun(sorted, comparator));
+            for (Entry old : build.removed) index.remove(old);
+            for (Entry added : build.added) {
+                if (entries.get(added.id) == added) index.add(added);
+            }
+            put(order, index);
+        }
+    }
+
+    // Entries replaced or removed, and entries added, while one prepare() sorts
+    private static final class Build {
+        final List<Entry> removed = new ArrayList<>();
+        final List<Entry> added = new ArrayList<>();
+    }
+
+    //----------------------------------------------------------------------
+    // Paging (artifact table)
+    //----------------------------------------------------------------------
+
+    /**
+     * Where the pages of one order begin: the key of every pageSize-th artifact that passes the
+     * filter, and how many pass. A page is read from its key on, so any part of the order can be
+     * shown without skipping rows to get there. Made by one walk over the index; after a change
+     * to the artifacts it is stale (a row can show twice or drop out at a page end) until the
+     * table makes a new one.
+     */
+    public static final class PageMap {
+        private final List<SortKey> order;
+        private final ArtifactQuery filter;
+        private final int pageSize;
+        private final Entry[] starts;
+        private final Entry last; // reading the last page stops here
+        private final int size;
+        private final int scanned;
+
+        private PageMap(List<SortKey> order, ArtifactQuery filter, int pageSize, Entry[] starts, Entry last,
+                        int size, int scanned) {
+            this.order = order;
+            this.filter = filter;
+            this.pageSize = pageSize;
+            this.starts = starts;
+            this.last = last;
+            this.size = size;
+            this.scanned = scanned;
+        }
+
+        public List<SortKey> getOrder() { return order; }
+        public int getPageSize() { return pageSize; }
+        public int size() { return size; }
+        // Entries walked to make the map
+        public int getScanned() { return scanned; }
+    }
+
+    // Walks the order (indexing it first if needed) a batch at a time, so writers get the lock in
+    // between; filter null for every artifact. A pass over the whole index: not for the FX thread.
+    public PageMap pageMap(List<SortKey> order, ArtifactQuery filter, int pageSize) {
+        order = List.copyOf(order);
+        prepare(order);
+        List<Entry> starts = new ArrayList<>();
+        Entry last = null;
+        Entry walked = null;
+        int size = 0;
+        int scanned = 0;
+        boolean done = false;
+        while (!done) {
+            synchronized (this) {
+                TreeSet<Entry> index = index(order);
+                Iterator<Entry> it = (walked == null ? index : index.tailSet(walked, false)).iterator();
+                for (int i = 0; i < MAX_SCAN_PER_BATCH; i++) {
+                    if (!it.hasNext()) {
+                        done = true;
+                        break;
+                    }
+                    walked = it.next();
+                    scanned++;
+                    if (filter != null && !passes(walked, filter)) continue;
+                    if (size % pageSize == 0) starts.add(walked);
+                    last = walked;
+                    size++;
+                }
+            }
+        }
+        return new PageMap(order, filter, pageSize, starts.toArray(new Entry[0]), last, size, scanned);
+    }
+
+    // Ids of one page of the map, read from the key it begins at; shorter for the last page, or
+    // when rows of this page were removed since the map was made
+    public synchronized int[] page(PageMap map, int page) {
+        TreeSet<Entry> index = index(map.order);
+        Comparator<? super Entry> order = index.comparator();
+        int[] ids = new int[map.pageSize];
+        int found = 0;
+        for (Entry e : index.tailSet(map.starts[page], true)) {
+            if (order.compare(e, map.last) > 0) break;
+            if (map.filter != null && !passes(e, map.filter)) continue;
+            ids[found++] = e.id;
+            if (found == ids.length) break;
+        }
+        return found == ids.length ? ids : Arrays.copyOf(ids, found);
+    }
+
+    // Row of the artifact in the map: its page by binary search over the page keys, then a walk
+    // within the page. -1 when it is not in the map (filtered out, or added after it was made)
+    public synchronized int position(PageMap map, int id) {
+        Entry target = entries.get(id);
+        if (target == null || map.size == 0) return -1;
+        if (map.filter != null && !passes(target, map.filter)) return -1;
+        TreeSet<Entry> index = index(map.order);
+        Comparator<? super Entry> order = index.comparator();
+        if (order.compare(target, map.last) > 0) return -1;
+        int page = Arrays.binarySearch(map.starts, target, order);
+        if (page < 0) page = -page - 2;
+        if (page < 0) return -1;
+        int row = page * map.pageSize;
+        for (Entry e : index.tailSet(map.starts[page], true)) {
+            if (e == target) return row < map.size ? row : -1;
+            if (map.filter == null || passes(e, map.filter)) row++;
+        }
+        return -1;
+    }
+
+    //----------------------------------------------------------------------
+    // Query support (see QueryPlan)
+    //----------------------------------------------------------------------
+
+    /** Read position in one index, for walking it a batch at a time while it keeps changing. */
+    static final class Cursor {
+        private final List<SortKey> order;
+        private final Entry end; // inclusive bound, null for the end of the index
+        private Entry last;      // the next batch starts after it
+        private boolean done;
+
+        private Cursor(List<SortKey> order, Entry from, Entry end) {
+            this.order = order;
+            this.last = from;
+            this.end = end;
+        }
+
+        boolean isDone() {
+            return done;
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized int countConditionRange(int min, int max) {
+        int count = 0;
+        for (int c = Math.max(0, min); c <= Math.min(100, max); c++) count += conditionCounts[c];
+        return count;
+    }
+
+    synchronized int countUnowned() {
+        return unowned;
+    }
+
+    // Whole index in the given order
+    synchronized Cursor cursor(List<SortKey> order) {
+        return new Cursor(List.copyOf(order), null, null);
+    }
+
+    // Id index from the first id above afterId on (Integer.MIN_VALUE for all of it)
+    synchronized Cursor idCursor(int afterId) {
+        return new Cursor(List.of(new SortKey(Column.ID, true)), probe(afterId, 0), null);
+    }
+
+    // Condition range on the single-column condition index, in either direction
+    synchronized Cursor conditionCursor(int min, int max, boolean ascending) {
+        List<SortKey> order = List.of(new SortKey(Column.CONDITION, ascending));
+        // Probe entries sort before the first and after the last real entry of the range
+        Entry from = probe(Integer.MIN_VALUE, ascending ? min : max);
+        Entry end = probe(Integer.MAX_VALUE, ascending ? max : min);
+        return new Cursor(order, from, end);
+    }
+
+    // Unowned artifacts sort last in the ascending owner index, by id; starts above afterId
+    synchronized Cursor unownedCursor(int afterId) {
+        return new Cursor(List.of(new SortKey(Column.OWNER, true)), probe(afterId, 0), null);
+    }
+
+    // Fills ids with the next entries after the cursor that pass the query's filters; 0 can
+    // also mean "nothing in this batch", the cursor tells when the index is exhausted
+    synchronized int next(Cursor cursor, ArtifactQuery filter, int[] ids) {
+        TreeSet<Entry> index = index(cursor.order);
+        NavigableSet<Entry> tail = cursor.last == null ? index : index.tailSet(cursor.last, false);
+        Comparator<? super Entry> order = index.comparator();
+        int found = 0;
+        int scanned = 0;
+        for (Entry e : tail) {
+            if (cursor.end != null && order.compare(e, cursor.end) > 0) {
+                cursor.done = true;
+                return found;
+            }
+            cursor.last = e;
+            if (filter == null || passes(e, filter)) ids[found++] = e.id;
+            if (found == ids.length || ++scanned == MAX_SCAN_PER_BATCH) return found;
+        }
+        cursor.done = true;
+        return found;
+    }
+
+    // Sorts the given ids in the given order; ids without an entry are dropped
+    synchronized int[] sortIds(int[] ids, int count, List<SortKey> order) {
+        List<Entry> selected = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Entry e = entries.get(ids[i]);
+            if (e != null) selected.add(e);
+        }
+        selected.sort(comparator(order));
+        int[] sorted = new int[selected.size()];
+        for (int i = 0; i < sorted.length; i++) sorted[i] = selected.get(i).id;
+        return sorted;
+    }
+
+    private static boolean passes(Entry e, ArtifactQuery q) {
+        if (q.getAfterId() != null && e.id <= q.getAfterId()) return false;
+        if (e.condition < q.getMinCondition() || e.condition > q.getMaxCondition()) return false;
+        if (q.isUnassigned() && e.ownerText != null) return false;
+        if (q.getOwnerId() != null && (e.ownerText == null || e.ownerId != q.getOwnerId())) return false;
+        return q.getNameContains() == null || ArtifactQuery.containsIgnoreCase(e.nameText, q.getNameContains());
+    }
+
+    //----------------------------------------------------------------------
+    // Index file (warm start)
+    //----------------------------------------------------------------------
+
+    // Layout: header, then the ids of every PERSISTED_ORDERS index in order, as int arrays. The
+    // header carries a checksum of the content the orders were made from (see contentHash), so a
+    // file written for other data is never used, and a CRC of the id arrays against damage.
+    private static final int FILE_MAGIC = 0x48574958; // "HWIX"
+    private static final int FILE_VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 8 + 4 + 8;
+    private static final Column[] PERSISTED_ORDERS = { Column.NAME, Column.OWNER, Column.CONDITION };
+
+    // Writes the single-column orders; temp file plus rename, so a reader never sees half a file.
+    // Only the copy into the buffers holds the index (and so the writers feeding it events).
+    void save(File file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        ByteBuffer body;
+        synchronized (this) {
+            int count = entries.size();
+            body = ByteBuffer.allocate(PERSISTED_ORDERS.length * count * 4);
+            for (Column column : PERSISTED_ORDERS) {
+                for (Entry e : index(List.of(new SortKey(column, true)))) {
+                    body.putInt(e.id);
+                }
+            }
+            long content = 0;
+            for (Entry e : entries.values()) content += contentHash(e);
+            body.flip();
+            CRC32 crc = new CRC32();
+            crc.update(body.duplicate());
+            header.putInt(FILE_MAGIC).putInt(FILE_VERSION).putInt(collationStamp()).putLong(content).putInt(count)
+                    .putLong(crc.getValue());
+            header.flip();
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) ch.write(header);
+            while (body.hasRemaining()) ch.write(body);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Rebuilds from the store like rebuild(), but takes the single-column orders from the file
+    // instead of sorting: no collation keys and no comparisons, just one pass per order. False
+    // (and an empty index) when the file is missing, damaged or describes other data.
+    synchronized boolean restore(File file) {
+        if (!file.isFile() || file.length() < HEADER_BYTES) return false;
+        ByteBuffer buf;
+        try {
+            // Read onto the heap rather than mapped: a mapping stays open until it is collected, and
+            // while it is, Windows refuses the rename with which the next save replaces the file
+            buf = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        } catch (IOException e) {
+            System.err.println("Cannot read " + file + ": " + e.getMessage());
+            clear();
+            return false;
+        }
+        if (buf.getInt() != FILE_MAGIC || buf.getInt() != FILE_VERSION || buf.getInt() != collationStamp()) return false;
+        long content = buf.getLong();
+        int count = buf.getInt();
+        long crcValue = buf.getLong();
+        if (buf.remaining() != (long) PERSISTED_ORDERS.length * count * 4) return false;
+        CRC32 crc = new CRC32();
+        crc.update(buf.duplicate());
+        if (crc.getValue() != crcValue) return false;
+
+        clear();
+        long actual = 0;
+        for (Artifact artifact : store.findAllArtifacts()) {
+            Entry entry = newEntry(artifact);
+            entries.put(entry.id, entry);
+            count(entry, 1);
+            actual += contentHash(entry);
+        }
+        if (entries.size() != count || actual != content) {
+            clear();
+            return false;
+        }
+        IntBuffer ids = buf.asIntBuffer();
+        for (Column column : PERSISTED_ORDERS) {
+            List<SortKey> order = List.of(new SortKey(column, true));
+            Entry[] sorted = new Entry[count];
+            for (int i = 0; i < count; i++) {
+                sorted[i] = entries.get(ids.get());
+                if (sorted[i] == null) {
+                    clear();
+                    return false;
+                }
+            }
+            indexes.put(order, new TreeSet<>(new SortedRun(sorted, comparator(order))));
+        }
+        index(List.of(new SortKey(Column.ID, true)));
+        return true;
+    }
+
+    private void clear() {
+        entries.clear();
+        indexes.clear();
+        builds.clear();
+        Arrays.fill(conditionCounts, 0);
+        unowned = 0;
+    }
+
+    // Everything the persisted orders depend on, summed over the entries so the order of the scan does not matter
+    private static long contentHash(Entry e) {
+        return ContentHashIndex.hash(e.nameText, e.ownerText == null ? "" : e.ownerText, e.condition, e.id);
+    }
+
+    // Orders are only valid for the collation rules they were sorted with
+    private static int collationStamp() {
+        return (Locale.getDefault().toLanguageTag() + "/" + System.getProperty("java.specification.version")).hashCode();
+    }
+
+    // An already sorted run of entries; a TreeSet built from a SortedSet with the same comparator
+    // links its nodes in one pass without comparing anything. Read-only; the range views are
+    // slices of the same array, found by binary search.
+    private static final class SortedRun extends AbstractSet<Entry> implements SortedSet<Entry> {
+        private final Entry[] sorted;
+        private final int from;
+        private final int to;
+        private final Comparator<? super Entry> comparator;
+
+        SortedRun(Entry[] sorted, Comparator<? super Entry> comparator) {
+            this(sorted, 0, sorted.length, comparator);
+        }
+
+        private SortedRun(Entry[] sorted, int from, int to, Comparator<? super Entry> comparator) {
+            this.sorted = sorted;
+            this.from = from;
+            this.to = to;
+            this.comparator = comparator;
+        }
+
+        @Override public Iterator<Entry> iterator() { return Arrays.asList(sorted).subList(from, to).iterator(); }
+        @Override public int size() { return to - from; }
+        @Override public Comparator<? super Entry> comparator() { return comparator; }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Entry e && Arrays.binarySearch(sorted, from, to, e, comparator) >= 0;
+        }
+
+        @Override
+        public Entry first() {
+            if (from == to) throw new NoSuchElementException();
+            return sorted[from];
+        }
+
+        @Override
+        public Entry last() {
+            if (from == to) throw new NoSuchElementException();
+            return sorted[to - 1];
+        }
+
+        @Override
+        public SortedSet<Entry> subSet(Entry fromElement, Entry toElement) {
+            if (comparator.compare(fromElement, toElement) > 0) throw new IllegalArgumentException("fromElement > toElement");
+            return new SortedRun(sorted, lowerBound(fromElement), lowerBound(toElement), comparator);
+        }
+
+        @Override
+        public SortedSet<Entry> headSet(Entry toElement) {
+            return new SortedRun(sorted, from, lowerBound(toElement), comparator);
+        }
+
+        @Override
+        public SortedSet<Entry> tailSet(Entry fromElement) {
+            return new SortedRun(sorted, lowerBound(fromElement), to, comparator);
+        }
+
+        // Index of the first entry >= e within this run
+        private int lowerBound(Entry e) {
+            int i = Arrays.binarySearch(sorted, from, to, e, comparator);
+            return i >= 0 ? i : -i - 1;
+        }
+    }
+
+    private void count(Entry e, int delta) {
+        conditionCounts[e.condition] += delta;
+        if (e.ownerText == null) unowned += delta;
+    }
+
+    // Entries with their collation keys, plus one tree node per entry and index
+    synchronized long estimatedBytes() {
+        long bytes = MemoryEstimator.hashMap(entries.size());
+        for (Entry e : entries.values()) {
+            bytes += MemoryEstimator.object(5, 12) + MemoryEstimator.boxedInt(e.id)
+                    + collationKeyBytes(e.name) + collationKeyBytes(e.owner);
+        }
+        long treeNode = MemoryEstimator.object(5, 1);
+        for (TreeSet<Entry> index : indexes.values()) {
+            bytes += MemoryEstimator.object(4, 8) + index.size() * treeNode;
+        }
+        return bytes;
+    }
+
+    // The key keeps a reference to the source string and about two 16-bit weights per character;
+    // a restored index has no key yet for the entries no comparison touched
+    private static long collationKeyBytes(CollationKey key) {
+        if (key == null) return 0;
+        int chars = 2 * key.getSourceString().length() + 2;
+        return MemoryEstimator.object(2, 0) + MemoryEstimator.object(1, 6)
+                + MemoryEstimator.align(MemoryEstimator.ARRAY_HEADER + 2L * chars);
+    }
+
+    @Override
+    public synchronized void onChange(StoreEvent event) {
+        switch (event.getType()) {
+            case ARTIFACT_ADDED, ARTIFACT_UPDATED, CONDITION_CHANGED, ASSIGNED, UNASSIGNED -> {
+                Artifact artifact = store.findArtifactById(event.getArtifactId());
+                if (artifact != null) reindex(artifact);
+            }
+            case ARTIFACT_DELETED -> remove(event.getArtifactId());
+            case WIZARD_UPDATED -> {
+                // Owner name changed for everything the wizard holds
+                Wizard wizard = store.findWizardById(event.getWizardId());
+                if (wizard != null) {
+                    for (Artifact artifact : wizard.getArtifacts()) {
+                        reindex(artifact);
+                    }
+                }
+            }
+            default -> { }
+        }
+    }
+
+    private void reindex(Artifact artifact) {
+        remove(artifact.getId());
+        Entry entry = newEntry(artifact);
+        entries.put(entry.id, entry);
+        count(entry, 1);
+        for (TreeSet<Entry> index : indexes.values()) {
+            index.add(entry);
+        }
+        for (Build build : builds) build.added.add(entry);
+    }
+
+    private void remove(int id) {
+        Entry old = entries.remove(id);
+        if (old == null) return;
+        count(old, -1);
+        for (TreeSet<Entry> index : indexes.values()) {
+            index.remove(old);
+        }
+        for (Build build : builds) build.removed.add(old);
+    }
+
+    private TreeSet<Entry> index(List<SortKey> order) {
+        TreeSet<Entry> index = indexes.get(order);
+        if (index == null) {
+            index = new TreeSet<>(comparator(order));
+            index.addAll(entries.values());
+            put(order, index);
+        }
+        return index;
+    }
+
+    private void put(List<SortKey> order, TreeSet<Entry> index) {
+        indexes.put(List.copyOf(order), index);
+        if (indexes.size() > MAX_INDEXES + Column.values().length) {
+            evictLeastUsed();
+        }
+    }
+
+    // Never drops the single-column indexes
+    private void evictLeastUsed() {
+        Iterator<List<SortKey>> it = indexes.keySet().iterator();
+        while (it.hasNext()) {
+            List<SortKey> key = it.next();
+            if (key.size() > 1 || !key.get(0).isAscending()) {
+                it.remove();
+                return;
+            }
+        }
+    }
+
+    private Entry newEntry(Artifact artifact) {
+        return new Entry(artifact.getId(), artifact.getName(), artifact.hasOwner() ? artifact.getOwnerName() : null,
+                artifact.hasOwner() ? artifact.getOwner().getId() : NO_OWNER, artifact.getCondition(), collator);
+    }
+
+    // Sorts as an unowned entry with the given id and condition; has no name
+    private static Entry probe(int id, int condition) {
+        return new Entry(id, null, null, NO_OWNER, condition, null);
+    }
+
+    private static Comparator<Entry> comparator(List<SortKey> order) {
+        Comparator<Entry> result = null;
+        for (SortKey key : order) {
+            Comparator<Entry> c = switch (key.getColumn()) {
+                case ID -> Comparator.comparingInt(e -> e.id);
+                case NAME -> Comparator.comparing(Entry::name);
+                // Unowned artifacts go last in either direction
+                case OWNER -> Comparator.comparing(Entry::owner, Comparator.nullsLast(Comparator.naturalOrder()));
+                case CONDITION -> Comparator.comparingInt(e -> e.condition);
+            };
+            if (!key.isAscending()) {
+                c = key.getColumn() == Column.OWNER
+                        ? Comparator.comparing(Entry::owner, Comparator.nullsLast(Comparator.<CollationKey>reverseOrder()))
+                        : c.reversed();
+            }
+            result = result == null ? c : result.thenComparing(c);
+        }
+        Comparator<Entry> byId = Comparator.comparingInt(e -> e.id);
+        return result == null ? byId : result.thenComparing(byId);
+    }
+
+    private static final int NO_OWNER = -1;
+
+    private static final class Entry {
+        final int id;
+        final String nameText;
+        final String ownerText; // null when unowned
+        final int ownerId;
+        final int condition;
+        private final Collator collator;
+        // Collation keys, made on the first comparison that needs them. prepare() compares outside the
+        // lock, so two threads may both make one: the keys are immutable and the collator synchronizes
+        // its own methods, so the worst case is a key made twice
+        private CollationKey name;
+        private CollationKey owner;
+
+        Entry(int id, String nameText, String ownerText, int ownerId, int condition, Collator collator) {
+            this.id = id;
+            this.nameText = nameText;
+            this.ownerText = ownerText;
+            this.ownerId = ownerId;
+            this.condition = condition;
+            this.collator = collator;
+        }
+
+        CollationKey name() {
+            if (name == null && nameText != null) name = collator.getCollationKey(nameText);
+            return name;
+        }
+
+        CollationKey owner() {
+            if (owner == null && ownerText != null) owner = collator.getCollationKey(ownerText);
+            return owner;
+        }
+    }
+}
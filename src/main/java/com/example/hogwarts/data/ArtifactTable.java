@@ -0,0 +1,44 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.Artifact;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Storage engine for the artifacts behind DataStore: the heap map (default) or the
+ * paged B+tree file (hogwarts.engine=paged). DataStore mutates Artifact objects in place
+ * and calls update() afterwards, so an engine that keeps records elsewhere can write them back.
+ */
+interface ArtifactTable {
+    Artifact get(int id);
+
+    // The instance if it is in memory right now, without loading it
+    Artifact peek(int id);
+
+    void put(Artifact artifact);
+
+    // Writes back an artifact changed in place (fields or owner)
+    void update(Artifact artifact);
+
+    Artifact remove(int id);
+
+    // Weakly consistent view, like ConcurrentHashMap.values()
+    Collection<Artifact> values();
+
+    int size();
+
+    void forEachValue(long parallelismThreshold, Consumer<Artifact> action);
+
+    void clear();
+
+    // Position in the engine's writes, read when a snapshot opens (0 for the heap map)
+    long writeCount();
+
+    // Makes everything written so far durable; a file engine marks it as the saved snapshot only
+    // if nothing was written after writeCount() returned snapshotWrites (no-op for the heap map)
+    void flush(long snapshotWrites) throws IOException;
+
+    long estimatedBytes();
+}
@@ -0,0 +1,52 @@
+package com.example.hogwarts.data;
+
+/**
+ * One user action as written to the audit trail: who did what to which artifact or wizard,
+ * and the artifact condition before and after. Ids and conditions that do not apply are -1.
+ * A summary of a bulk action (a maintenance sweep) covers count artifacts and has no ids.
+ */
+public final class AuditRecord {
+    public static final int NONE = -1;
+
+    private final long timestamp;
+    private final String user;
+    private final String operation;
+    private final int artifactId;
+    private final int wizardId;
+    private final int conditionBefore;
+    private final int conditionAfter;
+    private final int count;
+
+    public AuditRecord(long timestamp, String user, String operation, int artifactId, int wizardId,
+                       int conditionBefore, int conditionAfter) {
+        this(timestamp, user, operation, artifactId, wizardId, conditionBefore, conditionAfter, 1);
+    }
+
+    public AuditRecord(long timestamp, String user, String operation, int artifactId, int wizardId,
+                       int conditionBefore, int conditionAfter, int count) {
+        this.timestamp = timestamp;
+        this.user = user;
+        this.operation = operation;
+        this.artifactId = artifactId;
+        this.wizardId = wizardId;
+        this.conditionBefore = conditionBefore;
+        this.conditionAfter = conditionAfter;
+        this.count = count;
+    }
+
+    public long getTimestamp() { return timestamp; }
+    public String getUser() { return user; }
+    public String getOperation() { return operation; }
+    public int getArtifactId() { return artifactId; }
+    public int getWizardId() { return wizardId; }
+    public int getConditionBefore() { return conditionBefore; }
+    public int getConditionAfter() { return conditionAfter; }
+    public int getCount() { return count; }
+
+    @Override
+    public String toString() {
+        if (count != 1) return operation + " by " + user + " (" + count + " artifacts)";
+        return operation + " by " + user + " (artifact " + artifactId + ", wizard " + wizardId + ", condition "
+                + conditionBefore + " -> " + conditionAfter + ")";
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.User;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Audit trail of user actions (see AuditRecord). record() only claims a slot in a bounded
+ * ring with one CAS and publishes the record into it; a single background thread drains the
+ * ring and appends the records as JSON lines to data/audit/audit-NNNNNN.log (both done by a
+ * RingSegmentWriter). A segment is closed once it reaches hogwarts.audit.segmentKb and the
+ * oldest segments are deleted beyond hogwarts.audit.maxSegments. Only a full ring (the disk
+ * cannot keep up) makes record() wait, and at most hogwarts.audit.fullWaitMs: then, or when
+ * the writer is gone, the record is dropped and counted in audit.dropped. Records that cannot
+ * be written are counted in audit.failed. The remaining records are written on JVM shutdown.
+ */
+public class AuditTrail {
+    private static final String PREFIX = "audit-";
+    private static final String SUFFIX = ".log";
+
+    private static volatile AuditTrail instance;
+
+    private final File dir;
+    private int segmentNumber; // of the newest segment, written by the writer only
+    private final RingSegmentWriter<AuditRecord> ring;
+
+    AuditTrail(File dir, int capacity, long segmentBytes, int maxSegments) {
+        this.dir = dir;
+        List<File> existing = segments();
+        if (!existing.isEmpty()) segmentNumber = number(existing.get(existing.size() - 1));
+        this.ring = new RingSegmentWriter<>("Audit", "audit", dir, capacity, segmentBytes, maxSegments,
+                StoreConfig.AUDIT_FULL_WAIT_MS, new SegmentFormat());
+    }
+
+    public static AuditTrail getInstance() {
+        if (instance == null) {
+            synchronized (AuditTrail.class) {
+                if (instance == null) {
+                    instance = new AuditTrail(new File(StoreConfig.DATA_DIR, "audit"), StoreConfig.AUDIT_RING_SIZE,
+                            StoreConfig.AUDIT_SEGMENT_KB * 1024L, StoreConfig.AUDIT_MAX_SEGMENTS);
+                }
+            }
+        }
+        return instance;
+    }
+
+    // Records an action that has just been applied; user may be null (tools, simulator)
+    public void record(User user, String operation, int artifactId, int wizardId, int conditionBefore, int conditionAfter) {
+        if (!StoreConfig.AUDIT_ENABLED) return;
+        AuditRecord record = new AuditRecord(System.currentTimeMillis(), user == null ? "-" : user.getUsername(), operation,
+                artifactId, wizardId, conditionBefore, conditionAfter);
+        ring.offer(seq -> record);
+    }
+
+    // Records one entry for an action applied to count artifacts at once, instead of one per artifact
+    public void recordSummary(User user, String operation, int count) {
+        if (!StoreConfig.AUDIT_ENABLED) return;
+        AuditRecord record = new AuditRecord(System.currentTimeMillis(), user == null ? "-" : user.getUsername(), operation,
+                AuditRecord.NONE, AuditRecord.NONE, AuditRecord.NONE, AuditRecord.NONE, count);
+        ring.offer(seq -> record);
+    }
+
+    // Blocks until everything recorded so far is on disk (or the timeout passed); for tools and shutdown
+    public boolean flush(long timeoutMillis) {
+        return ring.flush(timeoutMillis);
+    }
+
+    public synchronized List<File> segments() {
+        File[] files = dir.listFiles((d, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files == null) return List.of();
+        List<File> result = new ArrayList<>(Arrays.asList(files));
+        result.sort(Comparator.comparing(File::getName));
+        return result;
+    }
+
+    private static int number(File segment) {
+        String name = segment.getName();
+        try {
+            return Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // One JSON line per record, segments numbered in sequence
+    private final class SegmentFormat implements RingSegmentWriter.Format<AuditRecord> {
+        @Override
+        public File segmentFile(File dir, AuditRecord first) {
+            return new File(dir, String.format("%s%06d%s", PREFIX, ++segmentNumber, SUFFIX));
+        }
+
+        @Override
+        public List<File> segments(File dir) {
+            return AuditTrail.this.segments();
+        }
+
+        @Override
+        public void write(JsonGenerator gen, AuditRecord r) throws IOException {
+            gen.writeStartObject();
+            gen.writeNumberField("ts", r.getTimestamp());
+            gen.writeStringField("user", r.getUser());
+            gen.writeStringField("op", r.getOperation());
+            gen.writeNumberField("artifactId", r.getArtifactId());
+            gen.writeNumberField("wizardId", r.getWizardId());
+            gen.writeNumberField("conditionBefore", r.getConditionBefore());
+            gen.writeNumberField("conditionAfter", r.getConditionAfter());
+            if (r.getCount() != 1) gen.writeNumberField("count", r.getCount());
+            gen.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,596 @@
+package com.example.hogwarts.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * B+tree from int keys to byte[] values in one file of fixed-size pages, with a bounded
+ * LRU cache of decoded nodes. Values above a quarter page go to overflow page chains.
+ *
+ * Page 0 is the header (root, page count, free list, entry count, clean flag). Nodes are
+ * written back when they leave the cache and on flush(); the clean flag is cleared on the
+ * first write after a flush, so a file that was not flushed before the process ended is
+ * detected on open and started over (the JSON snapshot is the durable copy). flush() only
+ * sets it when the tree still holds exactly the snapshot that was saved, see writeCount().
+ * Deletes do not merge nodes; underfull leaves stay until the file is rebuilt.
+ *
+ * All methods synchronize on the tree.
+ */
+final class BPlusTree {
+    static final int PAGE_SIZE = 8192;
+    private static final int MAGIC = 0x48475442; // "HGTB"
+    private static final int VERSION = 1;
+    private static final int MAX_INLINE = PAGE_SIZE / 4;
+    private static final byte LEAF = 1;
+    private static final byte INNER = 2;
+    private static final int NODE_HEADER = 1 + 4 + 4; // type, count, next leaf / first child
+    private static final int OVERFLOW_HEADER = 4 + 4; // next page, bytes in this page
+
+    private final FileChannel channel;
+    private final int cachePages;
+    private final Map<Integer, Node> cache;
+
+    private int root;
+    private int pageCount;
+    private int freeHead;    // first page of the free list, 0 when empty
+    private long entries;
+    private boolean clean;
+    private final boolean restored;
+    private long writes; // puts, removes and resets since the tree was opened
+
+    private long hits;
+    private long misses;
+
+    BPlusTree(File file, long cacheBytes) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.exists()) dir.mkdirs();
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE);
+        this.cachePages = (int) Math.max(16, cacheBytes / PAGE_SIZE);
+        this.cache = new LinkedHashMap<>(cachePages * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Node> eldest) {
+                if (size() <= cachePages) return false;
+                if (eldest.getValue().dirty) writeNode(eldest.getValue());
+                return true;
+            }
+        };
+        this.restored = readHeader();
+        if (!restored) {
+            if (channel.size() > 0) {
+                System.err.println("engine: " + file + " was not closed cleanly, rebuilding it from the snapshot");
+            }
+            reset();
+        }
+    }
+
+    // True when the file held a cleanly flushed tree
+    boolean isRestored() {
+        return restored;
+    }
+
+    synchronized long size() {
+        return entries;
+    }
+
+    synchronized long cacheHits() {
+        return hits;
+    }
+
+    synchronized long cacheMisses() {
+        return misses;
+    }
+
+    synchronized int cachedPages() {
+        return cache.size();
+    }
+
+    //----------------------------------------------------------------------
+    // Reads
+    //----------------------------------------------------------------------
+
+    synchronized byte[] get(int key) {
+        Node leaf = leafFor(key);
+        int i = Arrays.binarySearch(leaf.keys, 0, leaf.count, key);
+        return i < 0 ? null : value(leaf, i);
+    }
+
+    synchronized int lastKey() {
+        Node n = node(root);
+        while (!n.leaf) n = node(n.children[n.count]);
+        // Deletes leave empty leaves behind, so the rightmost one may be empty
+        if (n.count > 0) return n.keys[n.count - 1];
+        int last = -1;
+        for (n = leftmostLeaf(); ; n = node(n.next)) {
+            if (n.count > 0) last = n.keys[n.count - 1];
+            if (n.next == 0) return last;
+        }
+    }
+
+    // Copies up to keys.length entries with key >= fromKey; returns how many
+    synchronized int scan(long fromKey, int[] keys, byte[][] values) {
+        if (fromKey > Integer.MAX_VALUE) return 0;
+        Node n = fromKey < Integer.MIN_VALUE ? leftmostLeaf() : leafFor((int) fromKey);
+        int i = fromKey < Integer.MIN_VALUE ? 0 : lowerBound(n, (int) fromKey);
+        int found = 0;
+        while (found < keys.length) {
+            if (i < n.count) {
+                keys[found] = n.keys[i];
+                values[found] = value(n, i);
+                found++;
+                i++;
+            } else if (n.next != 0) {
+                n = node(n.next);
+                i = 0;
+            } else {
+                break;
+            }
+        }
+        return found;
+    }
+
+    //----------------------------------------------------------------------
+    // Writes
+    //----------------------------------------------------------------------
+
+    synchronized void put(int key, byte[] value) {
+        beginWrite();
+        boolean spill = value.length > MAX_INLINE;
+        byte[] stored = spill ? writeOverflow(value) : value;
+        Split split = insert(node(root), key, stored, spill);
+        if (split != null) {
+            Node newRoot = newNode(false);
+            newRoot.children[0] = root;
+            newRoot.insertChild(0, split.key, split.page);
+            root = newRoot.page;
+        }
+    }
+
+    synchronized boolean remove(int key) {
+        Node leaf = leafFor(key);
+        int i = Arrays.binarySearch(leaf.keys, 0, leaf.count, key);
+        if (i < 0) return false;
+        beginWrite();
+        freeValue(leaf, i);
+        leaf.removeEntry(i);
+        markDirty(leaf);
+        entries--;
+        return true;
+    }
+
+    synchronized void clear() {
+        reset();
+    }
+
+    // Read at a snapshot's instant; a later flush(count) tells whether anything changed since
+    synchronized long writeCount() {
+        return writes;
+    }
+
+    // Writes every dirty node and the header, then forces the file. The file is marked clean only
+    // when nothing was written after writeCount() returned snapshotWrites, i.e. it holds the saved
+    // snapshot; otherwise the next open rebuilds it from the JSON files.
+    synchronized void flush(long snapshotWrites) throws IOException {
+        try {
+            for (Node n : cache.values()) {
+                if (n.dirty) writeNode(n);
+            }
+            clean = writes == snapshotWrites;
+            writeHeader();
+            channel.force(true);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Decoded nodes in the cache, roughly as the heap holds them
+    synchronized long estimatedBytes() {
+        long bytes = MemoryEstimator.hashMap(cache.size());
+        for (Node n : cache.values()) {
+            bytes += MemoryEstimator.object(5, 16) + MemoryEstimator.intArray(n.keys.length);
+            if (n.leaf) {
+                bytes += MemoryEstimator.refArray(n.values.length) + MemoryEstimator.align(MemoryEstimator.ARRAY_HEADER + n.spilled.length);
+                for (int i = 0; i < n.count; i++) {
+                    bytes += MemoryEstimator.align(MemoryEstimator.ARRAY_HEADER + n.values[i].length);
+                }
+            } else {
+                bytes += MemoryEstimator.intArray(n.children.length);
+            }
+        }
+        return bytes;
+    }
+
+    private void beginWrite() {
+        writes++;
+        if (clean) {
+            clean = false;
+            writeHeader();
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private Split insert(Node n, int key, byte[] stored, boolean spill) {
+        if (n.leaf) {
+            int i = Arrays.binarySearch(n.keys, 0, n.count, key);
+            if (i >= 0) {
+                freeValue(n, i);
+                n.replaceValue(i, stored, spill);
+            } else {
+                n.insertEntry(-(i + 1), key, stored, spill);
+                entries++;
+            }
+            markDirty(n);
+            return n.bytes > PAGE_SIZE ? splitLeaf(n) : null;
+        }
+        int c = childIndex(n, key);
+        Split split = insert(node(n.children[c]), key, stored, spill);
+        if (split == null) return null;
+        n.insertChild(c, split.key, split.page);
+        markDirty(n);
+        return n.bytes > PAGE_SIZE ? splitInner(n) : null;
+    }
+
+    // Moves the upper half (by bytes) into a new right sibling
+    private Split splitLeaf(Node n) {
+        int half = (n.bytes - NODE_HEADER) / 2;
+        int m = 0;
+        for (int acc = 0; m < n.count - 1 && acc < half; m++) {
+            acc += Node.entryBytes(n.values[m], n.spilled[m]);
+        }
+        m = Math.max(1, m);
+        Node right = newNode(true);
+        for (int i = m; i < n.count; i++) {
+            right.insertEntry(i - m, n.keys[i], n.values[i], n.spilled[i]);
+        }
+        n.truncate(m);
+        right.next = n.next;
+        n.next = right.page;
+        markDirty(n);
+        return new Split(right.keys[0], right.page);
+    }
+
+    // Keeps the lower keys, pushes the middle key up and moves the rest into a new node
+    private Split splitInner(Node n) {
+        int m = n.count / 2;
+        int up = n.keys[m];
+        Node right = newNode(false);
+        right.children[0] = n.children[m + 1];
+        for (int i = m + 1; i < n.count; i++) {
+            right.insertChild(i - m - 1, n.keys[i], n.children[i + 1]);
+        }
+        n.truncate(m);
+        markDirty(n);
+        return new Split(up, right.page);
+    }
+
+    private static final class Split {
+        final int key;
+        final int page;
+
+        Split(int key, int page) {
+            this.key = key;
+            this.page = page;
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // Navigation
+    //----------------------------------------------------------------------
+
+    // keys[i] is the smallest key under children[i + 1]
+    private static int childIndex(Node n, int key) {
+        int i = Arrays.binarySearch(n.keys, 0, n.count, key);
+        return i >= 0 ? i + 1 : -(i + 1);
+    }
+
+    private static int lowerBound(Node n, int key) {
+        int i = Arrays.binarySearch(n.keys, 0, n.count, key);
+        return i >= 0 ? i : -(i + 1);
+    }
+
+    private Node leafFor(int key) {
+        Node n = node(root);
+        while (!n.leaf) n = node(n.children[childIndex(n, key)]);
+        return n;
+    }
+
+    private Node leftmostLeaf() {
+        Node n = node(root);
+        while (!n.leaf) n = node(n.children[0]);
+        return n;
+    }
+
+    //----------------------------------------------------------------------
+    // Pages
+    //----------------------------------------------------------------------
+
+    private Node node(int page) {
+        Node n = cache.get(page);
+        if (n != null) {
+            hits++;
+            return n;
+        }
+        misses++;
+        n = readNode(page);
+        cache.put(page, n);
+        return n;
+    }
+
+    private Node newNode(boolean leaf) {
+        Node n = new Node(allocate(), leaf);
+        markDirty(n);
+        return n;
+    }
+
+    // A node changed by this operation must stay cached until it is written
+    private void markDirty(Node n) {
+        n.dirty = true;
+        if (cache.get(n.page) != n) cache.put(n.page, n);
+    }
+
+    private int allocate() {
+        if (freeHead != 0) {
+            int page = freeHead;
+            freeHead = readPage(page).getInt(0);
+            return page;
+        }
+        return pageCount++;
+    }
+
+    private void freePage(int page) {
+        ByteBuffer buf = ByteBuffer.allocate(PAGE_SIZE);
+        buf.putInt(0, freeHead);
+        writePage(page, buf);
+        freeHead = page;
+    }
+
+    private byte[] value(Node leaf, int i) {
+        return leaf.spilled[i] ? readOverflow(leaf.values[i]) : leaf.values[i];
+    }
+
+    private void freeValue(Node leaf, int i) {
+        if (!leaf.spilled[i]) return;
+        ByteBuffer pointer = ByteBuffer.wrap(leaf.values[i]);
+        for (int page = pointer.getInt(0); page != 0; ) {
+            int next = readPage(page).getInt(0);
+            freePage(page);
+            page = next;
+        }
+    }
+
+    // Chains the value over overflow pages; returns the 8-byte pointer (first page, length)
+    private byte[] writeOverflow(byte[] value) {
+        int chunk = PAGE_SIZE - OVERFLOW_HEADER;
+        int pages = (value.length + chunk - 1) / chunk;
+        int[] chain = new int[pages];
+        for (int p = 0; p < pages; p++) chain[p] = allocate();
+        for (int p = 0; p < pages; p++) {
+            int from = p * chunk;
+            int len = Math.min(chunk, value.length - from);
+            ByteBuffer buf = ByteBuffer.allocate(PAGE_SIZE);
+            buf.putInt(p + 1 < pages ? chain[p + 1] : 0).putInt(len).put(value, from, len);
+            writePage(chain[p], buf);
+        }
+        return ByteBuffer.allocate(8).putInt(chain[0]).putInt(value.length).array();
+    }
+
+    private byte[] readOverflow(byte[] pointer) {
+        ByteBuffer p = ByteBuffer.wrap(pointer);
+        int page = p.getInt();
+        byte[] value = new byte[p.getInt()];
+        for (int at = 0; page != 0; ) {
+            ByteBuffer buf = readPage(page);
+            page = buf.getInt();
+            int len = buf.getInt();
+            buf.get(value, at, len);
+            at += len;
+        }
+        return value;
+    }
+
+    private Node readNode(int page) {
+        ByteBuffer buf = readPage(page);
+        byte type = buf.get();
+        int count = buf.getInt();
+        Node n = new Node(page, type == LEAF);
+        if (n.leaf) {
+            n.next = buf.getInt();
+            for (int i = 0; i < count; i++) {
+                int key = buf.getInt();
+                boolean spill = buf.get() == 1;
+                byte[] stored = new byte[spill ? 8 : buf.getInt()];
+                buf.get(stored);
+                n.insertEntry(i, key, stored, spill);
+            }
+        } else {
+            n.children[0] = buf.getInt();
+            for (int i = 0; i < count; i++) {
+                int key = buf.getInt();
+                n.insertChild(i, key, buf.getInt());
+            }
+        }
+        return n;
+    }
+
+    private void writeNode(Node n) {
+        ByteBuffer buf = ByteBuffer.allocate(PAGE_SIZE);
+        buf.put(n.leaf ? LEAF : INNER).putInt(n.count);
+        if (n.leaf) {
+            buf.putInt(n.next);
+            for (int i = 0; i < n.count; i++) {
+                buf.putInt(n.keys[i]).put((byte) (n.spilled[i] ? 1 : 0));
+                if (!n.spilled[i]) buf.putInt(n.values[i].length);
+                buf.put(n.values[i]);
+            }
+        } else {
+            buf.putInt(n.children[0]);
+            for (int i = 0; i < n.count; i++) {
+                buf.putInt(n.keys[i]).putInt(n.children[i + 1]);
+            }
+        }
+        writePage(n.page, buf);
+        n.dirty = false;
+    }
+
+    private ByteBuffer readPage(int page) {
+        ByteBuffer buf = ByteBuffer.allocate(PAGE_SIZE);
+        try {
+            long at = (long) page * PAGE_SIZE;
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, at + buf.position()) < 0) break; // past the end reads as zeros
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buf.clear();
+        return buf;
+    }
+
+    private void writePage(int page, ByteBuffer buf) {
+        buf.clear();
+        try {
+            long at = (long) page * PAGE_SIZE;
+            while (buf.hasRemaining()) {
+                channel.write(buf, at + buf.position());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean readHeader() throws IOException {
+        if (channel.size() < PAGE_SIZE) return false;
+        ByteBuffer buf = readPage(0);
+        if (buf.getInt() != MAGIC || buf.getInt() != VERSION || buf.getInt() != PAGE_SIZE) return false;
+        root = buf.getInt();
+        pageCount = buf.getInt();
+        freeHead = buf.getInt();
+        entries = buf.getLong();
+        clean = buf.get() == 1;
+        return clean;
+    }
+
+    private void writeHeader() {
+        ByteBuffer buf = ByteBuffer.allocate(PAGE_SIZE);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(PAGE_SIZE).putInt(root).putInt(pageCount).putInt(freeHead)
+                .putLong(entries).put((byte) (clean ? 1 : 0));
+        writePage(0, buf);
+    }
+
+    private void reset() {
+        try {
+            channel.truncate(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        cache.clear();
+        pageCount = 1;
+        freeHead = 0;
+        entries = 0;
+        clean = false;
+        writes++;
+        root = newNode(true).page;
+        writeHeader();
+    }
+
+    //----------------------------------------------------------------------
+    // Node
+    //----------------------------------------------------------------------
+
+    private static final class Node {
+        final int page;
+        final boolean leaf;
+        int count;
+        int[] keys = new int[32];
+        byte[][] values;     // leaf: the value, or the 8-byte overflow pointer when spilled
+        boolean[] spilled;
+        int[] children;      // inner: count + 1 child pages
+        int next;            // leaf: right sibling, 0 for the last leaf
+        int bytes = NODE_HEADER;
+        boolean dirty;
+
+        Node(int page, boolean leaf) {
+            this.page = page;
+            this.leaf = leaf;
+            if (leaf) {
+                values = new byte[32][];
+                spilled = new boolean[32];
+            } else {
+                children = new int[33];
+            }
+        }
+
+        static int entryBytes(byte[] stored, boolean spill) {
+            return 4 + 1 + (spill ? 0 : 4) + stored.length;
+        }
+
+        void insertEntry(int i, int key, byte[] stored, boolean spill) {
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+                values = Arrays.copyOf(values, count * 2);
+                spilled = Arrays.copyOf(spilled, count * 2);
+            }
+            System.arraycopy(keys, i, keys, i + 1, count - i);
+            System.arraycopy(values, i, values, i + 1, count - i);
+            System.arraycopy(spilled, i, spilled, i + 1, count - i);
+            keys[i] = key;
+            values[i] = stored;
+            spilled[i] = spill;
+            count++;
+            bytes += entryBytes(stored, spill);
+        }
+
+        void replaceValue(int i, byte[] stored, boolean spill) {
+            bytes += entryBytes(stored, spill) - entryBytes(values[i], spilled[i]);
+            values[i] = stored;
+            spilled[i] = spill;
+        }
+
+        void removeEntry(int i) {
+            bytes -= entryBytes(values[i], spilled[i]);
+            System.arraycopy(keys, i + 1, keys, i, count - i - 1);
+            System.arraycopy(values, i + 1, values, i, count - i - 1);
+            System.arraycopy(spilled, i + 1, spilled, i, count - i - 1);
+            count--;
+            values[count] = null;
+        }
+
+        // Key at i, its right child at i + 1
+        void insertChild(int i, int key, int child) {
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+                children = Arrays.copyOf(children, count * 2 + 1);
+            }
+            System.arraycopy(keys, i, keys, i + 1, count - i);
+            System.arraycopy(children, i + 1, children, i + 2, count - i);
+            keys[i] = key;
+            children[i + 1] = child;
+            count++;
+            bytes += 8;
+        }
+
+        // Keeps the first n keys (and n + 1 children)
+        void truncate(int n) {
+            if (leaf) {
+                for (int i = n; i < count; i++) {
+                    bytes -= entryBytes(values[i], spilled[i]);
+                    values[i] = null;
+                }
+            } else {
+                bytes -= (count - n) * 8;
+            }
+            count = n;
+        }
+    }
+}
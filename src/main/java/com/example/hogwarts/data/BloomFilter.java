@@ -0,0 +1,55 @@
+package com.example.hogwarts.data;
+
+/**
+ * Bloom filter over string keys: mightContain() is false only for keys that were never
+ * added. Sized for about 1% false positives at the expected count; the k probes come from
+ * one 64-bit hash split in two (double hashing).
+ */
+final class BloomFilter {
+    private static final int PROBES = 7;
+    private static final int BITS_PER_KEY = 10;
+
+    private final long[] bits;
+    private final long bitCount;
+    private int added;
+
+    BloomFilter(int expectedKeys) {
+        long wanted = Math.max(1024L, (long) expectedKeys * BITS_PER_KEY);
+        this.bits = new long[(int) Math.min(Integer.MAX_VALUE - 8, (wanted + 63) >>> 6)];
+        this.bitCount = (long) bits.length << 6;
+    }
+
+    void add(String key) {
+        long hash = ContentHashIndex.hashText(key);
+        int h1 = (int) hash, h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= PROBES; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        added++;
+    }
+
+    boolean mightContain(String key) {
+        long hash = ContentHashIndex.hashText(key);
+        int h1 = (int) hash, h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= PROBES; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    // Keys added so far, removed ones included (a Bloom filter cannot forget)
+    int added() {
+        return added;
+    }
+
+    // Past this many keys the false-positive rate climbs above the target
+    int capacity() {
+        return (int) Math.min(Integer.MAX_VALUE, bitCount / BITS_PER_KEY);
+    }
+
+    long estimatedBytes() {
+        return MemoryEstimator.object(1, 12) + MemoryEstimator.align(16 + bits.length * 8L);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.hogwarts.data;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A full catalog export from the upstream inventory, keyed by name (ids are local to each
+ * store and never exchanged):
+ *
+ *   {"wizards": [{"name": "Harry Potter"}, ...],
+ *    "artifacts": [{"name": "Time-Turner", "description": "...", "condition": 90, "owner": "Hermione Granger"}, ...]}
+ *
+ * condition defaults to 100 and owner to none. A name that appears twice keeps its last
+ * record. Files ending in .gz are read through gzip.
+ */
+final class CatalogFeed {
+    final Set<String> wizards = new LinkedHashSet<>();
+    final Map<String, Record> artifacts = new LinkedHashMap<>();
+    int duplicateKeys;
+    int invalidRecords;
+
+    static CatalogFeed read(File file) throws IOException {
+        CatalogFeed feed = new CatalogFeed();
+        InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+        if (file.getName().endsWith(".gz")) in = new GZIPInputStream(in, 64 * 1024);
+        JsonFactory factory = new JsonFactory();
+        try (JsonParser parser = factory.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException(file + ": expected an object with \"wizards\" and \"artifacts\"");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String section = parser.getCurrentName();
+                parser.nextToken();
+                switch (section) {
+                    case "wizards": feed.readWizards(parser); break;
+                    case "artifacts": feed.readArtifacts(parser); break;
+                    default: parser.skipChildren(); break;
+                }
+            }
+        }
+        // Owners count as wizards of the feed even when the wizard list leaves them out
+        for (Record r : feed.artifacts.values()) {
+            if (r.owner != null) feed.wizards.add(r.owner);
+        }
+        return feed;
+    }
+
+    private void readWizards(JsonParser parser) throws IOException {
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.getCurrentToken() != JsonToken.START_OBJECT) continue;
+            String name = null;
+            while (parser.nextToken() != JsonToken.END_OBJECT) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("name".equals(field)) name = parser.getText();
+                else parser.skipChildren();
+            }
+            if (name == null || name.isBlank()) invalidRecords++;
+            else if (!wizards.add(name)) duplicateKeys++;
+        }
+    }
+
+    private void readArtifacts(JsonParser parser) throws IOException {
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.getCurrentToken() != JsonToken.START_OBJECT) continue;
+            String name = null, description = "", owner = null;
+            int condition = 100;
+            while (parser.nextToken() != JsonToken.END_OBJECT) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "name": name = parser.getText(); break;
+                    case "description": description = parser.getCurrentToken() == JsonToken.VALUE_NULL ? "" : parser.getText(); break;
+                    case "condition": condition = Math.max(0, Math.min(100, parser.getIntValue())); break;
+                    case "owner": owner = parser.getCurrentToken() == JsonToken.VALUE_NULL ? null : parser.getText(); break;
+                    default: parser.skipChildren(); break;
+                }
+            }
+            if (name == null || name.isBlank()) {
+                invalidRecords++;
+            } else if (artifacts.put(name, new Record(name, description, condition, owner)) != null) {
+                duplicateKeys++;
+            }
+        }
+    }
+
+    static final class Record {
+        final String name;
+        final String description;
+        final int condition;
+        final String owner; // wizard name, null when unassigned
+
+        Record(String name, String description, int condition, String owner) {
+            this.name = name;
+            this.description = description;
+            this.condition = condition;
+            this.owner = owner;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.Artifact;
+import com.example.hogwarts.model.Wizard;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Delta-sync of the store against a full upstream export (see CatalogFeed). Records are
+ * matched by name through the ContentHashIndex: a name the Bloom filter rules out is an
+ * insert without further lookups, and a matched record whose content hash equals the
+ * store's is skipped without reading the artifact. Only inserts, updates and deletes touch
+ * the store, through its normal mutations, so ownership changes are logged as History and
+ * listeners (views, replication) see each change. Deletes are found by comparing the number
+ * of matched names with the number of keys; the keys are only walked when some are missing.
+ *
+ * The diff is computed first and then applied; it is not atomic against concurrent edits,
+ * which are simply taken as the new local state.
+ */
+public final class CatalogReconciler {
+    private CatalogReconciler() {
+    }
+
+    public static ReconcileReport reconcile(DataStore store, File feedFile, boolean apply, boolean applyDeletes)
+            throws IOException {
+        CatalogFeed feed = CatalogFeed.read(feedFile);
+        ReconcileReport report = new ReconcileReport(apply);
+        report.feedWizards = feed.wizards.size();
+        report.feedArtifacts = feed.artifacts.size();
+        report.duplicateKeys = feed.duplicateKeys;
+        report.invalidRecords = feed.invalidRecords;
+
+        long t0 = System.nanoTime();
+        ContentHashIndex index = store.contentHashIndex();
+        long t1 = System.nanoTime();
+        report.indexMillis = (t1 - t0) / 1_000_000;
+        int artifactKeys = index.artifactKeys();
+        int wizardKeys = index.wizardKeys();
+
+        // Wizards first, artifacts refer to their owner by name. In a dry run new wizards get
+        // provisional ids below NO_OWNER, which no stored hash contains.
+        Map<String, Integer> ownerIds = new HashMap<>();
+        int provisional = ArtifactJson.NO_OWNER;
+        int matchedWizards = 0;
+        for (String name : feed.wizards) {
+            Integer id = index.wizardId(name);
+            if (id != null) {
+                matchedWizards++;
+            } else {
+                id = apply ? store.addWizard(new Wizard(name)).getId() : --provisional;
+                report.add(ReconcileReport.Kind.INSERT, ReconcileReport.Entity.WIZARD, name, apply ? id : -1, "");
+            }
+            ownerIds.put(name, id);
+        }
+
+        int matchedArtifacts = 0;
+        for (CatalogFeed.Record r : feed.artifacts.values()) {
+            int ownerId = r.owner == null ? ArtifactJson.NO_OWNER : ownerIds.get(r.owner);
+            ContentHashIndex.Entry local = null;
+            if (!index.mightContainArtifact(r.name)) {
+                report.definitelyNew++;
+            } else {
+                local = index.artifact(r.name);
+                if (local == null) report.bloomFalsePositives++;
+            }
+            if (local == null) {
+                insert(store, report, r, ownerId, apply);
+            } else {
+                matchedArtifacts++;
+                if (local.hash == ContentHashIndex.hash(r.name, r.description, r.condition, ownerId)) {
+                    report.unchanged++;
+                } else {
+                    update(store, report, local.id, r, ownerId, apply);
+                }
+            }
+        }
+
+        if (applyDeletes && matchedArtifacts < artifactKeys) {
+            for (ContentHashIndex.Entry missing : index.artifactsNotIn(feed.artifacts)) {
+                report.add(ReconcileReport.Kind.DELETE, ReconcileReport.Entity.ARTIFACT, missing.name, missing.id, "");
+                if (apply) store.deleteArtifactById(missing.id);
+            }
+        }
+        // After the artifacts, so the ones leaving a deleted wizard were already moved (and logged)
+        if (applyDeletes && matchedWizards < wizardKeys) {
+            List<Map.Entry<String, Integer>> missing = new ArrayList<>(index.wizardsNotIn(feed.wizards).entrySet());
+            missing.sort(Map.Entry.comparingByValue());
+            for (Map.Entry<String, Integer> wizard : missing) {
+                report.add(ReconcileReport.Kind.DELETE, ReconcileReport.Entity.WIZARD, wizard.getKey(), wizard.getValue(), "");
+                if (apply) store.deleteWizardById(wizard.getValue());
+            }
+        }
+        report.diffMillis = (System.nanoTime() - t1) / 1_000_000;
+        return report;
+    }
+
+    private static void insert(DataStore store, ReconcileReport report, CatalogFeed.Record r, int ownerId, boolean apply) {
+        String detail = "condition " + r.condition + (r.owner == null ? "" : ", owner " + r.owner);
+        int id = -1;
+        if (apply) {
+            Artifact artifact = new Artifact(r.name, r.description);
+            artifact.setCondition(r.condition);
+            id = store.addArtifact(artifact).getId();
+            if (ownerId != ArtifactJson.NO_OWNER) store.assignArtifactToWizard(id, ownerId);
+        }
+        report.add(ReconcileReport.Kind.INSERT, ReconcileReport.Entity.ARTIFACT, r.name, id, detail);
+    }
+
+    // Applies only the fields that differ; the condition goes first so a logged transfer records the new one
+    private static void update(DataStore store, ReconcileReport report, int id, CatalogFeed.Record r, int ownerId, boolean apply) {
+        Artifact artifact = store.findArtifactById(id);
+        if (artifact == null) return; // deleted since the hash was read
+        List<String> detail = new ArrayList<>();
+        boolean description = !artifact.getDescription().equals(r.description);
+        boolean condition = artifact.getCondition() != r.condition;
+        int currentOwner = artifact.hasOwner() ? artifact.getOwner().getId() : ArtifactJson.NO_OWNER;
+        boolean owner = currentOwner != ownerId;
+        if (description) detail.add("description");
+        if (condition) detail.add("condition " + artifact.getCondition() + " -> " + r.condition);
+        if (owner) detail.add("owner " + artifact.getOwnerName() + " -> " + (r.owner == null ? "--" : r.owner));
+        if (detail.isEmpty()) {
+            report.unchanged++;
+            return;
+        }
+        report.add(ReconcileReport.Kind.UPDATE, ReconcileReport.Entity.ARTIFACT, r.name, id, String.join(", ", detail));
+        if (!apply) return;
+        if (description) store.updateArtifact(id, artifact.getName(), r.description);
+        if (condition) store.setArtifactCondition(id, r.condition);
+        if (owner) {
+            if (ownerId == ArtifactJson.NO_OWNER) store.unassignArtifactFromWizard(id);
+            else store.assignArtifactToWizard(id, ownerId);
+        }
+    }
+}
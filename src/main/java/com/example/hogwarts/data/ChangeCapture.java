@@ -0,0 +1,300 @@
+package com.example.hogwarts.data;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Change-data-capture: every store change gets the next sequence number and is appended as one
+ * JSON line to data/cdc/cdc-SEQ.ndjson (SEQ being the first record of the segment), so other
+ * processes can tail the files or read them with ChangeReader from any retained sequence on.
+ * Sequence numbers continue across restarts.
+ *
+ * onChange() runs inside the store's locks and only claims a slot of a RingSegmentWriter, like
+ * the AuditTrail; its background thread writes the records. A full ring holds up a change at most
+ * hogwarts.cdc.fullWaitMs; after that the change is dropped and counted in cdc.dropped, so a
+ * stalled disk never stalls the store. In-process subscribers get them through
+ * publisher(), each on its own delivery thread and only as many as it requested: a subscriber
+ * that falls behind the in-memory window reads the segments instead and never holds up the store.
+ */
+public class ChangeCapture implements StoreListener {
+    private static final int BATCH = 512;
+    private static final int RECENT = 8192; // records kept in memory for subscribers, power of two
+    private static final long IDLE_PARK_NANOS = 2_000_000;
+
+    private static volatile ChangeCapture instance;
+
+    private final File dir;
+    private final long baseSeq; // last sequence number written before this run
+
+    // The last RECENT written records by sequence number, for subscribers that keep up
+    private final AtomicReferenceArray<ChangeRecord> recent = new AtomicReferenceArray<>(RECENT);
+    private volatile long writtenSeq;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicInteger subscriberCounter = new AtomicInteger();
+    private final RingSegmentWriter<ChangeRecord> ring;
+
+    ChangeCapture(File dir, int capacity, long segmentBytes, int maxSegments) {
+        this.dir = dir;
+        this.baseSeq = lastWrittenSeq(dir);
+        this.writtenSeq = baseSeq;
+        this.ring = new RingSegmentWriter<>("CDC", "cdc", dir, capacity, segmentBytes, maxSegments,
+                StoreConfig.CDC_FULL_WAIT_MS, new SegmentFormat());
+
+        StoreMetrics metrics = StoreMetrics.getInstance();
+        metrics.registerGauge("cdc.seq", this::lastSequence);
+        metrics.registerGauge("cdc.writtenSeq", () -> writtenSeq);
+        metrics.registerGauge("cdc.subscribers", subscriptions::size);
+    }
+
+    public static ChangeCapture getInstance() {
+        if (instance == null) {
+            synchronized (ChangeCapture.class) {
+                if (instance == null) {
+                    instance = new ChangeCapture(new File(StoreConfig.DATA_DIR, "cdc"), StoreConfig.CDC_RING_SIZE,
+                            StoreConfig.CDC_SEGMENT_KB * 1024L, StoreConfig.CDC_MAX_SEGMENTS);
+                }
+            }
+        }
+        return instance;
+    }
+
+    public File getDirectory() {
+        return dir;
+    }
+
+    // Sequence number of the latest change, written or not
+    public long lastSequence() {
+        return baseSeq + ring.claimed();
+    }
+
+    // Sequence number of the latest change on disk
+    public long writtenSequence() {
+        return writtenSeq;
+    }
+
+    // Reader over the segments, starting after the given sequence number
+    public ChangeReader openReader(long afterSeq) {
+        return new ChangeReader(dir, afterSeq);
+    }
+
+    public long committedOffset(String consumer) throws IOException {
+        return ChangeReader.committedOffset(dir, consumer);
+    }
+
+    public void commitOffset(String consumer, long seq) throws IOException {
+        ChangeReader.commitOffset(dir, consumer, seq);
+    }
+
+    // Publisher of the changes after afterSeq, older ones included as long as they are retained
+    public Flow.Publisher<ChangeRecord> publisher(long afterSeq) {
+        return subscriber -> subscribe(subscriber, afterSeq);
+    }
+
+    // Publisher of the changes from now on
+    public Flow.Publisher<ChangeRecord> publisher() {
+        return subscriber -> subscribe(subscriber, lastSequence());
+    }
+
+    @Override
+    public void onChange(StoreEvent event) {
+        ring.offer(t -> ChangeRecord.of(baseSeq + t + 1, event));
+    }
+
+    // Blocks until everything captured so far is on disk (or the timeout passed)
+    public boolean flush(long timeoutMillis) {
+        return ring.flush(timeoutMillis);
+    }
+
+    //----------------------------------------------------------------------
+    // Segment format (writer thread)
+    //----------------------------------------------------------------------
+
+    // One JSON line per change, each segment named after its first sequence number
+    private final class SegmentFormat implements RingSegmentWriter.Format<ChangeRecord> {
+        @Override
+        public File segmentFile(File dir, ChangeRecord first) {
+            return new File(dir, ChangeReader.segmentName(first.getSeq()));
+        }
+
+        @Override
+        public List<File> segments(File dir) {
+            return ChangeReader.segments(dir);
+        }
+
+        @Override
+        public void write(JsonGenerator gen, ChangeRecord r) throws IOException {
+            gen.writeStartObject();
+            gen.writeNumberField("seq", r.getSeq());
+            gen.writeNumberField("ts", r.getTimestamp());
+            gen.writeStringField("type", r.getType().name());
+            if (r.getArtifactId() >= 0) gen.writeNumberField("artifactId", r.getArtifactId());
+            if (r.getWizardId() >= 0) gen.writeNumberField("wizardId", r.getWizardId());
+            if (r.getName() != null) gen.writeStringField("name", r.getName());
+            if (r.getDescription() != null) gen.writeStringField("description", r.getDescription());
+            if (r.getCondition() >= 0) gen.writeNumberField("condition", r.getCondition());
+            gen.writeEndObject();
+        }
+
+        // Written or not, the batch moves the sequence on; readers report a failed batch as a gap
+        @Override
+        public void afterBatch(List<ChangeRecord> batch) {
+            for (ChangeRecord r : batch) {
+                recent.set((int) (r.getSeq() & (RECENT - 1)), r);
+            }
+            writtenSeq = batch.get(batch.size() - 1).getSeq();
+            for (Subscription s : subscriptions) LockSupport.unpark(s.thread);
+        }
+
+        @Override
+        public void afterClose() {
+            for (Subscription s : subscriptions) LockSupport.unpark(s.thread);
+        }
+    }
+
+    // Last complete record of the newest segment, so numbering continues after a restart
+    private static long lastWrittenSeq(File dir) {
+        List<File> all = ChangeReader.segments(dir);
+        if (all.isEmpty()) return 0;
+        long first = ChangeReader.firstSeq(all.get(all.size() - 1));
+        try (ChangeReader reader = new ChangeReader(dir, first - 1)) {
+            while (!reader.poll(BATCH * 16).isEmpty()) {
+                // only the position matters
+            }
+            return reader.getLastSeq();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("CDC: cannot read " + all.get(all.size() - 1) + ", continuing after it: " + e.getMessage());
+            return first - 1;
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // In-process subscribers
+    //----------------------------------------------------------------------
+
+    private void subscribe(Flow.Subscriber<? super ChangeRecord> subscriber, long afterSeq) {
+        Subscription s = new Subscription(subscriber, afterSeq);
+        s.thread = new Thread(s, "cdc-subscriber-" + subscriberCounter.incrementAndGet());
+        s.thread.setDaemon(true);
+        subscriptions.add(s);
+        s.thread.start();
+    }
+
+    /**
+     * Delivers records in sequence order from the in-memory window, or from the segments when
+     * the subscriber is too far behind, and never more than it has requested.
+     */
+    private final class Subscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super ChangeRecord> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private volatile boolean cancelled;
+        private volatile Throwable badRequest;
+        private long delivered; // last sequence handed to the subscriber
+        private ChangeReader reader;
+        Thread thread;
+
+        Subscription(Flow.Subscriber<? super ChangeRecord> subscriber, long afterSeq) {
+            this.subscriber = subscriber;
+            this.delivered = afterSeq;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                badRequest = new IllegalArgumentException("request(" + n + "): demand must be positive");
+            } else {
+                demand.accumulateAndGet(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+            }
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void run() {
+            try {
+                subscriber.onSubscribe(this);
+                while (!cancelled) {
+                    if (badRequest != null) {
+                        cancelled = true;
+                        subscriber.onError(badRequest);
+                        break;
+                    }
+                    long wanted = demand.get();
+                    List<ChangeRecord> batch = wanted == 0 ? List.of() : next((int) Math.min(wanted, BATCH));
+                    if (batch.isEmpty()) {
+                        if (ring.isClosing() && !ring.isWriterAlive() && delivered >= writtenSeq) {
+                            subscriber.onComplete();
+                            break;
+                        }
+                        LockSupport.parkNanos(IDLE_PARK_NANOS * 25);
+                        continue;
+                    }
+                    for (ChangeRecord r : batch) {
+                        if (cancelled) break;
+                        demand.decrementAndGet();
+                        delivered = r.getSeq();
+                        subscriber.onNext(r);
+                    }
+                }
+            } catch (Throwable e) {
+                cancelled = true;
+                try {
+                    subscriber.onError(e);
+                } catch (Throwable ignored) {
+                    // the subscriber is broken either way
+                }
+            } finally {
+                subscriptions.remove(this);
+                closeReader();
+            }
+        }
+
+        // Records after delivered that are on disk, at most max
+        private List<ChangeRecord> next(int max) throws IOException {
+            long upTo = writtenSeq;
+            if (delivered >= upTo) return List.of();
+            ChangeRecord first = recent.get((int) ((delivered + 1) & (RECENT - 1)));
+            if (first != null && first.getSeq() == delivered + 1) {
+                closeReader();
+                List<ChangeRecord> batch = new ArrayList<>(Math.min(max, (int) (upTo - delivered)));
+                for (long seq = delivered + 1; seq <= upTo && batch.size() < max; seq++) {
+                    ChangeRecord r = recent.get((int) (seq & (RECENT - 1)));
+                    if (r == null || r.getSeq() != seq) break; // overwritten meanwhile, the reader takes over
+                    batch.add(r);
+                }
+                return batch;
+            }
+            // Too far behind for the window: catch up from the segments
+            if (reader == null || reader.getLastSeq() != delivered) {
+                closeReader();
+                reader = openReader(delivered);
+            }
+            return reader.poll(max);
+        }
+
+        private void closeReader() {
+            if (reader == null) return;
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // read-only
+            }
+            reader = null;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.hogwarts.data;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Reads the change-data-capture segments written by ChangeCapture, in sequence order, starting
+ * after a given sequence number. Only complete lines are returned, so the segment being written
+ * can be tailed: poll() returns what is on disk so far and picks up from there next time.
+ * Also keeps the consumer offsets (data/cdc/offsets/NAME.offset, the last sequence processed).
+ */
+public class ChangeReader implements Closeable {
+    static final String PREFIX = "cdc-";
+    static final String SUFFIX = ".ndjson";
+    private static final String OFFSETS_DIR = "offsets";
+    private static final Pattern CONSUMER_NAME = Pattern.compile("[A-Za-z0-9._-]+");
+    private static final int CHUNK = 64 * 1024;
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final File dir;
+    private long lastSeq; // last sequence returned, or the starting point
+
+    // Current segment; data[start, end) are bytes read from it but not consumed yet
+    private File segment;
+    private FileChannel channel;
+    private long readPos; // file offset of data[end]
+    private byte[] data = new byte[CHUNK];
+    private int start;
+    private int end;
+    private int scanned; // data[start, scanned) holds no newline
+
+    public ChangeReader(File dir, long afterSeq) {
+        this.dir = dir;
+        this.lastSeq = afterSeq;
+    }
+
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * Up to max records after the last one returned; empty when nothing newer is on disk yet.
+     * Throws IllegalStateException if the records needed next were already pruned.
+     */
+    public List<ChangeRecord> poll(int max) throws IOException {
+        List<ChangeRecord> batch = new ArrayList<>(Math.min(max, 1024));
+        if (segment == null && !openFirst()) return batch;
+        while (batch.size() < max) {
+            ChangeRecord r = readLine();
+            if (r == null) {
+                File next = nextSegment();
+                if (next == null) break;
+                // The writer closes a segment before it starts the next one, so the rest of this one is there now
+                r = readLine();
+                if (r == null) {
+                    if (firstSeq(next) > lastSeq + 1) {
+                        throw new IllegalStateException("Changes " + (lastSeq + 1) + ".." + (firstSeq(next) - 1) + " are no longer retained");
+                    }
+                    open(next); // a partial line left by a crash is skipped; its sequence number was reused
+                    continue;
+                }
+            }
+            if (r.getSeq() <= lastSeq) continue;
+            batch.add(r);
+            lastSeq = r.getSeq();
+        }
+        return batch;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) channel.close();
+        channel = null;
+    }
+
+    // The segment holding lastSeq + 1, or the first one if they all start later
+    private boolean openFirst() throws IOException {
+        List<File> all = segments(dir);
+        if (all.isEmpty()) return false;
+        long wanted = lastSeq + 1;
+        if (firstSeq(all.get(0)) > wanted) {
+            throw new IllegalStateException("Changes from " + wanted + " are no longer retained; the oldest is "
+                    + firstSeq(all.get(0)));
+        }
+        File chosen = all.get(0);
+        for (File f : all) {
+            if (firstSeq(f) <= wanted) chosen = f;
+        }
+        open(chosen);
+        return true;
+    }
+
+    private void open(File file) throws IOException {
+        close();
+        segment = file;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        readPos = 0;
+        start = end = scanned = 0;
+    }
+
+    private File nextSegment() {
+        long current = firstSeq(segment);
+        for (File f : segments(dir)) {
+            if (firstSeq(f) > current) return f;
+        }
+        return null;
+    }
+
+    // Next complete line of the current segment, or null at the end of what is there
+    private ChangeRecord readLine() throws IOException {
+        while (true) {
+            for (int i = scanned; i < end; i++) {
+                if (data[i] != '\n') continue;
+                int from = start;
+                start = scanned = i + 1;
+                if (i > from) return parse(data, from, i - from);
+            }
+            scanned = end;
+            if (start > 0) {
+                System.arraycopy(data, start, data, 0, end - start);
+                end -= start;
+                scanned -= start;
+                start = 0;
+            }
+            if (end == data.length) data = Arrays.copyOf(data, data.length * 2); // a line longer than a chunk
+            int n = channel.read(ByteBuffer.wrap(data, end, data.length - end), readPos);
+            if (n <= 0) return null;
+            end += n;
+            readPos += n;
+        }
+    }
+
+    private ChangeRecord parse(byte[] buf, int off, int len) throws IOException {
+        long seq = -1, ts = 0;
+        StoreEvent.Type type = null;
+        int artifactId = -1, wizardId = -1, condition = -1;
+        String name = null, description = null;
+        try (JsonParser p = JSON.createParser(buf, off, len)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) throw new IOException("Not a change record in " + segment);
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                p.nextToken();
+                switch (field) {
+                    case "seq" -> seq = p.getLongValue();
+                    case "ts" -> ts = p.getLongValue();
+                    case "type" -> type = StoreEvent.Type.valueOf(p.getText());
+                    case "artifactId" -> artifactId = p.getIntValue();
+                    case "wizardId" -> wizardId = p.getIntValue();
+                    case "name" -> name = p.getText();
+                    case "description" -> description = p.getText();
+                    case "condition" -> condition = p.getIntValue();
+                    default -> p.skipChildren();
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown change type in " + segment, e);
+        }
+        if (seq < 0 || type == null) throw new IOException("Change record without seq or type in " + segment);
+        return new ChangeRecord(seq, ts, type, artifactId, wizardId, name, description, condition);
+    }
+
+    //----------------------------------------------------------------------
+    // Segments and consumer offsets
+    //----------------------------------------------------------------------
+
+    // Segments oldest first; each is named after the sequence number of its first record
+    static List<File> segments(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files == null) return List.of();
+        List<File> result = new ArrayList<>(Arrays.asList(files));
+        result.sort(Comparator.comparingLong(ChangeReader::firstSeq));
+        return result;
+    }
+
+    static String segmentName(long firstSeq) {
+        return String.format("%s%020d%s", PREFIX, firstSeq, SUFFIX);
+    }
+
+    static long firstSeq(File segment) {
+        String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // Last sequence the consumer committed, 0 if it never did
+    public static long committedOffset(File dir, String consumer) throws IOException {
+        File file = offsetFile(dir, consumer);
+        if (!file.exists()) return 0;
+        String text = Files.readString(file.toPath(), StandardCharsets.UTF_8).trim();
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new IOException("Bad offset file " + file + ": " + text);
+        }
+    }
+
+    // Replaces the file atomically, so a crash leaves either the old or the new offset
+    public static void commitOffset(File dir, String consumer, long seq) throws IOException {
+        File file = offsetFile(dir, consumer);
+        File parent = file.getParentFile();
+        if (!parent.exists()) parent.mkdirs();
+        File tmp = new File(parent, file.getName() + ".tmp");
+        Files.writeString(tmp.toPath(), Long.toString(seq), StandardCharsets.UTF_8);
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static File offsetFile(File dir, String consumer) {
+        if (consumer == null || !CONSUMER_NAME.matcher(consumer).matches()) {
+            throw new IllegalArgumentException("Consumer names are letters, digits, '.', '_' and '-': " + consumer);
+        }
+        return new File(new File(dir, OFFSETS_DIR), consumer + ".offset");
+    }
+}
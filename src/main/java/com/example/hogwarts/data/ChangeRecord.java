@@ -0,0 +1,48 @@
+package com.example.hogwarts.data;
+
+/**
+ * One store change as published by change-data-capture (see ChangeCapture): its sequence
+ * number, when it happened and what changed. Ids and the condition are -1 and the texts null
+ * where they do not apply to the type.
+ */
+public final class ChangeRecord {
+    private final long seq;
+    private final long timestamp;
+    private final StoreEvent.Type type;
+    private final int artifactId;
+    private final int wizardId;
+    private final String name;
+    private final String description;
+    private final int condition;
+
+    public ChangeRecord(long seq, long timestamp, StoreEvent.Type type, int artifactId, int wizardId,
+                        String name, String description, int condition) {
+        this.seq = seq;
+        this.timestamp = timestamp;
+        this.type = type;
+        this.artifactId = artifactId;
+        this.wizardId = wizardId;
+        this.name = name;
+        this.description = description;
+        this.condition = condition;
+    }
+
+    static ChangeRecord of(long seq, StoreEvent event) {
+        return new ChangeRecord(seq, event.getTimestamp(), event.getType(), event.getArtifactId(), event.getWizardId(),
+                event.getName(), event.getDescription(), event.getCondition());
+    }
+
+    public long getSeq() { return seq; }
+    public long getTimestamp() { return timestamp; }
+    public StoreEvent.Type getType() { return type; }
+    public int getArtifactId() { return artifactId; }
+    public int getWizardId() { return wizardId; }
+    public String getName() { return name; }
+    public String getDescription() { return description; }
+    public int getCondition() { return condition; }
+
+    @Override
+    public String toString() {
+        return seq + " " + type + " artifact=" + artifactId + " wizard=" + wizardId;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.hogwarts.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
+
+/**
+ * Artifacts ordered by condition, kept up to date from store events. Conditions are 0..100,
+ * so this is a bucket queue: one id set per condition. Moving an artifact is O(1), and the
+ * worst k artifacts below a threshold are read in O(threshold + k) without sorting.
+ * Used by the MaintenanceScheduler and the "below condition" queries of the DataStore.
+ */
+final class ConditionQueue implements StoreListener {
+    static final int LEVELS = 101;
+
+    private final DataStore store;
+    private final List<Set<Integer>> buckets = new ArrayList<>(LEVELS);
+    // Bucket each artifact is in; updated with compute() so an id is never in two buckets
+    private final ConcurrentHashMap<Integer, Integer> levelOf = new ConcurrentHashMap<>();
+
+    ConditionQueue(DataStore store) {
+        this.store = store;
+        for (int i = 0; i < LEVELS; i++) buckets.add(ConcurrentHashMap.newKeySet());
+    }
+
+    // Reads every artifact; levels set by events meanwhile are newer and win
+    void rebuild() {
+        store.parallelForEachArtifact(a -> {
+            int id = a.getId();
+            levelOf.computeIfAbsent(id, k -> {
+                int level = clamp(a.getCondition());
+                buckets.get(level).add(k);
+                return level;
+            });
+            // Deleted after it was read: its event found nothing to remove
+            if (store.findArtifactById(id) == null) remove(id);
+        });
+    }
+
+    void clear() {
+        levelOf.clear();
+        for (Set<Integer> bucket : buckets) bucket.clear();
+    }
+
+    @Override
+    public void onChange(StoreEvent event) {
+        switch (event.getType()) {
+            case ARTIFACT_ADDED, ARTIFACT_UPDATED, CONDITION_CHANGED, ASSIGNED, UNASSIGNED -> {
+                if (event.getCondition() >= 0) move(event.getArtifactId(), event.getCondition());
+            }
+            case ARTIFACT_DELETED -> remove(event.getArtifactId());
+            default -> { }
+        }
+    }
+
+    private void move(int id, int condition) {
+        int level = clamp(condition);
+        levelOf.compute(id, (k, old) -> {
+            if (old != null && old != level) buckets.get(old).remove(k);
+            buckets.get(level).add(k);
+            return level;
+        });
+    }
+
+    private void remove(int id) {
+        levelOf.computeIfPresent(id, (k, old) -> {
+            buckets.get(old).remove(k);
+            return null;
+        });
+    }
+
+    //----------------------------------------------------------------------
+    // Lookups
+    //----------------------------------------------------------------------
+
+    // Up to limit ids with a condition below the threshold, worst first
+    List<Integer> lowest(int belowCondition, int limit) {
+        List<Integer> ids = new ArrayList<>(Math.min(limit, 1024));
+        int top = Math.min(belowCondition, LEVELS);
+        for (int level = 0; level < top && ids.size() < limit; level++) {
+            for (Integer id : buckets.get(level)) {
+                if (ids.size() >= limit) break;
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    int countBelow(int belowCondition) {
+        int count = 0;
+        int top = Math.min(belowCondition, LEVELS);
+        for (int level = 0; level < top; level++) count += buckets.get(level).size();
+        return count;
+    }
+
+    // Every id with a condition of at least minCondition, bucket by bucket
+    void forEachFrom(int minCondition, IntConsumer action) {
+        for (int level = Math.max(0, minCondition); level < LEVELS; level++) {
+            for (Integer id : buckets.get(level)) action.accept(id);
+        }
+    }
+
+    int size() {
+        return levelOf.size();
+    }
+
+    long estimatedBytes() {
+        // Keys are the Integers the store boxed already; levels 0..100 come from the Integer cache
+        long bytes = MemoryEstimator.concurrentMap(levelOf.size()) + MemoryEstimator.refArray(LEVELS);
+        for (Set<Integer> bucket : buckets) bytes += MemoryEstimator.object(1, 0) + MemoryEstimator.concurrentMap(bucket.size());
+        return bytes;
+    }
+
+    private static int clamp(int condition) {
+        return Math.max(0, Math.min(LEVELS - 1, condition));
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.data.ConsistencyReport.Problem;
+import com.example.hogwarts.model.Artifact;
+import com.example.hogwarts.model.Wizard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Verifies the object graph of a live store: owner back-references, the wizards' artifact
+ * lists, history without an artifact, and the id counters. The scans run without locks as
+ * parallel bulk operations on the common fork-join pool and only collect candidates; each
+ * candidate is then checked again, and repaired if asked, by the store under its locks, so
+ * changes made during the scan are not reported as problems.
+ */
+final class ConsistencyChecker {
+    // Map entries per fork-join task
+    private static final long PARALLELISM_THRESHOLD = 1024;
+    private static final int MULTIPLE = -1; // listedBy value of an artifact listed more than once
+
+    private ConsistencyChecker() {
+    }
+
+    private static final class Candidate {
+        final Problem problem;
+        final int artifactId;
+        final int wizardId;
+
+        Candidate(Problem problem, int artifactId, int wizardId) {
+            this.problem = problem;
+            this.artifactId = artifactId;
+            this.wizardId = wizardId;
+        }
+    }
+
+    static ConsistencyReport check(DataStore store, boolean repair) {
+        ConsistencyReport report = new ConsistencyReport(repair);
+        long t0 = System.nanoTime();
+        Queue<Candidate> candidates = new ConcurrentLinkedQueue<>();
+        ConcurrentHashMap<Integer, Wizard> wizards = store.wizardMap();
+
+        // Which wizard lists each artifact; ids past the array (new, or a broken counter) go to the map
+        AtomicIntegerArray listedBy = new AtomicIntegerArray(store.nextArtifactId() + 1);
+        Map<Integer, Integer> listedByOverflow = new ConcurrentHashMap<>();
+        AtomicInteger maxWizardId = new AtomicInteger();
+        wizards.forEachValue(1, w -> {
+            maxWizardId.accumulateAndGet(w.getId(), Math::max);
+            for (Artifact listed : store.listedArtifacts(w)) {
+                int id = listed.getId();
+                if (store.findArtifactById(id) != listed) {
+                    candidates.add(new Candidate(Problem.STALE_LISTING, id, w.getId()));
+                } else if (listed.getOwner() != w) {
+                    candidates.add(new Candidate(Problem.WRONG_LISTING, id, w.getId()));
+                } else if (!markListed(listedBy, listedByOverflow, id, w.getId())) {
+                    candidates.add(new Candidate(Problem.DUPLICATE_LISTING, id, w.getId()));
+                }
+            }
+        });
+
+        AtomicInteger artifactCount = new AtomicInteger();
+        AtomicInteger maxArtifactId = new AtomicInteger();
+        store.parallelForEachArtifact(a -> {
+            artifactCount.incrementAndGet();
+            maxArtifactId.accumulateAndGet(a.getId(), Math::max);
+            if (!a.hasOwner()) return; // getOwner() would hand out a placeholder
+            Wizard owner = a.getOwner();
+            if (wizards.get(owner.getId()) != owner) {
+                candidates.add(new Candidate(Problem.OWNER_MISSING, a.getId(), owner.getId()));
+            } else if (listedBy(listedBy, listedByOverflow, a.getId()) != owner.getId()) {
+                candidates.add(new Candidate(Problem.NOT_LISTED, a.getId(), owner.getId()));
+            }
+        });
+
+        AtomicInteger historyLists = new AtomicInteger();
+        store.historyMap().forEach(PARALLELISM_THRESHOLD, (id, entries) -> {
+            historyLists.incrementAndGet();
+            // A deleted artifact keeps its history, closed by a deletion marker
+            if (store.findArtifactById(id) == null && !entries.isEmpty() && !entries.get(entries.size() - 1).isDeletion()) {
+                candidates.add(new Candidate(Problem.ORPHAN_HISTORY, id, -1));
+            }
+        });
+
+        if (maxArtifactId.get() >= store.nextArtifactId()) {
+            candidates.add(new Candidate(Problem.ARTIFACT_ID_COUNTER, maxArtifactId.get(), -1));
+        }
+        if (maxWizardId.get() >= store.nextWizardId()) {
+            candidates.add(new Candidate(Problem.WIZARD_ID_COUNTER, -1, maxWizardId.get()));
+        }
+        long t1 = System.nanoTime();
+
+        // Candidates are rare; confirm them one by one under the store's locks
+        List<Candidate> found = new ArrayList<>(candidates);
+        for (Candidate c : found) {
+            boolean confirmed = switch (c.problem) {
+                case OWNER_MISSING -> store.fixMissingOwner(c.artifactId, repair);
+                case NOT_LISTED -> store.fixNotListed(c.artifactId, repair);
+                case STALE_LISTING, WRONG_LISTING, DUPLICATE_LISTING -> store.fixListing(c.wizardId, c.artifactId, repair);
+                case ORPHAN_HISTORY -> store.fixOrphanHistory(c.artifactId, repair);
+                case ARTIFACT_ID_COUNTER -> store.fixArtifactIdCounter(c.artifactId, repair);
+                case WIZARD_ID_COUNTER -> store.fixWizardIdCounter(c.wizardId, repair);
+            };
+            if (confirmed) report.add(c.problem, c.artifactId, c.wizardId, repair);
+        }
+
+        report.wizards = wizards.size();
+        report.artifacts = artifactCount.get();
+        report.historyLists = historyLists.get();
+        report.candidates = found.size();
+        report.droppedOwnerRefs = store.droppedOwnerRefs();
+        report.droppedOwnerSample = store.droppedOwnerSample();
+        report.scanMillis = (t1 - t0) / 1_000_000;
+        report.confirmMillis = (System.nanoTime() - t1) / 1_000_000;
+        return report;
+    }
+
+    // False if this wizard already listed the artifact
+    private static boolean markListed(AtomicIntegerArray listedBy, Map<Integer, Integer> overflow, int artifactId, int wizardId) {
+        int previous;
+        if (artifactId >= 0 && artifactId < listedBy.length()) {
+            previous = listedBy.compareAndExchange(artifactId, 0, wizardId);
+            if (previous != 0) listedBy.set(artifactId, MULTIPLE);
+        } else {
+            Integer p = overflow.putIfAbsent(artifactId, wizardId);
+            previous = p == null ? 0 : p;
+            if (p != null) overflow.put(artifactId, MULTIPLE);
+        }
+        return previous != wizardId;
+    }
+
+    private static int listedBy(AtomicIntegerArray listedBy, Map<Integer, Integer> overflow, int artifactId) {
+        if (artifactId >= 0 && artifactId < listedBy.length()) return listedBy.get(artifactId);
+        return overflow.getOrDefault(artifactId, 0);
+    }
+}
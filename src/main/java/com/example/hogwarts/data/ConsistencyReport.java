@@ -0,0 +1,108 @@
+package com.example.hogwarts.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What a consistency check (see ConsistencyChecker) found in the object graph and, if it was
+ * asked to, repaired. Only problems that were still there when re-checked under the locks count.
+ */
+public class ConsistencyReport {
+    public enum Problem {
+        OWNER_MISSING,       // artifact owned by a wizard that is no longer in the store
+        NOT_LISTED,          // artifact's owner does not list it
+        STALE_LISTING,       // wizard lists an artifact that is not in the store
+        WRONG_LISTING,       // wizard lists an artifact owned by someone else (or no one)
+        DUPLICATE_LISTING,   // wizard lists the same artifact twice
+        ORPHAN_HISTORY,      // history of an artifact that is not in the store, without a deletion marker
+        ARTIFACT_ID_COUNTER, // next artifact id is not above every existing id
+        WIZARD_ID_COUNTER    // next wizard id is not above every existing id
+    }
+
+    public static final class Finding {
+        private final Problem problem;
+        private final int artifactId;  // -1 if it does not apply
+        private final int wizardId;    // -1 if it does not apply
+        private final boolean repaired;
+
+        Finding(Problem problem, int artifactId, int wizardId, boolean repaired) {
+            this.problem = problem;
+            this.artifactId = artifactId;
+            this.wizardId = wizardId;
+            this.repaired = repaired;
+        }
+
+        public Problem getProblem() { return problem; }
+        public int getArtifactId() { return artifactId; }
+        public int getWizardId() { return wizardId; }
+        public boolean isRepaired() { return repaired; }
+
+        @Override
+        public String toString() {
+            return problem + (artifactId >= 0 ? " artifact " + artifactId : "") + (wizardId >= 0 ? " wizard " + wizardId : "")
+                    + (repaired ? " (repaired)" : "");
+        }
+    }
+
+    // Findings kept and printed; the counts always cover all of them
+    private static final int KEPT_FINDINGS = 10_000;
+    private static final int PRINTED_FINDINGS = 50;
+
+    private final boolean repair;
+    private final List<Finding> findings = new ArrayList<>();
+    private final int[] counts = new int[Problem.values().length];
+    private int problems;
+    private int repaired;
+    int wizards;
+    int artifacts;
+    int historyLists;
+    int candidates;           // suspicious after the lock-free scan
+    int droppedOwnerRefs;     // owner ids that pointed nowhere when the data was loaded
+    List<String> droppedOwnerSample = List.of();
+    long scanMillis;
+    long confirmMillis;
+
+    ConsistencyReport(boolean repair) {
+        this.repair = repair;
+    }
+
+    void add(Problem problem, int artifactId, int wizardId, boolean fixed) {
+        if (findings.size() < KEPT_FINDINGS) findings.add(new Finding(problem, artifactId, wizardId, fixed));
+        counts[problem.ordinal()]++;
+        problems++;
+        if (fixed) repaired++;
+    }
+
+    public boolean isRepair() { return repair; }
+    public boolean isConsistent() { return problems == 0; }
+    public int getProblemCount() { return problems; }
+    public int getRepairedCount() { return repaired; }
+    public int count(Problem problem) { return counts[problem.ordinal()]; }
+    public List<Finding> getFindings() { return Collections.unmodifiableList(findings); }
+    public int getDroppedOwnerRefs() { return droppedOwnerRefs; }
+    public long getMillis() { return scanMillis + confirmMillis; }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(problems == 0 ? "Consistency check: ok" : String.format("Consistency check: %,d problems, %,d repaired%s",
+                problems, repaired, repair ? "" : " (check only)")).append('\n');
+        sb.append(String.format("  scanned:    %,d wizards, %,d artifacts, %,d history lists in %,d ms (+%,d ms confirming %,d candidates)%n",
+                wizards, artifacts, historyLists, scanMillis, confirmMillis, candidates));
+        for (Problem p : Problem.values()) {
+            if (count(p) > 0) sb.append(String.format("  %-20s %,d%n", p.name().toLowerCase() + ":", count(p)));
+        }
+        if (droppedOwnerRefs > 0) {
+            sb.append(String.format("  load:       %,d artifacts referred to missing wizards and were loaded unowned %s%n",
+                    droppedOwnerRefs, droppedOwnerSample));
+        }
+        for (int i = 0; i < Math.min(PRINTED_FINDINGS, findings.size()); i++) {
+            sb.append("  ").append(findings.get(i)).append('\n');
+        }
+        if (problems > PRINTED_FINDINGS) {
+            sb.append(String.format("  ... %,d more%n", problems - PRINTED_FINDINGS));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.Artifact;
+import com.example.hogwarts.model.Wizard;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Natural-key index for reconciliation (see CatalogReconciler), kept up to date from store
+ * events. Artifacts are keyed by name and carry a 64-bit hash of their content (name,
+ * description, condition, owner id), so an incoming record that did not change is
+ * recognized without reading the artifact. A Bloom filter over the names answers "definitely
+ * not in the store" before the map is probed. Wizards are keyed by name. When several
+ * artifacts or wizards share a name, the one with the lowest id holds the key.
+ */
+final class ContentHashIndex implements StoreListener {
+    private final DataStore store;
+    private final Map<Integer, Entry> byId = new HashMap<>();
+    private final Map<String, Entry> byName = new HashMap<>();
+    // Extra artifacts per name held by more than one; only these names need a scan on removal
+    private final Map<String, Integer> sharedNames = new HashMap<>();
+    private final Map<String, Integer> wizardIds = new HashMap<>();
+    private BloomFilter names;
+
+    ContentHashIndex(DataStore store) {
+        this.store = store;
+    }
+
+    // Reads every artifact and wizard again; events that arrive meanwhile are applied afterwards and are idempotent
+    synchronized void rebuild() {
+        byId.clear();
+        byName.clear();
+        sharedNames.clear();
+        wizardIds.clear();
+        names = new BloomFilter(store.findAllArtifacts().size() * 2);
+        for (Artifact artifact : store.findAllArtifacts()) {
+            put(artifact);
+        }
+        for (Wizard wizard : store.findAllWizards()) {
+            wizardIds.merge(wizard.getName(), wizard.getId(), Math::min);
+        }
+    }
+
+    @Override
+    public synchronized void onChange(StoreEvent event) {
+        switch (event.getType()) {
+            case ARTIFACT_ADDED, ARTIFACT_UPDATED, CONDITION_CHANGED, ASSIGNED, UNASSIGNED -> {
+                Artifact artifact = store.findArtifactById(event.getArtifactId());
+                if (artifact != null) put(artifact);
+            }
+            case ARTIFACT_DELETED -> remove(event.getArtifactId());
+            case WIZARD_ADDED -> wizardIds.merge(event.getName(), event.getWizardId(), Math::min);
+            case WIZARD_UPDATED, WIZARD_DELETED -> rekeyWizards();
+            default -> { }
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // Lookups
+    //----------------------------------------------------------------------
+
+    // False means no artifact was ever indexed under this name
+    synchronized boolean mightContainArtifact(String name) {
+        return names.mightContain(name);
+    }
+
+    // Id and content hash of the artifact holding the name, null when none does
+    synchronized Entry artifact(String name) {
+        return byName.get(name);
+    }
+
+    synchronized int artifactKeys() {
+        return byName.size();
+    }
+
+    // Keyed artifacts whose name is missing from the given keys
+    synchronized List<Entry> artifactsNotIn(Map<String, ?> keys) {
+        List<Entry> missing = new ArrayList<>();
+        for (Entry entry : byName.values()) {
+            if (!keys.containsKey(entry.name)) missing.add(entry);
+        }
+        return missing;
+    }
+
+    // Lowest wizard id with this name, null when there is none
+    synchronized Integer wizardId(String name) {
+        return wizardIds.get(name);
+    }
+
+    synchronized int wizardKeys() {
+        return wizardIds.size();
+    }
+
+    synchronized Map<String, Integer> wizardsNotIn(Set<String> names) {
+        Map<String, Integer> missing = new HashMap<>();
+        wizardIds.forEach((name, id) -> {
+            if (!names.contains(name)) missing.put(name, id);
+        });
+        return missing;
+    }
+
+    synchronized long estimatedBytes() {
+        long bytes = MemoryEstimator.hashMap(byId.size()) + MemoryEstimator.hashMap(byName.size())
+                + MemoryEstimator.hashMap(sharedNames.size()) + MemoryEstimator.hashMap(wizardIds.size())
+                + names.estimatedBytes();
+        // Entries and boxed ids; the name strings are shared with the artifacts
+        return bytes + byId.size() * (MemoryEstimator.object(2, 12) + 16L);
+    }
+
+    //----------------------------------------------------------------------
+    // Maintenance
+    //----------------------------------------------------------------------
+
+    private void put(Artifact artifact) {
+        remove(artifact.getId());
+        Entry entry = new Entry(artifact.getId(), artifact.getName(), hash(artifact));
+        byId.put(entry.id, entry);
+        Entry holder = byName.get(entry.name);
+        if (holder != null) sharedNames.merge(entry.name, 1, Integer::sum);
+        if (holder == null || entry.id < holder.id) {
+            byName.put(entry.name, entry);
+        }
+        if (holder == null) addName(entry.name);
+    }
+
+    // Renames and deletes leave stale bits behind; the filter starts over once it is full
+    private void addName(String name) {
+        if (names.added() >= names.capacity()) {
+            names = new BloomFilter(byName.size() * 2);
+            byName.keySet().forEach(names::add);
+        } else {
+            names.add(name);
+        }
+    }
+
+    private void remove(int id) {
+        Entry old = byId.remove(id);
+        if (old == null) return;
+        Integer shared = sharedNames.get(old.name);
+        if (shared == null) {
+            byName.remove(old.name);
+            return;
+        }
+        if (shared == 1) sharedNames.remove(old.name); else sharedNames.put(old.name, shared - 1);
+        if (byName.get(old.name) != old) return;
+        // The key passes to the next artifact with the same name
+        Entry next = null;
+        for (Entry other : byId.values()) {
+            if (other.name.equals(old.name) && (next == null || other.id < next.id)) next = other;
+        }
+        byName.put(old.name, next);
+    }
+
+    // Wizards are few; a rename or delete just re-reads them
+    private void rekeyWizards() {
+        wizardIds.clear();
+        for (Wizard wizard : store.findAllWizards()) {
+            wizardIds.merge(wizard.getName(), wizard.getId(), Math::min);
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // Hashing
+    //----------------------------------------------------------------------
+
+    static long hash(Artifact artifact) {
+        return hash(artifact.getName(), artifact.getDescription(), artifact.getCondition(),
+                artifact.hasOwner() ? artifact.getOwner().getId() : ArtifactJson.NO_OWNER);
+    }
+
+    // Content hash of an artifact record; the owner goes in by local id, so a wizard rename does not change it
+    static long hash(String name, String description, int condition, int ownerId) {
+        long h = hashText(name);
+        h = mix(h ^ hashText(description));
+        h = mix(h ^ condition);
+        return mix(h ^ ((long) ownerId << 32));
+    }
+
+    // 64-bit FNV-1a over the UTF-16 chars, finished with a mix so the high bits spread too
+    static long hashText(String text) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            h ^= text.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    // splitmix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    static final class Entry {
+        final int id;
+        final String name;
+        final long hash;
+
+        Entry(int id, String name, long hash) {
+            this.id = id;
+            this.name = name;
+            this.hash = hash;
+        }
+    }
+}
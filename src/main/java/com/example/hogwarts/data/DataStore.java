@@ -3,16 +3,21 @@ package com.example.hogwarts.data;
 import com.example.hogwarts.model.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 
 /**
  * Thread-safe Singleton DataStore
@@ -23,20 +28,69 @@ public class DataStore {
     private static volatile DataStore instance;
 
     private final List<User> users = new CopyOnWriteArrayList<>();
-    private final Map<Integer, Wizard> wizards = new ConcurrentHashMap<>();
-    private final Map<Integer, Artifact> artifacts = new ConcurrentHashMap<>();
-    private final Map<Integer, List<History>> assignmentLogs = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Wizard> wizards = new ConcurrentHashMap<>();
+    private final ArtifactTable artifacts = openArtifactTable(); // heap map or paged file, see StoreConfig
+    private final ConcurrentHashMap<Integer, List<History>> assignmentLogs = new ConcurrentHashMap<>();
+    private final List<StoreListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile ArtifactSortIndex sortIndex; // built on first sorted read, or by the warmup thread
+    private volatile long sortIndexMillis = -1;
+    private volatile boolean sortIndexRestored;
+    private volatile ContentHashIndex contentHashIndex; // built on first reconciliation
+    private volatile ConditionQueue conditionQueue; // built on first condition query or maintenance run
+
+    // Map size per task for parallel scans; small stores stay on the calling thread
+    private static final long PARALLEL_SCAN_THRESHOLD = 4096;
 
     private final AtomicInteger wizardIdCounter = new AtomicInteger(1);
     private final AtomicInteger artifactIdCounter = new AtomicInteger(1);
 
-    private volatile User currentUser; // Guarded with volatile for visibility
 
     // File paths for persistence
-    private static final String DATA_DIR = "data";
+    private static final String DATA_DIR = StoreConfig.DATA_DIR;
     private static final String WIZARDS_FILE = DATA_DIR + "/wizards.json";
     private static final String ARTIFACTS_FILE = DATA_DIR + "/artifacts.json";
     private static final String TRANSFERS_FILE = DATA_DIR + "/transfers.json";
+    private static final String ARCHIVE_DIR = DATA_DIR + "/archive";
+    private static final String SHARDS_DIR = DATA_DIR + "/shards";
+    private static final String PAGED_FILE = DATA_DIR + "/artifacts.db";
+    private static final String SORT_INDEX_FILE = DATA_DIR + "/artifacts.idx";
+
+    // Lock domains: one per artifact shard plus wizard stripes (a single shard when not partitioned)
+    private final ShardLocks locks = new ShardLocks(Math.max(1, StoreConfig.SHARDS));
+    // Before-images for open snapshots (see StoreSnapshot); empty while none is open
+    private final VersionLog versions = new VersionLog();
+    // Buffered channels plus the configured compression for every data file
+    private final PersistenceIo io = new PersistenceIo(PersistenceCodecs.forName(StoreConfig.PERSIST_CODEC),
+            StoreConfig.PERSIST_BUFFER_KB * 1024);
+    // Per-shard files and persistence threads; null in the classic three-file mode and with the paged engine
+    private final ShardedPersistence sharded = StoreConfig.SHARDS > 0 && !StoreConfig.PAGED_ENGINE
+            ? new ShardedPersistence(new File(SHARDS_DIR), StoreConfig.SHARDS, io) : null;
+
+    // Where saveAll writes and the constructor loads from (see StoreConfig.PERSIST_BACKEND)
+    private final PersistenceBackend backend = openBackend();
+
+    // Owner ids of loaded artifacts that matched no wizard (the artifact is loaded unowned)
+    private final AtomicInteger droppedOwnerRefs = new AtomicInteger();
+    private final Queue<String> droppedOwnerSample = new ConcurrentLinkedQueue<>();
+    private static final int DROPPED_OWNER_SAMPLE = 20;
+
+    // Last consistency check (at startup or on demand); one runs at a time
+    private final Object consistencyLock = new Object();
+    private volatile ConsistencyReport lastConsistencyReport;
+
+    // Bytes and time of the initial load and of the last save
+    private volatile IoStats loadStats;
+    private volatile IoStats lastSaveStats;
+
+    // Cold history that fell out of the retention window (see StoreConfig)
+    private final HistoryArchive historyArchive = new HistoryArchive(new File(ARCHIVE_DIR));
+
+    // Index for as-of queries; built on first use, null when it needs a rebuild
+    private final Object timelineLock = new Object();
+    private OwnershipTimeline timeline;
+    // One build at a time; while it reads its snapshot, newly logged entries are collected here
+    private final Object timelineBuildLock = new Object();
+    private List<History> timelinePending;
 
 
 private DataStore() {
@@ -46,21 +100,59 @@ private DataStore() {
     File dir = new File(DATA_DIR);
     if (!dir.exists()) dir.mkdirs();
 
-    // Try loading from JSON; if none exists, seed defaults
+    // Load what the backend saved; if there is nothing yet, seed defaults
+    IoStats stats = io.newStats();
+    PersistenceEvent loadEvent = PersistenceEvent.start("load", "all", stats);
     try {
-        if (new File(WIZARDS_FILE).exists() && new File(ARTIFACTS_FILE).exists()) {
-            loadWizards();
-            loadArtifacts();
-            loadTransfers();
+        // A new database starts from the JSON files, if there are any; the first save moves them over
+        PersistenceBackend source = backend;
+        if (!(backend instanceof JsonBackend) && !backend.hasData() && new JsonBackend().hasData()) {
+            source = new JsonBackend();
+        }
+        if (source.hasData()) {
+            // Only the JSON backend reuses an artifacts.db; for the others it is a stale copy
+            if (!(source instanceof JsonBackend)) artifacts.clear();
+            source.load(stats);
+            loadStats = stats;
+            if (StoreConfig.PERSIST_STATS) {
+                System.out.println("persist load (" + source.name() + ")\n" + stats);
+            }
         } else {
             //System.out.println("Here 1");
+            artifacts.clear(); // an artifacts.db without wizards.json is left over from another data set
             seedDefaults();
         }
     } catch (IOException e) {
         e.printStackTrace();
+    } finally {
+        loadEvent.finish(wizards.size() + artifacts.size());
+    }
+    if (droppedOwnerRefs.get() > 0) {
+        System.err.println("load: " + droppedOwnerRefs.get() + " artifacts referred to missing wizards and were loaded unowned "
+                + droppedOwnerSample);
     }
+    registerMetrics();
+    // Captures from here on, so loading and seeding are not reported as changes
+    if (StoreConfig.CDC_ENABLED) addListener(ChangeCapture.getInstance());
+    if (StoreConfig.INDEX_WARMUP) startIndexWarmup();
+    if (StoreConfig.CHECK_ON_STARTUP) startConsistencyCheck();
 }
 
+    private static ArtifactTable openArtifactTable() {
+        if (!StoreConfig.PAGED_ENGINE) return new HeapArtifactTable();
+        try {
+            return new PagedArtifactTable(new File(PAGED_FILE), StoreConfig.ENGINE_CACHE_MB * 1024L * 1024);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open " + PAGED_FILE, e);
+        }
+    }
+
+    private PersistenceBackend openBackend() {
+        if (!"jdbc".equals(StoreConfig.PERSIST_BACKEND)) return new JsonBackend();
+        return new JdbcPersistence(this, new JdbcConnectionPool(StoreConfig.JDBC_URL, StoreConfig.JDBC_USER,
+                StoreConfig.JDBC_PASSWORD, StoreConfig.JDBC_POOL_SIZE), StoreConfig.JDBC_BATCH_SIZE, StoreConfig.JDBC_PAGE_SIZE);
+    }
+
     private void seedDefaults() {
         //Default Wizards and Artifacts
         Wizard w1 = this.addWizard(new Wizard("Harry Potter"));
@@ -93,20 +185,100 @@ private DataStore() {
                 .orElse(null);
     }
 
+    // Change listeners (views, and anything else that mirrors the store)
+    public void addListener(StoreListener listener) {
+        this.listeners.add(listener);
+    }
+
+    public void removeListener(StoreListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    private void fire(StoreEvent event) {
+        for (StoreListener listener : listeners) {
+            listener.onChange(event);
+        }
+    }
+
     // Wizards
     public Wizard addWizard(Wizard wizard) {
         wizard.setId(wizardIdCounter.getAndIncrement());
-        this.wizards.put(wizard.getId(), wizard);
-        return wizard;
+        return putWizard(wizard);
     }
 
+    private Wizard putWizard(Wizard wizard) {
+        StoreMutationEvent event = StoreMutationEvent.start("putWizard", -1, wizard.getId());
+        try {
+            locks.lockWizards(wizard.getId(), -1);
+            try {
+                recordWizard(wizard.getId());
+                this.wizards.put(wizard.getId(), wizard);
+                fire(StoreEvent.wizard(StoreEvent.Type.WIZARD_ADDED, wizard.getId(), wizard.getName()));
+            } finally {
+                locks.unlockWizards(wizard.getId(), -1);
+            }
+            return wizard;
+        } finally {
+            event.finish();
+        }
+    }
+
+    public boolean renameWizard(int id, String newName) {
+        StoreMutationEvent event = StoreMutationEvent.start("renameWizard", -1, id);
+        try {
+            Wizard wizard = this.wizards.get(id);
+            if (wizard == null) return false;
+            locks.lockWizards(id, -1);
+            try {
+                recordWizard(id);
+                wizard.setName(newName);
+                fire(StoreEvent.wizard(StoreEvent.Type.WIZARD_UPDATED, id, wizard.getName()));
+            } finally {
+                locks.unlockWizards(id, -1);
+            }
+            return true;
+        } finally {
+            event.finish();
+        }
+    }
+
+    // Owned artifacts can sit in any shard, so this takes every artifact shard before the wizard
     public void deleteWizardById(int id) {
-        Wizard wizard = this.wizards.remove(id);
-        if (wizard != null) {
-            wizard.removeAllArtifacts();
+        StoreMutationEvent event = StoreMutationEvent.start("deleteWizard", -1, id);
+        try {
+            locks.lockAllArtifacts();
+            locks.lockWizards(id, -1);
+            try {
+                recordWizard(id);
+                Wizard wizard = this.wizards.remove(id);
+                if (wizard != null) {
+                    List<Artifact> owned = new ArrayList<>(wizard.getArtifacts());
+                    event.items = owned.size();
+                    for (Artifact a : owned) {
+                        recordArtifact(a.getId());
+                    }
+                    wizard.removeAllArtifacts();
+                    for (Artifact a : owned) {
+                        this.artifacts.update(a);
+                        fire(StoreEvent.ownership(StoreEvent.Type.UNASSIGNED, a.getId(), id, a.getCondition()));
+                    }
+                    fire(StoreEvent.wizard(StoreEvent.Type.WIZARD_DELETED, id, wizard.getName()));
+                }
+            } finally {
+                locks.unlockWizards(id, -1);
+                locks.unlockAllArtifacts();
+            }
+        } finally {
+            event.finish();
         }
     }
 
+    // Puts a previously deleted wizard back under its original id (used by undo)
+    public Wizard restoreWizard(Wizard wizard) {
+        wizardIdCounter.accumulateAndGet(wizard.getId() + 1, Math::max);
+        return putWizard(wizard);
+    }
+
     public Collection<Wizard> findAllWizards() {
         return this.wizards.values();
     }
@@ -118,17 +290,154 @@ private DataStore() {
     // Artifacts
     public Artifact addArtifact(Artifact artifact) {
         artifact.setId(artifactIdCounter.getAndIncrement());
-        this.artifacts.put(artifact.getId(), artifact);
-        return artifact;
+        return putArtifact(artifact);
+    }
+
+    private Artifact putArtifact(Artifact artifact) {
+        StoreMutationEvent event = StoreMutationEvent.start("putArtifact", artifact.getId(), -1);
+        try {
+            ReentrantLock lock = locks.artifactLock(artifact.getId());
+            lock.lock();
+            try {
+                recordArtifact(artifact.getId());
+                this.artifacts.put(artifact);
+                fireArtifact(StoreEvent.Type.ARTIFACT_ADDED, artifact);
+            } finally {
+                lock.unlock();
+            }
+            return artifact;
+        } finally {
+            event.finish();
+        }
+    }
+
+    public boolean updateArtifact(int id, String newName, String newDescription) {
+        StoreMutationEvent event = StoreMutationEvent.start("updateArtifact", id, -1);
+        try {
+            ReentrantLock lock = locks.artifactLock(id);
+            lock.lock();
+            try {
+                Artifact artifact = this.artifacts.get(id);
+                if (artifact == null) return false;
+                recordArtifact(id);
+                artifact.setName(newName);
+                artifact.setDescription(newDescription);
+                this.artifacts.update(artifact);
+                fireArtifact(StoreEvent.Type.ARTIFACT_UPDATED, artifact);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            event.finish();
+        }
+    }
+
+    // Condition is clamped to 0-100 by the artifact itself
+    public boolean setArtifactCondition(int id, int condition) {
+        StoreMutationEvent event = StoreMutationEvent.start("setCondition", id, -1);
+        try {
+            ReentrantLock lock = locks.artifactLock(id);
+            lock.lock();
+            try {
+                Artifact artifact = this.artifacts.get(id);
+                if (artifact == null) return false;
+                recordArtifact(id);
+                artifact.setCondition(condition);
+                this.artifacts.update(artifact);
+                fireArtifact(StoreEvent.Type.CONDITION_CHANGED, artifact);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            event.finish();
+        }
+    }
+
+    /**
+     * Applies a change to the current condition under the artifact's lock, so concurrent
+     * changes (decay, repairs, edits) are not lost. Returns the previous condition, or -1 if
+     * the artifact does not exist; no event is fired when the condition stays the same.
+     */
+    public int updateArtifactCondition(int id, IntUnaryOperator change) {
+        StoreMutationEvent event = StoreMutationEvent.start("updateCondition", id, -1);
+        try {
+            ReentrantLock lock = locks.artifactLock(id);
+            lock.lock();
+            try {
+                Artifact artifact = this.artifacts.get(id);
+                if (artifact == null) return -1;
+                int previous = artifact.getCondition();
+                int condition = Math.max(0, Math.min(100, change.applyAsInt(previous)));
+                if (condition == previous) return previous;
+                recordArtifact(id);
+                artifact.setCondition(condition);
+                this.artifacts.update(artifact);
+                fireArtifact(StoreEvent.Type.CONDITION_CHANGED, artifact);
+                return previous;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            event.finish();
+        }
     }
 
     public void deleteArtifactById(int id) {
-        Artifact artifact = this.artifacts.remove(id);
-        if (artifact != null && artifact.getOwner() != null) {
-            artifact.getOwner().removeArtifact(artifact);
+        StoreMutationEvent event = StoreMutationEvent.start("deleteArtifact", id, -1);
+        try {
+            ReentrantLock lock = locks.artifactLock(id);
+            lock.lock();
+            try {
+                recordArtifact(id);
+                recordHistory(id);
+                Artifact artifact = this.artifacts.remove(id);
+                if (artifact != null && artifact.hasOwner()) {
+                    int ownerId = artifact.getOwner().getId();
+                    locks.lockWizards(ownerId, -1);
+                    try {
+                        artifact.getOwner().removeArtifact(artifact);
+                    } finally {
+                        locks.unlockWizards(ownerId, -1);
+                    }
+                }
+                if (artifact != null) {
+                    // The transfers stay; a deletion marker closes them, so as-of queries know when it went away
+                    addHistoryEntry(id, new History(id, artifact.getName(), History.DELETED, "--", artifact.getCondition(), new Date()));
+                    fireArtifact(StoreEvent.Type.ARTIFACT_DELETED, artifact);
+                }
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            event.finish();
         }
     }
 
+    // Puts a previously deleted artifact back under its original id (used by undo); its history
+    // continues without the deletion marker
+    public Artifact restoreArtifact(Artifact artifact) {
+        artifactIdCounter.accumulateAndGet(artifact.getId() + 1, Math::max);
+        ReentrantLock lock = locks.artifactLock(artifact.getId());
+        lock.lock();
+        try {
+            List<History> historyList = this.assignmentLogs.get(artifact.getId());
+            if (historyList != null && !historyList.isEmpty() && historyList.get(historyList.size() - 1).isDeletion()) {
+                recordHistory(artifact.getId());
+                historyList.remove(historyList.size() - 1);
+                invalidateTimeline();
+            }
+            return putArtifact(artifact);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void fireArtifact(StoreEvent.Type type, Artifact artifact) {
+        fire(StoreEvent.artifact(type, artifact.getId(), artifact.getName(), artifact.getDescription(), artifact.getCondition()));
+    }
+
     public Collection<Artifact> findAllArtifacts() {
         return this.artifacts.values();
     }
@@ -137,120 +446,932 @@ private DataStore() {
         return this.artifacts.get(id);
     }
 
-    public boolean assignArtifactToWizard(int artifactId, int wizardId) {
-        Artifact artifact = this.artifacts.get(artifactId);
+    // Full scan split across the common pool; the action must be thread-safe
+    public void parallelForEachArtifact(Consumer<Artifact> action) {
+        this.artifacts.forEachValue(PARALLEL_SCAN_THRESHOLD, action);
+    }
+
+    // Sorted indexes over the artifacts (id, name, owner, condition), maintained from store events
+    public ArtifactSortIndex getSortIndex() {
+        if (sortIndex == null) {
+            synchronized (this) {
+                if (sortIndex == null) {
+                    long start = System.nanoTime();
+                    ArtifactSortIndex index = new ArtifactSortIndex(this);
+                    addListener(index); // listen first so nothing slips in while it is built
+                    // The orders saved with the data, if they still match it; sorting from scratch otherwise
+                    sortIndexRestored = index.restore(new File(SORT_INDEX_FILE));
+                    if (!sortIndexRestored) index.rebuild();
+                    sortIndexMillis = (System.nanoTime() - start) / 1_000_000;
+                    sortIndex = index;
+                }
+            }
+        }
+        return sortIndex;
+    }
+
+    // Gets the sort index ready off the startup path; a view asking earlier waits for this build instead of starting its own
+    private void startIndexWarmup() {
+        Thread warmup = new Thread(this::getSortIndex, "index-warmup");
+        warmup.setDaemon(true);
+        warmup.setPriority(Thread.MIN_PRIORITY);
+        warmup.start();
+    }
+
+    // Sort index if something already asked for it; the query planner does not build it for plain filters
+    ArtifactSortIndex sortIndexIfBuilt() {
+        return sortIndex;
+    }
+
+    // Natural keys and content hashes for reconciliation, maintained from store events like the sort index
+    ContentHashIndex contentHashIndex() {
+        if (contentHashIndex == null) {
+            synchronized (this) {
+                if (contentHashIndex == null) {
+                    ContentHashIndex index = new ContentHashIndex(this);
+                    addListener(index);
+                    index.rebuild();
+                    contentHashIndex = index;
+                }
+            }
+        }
+        return contentHashIndex;
+    }
+
+    // Artifacts by condition (see ConditionQueue), maintained from store events like the sort index
+    ConditionQueue conditionQueue() {
+        if (conditionQueue == null) {
+            synchronized (this) {
+                if (conditionQueue == null) {
+                    ConditionQueue queue = new ConditionQueue(this);
+                    addListener(queue);
+                    queue.rebuild();
+                    conditionQueue = queue;
+                }
+            }
+        }
+        return conditionQueue;
+    }
+
+    // Up to limit artifacts with a condition below the given one, worst first
+    public List<Artifact> findArtifactsBelowCondition(int condition, int limit) {
+        List<Artifact> result = new ArrayList<>();
+        for (Integer id : conditionQueue().lowest(condition, limit)) {
+            Artifact artifact = this.artifacts.get(id);
+            if (artifact != null) result.add(artifact);
+        }
+        return result;
+    }
+
+    public int countArtifactsBelowCondition(int condition) {
+        return conditionQueue().countBelow(condition);
+    }
+
+    // Typed queries (see ArtifactQuery); plan() shows the access path, query() streams the results lazily
+    public QueryPlan plan(ArtifactQuery query) {
+        return QueryPlan.plan(this, query);
+    }
+
+    public Stream<Artifact> query(ArtifactQuery query) {
+        return plan(query).stream();
+    }
+
+    // Copy of a wizard's artifact list, taken under its lock; empty for an unknown wizard.
+    // Callers outside the store read the list through this, never through Wizard.getArtifacts()
+    public List<Artifact> ownedArtifacts(int wizardId) {
         Wizard wizard = this.wizards.get(wizardId);
-        if (artifact == null || wizard == null) return false;
+        if (wizard == null) return List.of();
+        locks.lockWizards(wizardId, -1);
+        try {
+            return new ArrayList<>(wizard.getArtifacts());
+        } finally {
+            locks.unlockWizards(wizardId, -1);
+        }
+    }
 
-        wizard.addArtifact(artifact);
+    public boolean assignArtifactToWizard(int artifactId, int wizardId) {
+        return relink(artifactId, wizardId, true, null) >= 0;
+    }
 
-        // Log the assignment
-        History history = new History(artifact.getId(), artifact.getName(), wizard.getName(), new Date());
-        this.addHistoryEntry(artifactId, history);
-        return true;
+    // Re-links an artifact to a wizard without logging a transfer (used by undo)
+    public boolean restoreOwnership(int artifactId, int wizardId) {
+        return relink(artifactId, wizardId, false, null) >= 0;
+    }
+
+    // Same, setting the condition the change was made with (used by replication)
+    boolean restoreOwnership(int artifactId, int wizardId, int condition) {
+        return relink(artifactId, wizardId, false, conditionOrKeep(condition)) >= 0;
+    }
+
+    /**
+     * Moves an artifact to a wizard, or off its owner when wizardId is History.NO_WIZARD, and
+     * changes its condition in the same step: both happen under the artifact's shard lock and
+     * the owners' stripes, with one history entry and one ASSIGNED or UNASSIGNED event that
+     * carries the new condition. Returns the previous condition, or -1 if the artifact or the
+     * wizard does not exist or there is no owner to remove.
+     */
+    public int transferArtifact(int artifactId, int wizardId, IntUnaryOperator conditionChange) {
+        return wizardId == History.NO_WIZARD
+                ? unlink(artifactId, true, conditionChange)
+                : relink(artifactId, wizardId, true, conditionChange);
+    }
+
+    // Moves an artifact to a wizard. The artifact's shard is locked first, then the old and the
+    // new owner's stripes together, so a cross-shard transfer is seen all-or-nothing.
+    // Returns the previous condition, or -1 when nothing was moved.
+    private int relink(int artifactId, int wizardId, boolean logTransfer, IntUnaryOperator conditionChange) {
+        StoreMutationEvent event = StoreMutationEvent.start(logTransfer ? "assign" : "restoreOwnership", artifactId, wizardId);
+        try {
+            ReentrantLock lock = locks.artifactLock(artifactId);
+            lock.lock();
+            try {
+                Artifact artifact = this.artifacts.get(artifactId);
+                Wizard wizard = this.wizards.get(wizardId);
+                if (artifact == null || wizard == null) return -1;
+
+                int previous = artifact.getCondition();
+                int oldOwnerId = artifact.hasOwner() ? artifact.getOwner().getId() : -1;
+                locks.lockWizards(oldOwnerId, wizardId);
+                try {
+                    recordArtifact(artifactId);
+                    if (conditionChange != null) artifact.setCondition(conditionChange.applyAsInt(previous));
+                    wizard.addArtifact(artifact);
+                    this.artifacts.update(artifact);
+                    if (logTransfer) {
+                        // Log the assignment
+                        History history = new History(artifact.getId(), artifact.getName(), wizard.getId(), wizard.getName(), artifact.getCondition(), new Date());
+                        this.addHistoryEntry(artifactId, history);
+                        fire(StoreEvent.transfer(StoreEvent.Type.ASSIGNED, artifactId, wizardId, artifact.getCondition(), history));
+                    } else {
+                        fire(StoreEvent.ownership(StoreEvent.Type.ASSIGNED, artifactId, wizardId, artifact.getCondition()));
+                    }
+                } finally {
+                    locks.unlockWizards(oldOwnerId, wizardId);
+                }
+                return previous;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            event.finish();
+        }
     }
 
     // Unassign artifact from its owner wizard
     public boolean unassignArtifactFromWizard(int artifactId) {
-        Artifact artifact = this.artifacts.get(artifactId);
-        if (artifact == null || artifact.getOwner() == null) return false;
-        Wizard owner = artifact.getOwner();
-        owner.removeArtifact(artifact);
-        // Log the unassignment
-        History history = new History(artifact.getId(), artifact.getName(), "--", new Date());
-        this.addHistoryEntry(artifact.getId(), history);
-        return true;
+        return unlink(artifactId, true, null) >= 0;
     }
 
-    // Current user
-    public User getCurrentUser() {
-        return currentUser;
+    // Detaches an artifact from its owner without logging a transfer (used by replication),
+    // setting the condition the change was made with
+    boolean detachOwner(int artifactId, int condition) {
+        return unlink(artifactId, false, conditionOrKeep(condition)) >= 0;
     }
 
-    public void setCurrentUser(User currentUser) {
-        this.currentUser = currentUser;
+    // Returns the previous condition, or -1 when the artifact does not exist or has no owner
+    private int unlink(int artifactId, boolean logTransfer, IntUnaryOperator conditionChange) {
+        StoreMutationEvent event = StoreMutationEvent.start(logTransfer ? "unassign" : "detachOwner", artifactId, -1);
+        try {
+            ReentrantLock lock = locks.artifactLock(artifactId);
+            lock.lock();
+            try {
+                Artifact artifact = this.artifacts.get(artifactId);
+                if (artifact == null || !artifact.hasOwner()) return -1;
+                int previous = artifact.getCondition();
+                Wizard owner = artifact.getOwner();
+                locks.lockWizards(owner.getId(), -1);
+                try {
+                    recordArtifact(artifactId);
+                    if (conditionChange != null) artifact.setCondition(conditionChange.applyAsInt(previous));
+                    owner.removeArtifact(artifact);
+                    this.artifacts.update(artifact);
+                    if (logTransfer) {
+                        // Log the unassignment
+                        History history = new History(artifact.getId(), artifact.getName(), History.NO_WIZARD, "--", artifact.getCondition(), new Date());
+                        this.addHistoryEntry(artifact.getId(), history);
+                        fire(StoreEvent.transfer(StoreEvent.Type.UNASSIGNED, artifactId, owner.getId(), artifact.getCondition(), history));
+                    } else {
+                        fire(StoreEvent.ownership(StoreEvent.Type.UNASSIGNED, artifactId, owner.getId(), artifact.getCondition()));
+                    }
+                } finally {
+                    locks.unlockWizards(owner.getId(), -1);
+                }
+                return previous;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            event.finish();
+        }
+    }
+
+    // An event without a condition (-1) leaves it as it is
+    private static IntUnaryOperator conditionOrKeep(int condition) {
+        return condition < 0 ? null : c -> condition;
+    }
+
+    // Point-in-time view for long readers; writers only wait while it opens (see StoreSnapshot)
+    public StoreSnapshot openSnapshot() {
+        return openSnapshot(null);
+    }
+
+    // atOpen runs at the snapshot's instant, with every lock domain held (e.g. to read a matching sequence number)
+    StoreSnapshot openSnapshot(Runnable atOpen) {
+        locks.lockAll();
+        try {
+            StoreSnapshot snapshot = new StoreSnapshot(this, versions, locks, versions.open(), artifacts.writeCount());
+            if (atOpen != null) atOpen.run();
+            return snapshot;
+        } finally {
+            locks.unlockAll();
+        }
+    }
+
+    Map<Integer, List<History>> historyLists() {
+        return assignmentLogs;
+    }
+
+    // Before-images for open snapshots; the caller holds the entity's lock domain and has not changed it yet
+    private void recordArtifact(int id) {
+        versions.record(versions.artifacts, id, () -> {
+            Artifact a = this.artifacts.get(id);
+            return a == null ? null : StoreSnapshot.ArtifactState.of(a);
+        });
+    }
+
+    private void recordWizard(int id) {
+        versions.record(versions.wizards, id, () -> {
+            Wizard w = this.wizards.get(id);
+            return w == null ? null : StoreSnapshot.WizardState.of(w);
+        });
+    }
+
+    private void recordHistory(int artifactId) {
+        versions.record(versions.histories, artifactId, () -> {
+            List<History> entries = this.assignmentLogs.get(artifactId);
+            return entries == null ? null : List.copyOf(entries);
+        });
+    }
+
+    // Swaps the whole content for a replication snapshot; listeners get no events for it
+    void replaceContents(Collection<Wizard> newWizards, Collection<ArtifactJson.Loaded> newArtifacts, Collection<History> newHistory) {
+        locks.lockAll();
+        try {
+            if (versions.openSnapshots() > 0) {
+                // Open snapshots keep the old content: images of everything that is replaced, and of every new id
+                for (Integer id : this.wizards.keySet()) recordWizard(id);
+                for (Wizard w : newWizards) recordWizard(w.getId());
+                for (Artifact a : this.artifacts.values()) recordArtifact(a.getId());
+                for (ArtifactJson.Loaded loaded : newArtifacts) recordArtifact(loaded.artifact.getId());
+                for (Integer id : this.assignmentLogs.keySet()) recordHistory(id);
+                for (History h : newHistory) recordHistory(h.getArtifactId());
+            }
+            this.wizards.clear();
+            this.artifacts.clear();
+            this.assignmentLogs.clear();
+            for (Wizard w : newWizards) {
+                this.wizards.put(w.getId(), w);
+                wizardIdCounter.accumulateAndGet(w.getId() + 1, Math::max);
+            }
+            for (ArtifactJson.Loaded loaded : newArtifacts) {
+                putLoadedArtifact(loaded);
+            }
+            for (History h : newHistory) {
+                this.assignmentLogs.computeIfAbsent(h.getArtifactId(), k -> new CopyOnWriteArrayList<>()).add(h);
+            }
+            invalidateTimeline();
+            if (sortIndex != null) sortIndex.rebuild();
+            if (contentHashIndex != null) contentHashIndex.rebuild();
+            if (conditionQueue != null) {
+                conditionQueue.clear();
+                conditionQueue.rebuild();
+            }
+        } finally {
+            locks.unlockAll();
+        }
     }
 
     // History
     public void addHistoryEntry(int artifactID, History history) {
-        this.assignmentLogs.computeIfAbsent(artifactID, k -> new CopyOnWriteArrayList<>()).add(history);
+        ReentrantLock lock = locks.artifactLock(artifactID);
+        lock.lock();
+        try {
+            recordHistory(artifactID);
+            this.assignmentLogs.computeIfAbsent(artifactID, k -> new CopyOnWriteArrayList<>()).add(history);
+            synchronized (timelineLock) {
+                if (timelinePending != null) timelinePending.add(history);
+                if (timeline == null) return;
+                if (history.getTimestamp().getTime() >= timeline.latestTimestamp()) {
+                    timeline.append(history);
+                } else {
+                    timeline = null; // out of order, rebuild on next query
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Puts back a history list removed together with its artifact (HISTORY_RESTORED in older replication journals)
+    public void restoreHistory(int artifactId, List<History> entries) {
+        if (entries == null || entries.isEmpty()) return;
+        StoreMutationEvent event = StoreMutationEvent.start("restoreHistory", artifactId, -1);
+        event.items = entries.size();
+        try {
+            ReentrantLock lock = locks.artifactLock(artifactId);
+            lock.lock();
+            try {
+                recordHistory(artifactId);
+                this.assignmentLogs.computeIfAbsent(artifactId, k -> new CopyOnWriteArrayList<>()).addAll(0, entries);
+                invalidateTimeline();
+                fire(StoreEvent.historyRestored(artifactId, entries));
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            event.finish();
+        }
     }
 
     public List<History> getHistoryByArtifactId(int artifactId) {
         return assignmentLogs.getOrDefault(artifactId, new ArrayList<>());
     }
 
+    // Archived (out of retention) history; reads the archive segments on demand
+    public List<History> getArchivedHistoryByArtifactId(int artifactId) throws IOException {
+        return historyArchive.findByArtifactId(artifactId);
+    }
+
+    // Rebuilds who owned which artifact (and its condition) at the given time.
+    // Conditions come from the transfers, so repairs after the last transfer before T are not reflected.
+    public OwnershipSnapshot getOwnershipAsOf(Date when) throws IOException {
+        synchronized (timelineLock) {
+            if (timeline != null) return timeline.asOf(when);
+        }
+        synchronized (timelineBuildLock) {
+            synchronized (timelineLock) {
+                if (timeline != null) return timeline.asOf(when);
+            }
+            // Built from a snapshot so writers keep going; what they log meanwhile lands in timelinePending
+            List<History> all = new ArrayList<>();
+            try (StoreSnapshot snapshot = openSnapshot(() -> {
+                synchronized (timelineLock) {
+                    timelinePending = new ArrayList<>();
+                }
+            })) {
+                snapshot.forEachHistoryList((artifactId, entries) -> all.addAll(entries));
+                // Archived entries take part too, otherwise old points in time would look unowned. Read after
+                // the snapshot opened, so an entry rolled meanwhile shows up twice rather than not at all.
+                for (File segment : historyArchive.segments()) {
+                    all.addAll(historyArchive.readSegment(segment));
+                }
+            }
+            synchronized (timelineLock) {
+                // Null pending means the history was invalidated meanwhile: answer this query, keep nothing
+                boolean invalidated = timelinePending == null;
+                if (!invalidated) all.addAll(timelinePending);
+                timelinePending = null;
+                OwnershipTimeline built = new OwnershipTimeline(all);
+                if (!invalidated) timeline = built;
+                return built.asOf(when);
+            }
+        }
+    }
+
+    private void invalidateTimeline() {
+        synchronized (timelineLock) {
+            timeline = null;
+            timelinePending = null;
+        }
+    }
+
+    // History of the snapshot outside the retention window, per artifact id
+    private Map<Integer, List<History>> planHistoryRoll(StoreSnapshot snapshot) {
+        int keepEntries = StoreConfig.HISTORY_RETAIN_ENTRIES;
+        long cutoff = StoreConfig.HISTORY_RETAIN_DAYS > 0
+                ? System.currentTimeMillis() - StoreConfig.HISTORY_RETAIN_DAYS * 24L * 60 * 60 * 1000
+                : Long.MIN_VALUE;
+        Map<Integer, List<History>> evicted = new HashMap<>();
+        if (keepEntries <= 0 && cutoff == Long.MIN_VALUE) return evicted;
+
+        snapshot.forEachHistoryList((artifactId, historyList) -> {
+            int overflow = keepEntries > 0 ? historyList.size() - keepEntries : 0;
+            List<History> toEvict = new ArrayList<>();
+            for (int i = 0; i < historyList.size(); i++) {
+                History h = historyList.get(i);
+                if (i < overflow || h.getTimestamp().getTime() < cutoff) {
+                    toEvict.add(h);
+                }
+            }
+            if (!toEvict.isEmpty()) evicted.put(artifactId, toEvict);
+        });
+        return evicted;
+    }
+
+    // Drops archived entries from the hot lists; only once the save without them went through
+    private void trimHistory(Map<Integer, List<History>> evicted) {
+        for (Map.Entry<Integer, List<History>> e : evicted.entrySet()) {
+            ReentrantLock lock = locks.artifactLock(e.getKey());
+            lock.lock();
+            try {
+                List<History> historyList = assignmentLogs.get(e.getKey());
+                if (historyList == null) continue;
+                recordHistory(e.getKey());
+                historyList.removeAll(e.getValue());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
     //----------------------------------------------------------------------
-    // Persistence (JSON)
+    // Consistency checks (see ConsistencyChecker). The fix methods re-check one candidate under
+    // the locks a mutation of it would take, and repair it if asked; they return whether the
+    // problem was really there.
     //----------------------------------------------------------------------
-    /* ------------------ Persistence Methods ------------------ */
 
-    // Call this on application exit
-    public void saveAll() {
+    // Checks the whole object graph in parallel; with repair, also fixes what it finds
+    public ConsistencyReport checkConsistency(boolean repair) {
+        synchronized (consistencyLock) {
+            ConsistencyReport report = ConsistencyChecker.check(this, repair);
+            lastConsistencyReport = report;
+            return report;
+        }
+    }
+
+    // Null until the first check finished
+    public ConsistencyReport getLastConsistencyReport() {
+        return lastConsistencyReport;
+    }
+
+    private void startConsistencyCheck() {
+        Thread check = new Thread(() -> {
+            ConsistencyReport report = checkConsistency(StoreConfig.CHECK_REPAIR);
+            if (!report.isConsistent()) System.err.print(report);
+        }, "consistency-check");
+        check.setDaemon(true);
+        check.setPriority(Thread.MIN_PRIORITY);
+        check.start();
+    }
+
+    ConcurrentHashMap<Integer, Wizard> wizardMap() {
+        return wizards;
+    }
+
+    ConcurrentHashMap<Integer, List<History>> historyMap() {
+        return assignmentLogs;
+    }
+
+    int nextArtifactId() {
+        return artifactIdCounter.get();
+    }
+
+    int nextWizardId() {
+        return wizardIdCounter.get();
+    }
+
+    int droppedOwnerRefs() {
+        return droppedOwnerRefs.get();
+    }
+
+    List<String> droppedOwnerSample() {
+        return List.copyOf(droppedOwnerSample);
+    }
+
+    // Copy of a wizard's artifact list, which is only safe to read under the wizard's lock
+    List<Artifact> listedArtifacts(Wizard wizard) {
+        locks.lockWizards(wizard.getId(), -1);
         try {
-            saveWizards();
-            saveArtifacts();
-            saveTransfers();
+            return new ArrayList<>(wizard.getArtifacts());
+        } finally {
+            locks.unlockWizards(wizard.getId(), -1);
+        }
+    }
+
+    // Artifact owned by a wizard that is gone: unassign it
+    boolean fixMissingOwner(int artifactId, boolean repair) {
+        ReentrantLock lock = locks.artifactLock(artifactId);
+        lock.lock();
+        try {
+            Artifact artifact = this.artifacts.get(artifactId);
+            if (artifact == null || !artifact.hasOwner()) return false;
+            Wizard owner = artifact.getOwner();
+            if (this.wizards.get(owner.getId()) == owner) return false;
+            if (repair) {
+                recordArtifact(artifactId);
+                artifact.unassignOwner();
+                this.artifacts.update(artifact);
+                fire(StoreEvent.ownership(StoreEvent.Type.UNASSIGNED, artifactId, owner.getId(), artifact.getCondition()));
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Artifact its owner does not list: add it to the owner's list (the owner stays the same)
+    boolean fixNotListed(int artifactId, boolean repair) {
+        ReentrantLock lock = locks.artifactLock(artifactId);
+        lock.lock();
+        try {
+            Artifact artifact = this.artifacts.get(artifactId);
+            if (artifact == null || !artifact.hasOwner()) return false;
+            Wizard owner = artifact.getOwner();
+            if (this.wizards.get(owner.getId()) != owner) return false;
+            locks.lockWizards(owner.getId(), -1);
+            try {
+                if (owner.getArtifacts().contains(artifact)) return false;
+                if (repair) {
+                    owner.addArtifact(artifact);
+                    fire(StoreEvent.ownership(StoreEvent.Type.ASSIGNED, artifactId, owner.getId(), artifact.getCondition()));
+                    fire(StoreEvent.wizard(StoreEvent.Type.WIZARD_UPDATED, owner.getId(), owner.getName()));
+                }
+                return true;
+            } finally {
+                locks.unlockWizards(owner.getId(), -1);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Wizard listing an artifact that is not in the store, belongs to another owner, or twice:
+    // drop those entries, keeping one entry for an artifact the wizard really owns
+    boolean fixListing(int wizardId, int artifactId, boolean repair) {
+        ReentrantLock lock = locks.artifactLock(artifactId);
+        lock.lock();
+        try {
+            Wizard wizard = this.wizards.get(wizardId);
+            if (wizard == null) return false;
+            Artifact current = this.artifacts.get(artifactId);
+            locks.lockWizards(wizardId, -1);
+            try {
+                List<Artifact> bad = new ArrayList<>();
+                boolean kept = false;
+                for (Artifact listed : wizard.getArtifacts()) {
+                    if (listed.getId() != artifactId) continue;
+                    if (!kept && listed == current && listed.getOwner() == wizard) kept = true;
+                    else bad.add(listed);
+                }
+                if (bad.isEmpty()) return false;
+                if (repair) {
+                    for (Artifact listed : bad) wizard.dropListing(listed);
+                    // dropListing removes the first equal entry, which may have been the one to keep
+                    if (kept && !wizard.getArtifacts().contains(current)) wizard.addArtifact(current);
+                    fire(StoreEvent.wizard(StoreEvent.Type.WIZARD_UPDATED, wizardId, wizard.getName()));
+                }
+                return true;
+            } finally {
+                locks.unlockWizards(wizardId, -1);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // History of an artifact that is gone without a deletion marker: close it with one, keeping the transfers
+    boolean fixOrphanHistory(int artifactId, boolean repair) {
+        ReentrantLock lock = locks.artifactLock(artifactId);
+        lock.lock();
+        try {
+            List<History> historyList = this.assignmentLogs.get(artifactId);
+            if (this.artifacts.get(artifactId) != null || historyList == null || historyList.isEmpty()
+                    || historyList.get(historyList.size() - 1).isDeletion()) return false;
+            if (repair) {
+                History last = historyList.get(historyList.size() - 1);
+                addHistoryEntry(artifactId, new History(artifactId, last.getArtifactName(), History.DELETED, "--",
+                        last.getCondition(), new Date()));
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Ids are taken from the counters first, so a counter at or below an existing id is really behind
+    boolean fixArtifactIdCounter(int maxId, boolean repair) {
+        if (artifactIdCounter.get() > maxId) return false;
+        if (repair) artifactIdCounter.accumulateAndGet(maxId + 1, Math::max);
+        return true;
+    }
+
+    boolean fixWizardIdCounter(int maxId, boolean repair) {
+        if (wizardIdCounter.get() > maxId) return false;
+        if (repair) wizardIdCounter.accumulateAndGet(maxId + 1, Math::max);
+        return true;
+    }
+
+    //----------------------------------------------------------------------
+    // Persistence (JSON files by default, see PersistenceBackend)
+    //----------------------------------------------------------------------
+    /* ------------------ Persistence Methods ------------------ */
+
+    // Call this on application exit. Writes one snapshot, so the saved wizards, artifacts and
+    // history agree with each other even while other threads keep changing the store.
+    // Returns false when the save failed; the files written before stay as they were.
+    public boolean saveAll() {
+        IoStats stats = io.newStats();
+        PersistenceEvent saveEvent = PersistenceEvent.start("save", "all", stats);
+        try (StoreSnapshot snapshot = openSnapshot()) {
+            // Keep transfers.json down to the hot window: entries outside it go to new archive segments and
+            // are left out of the save. The hot lists lose them only after the save went through; if it
+            // fails, the new segments are deleted and everything stays as it was.
+            Map<Integer, List<History>> evicted = planHistoryRoll(snapshot);
+            List<History> archived = new ArrayList<>();
+            evicted.values().forEach(archived::addAll);
+            List<File> segments = new ArrayList<>();
+            tracePhase("save", "rollHistory", stats, archived::size, () -> segments.addAll(historyArchive.append(archived)));
+            snapshot.excludeArchived(archived);
+            try {
+                backend.save(snapshot, stats);
+            } catch (IOException | RuntimeException e) {
+                historyArchive.discard(segments);
+                throw e;
+            }
+            trimHistory(evicted);
+            // Next start restores the sort orders from this file instead of sorting again
+            ArtifactSortIndex index = sortIndex;
+            if (index != null) {
+                tracePhase("save", "sortIndex", stats, artifacts::size, () -> index.save(new File(SORT_INDEX_FILE)));
+            }
+            lastSaveStats = stats;
+            if (StoreConfig.PERSIST_STATS) {
+                System.out.println("persist save (" + backend.name() + ")\n" + stats);
+            }
+            return true;
         } catch (IOException e) {
             e.printStackTrace();
+            return false;
+        } finally {
+            saveEvent.finish(wizards.size() + artifacts.size());
+        }
+    }
+
+    // A load or save step; entities is read after the step (what it loaded, or what is left to save)
+    private interface IoPhase {
+        void run() throws IOException;
+    }
+
+    private void tracePhase(String operation, String phase, IoStats stats, LongSupplier entities, IoPhase step) throws IOException {
+        PersistenceEvent event = PersistenceEvent.start(operation, phase, stats);
+        try {
+            step.run();
+        } finally {
+            event.finish(entities.getAsLong());
+        }
+    }
+
+    private long historyEntryCount() {
+        long entries = 0;
+        for (List<History> historyList : assignmentLogs.values()) {
+            entries += historyList.size();
+        }
+        return entries;
+    }
+
+    //----------------------------------------------------------------------
+    // Metrics and memory accounting
+    //----------------------------------------------------------------------
+
+    private static final String[] MEMORY_STRUCTURES = { "data.users", "data.wizards", "data.wizardArtifactLists",
+            "data.artifacts", "data.history", "data.sortIndex", "data.contentHashIndex", "data.conditionQueue",
+            "data.ownershipTimeline", "data.versionLog" };
+    private static final long MEMORY_REPORT_TTL_MS = 1000;
+    private volatile MemoryReport cachedMemoryReport;
+    private volatile long cachedMemoryReportTime;
+
+    private void registerMetrics() {
+        StoreMetrics metrics = StoreMetrics.getInstance();
+        metrics.registerGauge("store.wizards", wizards::size);
+        metrics.registerGauge("store.artifacts", artifacts::size);
+        metrics.registerGauge("store.historyEntries", this::historyEntryCount);
+        for (String structure : MEMORY_STRUCTURES) {
+            metrics.registerGauge("memory." + structure + ".bytes",
+                    () -> recentMemoryReport().getBytes().getOrDefault(structure, 0L));
+        }
+        metrics.registerGauge("memory.total.bytes", () -> recentMemoryReport().getTotalBytes());
+        metrics.registerGauge("persist.load.jsonBytes", () -> loadStats == null ? 0 : loadStats.getRawBytes());
+        metrics.registerGauge("persist.load.diskBytes", () -> loadStats == null ? 0 : loadStats.getDiskBytes());
+        metrics.registerGauge("persist.lastSave.jsonBytes", () -> lastSaveStats == null ? 0 : lastSaveStats.getRawBytes());
+        metrics.registerGauge("persist.lastSave.diskBytes", () -> lastSaveStats == null ? 0 : lastSaveStats.getDiskBytes());
+        metrics.registerGauge("persist.lastSave.fileMillis", () -> lastSaveStats == null ? 0 : lastSaveStats.getFileMillis());
+        metrics.registerGauge("trace.slowOperations", TracedOperation::slowOperationCount);
+        metrics.registerGauge("index.sort.buildMillis", () -> sortIndexMillis);
+        metrics.registerGauge("index.sort.restored", () -> sortIndexRestored ? 1 : 0);
+        metrics.registerGauge("consistency.problems", () -> lastConsistencyReport == null ? -1 : lastConsistencyReport.getProblemCount());
+        metrics.registerGauge("consistency.millis", () -> lastConsistencyReport == null ? -1 : lastConsistencyReport.getMillis());
+        metrics.registerGauge("load.droppedOwnerRefs", droppedOwnerRefs::get);
+        metrics.registerGauge("mvcc.openSnapshots", versions::openSnapshots);
+        metrics.registerGauge("mvcc.images", versions::images);
+        if (artifacts instanceof PagedArtifactTable) {
+            PagedArtifactTable paged = (PagedArtifactTable) artifacts;
+            metrics.registerGauge("engine.cache.pages", paged::cachedPages);
+            metrics.registerGauge("engine.cache.hits", paged::cacheHits);
+            metrics.registerGauge("engine.cache.misses", paged::cacheMisses);
+        }
+    }
+
+    // Gauges read several figures in a row; one walk of the store per second is enough for them
+    private MemoryReport recentMemoryReport() {
+        MemoryReport report = cachedMemoryReport;
+        if (report == null || System.currentTimeMillis() - cachedMemoryReportTime > MEMORY_REPORT_TTL_MS) {
+            report = getMemoryReport();
+            cachedMemoryReport = report;
+            cachedMemoryReportTime = System.currentTimeMillis();
+        }
+        return report;
+    }
+
+    // Walks every structure once and estimates its retained bytes (see MemoryEstimator)
+    public MemoryReport getMemoryReport() {
+        MemoryReport report = new MemoryReport(wizards.size(), artifacts.size(), historyEntryCount());
+
+        long userBytes = MemoryEstimator.copyOnWriteList(users.size());
+        for (User u : users) {
+            userBytes += MemoryEstimator.object(3, 0) + MemoryEstimator.string(u.getUsername()) + MemoryEstimator.string(u.getPassword());
+        }
+        report.put("data.users", userBytes);
+
+        long wizardBytes = MemoryEstimator.concurrentMap(wizards.size());
+        long listBytes = 0;
+        for (Wizard w : wizards.values()) {
+            wizardBytes += MemoryEstimator.boxedInt(w.getId()) + MemoryEstimator.wizard(w);
+            listBytes += MemoryEstimator.arrayList(w.getArtifacts().size());
         }
+        report.put("data.wizards", wizardBytes);
+        report.put("data.wizardArtifactLists", listBytes);
+
+        report.put("data.artifacts", artifacts.estimatedBytes());
+
+        long historyBytes = MemoryEstimator.concurrentMap(assignmentLogs.size());
+        for (Map.Entry<Integer, List<History>> e : assignmentLogs.entrySet()) {
+            Artifact artifact = artifacts.peek(e.getKey());
+            historyBytes += MemoryEstimator.boxedInt(e.getKey()) + MemoryEstimator.copyOnWriteList(e.getValue().size());
+            for (History h : e.getValue()) {
+                Wizard wizard = wizards.get(h.getWizardId());
+                // Names are often the very String instances the artifact/wizard hold; "--" is a shared literal
+                boolean artifactNameShared = artifact != null && artifact.getName() == h.getArtifactName();
+                boolean wizardNameShared = wizard != null && wizard.getName() == h.getWizardName()
+                        || h.getWizardName() == "--";
+                historyBytes += MemoryEstimator.history(h, artifactNameShared, wizardNameShared);
+            }
+        }
+        report.put("data.history", historyBytes);
+
+        ArtifactSortIndex index = sortIndex;
+        report.put("data.sortIndex", index == null ? 0 : index.estimatedBytes());
+        ContentHashIndex hashes = contentHashIndex;
+        report.put("data.contentHashIndex", hashes == null ? 0 : hashes.estimatedBytes());
+        ConditionQueue byCondition = conditionQueue;
+        report.put("data.conditionQueue", byCondition == null ? 0 : byCondition.estimatedBytes());
+        synchronized (timelineLock) {
+            report.put("data.ownershipTimeline", timeline == null ? 0 : timeline.estimatedBytes());
+        }
+        report.put("data.versionLog", versions.estimatedBytes());
+
+        // Row caches of open views
+        for (Map.Entry<String, Long> e : StoreMetrics.getInstance().snapshot("memory.ui.").entrySet()) {
+            String name = e.getKey().substring("memory.".length(), e.getKey().length() - ".bytes".length());
+            report.put(name, e.getValue());
+        }
+        return report;
     }
 
-    private void saveWizards() throws IOException {
+    // Null when the store was seeded instead of loaded
+    public IoStats getLoadStats() {
+        return loadStats;
+    }
+
+    // Null before the first save
+    public IoStats getLastSaveStats() {
+        return lastSaveStats;
+    }
+
+    // The data files in DATA_DIR: wizards.json plus artifacts.json and transfers.json, the shard
+    // directories (hogwarts.shards) or artifacts.db (paged engine)
+    private class JsonBackend implements PersistenceBackend {
+        @Override
+        public String name() {
+            return "json";
+        }
+
+        @Override
+        public boolean hasData() {
+            return new File(WIZARDS_FILE).exists() && (new File(ARTIFACTS_FILE).exists()
+                    || ShardedPersistence.exists(new File(SHARDS_DIR)) || pagedRestored());
+        }
+
+        @Override
+        public void load(IoStats stats) throws IOException {
+            boolean classicFiles = new File(ARTIFACTS_FILE).exists();
+            boolean shardFiles = ShardedPersistence.exists(new File(SHARDS_DIR));
+            tracePhase("load", "wizards", stats, wizards::size, () -> loadWizards(stats));
+            // Prefer the layout of the current mode, fall back to the other one after a mode switch
+            if (pagedRestored()) {
+                tracePhase("load", "pagedOwners", stats, artifacts::size, DataStore.this::linkPagedOwners);
+                if (new File(TRANSFERS_FILE).exists()) {
+                    tracePhase("load", "transfers", stats, DataStore.this::historyEntryCount, () -> loadTransfers(stats));
+                }
+            } else if (shardFiles && (sharded != null || !classicFiles)) {
+                tracePhase("load", "shards", stats, () -> artifacts.size() + historyEntryCount(), () -> loadShards(stats));
+            } else {
+                tracePhase("load", "artifacts", stats, artifacts::size, () -> loadArtifacts(stats));
+                tracePhase("load", "transfers", stats, DataStore.this::historyEntryCount, () -> loadTransfers(stats));
+            }
+        }
+
+        @Override
+        public void save(StoreSnapshot snapshot, IoStats stats) throws IOException {
+            tracePhase("save", "wizards", stats, wizards::size, () -> saveWizards(snapshot, stats));
+            if (sharded != null) {
+                tracePhase("save", "shards", stats, () -> artifacts.size() + historyEntryCount(),
+                        () -> sharded.save(snapshot, stats));
+                // The shards now hold everything; stale classic files would shadow them after a mode switch
+                new File(ARTIFACTS_FILE).delete();
+                new File(TRANSFERS_FILE).delete();
+                new File(PAGED_FILE).delete();
+            } else {
+                tracePhase("save", "artifacts", stats, artifacts::size, () -> saveArtifacts(snapshot, stats));
+                tracePhase("save", "transfers", stats, DataStore.this::historyEntryCount, () -> saveTransfers(snapshot, stats));
+                if (StoreConfig.PAGED_ENGINE) {
+                    // Flushed last, and marked clean only if it still holds exactly this snapshot: a change
+                    // made during the save would otherwise reach artifacts.db but not wizards.json
+                    tracePhase("save", "pagedFlush", stats, artifacts::size, () -> artifacts.flush(snapshot.artifactTableWrites()));
+                } else {
+                    new File(PAGED_FILE).delete();
+                }
+                ShardedPersistence.deleteAll(new File(SHARDS_DIR));
+            }
+        }
+
+        // A cleanly saved artifacts.db already holds the artifacts, only the owners need linking
+        private boolean pagedRestored() {
+            return artifacts instanceof PagedArtifactTable && ((PagedArtifactTable) artifacts).isRestored();
+        }
+    }
+
+    private void saveWizards(StoreSnapshot snapshot, IoStats stats) throws IOException {
         JsonFactory factory = new JsonFactory();
-        try (JsonGenerator gen = factory.createGenerator(new FileOutputStream(WIZARDS_FILE))) {
+        try (PersistenceIo.AtomicFileStream out = io.openWrite(new File(WIZARDS_FILE), stats);
+             JsonGenerator gen = factory.createGenerator(out)) {
             gen.writeStartArray();
-            for (Wizard w : wizards.values()) {
+            for (StoreSnapshot.WizardState w : snapshot.wizards()) {
                 gen.writeStartObject();
                 gen.writeNumberField("id", w.getId());
                 gen.writeStringField("name", w.getName());
                 gen.writeEndObject();
             }
             gen.writeEndArray();
+            gen.flush();
+            out.commit();
         }
     }
 
-    private void saveArtifacts() throws IOException {
+    private void saveArtifacts(StoreSnapshot snapshot, IoStats stats) throws IOException {
         JsonFactory factory = new JsonFactory();
-        try (JsonGenerator gen = factory.createGenerator(new FileOutputStream(ARTIFACTS_FILE))) {
+        try (PersistenceIo.AtomicFileStream out = io.openWrite(new File(ARTIFACTS_FILE), stats);
+             JsonGenerator gen = factory.createGenerator(out)) {
             gen.writeStartArray();
-            for (Artifact a : artifacts.values()) {
-                gen.writeStartObject();
-                gen.writeNumberField("id", a.getId());
-                gen.writeStringField("name", a.getName());
-                gen.writeStringField("description", a.getDescription());
-                gen.writeNumberField("condition", a.getCondition());
-                if (a.getOwner() != null) {
-                    gen.writeNumberField("ownerId", a.getOwner().getId());
+            snapshot.forEachArtifact(a -> {
+                try {
+                    ArtifactJson.write(gen, a);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
-                gen.writeEndObject();
-            }
+            });
             gen.writeEndArray();
+            gen.flush();
+            out.commit();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
     }
 
-    private void saveTransfers() throws IOException {
+    private void saveTransfers(StoreSnapshot snapshot, IoStats stats) throws IOException {
         JsonFactory factory = new JsonFactory();
-        try (JsonGenerator gen = factory.createGenerator(new FileOutputStream(TRANSFERS_FILE))) {
+        try (PersistenceIo.AtomicFileStream out = io.openWrite(new File(TRANSFERS_FILE), stats);
+             JsonGenerator gen = factory.createGenerator(out)) {
             gen.writeStartArray();
-            for (List<History> historyList : assignmentLogs.values()) {
-                for (History h : historyList) {
-                    gen.writeStartObject();
-                    gen.writeNumberField("artifactId", h.getArtifactId());
-                    gen.writeStringField("artifactName", h.getArtifactName());
-                    gen.writeStringField("wizardName", h.getWizardName());
-                    //gen.writeStringField("timestamp", h.getTimestamp().toString());
-                    gen.writeNumberField("timestamp", h.getTimestamp().getTime());
-                    gen.writeEndObject();
+            snapshot.forEachHistoryList((artifactId, historyList) -> {
+                try {
+                    for (History h : historyList) {
+                        HistoryJson.write(gen, h);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
-            }
+            });
             gen.writeEndArray();
+            gen.flush();
+            out.commit();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
     }
 
-    private void loadWizards() throws IOException {
+    private void loadWizards(IoStats stats) throws IOException {
         JsonFactory factory = new JsonFactory();
-        try (JsonParser parser = factory.createParser(new FileInputStream(WIZARDS_FILE))) {
+        try (JsonParser parser = factory.createParser(io.openRead(new File(WIZARDS_FILE), stats))) {
             while (parser.nextToken() != JsonToken.END_ARRAY) {
                 if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
                     int id = 0;
@@ -265,65 +1386,81 @@ private DataStore() {
                     }
                     Wizard w = new Wizard(name);
                     w.setId(id);
-                    this.wizards.put(id, w);
-                    wizardIdCounter.set(Math.max(wizardIdCounter.get(), id + 1));
+                    putLoadedWizard(w);
                 }
             }
         }
     }
 
-    private void loadArtifacts() throws IOException {
+    private void loadArtifacts(IoStats stats) throws IOException {
         JsonFactory factory = new JsonFactory();
-        try (JsonParser parser = factory.createParser(new FileInputStream(ARTIFACTS_FILE))) {
+        try (JsonParser parser = factory.createParser(io.openRead(new File(ARTIFACTS_FILE), stats))) {
             while (parser.nextToken() != JsonToken.END_ARRAY) {
                 if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
-                    int id = 0, ownerId = -1, condition = 100;
-                    String name = null, description = null;
-                    while (parser.nextToken() != JsonToken.END_OBJECT) {
-                        String field = parser.getCurrentName();
-                        parser.nextToken();
-                        switch (field) {
-                            case "id": id = parser.getIntValue(); break;
-                            case "name": name = parser.getText(); break;
-                            case "description": description = parser.getText(); break;
-                            case "condition": condition = parser.getIntValue(); break;
-                            case "ownerId": ownerId = parser.getIntValue(); break;
-                        }
-                    }
-                    Artifact a = new Artifact(name, description);
-                    a.setId(id);
-                    a.setCondition(condition);
-                    this.artifacts.put(id, a);
-                    artifactIdCounter.set(Math.max(artifactIdCounter.get(), id + 1));
-
-                    if (ownerId != -1 && wizards.containsKey(ownerId)) {
-                        wizards.get(ownerId).addArtifact(a);
-                    }
+                    putLoadedArtifact(ArtifactJson.read(parser));
                 }
             }
         }
     }
 
-    private void loadTransfers() throws IOException {
+    void putLoadedWizard(Wizard w) {
+        this.wizards.put(w.getId(), w);
+        wizardIdCounter.accumulateAndGet(w.getId() + 1, Math::max);
+    }
+
+    // Called from the shard loader threads too, hence the counter CAS and the wizard lock
+    void putLoadedArtifact(ArtifactJson.Loaded loaded) {
+        Artifact a = loaded.artifact;
+        Wizard owner = loaded.ownerId == ArtifactJson.NO_OWNER ? null : wizards.get(loaded.ownerId);
+        if (owner == null && loaded.ownerId != ArtifactJson.NO_OWNER) noteDroppedOwner(a.getId(), loaded.ownerId);
+        if (owner != null) {
+            locks.lockWizards(owner.getId(), -1);
+            try {
+                owner.addArtifact(a);
+            } finally {
+                locks.unlockWizards(owner.getId(), -1);
+            }
+        }
+        // Stored after linking so the paged engine records the owner
+        this.artifacts.put(a);
+        artifactIdCounter.accumulateAndGet(a.getId() + 1, Math::max);
+    }
+
+    // Paged engine reopened on its own file: link the owned artifacts to their wizards
+    private void linkPagedOwners() {
+        PagedArtifactTable paged = (PagedArtifactTable) artifacts;
+        artifactIdCounter.set(Math.max(artifactIdCounter.get(), paged.maxId() + 1));
+        paged.forEachOwned((artifact, ownerId) -> {
+            Wizard owner = wizards.get(ownerId);
+            if (owner != null) owner.addArtifact(artifact);
+            else noteDroppedOwner(artifact.getId(), ownerId);
+        });
+    }
+
+    private void noteDroppedOwner(int artifactId, int ownerId) {
+        if (droppedOwnerRefs.getAndIncrement() < DROPPED_OWNER_SAMPLE) {
+            droppedOwnerSample.add(artifactId + "->" + ownerId);
+        }
+    }
+
+    // Reads the shard files written by a partitioned run; works with any shard count
+    private void loadShards(IoStats stats) throws IOException {
+        if (sharded != null) {
+            sharded.load(this, stats);
+            return;
+        }
+        try (ShardedPersistence loader = new ShardedPersistence(new File(SHARDS_DIR), Runtime.getRuntime().availableProcessors(), io)) {
+            loader.load(this, stats);
+        }
+    }
+
+    private void loadTransfers(IoStats stats) throws IOException {
         JsonFactory factory = new JsonFactory();
-        try (JsonParser parser = factory.createParser(new FileInputStream(TRANSFERS_FILE))) {
+        try (JsonParser parser = factory.createParser(io.openRead(new File(TRANSFERS_FILE), stats))) {
             while (parser.nextToken() != JsonToken.END_ARRAY) {
                 if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
-                    int artifactId = 0;
-                    String artifactName = null, wizardName = null;
-                    long timestamp = 0;
-                    while (parser.nextToken() != JsonToken.END_OBJECT) {
-                        String field = parser.getCurrentName();
-                        parser.nextToken();
-                        switch (field) {
-                            case "artifactId": artifactId = parser.getIntValue(); break;
-                            case "artifactName": artifactName = parser.getText(); break;
-                            case "wizardName": wizardName = parser.getText(); break;
-                            case "timestamp": timestamp = parser.getLongValue(); break;
-                        }
-                    }
-                    History h = new History(artifactId, artifactName, wizardName, new Date(timestamp));
-                    this.addHistoryEntry(artifactId, h);
+                    History h = HistoryJson.read(parser);
+                    this.addHistoryEntry(h.getArtifactId(), h);
                 }
             }
         }
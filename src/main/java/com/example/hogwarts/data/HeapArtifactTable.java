@@ -0,0 +1,77 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.Artifact;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * The original engine: every artifact lives in a ConcurrentHashMap.
+ */
+final class HeapArtifactTable implements ArtifactTable {
+    private final ConcurrentHashMap<Integer, Artifact> artifacts = new ConcurrentHashMap<>();
+
+    @Override
+    public Artifact get(int id) {
+        return artifacts.get(id);
+    }
+
+    @Override
+    public Artifact peek(int id) {
+        return artifacts.get(id);
+    }
+
+    @Override
+    public void put(Artifact artifact) {
+        artifacts.put(artifact.getId(), artifact);
+    }
+
+    @Override
+    public void update(Artifact artifact) {
+        // the map holds the instance itself
+    }
+
+    @Override
+    public Artifact remove(int id) {
+        return artifacts.remove(id);
+    }
+
+    @Override
+    public Collection<Artifact> values() {
+        return artifacts.values();
+    }
+
+    @Override
+    public int size() {
+        return artifacts.size();
+    }
+
+    @Override
+    public void forEachValue(long parallelismThreshold, Consumer<Artifact> action) {
+        artifacts.forEachValue(parallelismThreshold, action);
+    }
+
+    @Override
+    public void clear() {
+        artifacts.clear();
+    }
+
+    @Override
+    public long writeCount() {
+        return 0;
+    }
+
+    @Override
+    public void flush(long snapshotWrites) {
+    }
+
+    @Override
+    public long estimatedBytes() {
+        long bytes = MemoryEstimator.concurrentMap(artifacts.size());
+        for (Artifact a : artifacts.values()) {
+            bytes += MemoryEstimator.boxedInt(a.getId()) + MemoryEstimator.artifact(a);
+        }
+        return bytes;
+    }
+}
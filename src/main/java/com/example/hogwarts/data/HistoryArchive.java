@@ -0,0 +1,214 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.History;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cold storage for history entries that fell out of the hot retention window.
+ * Entries are grouped into monthly buckets and written as gzip'd JSON segments
+ * (transfers-yyyy-MM-N.json.gz). A segment is never rewritten once created;
+ * every roll adds new segments, so a save only pays for what it evicts.
+ *
+ * Next to each segment an index file (same name, .ids) lists the distinct artifact ids it
+ * holds, sorted. A lookup for one artifact reads the small index files (kept in memory once
+ * read) and decompresses only the segments that hold the artifact. A segment without an index,
+ * e.g. from an older version, is read once and gets one.
+ */
+public class HistoryArchive {
+    private static final String PREFIX = "transfers-";
+    private static final String SUFFIX = ".json.gz";
+    private static final String IDS_SUFFIX = ".ids";
+    private static final int IDS_MAGIC = 0x48474149; // "HGAI"
+
+    private final File dir;
+    // Segment name -> sorted distinct artifact ids; segments never change, so neither do these
+    private final Map<String, int[]> segmentIds = new HashMap<>();
+
+    public HistoryArchive(File dir) {
+        this.dir = dir;
+    }
+
+    // Writes the evicted entries into new immutable segments, one per month bucket; returns the segments written
+    public synchronized List<File> append(List<History> entries) throws IOException {
+        if (entries.isEmpty()) return List.of();
+        if (!dir.exists()) dir.mkdirs();
+
+        SimpleDateFormat bucketFormat = new SimpleDateFormat("yyyy-MM");
+        Map<String, List<History>> buckets = new TreeMap<>();
+        for (History h : entries) {
+            buckets.computeIfAbsent(bucketFormat.format(h.getTimestamp()), k -> new ArrayList<>()).add(h);
+        }
+        List<File> written = new ArrayList<>();
+        try {
+            for (Map.Entry<String, List<History>> bucket : buckets.entrySet()) {
+                File segment = nextSegmentFile(bucket.getKey());
+                writeSegment(segment, bucket.getValue());
+                written.add(segment);
+            }
+        } catch (IOException e) {
+            discard(written);
+            throw e;
+        }
+        return written;
+    }
+
+    // Takes back segments of an append whose save failed; the entries are still in the hot history
+    public synchronized void discard(List<File> segments) {
+        for (File segment : segments) {
+            segmentIds.remove(segment.getName());
+            if (segment.exists() && !segment.delete()) {
+                System.err.println("Could not delete archive segment " + segment);
+            }
+            File ids = idsFile(segment);
+            if (ids.exists() && !ids.delete()) {
+                System.err.println("Could not delete archive index " + ids);
+            }
+        }
+    }
+
+    // Returns the entries of one artifact, oldest first, reading only the segments whose index lists it
+    public synchronized List<History> findByArtifactId(int artifactId) throws IOException {
+        List<History> result = new ArrayList<>();
+        for (File segment : segments()) {
+            if (Arrays.binarySearch(artifactIds(segment), artifactId) >= 0) {
+                readSegment(segment, artifactId, result);
+            }
+        }
+        result.sort(Comparator.comparing(History::getTimestamp));
+        return result;
+    }
+
+    public synchronized List<File> segments() {
+        File[] files = dir.listFiles((d, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files == null) return List.of();
+        List<File> result = new ArrayList<>(Arrays.asList(files));
+        result.sort(Comparator.comparing(File::getName));
+        return result;
+    }
+
+    private File nextSegmentFile(String bucket) {
+        int seq = 0;
+        File file;
+        do {
+            file = new File(dir, PREFIX + bucket + "-" + seq++ + SUFFIX);
+        } while (file.exists() || idsFile(file).exists()); // a left-over index must not describe a new segment
+        return file;
+    }
+
+    private void writeSegment(File file, List<History> entries) throws IOException {
+        // Write to a temp file first so a crash never leaves a half-written segment behind
+        File tmp = new File(file.getPath() + ".tmp");
+        JsonFactory factory = new JsonFactory();
+        try (JsonGenerator gen = factory.createGenerator(new GZIPOutputStream(new FileOutputStream(tmp)))) {
+            gen.writeStartArray();
+            for (History h : entries) {
+                HistoryJson.write(gen, h);
+            }
+            gen.writeEndArray();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Could not create archive segment " + file);
+        }
+        // The segment is complete without its index: a missing one is rebuilt on the next lookup
+        int[] ids = entries.stream().mapToInt(History::getArtifactId).sorted().distinct().toArray();
+        segmentIds.put(file.getName(), ids);
+        try {
+            writeIds(file, ids);
+        } catch (IOException e) {
+            System.err.println("Could not write archive index for " + file + ": " + e.getMessage());
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // Artifact id index per segment
+    //----------------------------------------------------------------------
+
+    private int[] artifactIds(File segment) throws IOException {
+        int[] ids = segmentIds.get(segment.getName());
+        if (ids != null) return ids;
+        ids = readIds(segment);
+        if (ids == null) {
+            // No index (or a damaged one): read the segment once and write it
+            List<History> entries = readSegment(segment);
+            ids = entries.stream().mapToInt(History::getArtifactId).sorted().distinct().toArray();
+            try {
+                writeIds(segment, ids);
+            } catch (IOException e) {
+                System.err.println("Could not write archive index for " + segment + ": " + e.getMessage());
+            }
+        }
+        segmentIds.put(segment.getName(), ids);
+        return ids;
+    }
+
+    private static File idsFile(File segment) {
+        String name = segment.getName();
+        return new File(segment.getParentFile(), name.substring(0, name.length() - SUFFIX.length()) + IDS_SUFFIX);
+    }
+
+    // Magic, count, then the ids; written beside the segment through a temp file like the segment itself
+    private static void writeIds(File segment, int[] ids) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8 + 4 * ids.length);
+        buf.putInt(IDS_MAGIC).putInt(ids.length);
+        for (int id : ids) buf.putInt(id);
+        File file = idsFile(segment);
+        File tmp = new File(file.getPath() + ".tmp");
+        Files.write(tmp.toPath(), buf.array());
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Could not create archive index " + file);
+        }
+    }
+
+    // Null when there is no usable index
+    private static int[] readIds(File segment) {
+        File file = idsFile(segment);
+        if (!file.exists()) return null;
+        try {
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            if (buf.remaining() < 8 || buf.getInt() != IDS_MAGIC) return null;
+            int count = buf.getInt();
+            if (count < 0 || buf.remaining() != 4 * count) return null;
+            int[] ids = new int[count];
+            buf.asIntBuffer().get(ids);
+            return ids;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // All entries of one segment
+    List<History> readSegment(File file) throws IOException {
+        List<History> result = new ArrayList<>();
+        readSegment(file, -1, result);
+        return result;
+    }
+
+    // artifactId -1 reads every entry
+    private void readSegment(File file, int artifactId, List<History> out) throws IOException {
+        JsonFactory factory = new JsonFactory();
+        try (JsonParser parser = factory.createParser(new GZIPInputStream(new FileInputStream(file)))) {
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+                    History h = HistoryJson.read(parser);
+                    if (artifactId == -1 || h.getArtifactId() == artifactId) {
+                        out.add(h);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.History;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Date;
+
+// Shared JSON layout of a History entry (transfers.json and archive segments)
+final class HistoryJson {
+    private HistoryJson() {
+    }
+
+    static void write(JsonGenerator gen, History h) throws IOException {
+        gen.writeStartObject();
+        gen.writeNumberField("artifactId", h.getArtifactId());
+        gen.writeStringField("artifactName", h.getArtifactName());
+        if (h.getWizardId() != History.NO_WIZARD) {
+            gen.writeNumberField("wizardId", h.getWizardId());
+        }
+        gen.writeStringField("wizardName", h.getWizardName());
+        if (h.getCondition() != History.UNKNOWN_CONDITION) {
+            gen.writeNumberField("condition", h.getCondition());
+        }
+        gen.writeNumberField("timestamp", h.getTimestamp().getTime());
+        gen.writeEndObject();
+    }
+
+    // Parser must be positioned on START_OBJECT; leaves it on the matching END_OBJECT
+    static History read(JsonParser parser) throws IOException {
+        int artifactId = 0, wizardId = History.NO_WIZARD, condition = History.UNKNOWN_CONDITION;
+        String artifactName = null, wizardName = null;
+        long timestamp = 0;
+        while (parser.nextToken() != JsonToken.END_OBJECT) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "artifactId": artifactId = parser.getIntValue(); break;
+                case "artifactName": artifactName = parser.getText(); break;
+                case "wizardId": wizardId = parser.getIntValue(); break;
+                case "wizardName": wizardName = parser.getText(); break;
+                case "condition": condition = parser.getIntValue(); break;
+                case "timestamp": timestamp = parser.getLongValue(); break;
+                default: parser.skipChildren(); break;
+            }
+        }
+        return new History(artifactId, artifactName, wizardId, wizardName, condition, new Date(timestamp));
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.hogwarts.data;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Bytes and wall time of one save or load: per file the JSON size, the size on disk
+ * (after compression) and the time from opening to closing the file.
+ */
+public class IoStats {
+    private final Map<String, long[]> files = new TreeMap<>(); // raw, disk, nanos
+    private final String codec;
+
+    IoStats(String codec) {
+        this.codec = codec;
+    }
+
+    synchronized void record(String file, long rawBytes, long diskBytes, long nanos) {
+        long[] f = files.computeIfAbsent(file, k -> new long[3]);
+        f[0] += rawBytes;
+        f[1] += diskBytes;
+        f[2] += nanos;
+    }
+
+    public String getCodec() { return codec; }
+
+    public synchronized long getRawBytes() { return sum(0); }
+
+    public synchronized long getDiskBytes() { return sum(1); }
+
+    // Sum over the files; files written in parallel (shards) overlap, so this can exceed the wall time
+    public synchronized long getFileMillis() { return sum(2) / 1_000_000; }
+
+    private long sum(int column) {
+        long total = 0;
+        for (long[] f : files.values()) total += f[column];
+        return total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, long[]> e : files.entrySet()) {
+            long[] f = e.getValue();
+            sb.append(String.format("  %-28s json=%,d disk=%,d (%.1f%%) %d ms%n",
+                    e.getKey(), f[0], f[1], f[0] == 0 ? 100.0 : 100.0 * f[1] / f[0], f[2] / 1_000_000));
+        }
+        sb.append(String.format("  total [%s] json=%,d disk=%,d %d ms", codec, getRawBytes(), getDiskBytes(), getFileMillis()));
+        return sb.toString();
+    }
+}
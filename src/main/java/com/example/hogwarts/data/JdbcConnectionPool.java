@@ -0,0 +1,86 @@
+package com.example.hogwarts.data;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed-size pool of JDBC connections, opened on demand. A borrower waits up to
+ * BORROW_TIMEOUT_MS for a free one; connections come back with auto-commit on, and one that
+ * failed its validity check is replaced instead of handed out again.
+ */
+final class JdbcConnectionPool {
+    private static final long BORROW_TIMEOUT_MS = 10_000;
+    private static final int VALID_TIMEOUT_S = 2;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int size;
+    private final Semaphore permits;
+    private final ConcurrentLinkedQueue<Connection> idle = new ConcurrentLinkedQueue<>();
+
+    JdbcConnectionPool(String url, String user, String password, int size) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.size = Math.max(1, size);
+        this.permits = new Semaphore(this.size, true);
+    }
+
+    Connection borrow() throws SQLException {
+        try {
+            if (!permits.tryAcquire(BORROW_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("No free connection after " + BORROW_TIMEOUT_MS + " ms (pool size " + size + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        try {
+            Connection c;
+            while ((c = idle.poll()) != null) {
+                if (c.isValid(VALID_TIMEOUT_S)) return c;
+                closeQuietly(c);
+            }
+            return DriverManager.getConnection(url, user, password);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // Rolls back whatever the borrower left open, so the next one starts clean
+    void release(Connection c) {
+        try {
+            if (!c.getAutoCommit()) {
+                c.rollback();
+                c.setAutoCommit(true);
+            }
+            idle.offer(c);
+        } catch (SQLException e) {
+            closeQuietly(c);
+        } finally {
+            permits.release();
+        }
+    }
+
+    int active() {
+        return size - permits.availablePermits();
+    }
+
+    int idle() {
+        return idle.size();
+    }
+
+    private static void closeQuietly(Connection c) {
+        try {
+            c.close();
+        } catch (SQLException e) {
+            // already broken
+        }
+    }
+}
@@ -0,0 +1,435 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.Artifact;
+import com.example.hogwarts.model.History;
+import com.example.hogwarts.model.Wizard;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Database backend (hogwarts.persist.backend=jdbc), by default an embedded H2 file in the data
+ * directory. Tables: wizards, artifacts (owner_id null when unassigned) and history, indexed
+ * by (artifact_id, transferred_at); archived history stays in the archive segments.
+ *
+ * A save runs in one transaction, so the database always holds a whole snapshot. It only
+ * writes the rows that differ from what the database holds: the content hash of every saved
+ * artifact and history list is kept from the last load or save, and changed rows go out as
+ * prepared-statement batches. Loads read every table in keyset pages (WHERE id > last ORDER
+ * BY id), artifacts and history in parallel on their own pooled connections.
+ */
+final class JdbcPersistence implements PersistenceBackend {
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS store_info (name VARCHAR(64) PRIMARY KEY, info_value VARCHAR(255))",
+            "CREATE TABLE IF NOT EXISTS wizards (id INT PRIMARY KEY, name VARCHAR NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS artifacts (id INT PRIMARY KEY, name VARCHAR NOT NULL, description VARCHAR NOT NULL,"
+                    + " item_condition INT NOT NULL, owner_id INT)",
+            // id keeps the order of each artifact's list; transferred_at is epoch millis
+            "CREATE TABLE IF NOT EXISTS history (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,"
+                    + " artifact_id INT NOT NULL, artifact_name VARCHAR, wizard_id INT NOT NULL, wizard_name VARCHAR,"
+                    + " item_condition INT NOT NULL, transferred_at BIGINT NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS history_artifact_time ON history (artifact_id, transferred_at)"
+    };
+    private static final String SAVED_AT = "savedAt";
+
+    private static final String UPSERT_WIZARD = upsert("wizards", "id INT", "name VARCHAR");
+    private static final String DELETE_WIZARD = "DELETE FROM wizards WHERE id = ?";
+    private static final String UPSERT_ARTIFACT = upsert("artifacts", "id INT", "name VARCHAR", "description VARCHAR",
+            "item_condition INT", "owner_id INT");
+    private static final String DELETE_ARTIFACT = "DELETE FROM artifacts WHERE id = ?";
+    private static final String DELETE_HISTORY = "DELETE FROM history WHERE artifact_id = ?";
+    private static final String INSERT_HISTORY = "INSERT INTO history (artifact_id, artifact_name, wizard_id, wizard_name,"
+            + " item_condition, transferred_at) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String UPSERT_INFO = upsert("store_info", "name VARCHAR", "info_value VARCHAR");
+
+    private static final String PAGE_WIZARDS = "SELECT id, name FROM wizards WHERE id > ? ORDER BY id FETCH FIRST ? ROWS ONLY";
+    private static final String PAGE_ARTIFACTS = "SELECT id, name, description, item_condition, owner_id FROM artifacts"
+            + " WHERE id > ? ORDER BY id FETCH FIRST ? ROWS ONLY";
+    private static final String PAGE_HISTORY = "SELECT id, artifact_id, artifact_name, wizard_id, wizard_name, item_condition,"
+            + " transferred_at FROM history WHERE id > ? ORDER BY id FETCH FIRST ? ROWS ONLY";
+
+    private final DataStore store;
+    private final JdbcConnectionPool pool;
+    private final int batchSize;
+    private final int pageSize;
+    private volatile boolean schemaReady;
+
+    // What the database holds, as of the last load or save; guarded by this
+    private Map<Integer, String> savedWizards = new HashMap<>();
+    private Map<Integer, Long> savedArtifacts = new HashMap<>();
+    private Map<Integer, Long> savedHistory = new HashMap<>();
+    private volatile long lastSaveRows;
+
+    JdbcPersistence(DataStore store, JdbcConnectionPool pool, int batchSize, int pageSize) {
+        this.store = store;
+        this.pool = pool;
+        this.batchSize = Math.max(1, batchSize);
+        this.pageSize = Math.max(1, pageSize);
+        StoreMetrics metrics = StoreMetrics.getInstance();
+        metrics.registerGauge("jdbc.pool.active", pool::active);
+        metrics.registerGauge("jdbc.pool.idle", pool::idle);
+        metrics.registerGauge("jdbc.lastSave.rows", () -> lastSaveRows);
+    }
+
+    @Override
+    public String name() {
+        return "jdbc";
+    }
+
+    @Override
+    public boolean hasData() throws IOException {
+        try (Pooled c = borrow();
+             PreparedStatement ps = c.connection.prepareStatement("SELECT info_value FROM store_info WHERE name = ?")) {
+            ps.setString(1, SAVED_AT);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            throw new IOException("Cannot read " + StoreConfig.JDBC_URL, e);
+        }
+    }
+
+    @Override
+    public synchronized void load(IoStats stats) throws IOException {
+        try {
+            trace("load", "wizards", stats, this::loadWizards);
+            ExecutorService loaders = Executors.newFixedThreadPool(2, r -> {
+                Thread t = new Thread(r, "jdbc-load");
+                t.setDaemon(true);
+                return t;
+            });
+            try {
+                Future<Long> artifacts = loaders.submit(() -> trace("load", "artifacts", stats, this::loadArtifacts));
+                Future<Long> history = loaders.submit(() -> trace("load", "transfers", stats, this::loadHistory));
+                artifacts.get();
+                history.get();
+            } finally {
+                loaders.shutdown();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException("JDBC load failed", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading", e);
+        } catch (SQLException e) {
+            throw new IOException("JDBC load failed", e);
+        }
+    }
+
+    @Override
+    public synchronized void save(StoreSnapshot snapshot, IoStats stats) throws IOException {
+        // The snapshot's content, hashed; only the changed part is kept as rows to write
+        Map<Integer, String> wizardsNow = new HashMap<>();
+        for (StoreSnapshot.WizardState w : snapshot.wizards()) {
+            wizardsNow.put(w.getId(), w.getName());
+        }
+        Map<Integer, Long> artifactsNow = new HashMap<>();
+        List<StoreSnapshot.ArtifactState> changedArtifacts = new ArrayList<>();
+        snapshot.forEachArtifact(a -> {
+            long hash = ContentHashIndex.hash(a.getName(), a.getDescription(), a.getCondition(), a.getOwnerId());
+            artifactsNow.put(a.getId(), hash);
+            if (!Long.valueOf(hash).equals(savedArtifacts.get(a.getId()))) changedArtifacts.add(a);
+        });
+        Map<Integer, Long> historyNow = new HashMap<>();
+        Map<Integer, List<History>> changedHistory = new HashMap<>();
+        snapshot.forEachHistoryList((artifactId, entries) -> {
+            long hash = historyHash(entries);
+            historyNow.put(artifactId, hash);
+            if (!Long.valueOf(hash).equals(savedHistory.get(artifactId))) changedHistory.put(artifactId, entries);
+        });
+        for (Integer id : savedHistory.keySet()) {
+            if (!historyNow.containsKey(id)) changedHistory.put(id, List.of());
+        }
+
+        try (Pooled c = borrow()) {
+            Connection conn = c.connection;
+            conn.setAutoCommit(false);
+            long rows = trace("save", "wizards", stats, () -> saveWizards(conn, wizardsNow));
+            rows += trace("save", "artifacts", stats, () -> saveArtifacts(conn, changedArtifacts, artifactsNow));
+            rows += trace("save", "transfers", stats, () -> saveHistory(conn, changedHistory));
+            try (PreparedStatement ps = conn.prepareStatement(UPSERT_INFO)) {
+                ps.setString(1, SAVED_AT);
+                ps.setString(2, Long.toString(System.currentTimeMillis()));
+                ps.executeUpdate();
+            }
+            conn.commit();
+            savedWizards = wizardsNow;
+            savedArtifacts = artifactsNow;
+            savedHistory = historyNow;
+            lastSaveRows = rows;
+        } catch (SQLException e) {
+            // The pool rolls the transaction back; the saved hashes still describe the database
+            throw new IOException("JDBC save failed", e);
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // Load, in keyset pages
+    //----------------------------------------------------------------------
+
+    private long loadWizards() throws SQLException {
+        Map<Integer, String> loaded = new HashMap<>();
+        forEachPage(PAGE_WIZARDS, rs -> {
+            Wizard w = new Wizard(rs.getString(2));
+            w.setId(rs.getInt(1));
+            store.putLoadedWizard(w);
+            loaded.put(w.getId(), w.getName());
+            return w.getId();
+        });
+        savedWizards = loaded;
+        return loaded.size();
+    }
+
+    private long loadArtifacts() throws SQLException {
+        Map<Integer, Long> loaded = new HashMap<>();
+        forEachPage(PAGE_ARTIFACTS, rs -> {
+            Artifact a = new Artifact(rs.getString(2), rs.getString(3));
+            a.setId(rs.getInt(1));
+            a.setCondition(rs.getInt(4));
+            int ownerId = rs.getInt(5);
+            if (rs.wasNull()) ownerId = ArtifactJson.NO_OWNER;
+            store.putLoadedArtifact(new ArtifactJson.Loaded(a, ownerId));
+            loaded.put(a.getId(), ContentHashIndex.hash(a.getName(), a.getDescription(), a.getCondition(), ownerId));
+            return a.getId();
+        });
+        savedArtifacts = loaded;
+        return loaded.size();
+    }
+
+    private long loadHistory() throws SQLException {
+        Map<Integer, Long> loaded = new HashMap<>();
+        long[] entries = new long[1];
+        forEachPage(PAGE_HISTORY, rs -> {
+            History h = new History(rs.getInt(2), rs.getString(3), rs.getInt(4), rs.getString(5), rs.getInt(6),
+                    new Date(rs.getLong(7)));
+            store.addHistoryEntry(h.getArtifactId(), h);
+            loaded.merge(h.getArtifactId(), historyHash(HISTORY_SEED, h), (hash, ignored) -> historyHash(hash, h));
+            entries[0]++;
+            return rs.getLong(1);
+        });
+        savedHistory = loaded;
+        return entries[0];
+    }
+
+    // Reads one row and returns its key, the lower bound of the next page
+    private interface RowReader {
+        long read(ResultSet rs) throws SQLException;
+    }
+
+    private void forEachPage(String sql, RowReader reader) throws SQLException {
+        try (Pooled c = borrow(); PreparedStatement ps = c.connection.prepareStatement(sql)) {
+            long last = Long.MIN_VALUE;
+            int rows;
+            do {
+                ps.setLong(1, last);
+                ps.setInt(2, pageSize);
+                rows = 0;
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        last = reader.read(rs);
+                        rows++;
+                    }
+                }
+            } while (rows == pageSize);
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // Save, in batches
+    //----------------------------------------------------------------------
+
+    private long saveWizards(Connection conn, Map<Integer, String> wizardsNow) throws SQLException {
+        try (Batch upserts = new Batch(conn, UPSERT_WIZARD); Batch deletes = new Batch(conn, DELETE_WIZARD)) {
+            for (Map.Entry<Integer, String> w : wizardsNow.entrySet()) {
+                if (w.getValue().equals(savedWizards.get(w.getKey()))) continue;
+                upserts.ps.setInt(1, w.getKey());
+                upserts.ps.setString(2, w.getValue());
+                upserts.add();
+            }
+            for (Integer id : savedWizards.keySet()) {
+                if (wizardsNow.containsKey(id)) continue;
+                deletes.ps.setInt(1, id);
+                deletes.add();
+            }
+            return upserts.rows + deletes.rows;
+        }
+    }
+
+    private long saveArtifacts(Connection conn, List<StoreSnapshot.ArtifactState> changed, Map<Integer, Long> artifactsNow)
+            throws SQLException {
+        try (Batch upserts = new Batch(conn, UPSERT_ARTIFACT); Batch deletes = new Batch(conn, DELETE_ARTIFACT)) {
+            for (StoreSnapshot.ArtifactState a : changed) {
+                upserts.ps.setInt(1, a.getId());
+                upserts.ps.setString(2, a.getName());
+                upserts.ps.setString(3, a.getDescription());
+                upserts.ps.setInt(4, a.getCondition());
+                if (a.hasOwner()) upserts.ps.setInt(5, a.getOwnerId()); else upserts.ps.setNull(5, Types.INTEGER);
+                upserts.add();
+            }
+            for (Integer id : savedArtifacts.keySet()) {
+                if (artifactsNow.containsKey(id)) continue;
+                deletes.ps.setInt(1, id);
+                deletes.add();
+            }
+            return upserts.rows + deletes.rows;
+        }
+    }
+
+    // A changed list is replaced as a whole; the (artifact_id, transferred_at) index finds its rows
+    private long saveHistory(Connection conn, Map<Integer, List<History>> changed) throws SQLException {
+        try (Batch deletes = new Batch(conn, DELETE_HISTORY); Batch inserts = new Batch(conn, INSERT_HISTORY)) {
+            for (Integer artifactId : changed.keySet()) {
+                deletes.ps.setInt(1, artifactId);
+                deletes.add();
+            }
+            deletes.flush(); // before any insert of the same artifact
+            for (List<History> entries : changed.values()) {
+                for (History h : entries) {
+                    inserts.ps.setInt(1, h.getArtifactId());
+                    inserts.ps.setString(2, h.getArtifactName());
+                    inserts.ps.setInt(3, h.getWizardId());
+                    inserts.ps.setString(4, h.getWizardName());
+                    inserts.ps.setInt(5, h.getCondition());
+                    inserts.ps.setLong(6, h.getTimestamp().getTime());
+                    inserts.add();
+                }
+            }
+            return deletes.rows + inserts.rows;
+        }
+    }
+
+    // A prepared statement that sends its rows every batchSize additions and on close
+    private final class Batch implements AutoCloseable {
+        final PreparedStatement ps;
+        private int pending;
+        long rows;
+
+        Batch(Connection conn, String sql) throws SQLException {
+            this.ps = conn.prepareStatement(sql);
+        }
+
+        void add() throws SQLException {
+            ps.addBatch();
+            rows++;
+            if (++pending == batchSize) flush();
+        }
+
+        void flush() throws SQLException {
+            if (pending == 0) return;
+            ps.executeBatch();
+            pending = 0;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                flush();
+            } finally {
+                ps.close();
+            }
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // Helpers
+    //----------------------------------------------------------------------
+
+    /**
+     * Standard SQL MERGE that inserts the row or updates the one with the same key (the first
+     * column); columns are "name TYPE", bound in that order. H2's shorter MERGE ... KEY and
+     * PostgreSQL's INSERT ... ON CONFLICT are dialects; this form runs on both (PostgreSQL 15+).
+     * The casts give the parameters a type, which VALUES alone does not.
+     */
+    private static String upsert(String table, String... columns) {
+        List<String> names = new ArrayList<>();
+        List<String> params = new ArrayList<>();
+        List<String> updates = new ArrayList<>();
+        for (String column : columns) {
+            String[] parts = column.split(" ");
+            names.add(parts[0]);
+            params.add("CAST(? AS " + parts[1] + ")");
+            if (!names.get(0).equals(parts[0])) updates.add(parts[0] + " = s." + parts[0]);
+        }
+        String key = names.get(0);
+        return "MERGE INTO " + table + " t USING (VALUES (" + String.join(", ", params) + ")) s ("
+                + String.join(", ", names) + ") ON t." + key + " = s." + key
+                + " WHEN MATCHED THEN UPDATE SET " + String.join(", ", updates)
+                + " WHEN NOT MATCHED THEN INSERT (" + String.join(", ", names) + ") VALUES (s."
+                + String.join(", s.", names) + ")";
+    }
+
+    private static final long HISTORY_SEED = 0x9e3779b97f4a7c15L;
+
+    // Order-sensitive hash of a history list, folded entry by entry (so the load can build it row by row)
+    private static long historyHash(List<History> entries) {
+        long hash = HISTORY_SEED;
+        for (History h : entries) {
+            hash = historyHash(hash, h);
+        }
+        return hash;
+    }
+
+    private static long historyHash(long hash, History h) {
+        long entry = ContentHashIndex.hash(Objects.toString(h.getArtifactName(), ""), Objects.toString(h.getWizardName(), ""),
+                h.getCondition(), h.getWizardId());
+        return 31 * hash + (entry ^ h.getTimestamp().getTime());
+    }
+
+    private interface SqlStep {
+        long run() throws SQLException;
+    }
+
+    // Like DataStore.tracePhase; the wall time is recorded per table, there are no file bytes
+    private static long trace(String operation, String table, IoStats stats, SqlStep step) throws SQLException {
+        PersistenceEvent event = PersistenceEvent.start(operation, table, stats);
+        long start = System.nanoTime();
+        long rows = 0;
+        try {
+            rows = step.run();
+            return rows;
+        } finally {
+            stats.record("table " + table, 0, 0, System.nanoTime() - start);
+            event.finish(rows);
+        }
+    }
+
+    // A connection from the pool with the schema in place, returned on close
+    private final class Pooled implements AutoCloseable {
+        final Connection connection;
+
+        Pooled(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public void close() {
+            pool.release(connection);
+        }
+    }
+
+    private Pooled borrow() throws SQLException {
+        Pooled c = new Pooled(pool.borrow());
+        if (!schemaReady) {
+            synchronized (SCHEMA) {
+                if (!schemaReady) {
+                    try (Statement st = c.connection.createStatement()) {
+                        for (String ddl : SCHEMA) st.execute(ddl);
+                    } catch (SQLException e) {
+                        c.close();
+                        throw e;
+                    }
+                    schemaReady = true;
+                }
+            }
+        }
+        return c;
+    }
+}
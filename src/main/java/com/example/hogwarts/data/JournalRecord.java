@@ -0,0 +1,12 @@
+package com.example.hogwarts.data;
+
+// One store change in the replication journal; sequence numbers are contiguous from 1 per primary epoch
+final class JournalRecord {
+    final long seq;
+    final StoreEvent event;
+
+    JournalRecord(long seq, StoreEvent event) {
+        this.seq = seq;
+        this.event = event;
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.Artifact;
+import com.example.hogwarts.model.Role;
+import com.example.hogwarts.model.User;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Automatic wear and maintenance of artifacts. Every hogwarts.maintenance.intervalSeconds a
+ * decay sweep lowers the condition of artifacts in use (owned) and, if configured, of stored
+ * ones; then the worst artifacts below hogwarts.maintenance.repairBelow are repaired, worst
+ * first, up to a budget per run. Candidates come from the store's ConditionQueue, so a repair
+ * run reads only the artifacts it repairs. Both run in batches on a small pool of low-priority
+ * threads; each change is an ordinary store mutation under the artifact's lock (events, undo
+ * images, replication, change capture). Repairs are audited one by one; a sweep, which touches
+ * every artifact, writes one summary entry with the number of artifacts it changed.
+ */
+public class MaintenanceScheduler {
+    // Artifacts per fork-join task
+    private static final int BATCH = 4096;
+    private static final User MAINTENANCE = new User("maintenance", null, Role.ADMIN);
+
+    private final DataStore store;
+    private final AuditTrail audit = AuditTrail.getInstance();
+    private final ForkJoinPool workers;
+    private final ScheduledExecutorService timer;
+    private final Object runLock = new Object(); // one sweep or repair run at a time
+
+    private final LongAdder decayed = new LongAdder();
+    private final LongAdder repaired = new LongAdder();
+    private final LongAdder failedRuns = new LongAdder();
+    private volatile long lastSweepMillis = -1;
+    private volatile long lastRepairMillis = -1;
+
+    public MaintenanceScheduler(DataStore store) {
+        this.store = store;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = new ForkJoinPool(Math.max(1, StoreConfig.MAINTENANCE_THREADS), pool -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName("maintenance-" + threadNumber.incrementAndGet());
+            t.setPriority(Thread.MIN_PRIORITY); // the UI and user actions come first
+            return t;
+        }, null, false);
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "maintenance-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+
+        StoreMetrics metrics = StoreMetrics.getInstance();
+        metrics.registerGauge("maintenance.decayed", decayed::sum);
+        metrics.registerGauge("maintenance.repaired", repaired::sum);
+        metrics.registerGauge("maintenance.lastSweepMillis", () -> lastSweepMillis);
+        metrics.registerGauge("maintenance.lastRepairMillis", () -> lastRepairMillis);
+        metrics.registerGauge("maintenance.failedRuns", failedRuns::sum);
+        metrics.registerGauge("maintenance.belowThreshold",
+                () -> store.countArtifactsBelowCondition(StoreConfig.MAINTENANCE_REPAIR_BELOW));
+    }
+
+    // Runs a sweep and a repair run every interval, the first one an interval from now
+    public void start() {
+        long interval = Math.max(1, StoreConfig.MAINTENANCE_INTERVAL_SECONDS);
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                runDecaySweep();
+                runRepairs();
+            } catch (RuntimeException e) {
+                // Keep the schedule running; the next interval tries again
+                failedRuns.increment();
+                System.err.println("maintenance: run failed (" + failedRuns.sum() + " so far): " + e);
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Lowers the condition of every artifact by the configured wear: DECAY_IN_USE points if it
+     * has an owner, DECAY_STORED if not. Returns the number of artifacts changed.
+     */
+    public int runDecaySweep() {
+        int inUse = StoreConfig.MAINTENANCE_DECAY_IN_USE;
+        int stored = StoreConfig.MAINTENANCE_DECAY_STORED;
+        if (inUse <= 0 && stored <= 0) return 0;
+        synchronized (runLock) {
+            long start = System.nanoTime();
+            // Ids of the current content; artifacts at 0 cannot decay any further
+            int[] ids = snapshotIds(store.conditionQueue(), 1);
+            AtomicInteger changed = new AtomicInteger();
+            workers.invoke(new Batch(ids, 0, ids.length, id -> {
+                Artifact artifact = store.findArtifactById(id);
+                if (artifact == null) return;
+                int amount = artifact.hasOwner() ? inUse : stored;
+                if (amount <= 0) return;
+                apply(id, null, c -> c - amount, decayed, changed);
+            }));
+            if (changed.get() > 0) audit.recordSummary(MAINTENANCE, "decay", changed.get());
+            lastSweepMillis = (System.nanoTime() - start) / 1_000_000;
+            return changed.get();
+        }
+    }
+
+    /**
+     * Repairs up to REPAIR_BUDGET artifacts below REPAIR_BELOW to REPAIR_TO, worst first.
+     * Returns the number of artifacts repaired.
+     */
+    public int runRepairs() {
+        int below = StoreConfig.MAINTENANCE_REPAIR_BELOW;
+        int repairTo = StoreConfig.MAINTENANCE_REPAIR_TO;
+        synchronized (runLock) {
+            long start = System.nanoTime();
+            List<Integer> worst = store.conditionQueue().lowest(below, StoreConfig.MAINTENANCE_REPAIR_BUDGET);
+            int[] ids = new int[worst.size()];
+            for (int i = 0; i < ids.length; i++) ids[i] = worst.get(i);
+            AtomicInteger changed = new AtomicInteger();
+            // Re-checked under the lock: a user may have repaired it in the meantime
+            workers.invoke(new Batch(ids, 0, ids.length,
+                    id -> apply(id, "autoRepair", c -> c < below ? Math.max(c, repairTo) : c, repaired, changed)));
+            lastRepairMillis = (System.nanoTime() - start) / 1_000_000;
+            return changed.get();
+        }
+    }
+
+    public void close() {
+        timer.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    // operation is the audit name of the change, or null when the caller writes a summary instead
+    private void apply(int id, String operation, IntUnaryOperator change, LongAdder total, AtomicInteger changed) {
+        int[] after = new int[1];
+        int before = store.updateArtifactCondition(id, c -> after[0] = Math.max(0, Math.min(100, change.applyAsInt(c))));
+        if (before < 0 || before == after[0]) return;
+        if (operation != null) audit.record(MAINTENANCE, operation, id, -1, before, after[0]);
+        total.increment();
+        changed.incrementAndGet();
+    }
+
+    private static int[] snapshotIds(ConditionQueue queue, int minCondition) {
+        int[][] ids = { new int[Math.max(16, queue.size())] };
+        int[] n = new int[1];
+        queue.forEachFrom(minCondition, id -> {
+            if (n[0] == ids[0].length) ids[0] = Arrays.copyOf(ids[0], n[0] * 2);
+            ids[0][n[0]++] = id;
+        });
+        return Arrays.copyOf(ids[0], n[0]);
+    }
+
+    // Splits ids[from, to) until a task holds at most BATCH artifacts
+    private static final class Batch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] ids;
+        private final int from;
+        private final int to;
+        private final transient IntConsumer action; // batches are never serialized
+
+        Batch(int[] ids, int from, int to, IntConsumer action) {
+            this.ids = ids;
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH) {
+                for (int i = from; i < to; i++) action.accept(ids[i]);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Batch(ids, from, mid, action), new Batch(ids, mid, to, action));
+        }
+    }
+}
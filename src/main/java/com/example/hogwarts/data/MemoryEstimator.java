@@ -0,0 +1,93 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.Artifact;
+import com.example.hogwarts.model.History;
+import com.example.hogwarts.model.Wizard;
+
+/**
+ * Shallow-size arithmetic for the HotSpot object layout (8-byte alignment; compressed
+ * references and class pointers below a 32 GB heap). Good to a few percent for the plain
+ * data classes of this app; it does not walk object graphs.
+ */
+final class MemoryEstimator {
+    static final boolean COMPRESSED = Runtime.getRuntime().maxMemory() < (32L << 30);
+    static final int REF = COMPRESSED ? 4 : 8;
+    static final int HEADER = COMPRESSED ? 12 : 16;
+    static final int ARRAY_HEADER = COMPRESSED ? 16 : 24;
+
+    private MemoryEstimator() {
+    }
+
+    static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    static long object(int refs, int primitiveBytes) {
+        return align(HEADER + (long) refs * REF + primitiveBytes);
+    }
+
+    static long refArray(long length) {
+        return align(ARRAY_HEADER + length * REF);
+    }
+
+    static long intArray(long length) {
+        return align(ARRAY_HEADER + length * 4);
+    }
+
+    // String object (hash, coder, hashIsZero, value) plus its Latin-1 or UTF-16 byte array
+    static long string(String s) {
+        if (s == null) return 0;
+        boolean latin1 = true;
+        for (int i = 0; i < s.length() && latin1; i++) {
+            latin1 = s.charAt(i) <= 0xFF;
+        }
+        return object(1, 6) + align(ARRAY_HEADER + (long) s.length() * (latin1 ? 1 : 2));
+    }
+
+    // Integer keys outside the Integer cache are boxed per entry
+    static long boxedInt(int value) {
+        return value >= -128 && value <= 127 ? 0 : object(0, 4);
+    }
+
+    // ConcurrentHashMap without keys and values: the map, its table and one node per entry
+    static long concurrentMap(int size) {
+        int table = 16;
+        while (table * 3L / 4 < size) table <<= 1;
+        return object(6, 20) + refArray(table) + (long) size * object(3, 4);
+    }
+
+    // HashMap without keys and values
+    static long hashMap(int size) {
+        int table = 16;
+        while (table * 3L / 4 < size) table <<= 1;
+        return object(4, 16) + refArray(table) + (long) size * object(3, 4);
+    }
+
+    // ArrayList grown one element at a time (10, then x1.5)
+    static long arrayList(int size) {
+        int capacity = size == 0 ? 0 : 10;
+        while (capacity < size) capacity += capacity >> 1;
+        return object(1, 8) + (capacity == 0 ? 0 : refArray(capacity));
+    }
+
+    // CopyOnWriteArrayList: the list, its lock object and an exactly sized array
+    static long copyOnWriteList(int size) {
+        return object(2, 0) + object(0, 0) + refArray(size);
+    }
+
+    static long artifact(Artifact a) {
+        return object(3, 8) + string(a.getName()) + string(a.getDescription());
+    }
+
+    // Without the artifact list, which is accounted separately
+    static long wizard(Wizard w) {
+        return object(2, 4) + string(w.getName());
+    }
+
+    // History object and its Date; names are counted only when not shared with the live objects
+    static long history(History h, boolean artifactNameShared, boolean wizardNameShared) {
+        return object(3, 12) + object(1, 8)
+                + (artifactNameShared ? 0 : string(h.getArtifactName()))
+                + (wizardNameShared ? 0 : string(h.getWizardName()));
+    }
+}
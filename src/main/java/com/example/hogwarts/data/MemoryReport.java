@@ -0,0 +1,86 @@
+package com.example.hogwarts.data;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Estimated retained bytes per structure of the data layer (plus the UI row caches that
+ * registered a memory.ui.* gauge; ui.artifact* ones count per artifact), and a projection of
+ * the heap needed for a catalog of a given size. Per-item costs are derived from the current content, so project from a store
+ * that holds representative data.
+ */
+public class MemoryReport {
+    // Structures whose size grows with the number of artifacts / history entries
+    private static final String[] PER_ARTIFACT = { "data.artifacts", "data.wizardArtifactLists", "data.sortIndex",
+            "data.contentHashIndex" };
+    private static final String[] PER_HISTORY = { "data.history", "data.ownershipTimeline" };
+
+    private final Map<String, Long> bytes = new LinkedHashMap<>();
+    private final int wizards;
+    private final int artifacts;
+    private final long historyEntries;
+
+    MemoryReport(int wizards, int artifacts, long historyEntries) {
+        this.wizards = wizards;
+        this.artifacts = artifacts;
+        this.historyEntries = historyEntries;
+    }
+
+    void put(String structure, long estimate) {
+        bytes.put(structure, estimate);
+    }
+
+    public Map<String, Long> getBytes() { return Collections.unmodifiableMap(bytes); }
+    public int getWizards() { return wizards; }
+    public int getArtifacts() { return artifacts; }
+    public long getHistoryEntries() { return historyEntries; }
+
+    public long getTotalBytes() {
+        long total = 0;
+        for (long b : bytes.values()) total += b;
+        return total;
+    }
+
+    public long getPerArtifactBytes() {
+        return artifacts == 0 ? 0 : sum(PER_ARTIFACT, "ui.artifact") / artifacts;
+    }
+
+    public long getPerHistoryBytes() {
+        return historyEntries == 0 ? 0 : sum(PER_HISTORY, null) / historyEntries;
+    }
+
+    // Everything that does not scale with artifacts or history (wizards, users, small fixed costs)
+    public long getFixedBytes() {
+        return getTotalBytes() - sum(PER_ARTIFACT, "ui.artifact") - sum(PER_HISTORY, null);
+    }
+
+    // Estimated live data for a catalog of the given size
+    public long projectBytes(long targetArtifacts, long targetHistoryEntries) {
+        return getFixedBytes() + getPerArtifactBytes() * targetArtifacts + getPerHistoryBytes() * targetHistoryEntries;
+    }
+
+    private long sum(String[] structures, String prefix) {
+        long total = 0;
+        for (String s : structures) total += bytes.getOrDefault(s, 0L);
+        if (prefix != null) {
+            for (Map.Entry<String, Long> e : bytes.entrySet()) {
+                if (e.getKey().startsWith(prefix)) total += e.getValue();
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d wizards, %d artifacts, %d history entries%n", wizards, artifacts, historyEntries));
+        for (Map.Entry<String, Long> e : bytes.entrySet()) {
+            sb.append(String.format("  %-26s %,14d bytes%n", e.getKey(), e.getValue()));
+        }
+        sb.append(String.format("  %-26s %,14d bytes%n", "total", getTotalBytes()));
+        sb.append(String.format("  per artifact %,d bytes, per history entry %,d bytes, fixed %,d bytes",
+                getPerArtifactBytes(), getPerHistoryBytes(), getFixedBytes()));
+        return sb.toString();
+    }
+}
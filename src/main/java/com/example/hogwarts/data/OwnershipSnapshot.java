@@ -0,0 +1,75 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.History;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Read-only ownership state rebuilt for a point in time.
+ * Artifacts without any transfer before that time are reported as unowned with an unknown condition;
+ * artifacts deleted before that time as deleted and unowned.
+ */
+public class OwnershipSnapshot {
+    private final Date asOf;
+    private final Map<Integer, History> lastTransfer;
+    private final int replayedEvents;
+
+    OwnershipSnapshot(Date asOf, Map<Integer, History> lastTransfer, int replayedEvents) {
+        this.asOf = asOf;
+        this.lastTransfer = lastTransfer;
+        this.replayedEvents = replayedEvents;
+    }
+
+    public Date getAsOf() {
+        return asOf;
+    }
+
+    // "--" when the artifact had no owner at that time
+    public String getOwnerName(int artifactId) {
+        History h = lastTransfer.get(artifactId);
+        return h == null || h.getWizardName() == null || h.isDeletion() ? "--" : h.getWizardName();
+    }
+
+    // Deleted at or before that time
+    public boolean isDeleted(int artifactId) {
+        History h = lastTransfer.get(artifactId);
+        return h != null && h.isDeletion();
+    }
+
+    // Id and name (as of its last transfer) of every artifact with a transfer by then that was not deleted
+    // by then, including those deleted since
+    public void forEachArtifact(BiConsumer<Integer, String> action) {
+        for (History h : lastTransfer.values()) {
+            if (!h.isDeletion()) action.accept(h.getArtifactId(), h.getArtifactName());
+        }
+    }
+
+    // History.NO_WIZARD when unowned, or when the transfer predates recorded wizard ids
+    public int getOwnerId(int artifactId) {
+        History h = lastTransfer.get(artifactId);
+        return h == null ? History.NO_WIZARD : h.getWizardId();
+    }
+
+    // Condition recorded with the last transfer, or History.UNKNOWN_CONDITION
+    public int getCondition(int artifactId) {
+        History h = lastTransfer.get(artifactId);
+        return h == null ? History.UNKNOWN_CONDITION : h.getCondition();
+    }
+
+    // Wizard name -> ids of the artifacts it held at that time
+    public Map<String, List<Integer>> getOwnershipMap() {
+        Map<String, List<Integer>> result = new TreeMap<>();
+        for (History h : lastTransfer.values()) {
+            if (!h.isDeletion() && !"--".equals(h.getWizardName())) {
+                result.computeIfAbsent(h.getWizardName(), k -> new ArrayList<>()).add(h.getArtifactId());
+            }
+        }
+        return result;
+    }
+
+    // Number of events replayed after the checkpoint (useful to check checkpoint spacing)
+    public int getReplayedEvents() {
+        return replayedEvents;
+    }
+}
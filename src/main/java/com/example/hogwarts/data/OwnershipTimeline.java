@@ -0,0 +1,132 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.History;
+
+import java.util.*;
+
+/**
+ * Time-ordered index of every transfer, used to answer "who owned what at time T".
+ * Every CHECKPOINT_INTERVAL events a checkpoint records the last event of each artifact
+ * touched since the previous one (a delta, two sorted int arrays). Once the deltas since the
+ * last full checkpoint add up to the number of artifacts, the next checkpoint is full instead,
+ * so the checkpoints together stay in proportion to the events. A query starts from the
+ * nearest full checkpoint, applies the deltas after it and replays only the events up to T.
+ * Deletion markers are events too: an artifact deleted by T is reported as deleted, not as
+ * owned by whoever had it last.
+ */
+class OwnershipTimeline {
+    private static final int CHECKPOINT_INTERVAL = Integer.getInteger("hogwarts.asOf.checkpointInterval", 4096);
+
+    private final List<History> events = new ArrayList<>();
+    private final List<Checkpoint> checkpoints = new ArrayList<>();
+    // Last event index of every artifact seen so far
+    private final Map<Integer, Integer> lastEvent = new HashMap<>();
+    private long deltaEntriesSinceFull;
+
+    OwnershipTimeline(Collection<History> entries) {
+        List<History> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparing(History::getTimestamp));
+        for (History h : sorted) {
+            append(h);
+        }
+    }
+
+    // Adds a new event; callers only append events newer than the ones already indexed
+    void append(History h) {
+        events.add(h);
+        lastEvent.put(h.getArtifactId(), events.size() - 1);
+        if (events.size() % CHECKPOINT_INTERVAL == 0) {
+            addCheckpoint();
+        }
+    }
+
+    private void addCheckpoint() {
+        int from = checkpoints.isEmpty() ? 0 : checkpoints.get(checkpoints.size() - 1).eventCount;
+        Map<Integer, Integer> delta = new HashMap<>();
+        for (int i = from; i < events.size(); i++) {
+            delta.put(events.get(i).getArtifactId(), i);
+        }
+        deltaEntriesSinceFull += delta.size();
+        boolean full = checkpoints.isEmpty() || deltaEntriesSinceFull >= lastEvent.size();
+        checkpoints.add(new Checkpoint(events.size(), full ? lastEvent : delta, full));
+        if (full) deltaEntriesSinceFull = 0;
+    }
+
+    // The index itself; the History objects are shared with the hot lists and not counted here
+    long estimatedBytes() {
+        long bytes = MemoryEstimator.arrayList(events.size()) + MemoryEstimator.hashMap(lastEvent.size());
+        for (Map.Entry<Integer, Integer> e : lastEvent.entrySet()) {
+            bytes += MemoryEstimator.boxedInt(e.getKey()) + MemoryEstimator.boxedInt(e.getValue());
+        }
+        for (Checkpoint c : checkpoints) {
+            bytes += MemoryEstimator.object(2, 5) + 2 * MemoryEstimator.intArray(c.artifactIds.length);
+        }
+        return bytes;
+    }
+
+    long latestTimestamp() {
+        return events.isEmpty() ? Long.MIN_VALUE : events.get(events.size() - 1).getTimestamp().getTime();
+    }
+
+    OwnershipSnapshot asOf(Date when) {
+        long t = when.getTime();
+        int end = firstEventAfter(t);
+
+        // Nearest checkpoint that does not go past T, and the full one it builds on
+        int last = -1;
+        for (int i = checkpoints.size() - 1; i >= 0; i--) {
+            if (checkpoints.get(i).eventCount <= end) {
+                last = i;
+                break;
+            }
+        }
+        int first = last;
+        while (first > 0 && !checkpoints.get(first).full) first--;
+
+        Map<Integer, History> state = new HashMap<>();
+        int from = 0;
+        for (int c = first; c >= 0 && c <= last; c++) {
+            Checkpoint checkpoint = checkpoints.get(c);
+            for (int i = 0; i < checkpoint.artifactIds.length; i++) {
+                state.put(checkpoint.artifactIds[i], events.get(checkpoint.eventIndexes[i]));
+            }
+            from = checkpoint.eventCount;
+        }
+        for (int i = from; i < end; i++) {
+            History h = events.get(i);
+            state.put(h.getArtifactId(), h);
+        }
+        return new OwnershipSnapshot(when, state, end - from);
+    }
+
+    // Binary search: number of events with timestamp <= t
+    private int firstEventAfter(long t) {
+        int lo = 0, hi = events.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (events.get(mid).getTimestamp().getTime() <= t) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static final class Checkpoint {
+        final int eventCount;       // events[0, eventCount) are folded into this checkpoint
+        final boolean full;         // every artifact; otherwise only those touched since the previous checkpoint
+        final int[] artifactIds;    // sorted
+        final int[] eventIndexes;   // last event of each artifact
+
+        Checkpoint(int eventCount, Map<Integer, Integer> lastEvent, boolean full) {
+            this.eventCount = eventCount;
+            this.full = full;
+            this.artifactIds = lastEvent.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            this.eventIndexes = new int[artifactIds.length];
+            for (int i = 0; i < artifactIds.length; i++) {
+                eventIndexes[i] = lastEvent.get(artifactIds[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.Artifact;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Artifacts kept as records in a paged B+tree file (hogwarts.engine=paged), so the catalog
+ * can outgrow the heap. Only the page cache (hogwarts.engine.cacheMb) and the Artifact
+ * objects somebody still references stay in memory: an instance that is reachable (from a
+ * wizard's list, an open dialog, a command) is handed out again for its id, so the in-place
+ * mutations of DataStore and the identity checks elsewhere keep working. Everything else
+ * is decoded from the cached pages on demand.
+ */
+final class PagedArtifactTable implements ArtifactTable {
+    private static final int SCAN_BATCH = 256;
+
+    private final BPlusTree tree;
+    // Identity map of the materialized artifacts; entries go away once the artifact is unreachable
+    private final ConcurrentHashMap<Integer, LiveRef> live = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Artifact> collected = new ReferenceQueue<>();
+    private final Collection<Artifact> values = new Values();
+
+    PagedArtifactTable(File file, long cacheBytes) throws IOException {
+        this.tree = new BPlusTree(file, cacheBytes);
+    }
+
+    // True when the file held the artifacts of the last clean save
+    boolean isRestored() {
+        return tree.isRestored();
+    }
+
+    // Highest artifact id in the file, -1 when empty
+    int maxId() {
+        return tree.lastKey();
+    }
+
+    // Materializes every owned artifact and hands it to the loader with its owner id
+    void forEachOwned(ObjIntConsumer<Artifact> action) {
+        int[] keys = new int[SCAN_BATCH];
+        byte[][] records = new byte[SCAN_BATCH][];
+        long from = Long.MIN_VALUE;
+        int found;
+        do {
+            found = tree.scan(from, keys, records);
+            for (int i = 0; i < found; i++) {
+                int ownerId = ByteBuffer.wrap(records[i]).getInt(4);
+                if (ownerId != ArtifactJson.NO_OWNER) {
+                    action.accept(materialize(keys[i], records[i]), ownerId);
+                }
+            }
+            if (found > 0) from = keys[found - 1] + 1L;
+        } while (found == SCAN_BATCH);
+    }
+
+    long cacheHits() {
+        return tree.cacheHits();
+    }
+
+    long cacheMisses() {
+        return tree.cacheMisses();
+    }
+
+    int cachedPages() {
+        return tree.cachedPages();
+    }
+
+    @Override
+    public Artifact get(int id) {
+        Artifact resident = peek(id);
+        if (resident != null) return resident;
+        byte[] record = tree.get(id);
+        return record == null ? null : materialize(id, record);
+    }
+
+    @Override
+    public Artifact peek(int id) {
+        purge();
+        LiveRef ref = live.get(id);
+        return ref == null ? null : ref.get();
+    }
+
+    // Resident first: a get() racing with the tree write finds this instance instead of decoding a second one
+    @Override
+    public void put(Artifact artifact) {
+        live.put(artifact.getId(), new LiveRef(artifact, collected));
+        tree.put(artifact.getId(), encode(artifact));
+    }
+
+    @Override
+    public void update(Artifact artifact) {
+        tree.put(artifact.getId(), encode(artifact));
+    }
+
+    @Override
+    public Artifact remove(int id) {
+        Artifact artifact = get(id);
+        if (artifact != null) {
+            tree.remove(id);
+            live.remove(id);
+        }
+        return artifact;
+    }
+
+    @Override
+    public Collection<Artifact> values() {
+        return values;
+    }
+
+    @Override
+    public int size() {
+        return (int) tree.size();
+    }
+
+    // Sequential: a parallel scan would only contend for the page cache
+    @Override
+    public void forEachValue(long parallelismThreshold, Consumer<Artifact> action) {
+        values.forEach(action);
+    }
+
+    @Override
+    public void clear() {
+        tree.clear();
+        live.clear();
+    }
+
+    @Override
+    public long writeCount() {
+        return tree.writeCount();
+    }
+
+    @Override
+    public void flush(long snapshotWrites) throws IOException {
+        tree.flush(snapshotWrites);
+    }
+
+    // Page cache plus the artifacts that are in memory right now
+    @Override
+    public long estimatedBytes() {
+        purge();
+        long bytes = tree.estimatedBytes() + MemoryEstimator.concurrentMap(live.size());
+        for (LiveRef ref : live.values()) {
+            Artifact a = ref.get();
+            bytes += MemoryEstimator.boxedInt(ref.id) + MemoryEstimator.object(4, 4);
+            if (a != null) bytes += MemoryEstimator.artifact(a);
+        }
+        return bytes;
+    }
+
+    // The resident instance wins, so two readers never get different objects for one id
+    private Artifact materialize(int id, byte[] record) {
+        Artifact[] artifact = new Artifact[1]; // strong reference while the map only holds a weak one
+        live.compute(id, (k, old) -> {
+            artifact[0] = old == null ? null : old.get();
+            if (artifact[0] != null) return old;
+            artifact[0] = decode(id, record);
+            return new LiveRef(artifact[0], collected);
+        });
+        return artifact[0];
+    }
+
+    private void purge() {
+        for (LiveRef ref; (ref = (LiveRef) collected.poll()) != null; ) {
+            live.remove(ref.id, ref);
+        }
+    }
+
+    // condition, owner id, name, description
+    private static byte[] encode(Artifact a) {
+        byte[] name = a.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] description = a.getDescription().getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(16 + name.length + description.length)
+                .putInt(a.getCondition())
+                .putInt(a.hasOwner() ? a.getOwner().getId() : ArtifactJson.NO_OWNER)
+                .putInt(name.length).put(name)
+                .putInt(description.length).put(description)
+                .array();
+    }
+
+    // The owner is not linked here: owned artifacts stay reachable through their wizard
+    private static Artifact decode(int id, byte[] record) {
+        ByteBuffer buf = ByteBuffer.wrap(record);
+        int condition = buf.getInt();
+        buf.getInt();
+        byte[] name = new byte[buf.getInt()];
+        buf.get(name);
+        byte[] description = new byte[buf.getInt()];
+        buf.get(description);
+        Artifact a = new Artifact(new String(name, StandardCharsets.UTF_8), new String(description, StandardCharsets.UTF_8));
+        a.setId(id);
+        a.setCondition(condition);
+        return a;
+    }
+
+    private static final class LiveRef extends WeakReference<Artifact> {
+        final int id;
+
+        LiveRef(Artifact artifact, ReferenceQueue<Artifact> queue) {
+            super(artifact, queue);
+            this.id = artifact.getId();
+        }
+    }
+
+    // Walks the leaves in id order a batch at a time; sees changes made meanwhile or not, like a CHM view
+    private final class Values extends AbstractCollection<Artifact> {
+        @Override
+        public int size() {
+            return PagedArtifactTable.this.size();
+        }
+
+        @Override
+        public Iterator<Artifact> iterator() {
+            return new Iterator<>() {
+                private final int[] keys = new int[SCAN_BATCH];
+                private final byte[][] records = new byte[SCAN_BATCH][];
+                private int found;
+                private int at;
+                private long from = Long.MIN_VALUE;
+                private boolean done;
+
+                @Override
+                public boolean hasNext() {
+                    if (at < found) return true;
+                    if (done) return false;
+                    found = tree.scan(from, keys, records);
+                    at = 0;
+                    done = found < SCAN_BATCH;
+                    if (found > 0) from = keys[found - 1] + 1L;
+                    return found > 0;
+                }
+
+                @Override
+                public Artifact next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    int i = at++;
+                    return materialize(keys[i], records[i]);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.hogwarts.data;
+
+import java.io.IOException;
+
+/**
+ * Where the DataStore is loaded from at startup and where saveAll() writes its snapshot:
+ * the JSON data files (default) or a database through JDBC (StoreConfig.PERSIST_BACKEND).
+ */
+interface PersistenceBackend {
+    String name();
+
+    // False on first start: the store then seeds its defaults instead of loading
+    boolean hasData() throws IOException;
+
+    void load(IoStats stats) throws IOException;
+
+    void save(StoreSnapshot snapshot, IoStats stats) throws IOException;
+}
@@ -0,0 +1,22 @@
+package com.example.hogwarts.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Compression applied to the data files (see PersistenceCodecs for the built-in ones).
+ * Files keep their .json names; on load the codec is recognized from the first bytes,
+ * so switching codecs never needs a migration.
+ */
+public interface PersistenceCodec {
+    // Value of hogwarts.persist.codec that selects this codec
+    String name();
+
+    OutputStream compress(OutputStream out) throws IOException;
+
+    InputStream decompress(InputStream in) throws IOException;
+
+    // True when a file starting with these bytes was written by this codec
+    boolean recognizes(byte[] header, int length);
+}
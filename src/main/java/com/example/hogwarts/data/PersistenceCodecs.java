@@ -0,0 +1,124 @@
+package com.example.hogwarts.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.*;
+
+/**
+ * Registry of persistence codecs. Built in: "none" (plain JSON), "deflate" (zlib stream,
+ * level from hogwarts.persist.level) and "gzip". Further codecs can be added with register().
+ */
+public final class PersistenceCodecs {
+    private static final int BLOCK_BYTES = 64 * 1024;
+
+    public static final PersistenceCodec NONE = new PersistenceCodec() {
+        @Override
+        public String name() { return "none"; }
+
+        @Override
+        public OutputStream compress(OutputStream out) { return out; }
+
+        @Override
+        public InputStream decompress(InputStream in) { return in; }
+
+        @Override
+        public boolean recognizes(byte[] header, int length) { return true; }
+    };
+
+    public static final PersistenceCodec DEFLATE = new PersistenceCodec() {
+        @Override
+        public String name() { return "deflate"; }
+
+        @Override
+        public OutputStream compress(OutputStream out) {
+            Deflater deflater = new Deflater(StoreConfig.PERSIST_LEVEL);
+            return new DeflaterOutputStream(out, deflater, BLOCK_BYTES) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        deflater.end(); // a custom Deflater is not released by the stream
+                    }
+                }
+            };
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) {
+            Inflater inflater = new Inflater();
+            return new InflaterInputStream(in, inflater, BLOCK_BYTES) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        inflater.end();
+                    }
+                }
+            };
+        }
+
+        // zlib header: CM=8 in the low nibble and a header checksum divisible by 31
+        @Override
+        public boolean recognizes(byte[] header, int length) {
+            if (length < 2) return false;
+            int cmf = header[0] & 0xff, flg = header[1] & 0xff;
+            return (cmf & 0x0f) == 8 && (cmf * 256 + flg) % 31 == 0;
+        }
+    };
+
+    public static final PersistenceCodec GZIP = new PersistenceCodec() {
+        @Override
+        public String name() { return "gzip"; }
+
+        @Override
+        public OutputStream compress(OutputStream out) throws IOException {
+            return new GZIPOutputStream(out, BLOCK_BYTES);
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) throws IOException {
+            return new GZIPInputStream(in, BLOCK_BYTES);
+        }
+
+        @Override
+        public boolean recognizes(byte[] header, int length) {
+            return length >= 2 && (header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b;
+        }
+    };
+
+    private static final Map<String, PersistenceCodec> CODECS = new ConcurrentHashMap<>();
+
+    static {
+        register(NONE);
+        register(DEFLATE);
+        register(GZIP);
+    }
+
+    private PersistenceCodecs() {
+    }
+
+    public static void register(PersistenceCodec codec) {
+        CODECS.put(codec.name(), codec);
+    }
+
+    public static PersistenceCodec forName(String name) {
+        PersistenceCodec codec = CODECS.get(name);
+        if (codec == null) {
+            throw new IllegalArgumentException("Unknown persistence codec: " + name + " (known: " + CODECS.keySet() + ")");
+        }
+        return codec;
+    }
+
+    // Codec that wrote a file with this header; plain JSON when no codec claims it
+    static PersistenceCodec detect(byte[] header, int length) {
+        for (PersistenceCodec codec : CODECS.values()) {
+            if (codec != NONE && codec.recognizes(header, length)) return codec;
+        }
+        return NONE;
+    }
+}
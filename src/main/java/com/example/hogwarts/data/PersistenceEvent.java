@@ -0,0 +1,57 @@
+package com.example.hogwarts.data;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One phase of a load or save (a data file, the shard set, the history roll).
+ * Bytes are taken from the IoStats of the whole load or save, as the difference over the phase.
+ */
+@Name("hogwarts.Persistence")
+@Label("Persistence Phase")
+@Category({ "Hogwarts", "Persistence" })
+final class PersistenceEvent extends TracedOperation {
+    @Label("Operation")
+    String operation;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Entities")
+    long entities;
+
+    @Label("JSON Bytes")
+    @DataAmount
+    long jsonBytes;
+
+    @Label("Disk Bytes")
+    @DataAmount
+    long diskBytes;
+
+    private transient IoStats stats;
+
+    static PersistenceEvent start(String operation, String phase, IoStats stats) {
+        PersistenceEvent event = new PersistenceEvent();
+        event.operation = operation;
+        event.phase = phase;
+        event.stats = stats;
+        event.jsonBytes = -stats.getRawBytes();
+        event.diskBytes = -stats.getDiskBytes();
+        event.start();
+        return event;
+    }
+
+    void finish(long entities) {
+        this.entities = entities;
+        this.jsonBytes += stats.getRawBytes();
+        this.diskBytes += stats.getDiskBytes();
+        finish();
+    }
+
+    @Override
+    protected String describe() {
+        return String.format("%s %s (%,d entities, json %,d bytes, disk %,d bytes)", operation, phase, entities, jsonBytes, diskBytes);
+    }
+}
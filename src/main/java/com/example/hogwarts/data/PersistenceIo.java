@@ -0,0 +1,194 @@
+package com.example.hogwarts.data;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Opens the data files through large buffered file channels and the configured codec,
+ * recording bytes and time into an IoStats. Writes go to a temp file that replaces the
+ * target only when the writer commits (see AtomicFileStream), so a failed or interrupted
+ * save never leaves a truncated file behind.
+ */
+final class PersistenceIo {
+    private static final int HEADER_BYTES = 4;
+
+    private final PersistenceCodec codec;
+    private final int bufferBytes;
+
+    PersistenceIo(PersistenceCodec codec, int bufferBytes) {
+        this.codec = codec;
+        this.bufferBytes = bufferBytes;
+    }
+
+    PersistenceCodec codec() {
+        return codec;
+    }
+
+    IoStats newStats() {
+        return new IoStats(codec.name());
+    }
+
+    /**
+     * Write the whole content, flush whatever wraps the stream, then commit():
+     * <pre>
+     * try (AtomicFileStream out = io.openWrite(file, stats); JsonGenerator gen = factory.createGenerator(out)) {
+     *     ...
+     *     gen.flush();
+     *     out.commit();
+     * }</pre>
+     */
+    AtomicFileStream openWrite(File file, IoStats stats) throws IOException {
+        return new AtomicFileStream(file, stats);
+    }
+
+    /**
+     * Output of openWrite. commit() finishes the codec, forces the temp file to disk and moves it
+     * over the target in one step; closing without commit() (an exception on the way, or a
+     * wrapper that closes its stream first) deletes the temp file and leaves the target as it was.
+     */
+    final class AtomicFileStream extends FilterOutputStream {
+        private final File file;
+        private final File tmp;
+        private final IoStats stats;
+        private final long start = System.nanoTime();
+        private final FileChannel channel;
+        private final CountingOutputStream disk;
+        private final CountingOutputStream raw;
+        private boolean closed;
+
+        private AtomicFileStream(File file, IoStats stats) throws IOException {
+            super(null);
+            this.file = file;
+            this.tmp = new File(file.getPath() + ".tmp");
+            this.stats = stats;
+            this.channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            // Closing the codec flushes down to the channel but leaves it open, so it can still be forced
+            OutputStream channelOut = new FilterOutputStream(Channels.newOutputStream(channel)) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+            this.disk = new CountingOutputStream(new BufferedOutputStream(channelOut, bufferBytes));
+            this.raw = new CountingOutputStream(codec.compress(disk));
+            this.out = raw;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            checkOpen();
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            checkOpen();
+            out.write(b, off, len);
+        }
+
+        void commit() throws IOException {
+            checkOpen();
+            closed = true;
+            try {
+                raw.close();
+                channel.force(true);
+                channel.close();
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | RuntimeException e) {
+                discard();
+                throw e;
+            }
+            stats.record(label(file), raw.count, disk.count, System.nanoTime() - start);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            discard();
+        }
+
+        private void discard() throws IOException {
+            try {
+                raw.close();
+            } catch (IOException ignored) {
+                // the content is thrown away anyway
+            }
+            channel.close();
+            Files.deleteIfExists(tmp.toPath());
+        }
+
+        private void checkOpen() throws IOException {
+            if (closed) throw new IOException(file + " is already committed or closed");
+        }
+    }
+
+    // Detects the codec from the first bytes, whatever hogwarts.persist.codec is set to now
+    InputStream openRead(File file, IoStats stats) throws IOException {
+        long start = System.nanoTime();
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        CountingInputStream disk = new CountingInputStream(Channels.newInputStream(channel));
+        BufferedInputStream buffered = new BufferedInputStream(disk, bufferBytes);
+        buffered.mark(HEADER_BYTES);
+        byte[] header = new byte[HEADER_BYTES];
+        int length = buffered.readNBytes(header, 0, HEADER_BYTES);
+        buffered.reset();
+        CountingInputStream raw = new CountingInputStream(PersistenceCodecs.detect(header, length).decompress(buffered));
+        return new FilterInputStream(raw) {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                if (closed) return;
+                closed = true;
+                super.close();
+                stats.record(label(file), raw.count, disk.count, System.nanoTime() - start);
+            }
+        };
+    }
+
+    // Shard files share their names, so the directory is part of the label
+    private static String label(File file) {
+        File parent = file.getParentFile();
+        return parent != null && parent.getName().startsWith("shard-") ? parent.getName() + "/" + file.getName() : file.getName();
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.Artifact;
+import com.example.hogwarts.model.Wizard;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * How DataStore runs one ArtifactQuery. The planner estimates the rows each access path
+ * would examine and takes the smallest: the owner's artifact list, a condition range or
+ * the unowned tail of the sort index, a scan of the index entries, or a scan of the store
+ * when the index is not built. Ordered queries either walk the index in the requested
+ * order (stopping at the limit) or, when a filter is selective, sort the candidate ids.
+ * Results stream lazily; only ids are collected, and only for an in-memory sort.
+ */
+public class QueryPlan {
+    public enum Access { EMPTY, OWNER_LIST, CONDITION_RANGE, UNASSIGNED, INDEX_ORDER, INDEX_SCAN, FULL_SCAN }
+
+    // Below this share of the store a filtered candidate set is sorted instead of walking the index order
+    private static final int SELECTIVE_DIVISOR = 4;
+    private static final int BATCH = 256;
+
+    private final DataStore store;
+    private final ArtifactSortIndex index; // null when not built and not needed
+    private final ArtifactQuery query;
+    private final Access access;
+    private final long estimatedRows;
+    private final long totalRows;
+    private final boolean sortInMemory;
+
+    private QueryPlan(DataStore store, ArtifactSortIndex index, ArtifactQuery query, Access access,
+                      long estimatedRows, long totalRows, boolean sortInMemory) {
+        this.store = store;
+        this.index = index;
+        this.query = query;
+        this.access = access;
+        this.estimatedRows = estimatedRows;
+        this.totalRows = totalRows;
+        this.sortInMemory = sortInMemory;
+    }
+
+    static QueryPlan plan(DataStore store, ArtifactQuery query) {
+        long total = store.findAllArtifacts().size();
+        if (query.isContradictory()) {
+            return new QueryPlan(store, null, query, Access.EMPTY, 0, total, false);
+        }
+        boolean ordered = !query.getOrder().isEmpty();
+        // Ordering needs the index anyway; filters only use it once something built it
+        ArtifactSortIndex index = ordered ? store.getSortIndex() : store.sortIndexIfBuilt();
+
+        Access access = index != null ? Access.INDEX_SCAN : Access.FULL_SCAN;
+        long rows = total;
+        if (query.getOwnerId() != null) {
+            Wizard owner = store.findWizardById(query.getOwnerId());
+            if (owner == null) return new QueryPlan(store, null, query, Access.EMPTY, 0, total, false);
+            if (owner.getArtifacts().size() < rows) {
+                access = Access.OWNER_LIST;
+                rows = owner.getArtifacts().size();
+            }
+        }
+        if (index != null && query.hasConditionRange()) {
+            int inRange = index.countConditionRange(query.getMinCondition(), query.getMaxCondition());
+            if (inRange < rows) {
+                access = Access.CONDITION_RANGE;
+                rows = inRange;
+            }
+        }
+        if (index != null && query.isUnassigned() && index.countUnowned() < rows) {
+            access = Access.UNASSIGNED;
+            rows = index.countUnowned();
+        }
+
+        boolean sort = false;
+        if (ordered && !inRequestedOrder(access, query)) {
+            if (rows <= total / SELECTIVE_DIVISOR) {
+                sort = true;
+            } else {
+                access = Access.INDEX_ORDER;
+                rows = total;
+            }
+        }
+        return new QueryPlan(store, index, query, access, rows, total, sort);
+    }
+
+    // A condition range walked in the requested condition direction is already in order, and
+    // so is the unowned tail (by id) for id order
+    private static boolean inRequestedOrder(Access access, ArtifactQuery query) {
+        return (access == Access.CONDITION_RANGE && orderOnly(query, ArtifactSortIndex.Column.CONDITION))
+                || (access == Access.UNASSIGNED && orderOnly(query, ArtifactSortIndex.Column.ID)
+                    && query.getOrder().get(0).isAscending());
+    }
+
+    private static boolean orderOnly(ArtifactQuery query, ArtifactSortIndex.Column column) {
+        List<ArtifactSortIndex.SortKey> order = query.getOrder();
+        return order.size() == 1 && order.get(0).getColumn() == column;
+    }
+
+    public Access getAccess() { return access; }
+    public long getEstimatedRows() { return estimatedRows; }
+    public boolean isSortInMemory() { return sortInMemory; }
+
+    //----------------------------------------------------------------------
+    // Execution
+    //----------------------------------------------------------------------
+
+    // Artifacts matching the query; pulls from the access path only as far as the consumer reads
+    public Stream<Artifact> stream() {
+        Stream<Artifact> results = switch (access) {
+            case EMPTY -> Stream.empty();
+            case FULL_SCAN -> store.findAllArtifacts().stream().filter(query::matches);
+            case OWNER_LIST -> sortInMemory
+                    ? byIds(sortedIds(ownedIds()))
+                    : store.ownedArtifacts(query.getOwnerId()).stream().filter(query::matches);
+            default -> sortInMemory ? byIds(sortedIds(collectIds(cursor()))) : fromCursor(cursor());
+        };
+        if (query.getOffset() > 0) results = results.skip(query.getOffset());
+        if (query.getLimit() != Integer.MAX_VALUE) results = results.limit(query.getLimit());
+        return results;
+    }
+
+    private ArtifactSortIndex.Cursor cursor() {
+        return switch (access) {
+            case CONDITION_RANGE -> index.conditionCursor(query.getMinCondition(), query.getMaxCondition(),
+                    query.getOrder().isEmpty() || query.getOrder().get(0).isAscending());
+            case UNASSIGNED -> index.unownedCursor(afterKey());
+            case INDEX_ORDER -> query.getAfterId() != null ? index.idCursor(afterKey()) : index.cursor(query.getOrder());
+            default -> index.idCursor(afterKey());
+        };
+    }
+
+    // Id-ordered cursors start right after the keyset position instead of filtering up to it
+    private int afterKey() {
+        return query.getAfterId() != null ? query.getAfterId() : Integer.MIN_VALUE;
+    }
+
+    private int[] ownedIds() {
+        List<Artifact> owned = store.ownedArtifacts(query.getOwnerId());
+        int[] ids = new int[owned.size()];
+        int count = 0;
+        for (Artifact a : owned) {
+            if (query.matches(a)) ids[count++] = a.getId();
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    private int[] collectIds(ArtifactSortIndex.Cursor cursor) {
+        int[] ids = new int[BATCH];
+        int count = 0;
+        int[] batch = new int[BATCH];
+        while (!cursor.isDone()) {
+            int found = index.next(cursor, query, batch);
+            if (count + found > ids.length) ids = Arrays.copyOf(ids, Math.max(ids.length * 2, count + found));
+            System.arraycopy(batch, 0, ids, count, found);
+            count += found;
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    private int[] sortedIds(int[] ids) {
+        return index.sortIds(ids, ids.length, query.getOrder());
+    }
+
+    // Resolves ids lazily; artifacts deleted or changed since the ids were read are skipped
+    private Stream<Artifact> byIds(int[] ids) {
+        return Arrays.stream(ids).mapToObj(store::findArtifactById)
+                .filter(a -> a != null && query.matches(a));
+    }
+
+    private Stream<Artifact> fromCursor(ArtifactSortIndex.Cursor cursor) {
+        Iterator<Artifact> it = new Iterator<>() {
+            private final int[] ids = new int[BATCH];
+            private int found;
+            private int at;
+            private Artifact next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    if (at < found) {
+                        Artifact a = store.findArtifactById(ids[at++]);
+                        if (a != null && query.matches(a)) next = a;
+                    } else if (cursor.isDone()) {
+                        return false;
+                    } else {
+                        found = index.next(cursor, query, ids);
+                        at = 0;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public Artifact next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                Artifact a = next;
+                next = null;
+                return a;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    //----------------------------------------------------------------------
+    // Explain
+    //----------------------------------------------------------------------
+
+    public String explain() {
+        String path = switch (access) {
+            case EMPTY -> "nothing to read (contradictory filters or unknown owner)";
+            case OWNER_LIST -> "owner " + query.getOwnerId() + "'s artifact list";
+            case CONDITION_RANGE -> "condition index, range " + query.getMinCondition() + ".." + query.getMaxCondition();
+            case UNASSIGNED -> "owner index, unowned tail";
+            case INDEX_ORDER -> "sort index in the requested order, stops at the limit";
+            case INDEX_SCAN -> "scan of the sort index entries";
+            case FULL_SCAN -> "scan of the store (sort index not built)";
+        };
+        String order = query.getOrder().isEmpty() ? "none"
+                : sortInMemory ? "sort " + estimatedRows + " candidate ids in memory"
+                : access == Access.CONDITION_RANGE ? "condition index order" : "index order";
+        String filter = access == Access.FULL_SCAN || access == Access.OWNER_LIST
+                ? "checked on each artifact"
+                : "checked on the index entries, artifacts loaded for matches only";
+        return query + "\n"
+                + "  access:    " + access + " - " + path + "\n"
+                + "  estimate:  " + estimatedRows + " of " + totalRows + " rows examined\n"
+                + "  filters:   " + filter + "\n"
+                + "  order:     " + order + "\n"
+                + "  page:      " + (query.getAfterId() != null ? "after id " + query.getAfterId() : "offset " + query.getOffset())
+                + (query.getLimit() == Integer.MAX_VALUE ? ", no limit" : ", limit " + query.getLimit());
+    }
+
+    @Override
+    public String toString() {
+        return explain();
+    }
+}
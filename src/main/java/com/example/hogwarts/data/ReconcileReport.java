@@ -0,0 +1,97 @@
+package com.example.hogwarts.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What a reconciliation found (and, unless it was a dry run, applied): the changes by
+ * natural key, plus how the unchanged records were recognized.
+ */
+public class ReconcileReport {
+    public enum Kind { INSERT, UPDATE, DELETE }
+    public enum Entity { WIZARD, ARTIFACT }
+
+    public static final class Change {
+        private final Kind kind;
+        private final Entity entity;
+        private final String key;
+        private final int id;          // local id, -1 for an insert that was not applied
+        private final String detail;
+
+        Change(Kind kind, Entity entity, String key, int id, String detail) {
+            this.kind = kind;
+            this.entity = entity;
+            this.key = key;
+            this.id = id;
+            this.detail = detail;
+        }
+
+        public Kind getKind() { return kind; }
+        public Entity getEntity() { return entity; }
+        public String getKey() { return key; }
+        public int getId() { return id; }
+        public String getDetail() { return detail; }
+
+        @Override
+        public String toString() {
+            return kind + " " + entity.name().toLowerCase() + " \"" + key + "\"" + (id >= 0 ? " (ID: " + id + ")" : "")
+                    + (detail.isEmpty() ? "" : ": " + detail);
+        }
+    }
+
+    // Changes listed by toString(); the counts always cover all of them
+    private static final int PRINTED_CHANGES = 50;
+
+    private final boolean applied;
+    private final List<Change> changes = new ArrayList<>();
+    private final int[][] counts = new int[Entity.values().length][Kind.values().length];
+    int feedWizards;
+    int feedArtifacts;
+    int duplicateKeys;
+    int invalidRecords;
+    int unchanged;
+    int definitelyNew;        // ruled out by the Bloom filter, no index probe
+    int bloomFalsePositives;  // the filter said maybe, the index had no such key
+    long indexMillis;
+    long diffMillis;
+
+    ReconcileReport(boolean applied) {
+        this.applied = applied;
+    }
+
+    void add(Kind kind, Entity entity, String key, int id, String detail) {
+        changes.add(new Change(kind, entity, key, id, detail));
+        counts[entity.ordinal()][kind.ordinal()]++;
+    }
+
+    public boolean isApplied() { return applied; }
+    public List<Change> getChanges() { return Collections.unmodifiableList(changes); }
+    public int count(Entity entity, Kind kind) { return counts[entity.ordinal()][kind.ordinal()]; }
+    public int getUnchanged() { return unchanged; }
+    public int getDefinitelyNew() { return definitelyNew; }
+    public int getBloomFalsePositives() { return bloomFalsePositives; }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(applied ? "Reconciliation applied" : "Reconciliation (dry run, nothing applied)").append('\n');
+        sb.append(String.format("  feed:       %,d wizards, %,d artifacts (%d duplicate names, %d invalid records skipped)%n",
+                feedWizards, feedArtifacts, duplicateKeys, invalidRecords));
+        for (Entity entity : Entity.values()) {
+            sb.append(String.format("  %-10s  %,d inserts, %,d updates, %,d deletes%n", entity.name().toLowerCase() + "s:",
+                    count(entity, Kind.INSERT), count(entity, Kind.UPDATE), count(entity, Kind.DELETE)));
+        }
+        sb.append(String.format("  unchanged:  %,d artifacts (equal content hash, not read)%n", unchanged));
+        sb.append(String.format("  bloom:      %,d definitely new, %,d false positives%n", definitelyNew, bloomFalsePositives));
+        sb.append(String.format("  time:       %,d ms diff%s%n", diffMillis,
+                indexMillis > 0 ? String.format(" (+%,d ms building the key index)", indexMillis) : ""));
+        for (int i = 0; i < Math.min(PRINTED_CHANGES, changes.size()); i++) {
+            sb.append("  ").append(changes.get(i)).append('\n');
+        }
+        if (changes.size() > PRINTED_CHANGES) {
+            sb.append(String.format("  ... %,d more changes%n", changes.size() - PRINTED_CHANGES));
+        }
+        return sb.toString();
+    }
+}
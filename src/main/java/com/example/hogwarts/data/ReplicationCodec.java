@@ -0,0 +1,241 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.History;
+import com.example.hogwarts.model.Wizard;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wire format between a replication primary and its standbys: length-prefixed frames,
+ * each holding one JSON object with a "kind" field.
+ *   standby -> primary: hello {epoch, seq}, ack {seq}
+ *   primary -> standby: start {epoch, sync, snapshot}, snapshot {epoch, seq, wizards, artifacts, transfers},
+ *                       event {seq, type, ...}, heartbeat {seq, time}
+ */
+final class ReplicationCodec {
+    static final String HELLO = "hello";
+    static final String ACK = "ack";
+    static final String START = "start";
+    static final String SNAPSHOT = "snapshot";
+    static final String EVENT = "event";
+    static final String HEARTBEAT = "heartbeat";
+
+    private static final int MAX_FRAME_BYTES = 1 << 30;
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private ReplicationCodec() {
+    }
+
+    static void writeFrame(DataOutputStream out, byte[] frame) throws IOException {
+        out.writeInt(frame.length);
+        out.write(frame);
+    }
+
+    // Throws EOFException when the stream ends (also in the middle of a frame)
+    static byte[] readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Corrupt replication frame of " + length + " bytes");
+        }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return frame;
+    }
+
+    static byte[] hello(String epoch, long seq) throws IOException {
+        return encode(gen -> {
+            gen.writeStringField("kind", HELLO);
+            if (epoch != null) gen.writeStringField("epoch", epoch);
+            gen.writeNumberField("seq", seq);
+        });
+    }
+
+    static byte[] ack(long seq) throws IOException {
+        return encode(gen -> {
+            gen.writeStringField("kind", ACK);
+            gen.writeNumberField("seq", seq);
+        });
+    }
+
+    static byte[] start(String epoch, boolean sync, boolean snapshot) throws IOException {
+        return encode(gen -> {
+            gen.writeStringField("kind", START);
+            gen.writeStringField("epoch", epoch);
+            gen.writeBooleanField("sync", sync);
+            gen.writeBooleanField("snapshot", snapshot);
+        });
+    }
+
+    static byte[] heartbeat(long seq, long time) throws IOException {
+        return encode(gen -> {
+            gen.writeStringField("kind", HEARTBEAT);
+            gen.writeNumberField("seq", seq);
+            gen.writeNumberField("time", time);
+        });
+    }
+
+    static byte[] event(JournalRecord record) throws IOException {
+        StoreEvent e = record.event;
+        return encode(gen -> {
+            gen.writeStringField("kind", EVENT);
+            gen.writeNumberField("seq", record.seq);
+            gen.writeNumberField("time", e.getTimestamp());
+            gen.writeStringField("type", e.getType().name());
+            gen.writeNumberField("artifactId", e.getArtifactId());
+            gen.writeNumberField("wizardId", e.getWizardId());
+            if (e.getName() != null) gen.writeStringField("name", e.getName());
+            if (e.getDescription() != null) gen.writeStringField("description", e.getDescription());
+            gen.writeNumberField("condition", e.getCondition());
+            if (!e.getTransfers().isEmpty()) {
+                gen.writeArrayFieldStart("transfers");
+                for (History h : e.getTransfers()) {
+                    HistoryJson.write(gen, h);
+                }
+                gen.writeEndArray();
+            }
+        });
+    }
+
+    // seq must be the last sequence applied when the snapshot opened (see ReplicationPrimary.sendSnapshot)
+    static byte[] snapshot(String epoch, long seq, StoreSnapshot snapshot) throws IOException {
+        return encode(gen -> {
+            gen.writeStringField("kind", SNAPSHOT);
+            gen.writeStringField("epoch", epoch);
+            gen.writeNumberField("seq", seq);
+            gen.writeArrayFieldStart("wizards");
+            for (StoreSnapshot.WizardState w : snapshot.wizards()) {
+                gen.writeStartObject();
+                gen.writeNumberField("id", w.getId());
+                gen.writeStringField("name", w.getName());
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+            try {
+                gen.writeArrayFieldStart("artifacts");
+                snapshot.forEachArtifact(a -> {
+                    try {
+                        ArtifactJson.write(gen, a);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                gen.writeEndArray();
+                gen.writeArrayFieldStart("transfers");
+                snapshot.forEachHistoryList((artifactId, historyList) -> {
+                    try {
+                        for (History h : historyList) {
+                            HistoryJson.write(gen, h);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                gen.writeEndArray();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    static Message read(byte[] frame) throws IOException {
+        Message m = new Message();
+        StoreEvent.Type type = null;
+        int artifactId = -1, wizardId = -1, condition = -1;
+        String name = null, description = null;
+        try (JsonParser parser = FACTORY.createParser(frame)) {
+            parser.nextToken(); // START_OBJECT
+            while (parser.nextToken() != JsonToken.END_OBJECT) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "kind": m.kind = parser.getText(); break;
+                    case "epoch": m.epoch = parser.getText(); break;
+                    case "seq": m.seq = parser.getLongValue(); break;
+                    case "time": m.time = parser.getLongValue(); break;
+                    case "sync": m.sync = parser.getBooleanValue(); break;
+                    case "snapshot": m.snapshot = parser.getBooleanValue(); break;
+                    case "type": type = StoreEvent.Type.valueOf(parser.getText()); break;
+                    case "artifactId": artifactId = parser.getIntValue(); break;
+                    case "wizardId": wizardId = parser.getIntValue(); break;
+                    case "name": name = parser.getText(); break;
+                    case "description": description = parser.getText(); break;
+                    case "condition": condition = parser.getIntValue(); break;
+                    case "wizards": readWizards(parser, m.wizards); break;
+                    case "artifacts":
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            m.artifacts.add(ArtifactJson.read(parser));
+                        }
+                        break;
+                    case "transfers":
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            m.transfers.add(HistoryJson.read(parser));
+                        }
+                        break;
+                    default: parser.skipChildren(); break;
+                }
+            }
+        }
+        if (type != null) {
+            m.event = StoreEvent.replicated(type, artifactId, wizardId, name, description, condition,
+                    List.copyOf(m.transfers), m.time);
+        }
+        return m;
+    }
+
+    private static void readWizards(JsonParser parser, List<Wizard> out) throws IOException {
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            int id = 0;
+            String name = null;
+            while (parser.nextToken() != JsonToken.END_OBJECT) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "id": id = parser.getIntValue(); break;
+                    case "name": name = parser.getText(); break;
+                    default: parser.skipChildren(); break;
+                }
+            }
+            Wizard w = new Wizard(name);
+            w.setId(id);
+            out.add(w);
+        }
+    }
+
+    private interface Body {
+        void write(JsonGenerator gen) throws IOException;
+    }
+
+    private static byte[] encode(Body body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (JsonGenerator gen = FACTORY.createGenerator(bytes)) {
+            gen.writeStartObject();
+            body.write(gen);
+            gen.writeEndObject();
+        }
+        return bytes.toByteArray();
+    }
+
+    // One decoded frame; only the fields of its kind are set
+    static final class Message {
+        String kind;
+        String epoch;
+        long seq = -1;
+        long time;
+        boolean sync;
+        boolean snapshot;
+        StoreEvent event;
+        final List<Wizard> wizards = new ArrayList<>();
+        final List<ArtifactJson.Loaded> artifacts = new ArrayList<>();
+        final List<History> transfers = new ArrayList<>();
+    }
+}
@@ -0,0 +1,362 @@
+package com.example.hogwarts.data;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Primary side of journal-shipping replication. Every store change gets the next sequence
+ * number and goes into an in-memory journal ring; each connected standby has a sender
+ * thread shipping the journal from where the standby left off. A standby that is new, comes
+ * from another primary run (epoch) or fell out of the ring first receives a consistent
+ * snapshot. Store changes only append to the ring: they run inside the store's locks (and often
+ * on the FX thread), so nothing here waits for a standby. In sync mode a watcher thread follows
+ * the acknowledgements instead, and a standby that misses the timeout drops to async until it
+ * has caught up again; callers that need their changes on the standbys (save, shutdown) wait at
+ * that point with awaitAcks().
+ */
+public class ReplicationPrimary implements StoreListener {
+    private static final int BATCH_RECORDS = 512;
+    private static final long HEARTBEAT_MS = 1000;
+
+    private final DataStore store;
+    private final int port;
+    private final boolean sync;
+    // Identifies this primary run; sequence numbers restart with every epoch
+    private final String epoch = UUID.randomUUID().toString();
+
+    // Journal ring, guarded by itself: record seq lives at ring[seq % length]
+    private final JournalRecord[] ring;
+    private long lastSeq = 0;
+
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
+    private final Object ackMonitor = new Object();
+    private volatile ServerSocket serverSocket;
+    private volatile boolean running;
+
+    public ReplicationPrimary(DataStore store, int port, boolean sync) {
+        this.store = store;
+        this.port = port;
+        this.sync = sync;
+        this.ring = new JournalRecord[Math.max(1, StoreConfig.REPLICATION_JOURNAL_RECORDS)];
+    }
+
+    // Binds the local port and starts journaling; standbys may connect from now on
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        running = true;
+        store.addListener(this);
+        StoreMetrics metrics = StoreMetrics.getInstance();
+        metrics.registerGauge("replication.primary.seq", this::lastSequence);
+        metrics.registerGauge("replication.primary.standbys", this::connectedStandbys);
+        metrics.registerGauge("replication.primary.lagRecords", this::lagRecords);
+        metrics.registerGauge("replication.primary.lagMillis", this::lagMillis);
+        Thread acceptor = new Thread(this::acceptLoop, "replication-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        if (sync) {
+            Thread watcher = new Thread(this::ackWatchLoop, "replication-sync");
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+        System.out.println("replication: primary listening on port " + port + (sync ? " (sync)" : " (async)"));
+    }
+
+    public void close() {
+        running = false;
+        store.removeListener(this);
+        for (String gauge : StoreMetrics.getInstance().snapshot("replication.primary.").keySet()) {
+            StoreMetrics.getInstance().unregisterGauge(gauge);
+        }
+        try {
+            if (serverSocket != null) serverSocket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (Session session : sessions) {
+            session.close();
+        }
+        synchronized (ring) {
+            ring.notifyAll();
+        }
+    }
+
+    @Override
+    public void onChange(StoreEvent event) {
+        long seq;
+        synchronized (ring) {
+            seq = ++lastSeq;
+            ring[(int) (seq % ring.length)] = new JournalRecord(seq, event);
+            ring.notifyAll();
+        }
+    }
+
+    /**
+     * Waits, at most the sync timeout, until every in-sync standby acknowledged the changes made
+     * so far. Call it after a batch of changes and outside any store lock. Returns false if a
+     * standby missed the timeout; it is shipped asynchronously from then on.
+     */
+    public boolean awaitAcks() {
+        return awaitAcks(lastSequence());
+    }
+
+    //----------------------------------------------------------------------
+    // Lag metrics
+    //----------------------------------------------------------------------
+
+    public long lastSequence() {
+        synchronized (ring) {
+            return lastSeq;
+        }
+    }
+
+    // Lowest sequence acknowledged by a connected standby, -1 without standbys
+    public long ackedSequence() {
+        long min = -1;
+        for (Session session : sessions) {
+            long acked = session.ackedSeq;
+            if (min == -1 || acked < min) min = acked;
+        }
+        return min;
+    }
+
+    public int connectedStandbys() {
+        return sessions.size();
+    }
+
+    public long lagRecords() {
+        long acked = ackedSequence();
+        return acked < 0 ? 0 : lastSequence() - acked;
+    }
+
+    // Age of the oldest change not yet acknowledged by every standby
+    public long lagMillis() {
+        long acked = ackedSequence();
+        if (acked < 0) return 0;
+        synchronized (ring) {
+            JournalRecord oldest = record(acked + 1);
+            return oldest == null ? 0 : System.currentTimeMillis() - oldest.event.getTimestamp();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "primary seq=" + lastSequence() + " standbys=" + connectedStandbys() + " acked=" + ackedSequence()
+                + " lag=" + lagRecords() + " records/" + lagMillis() + " ms";
+    }
+
+    //----------------------------------------------------------------------
+    // Journal
+    //----------------------------------------------------------------------
+
+    // Caller holds the ring lock; null when seq was never written or was overwritten
+    private JournalRecord record(long seq) {
+        if (seq < 1 || seq > lastSeq) return null;
+        JournalRecord r = ring[(int) (seq % ring.length)];
+        return r != null && r.seq == seq ? r : null;
+    }
+
+    // Records from seq on (at most a batch), waiting up to a heartbeat for new ones.
+    // Null means seq is no longer in the ring and the standby needs a snapshot.
+    private List<JournalRecord> recordsFrom(long seq) throws InterruptedException {
+        synchronized (ring) {
+            if (lastSeq < seq && running) {
+                ring.wait(HEARTBEAT_MS);
+            }
+            List<JournalRecord> batch = new ArrayList<>();
+            for (long s = seq; s <= lastSeq && batch.size() < BATCH_RECORDS; s++) {
+                JournalRecord r = record(s);
+                if (r == null) return null;
+                batch.add(r);
+            }
+            return batch;
+        }
+    }
+
+    private boolean canResumeFrom(String standbyEpoch, long standbySeq) {
+        if (!epoch.equals(standbyEpoch)) return false;
+        synchronized (ring) {
+            return standbySeq == lastSeq || (standbySeq < lastSeq && record(standbySeq + 1) != null);
+        }
+    }
+
+    private boolean awaitAcks(long seq) {
+        long deadline = System.currentTimeMillis() + StoreConfig.REPLICATION_SYNC_TIMEOUT_MS;
+        synchronized (ackMonitor) {
+            while (true) {
+                boolean acked = true;
+                for (Session session : sessions) {
+                    if (session.inSync && session.ackedSeq < seq) acked = false;
+                }
+                if (acked) return true;
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    for (Session session : sessions) {
+                        if (session.inSync && session.ackedSeq < seq) {
+                            session.inSync = false;
+                            System.err.println("replication: " + session + " did not acknowledge seq " + seq
+                                    + " in time, shipping asynchronously until it catches up");
+                        }
+                    }
+                    return false;
+                }
+                try {
+                    ackMonitor.wait(left);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+    }
+
+    // Sync mode: follows the acknowledgements of new changes, so a standby that stops keeping up
+    // drops to async within the timeout even when no one calls awaitAcks()
+    private void ackWatchLoop() {
+        long watched = 0;
+        while (running) {
+            long seq;
+            synchronized (ring) {
+                if (lastSeq <= watched && running) {
+                    try {
+                        ring.wait(HEARTBEAT_MS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                seq = lastSeq;
+            }
+            if (seq > watched) {
+                awaitAcks(seq);
+                watched = seq;
+            }
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // Standby connections
+    //----------------------------------------------------------------------
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Session session = new Session(socket);
+                Thread sender = new Thread(session::ship, "replication-ship-" + socket.getPort());
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException e) {
+                if (running) e.printStackTrace();
+            }
+        }
+    }
+
+    private final class Session {
+        private final Socket socket;
+        private final DataOutputStream out;
+        private final DataInputStream in;
+        volatile long ackedSeq;
+        volatile boolean inSync; // only in-sync standbys hold up writers in sync mode
+
+        Session(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        }
+
+        void ship() {
+            try {
+                ReplicationCodec.Message hello = ReplicationCodec.read(ReplicationCodec.readFrame(in));
+                boolean snapshot = !canResumeFrom(hello.epoch, hello.seq);
+                ReplicationCodec.writeFrame(out, ReplicationCodec.start(epoch, sync, snapshot));
+                long next = snapshot ? sendSnapshot() + 1 : hello.seq + 1;
+                ackedSeq = next - 1;
+                sessions.add(this);
+                System.out.println("replication: " + this + " connected, "
+                        + (snapshot ? "sent snapshot at seq " : "resuming after seq ") + (next - 1));
+
+                Thread acks = new Thread(this::readAcks, "replication-acks-" + socket.getPort());
+                acks.setDaemon(true);
+                acks.start();
+
+                while (running) {
+                    List<JournalRecord> batch = recordsFrom(next);
+                    if (batch == null) {
+                        System.err.println("replication: " + this + " fell out of the journal, sending a new snapshot");
+                        inSync = false;
+                        next = sendSnapshot() + 1;
+                    } else if (batch.isEmpty()) {
+                        ReplicationCodec.writeFrame(out, ReplicationCodec.heartbeat(lastSequence(), System.currentTimeMillis()));
+                    } else {
+                        for (JournalRecord r : batch) {
+                            ReplicationCodec.writeFrame(out, ReplicationCodec.event(r));
+                        }
+                        next = batch.get(batch.size() - 1).seq + 1;
+                    }
+                    out.flush();
+                }
+            } catch (IOException e) {
+                if (running) System.err.println("replication: " + this + " disconnected (" + e.getMessage() + ")");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        // The seq is read while the snapshot opens, so the snapshot is exactly the state after it;
+        // writers keep going while it is serialized
+        private long sendSnapshot() throws IOException {
+            long[] seq = new long[1];
+            byte[] frame;
+            try (StoreSnapshot snapshot = store.openSnapshot(() -> seq[0] = lastSequence())) {
+                frame = ReplicationCodec.snapshot(epoch, seq[0], snapshot);
+            }
+            ReplicationCodec.writeFrame(out, frame);
+            out.flush();
+            return seq[0];
+        }
+
+        private void readAcks() {
+            try {
+                while (running) {
+                    ReplicationCodec.Message ack = ReplicationCodec.read(ReplicationCodec.readFrame(in));
+                    if (!ReplicationCodec.ACK.equals(ack.kind)) continue;
+                    ackedSeq = ack.seq;
+                    if (!inSync && ack.seq >= lastSequence()) {
+                        inSync = true;
+                    }
+                    synchronized (ackMonitor) {
+                        ackMonitor.notifyAll();
+                    }
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void close() {
+            if (sessions.remove(this)) {
+                synchronized (ackMonitor) {
+                    ackMonitor.notifyAll();
+                }
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "standby " + socket.getRemoteSocketAddress();
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.Artifact;
+import com.example.hogwarts.model.History;
+import com.example.hogwarts.model.Wizard;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Standby side of journal-shipping replication. Connects to the primary, applies the shipped
+ * changes to the local DataStore and keeps them durable in a local journal (replica.journal)
+ * until the next periodic save, which writes the regular data files plus replica-state.json
+ * (epoch and sequence of the saved state) and empties the journal. On restart the saved state
+ * plus the journal tail are recovered first, so the primary only has to ship what is missing.
+ * Applying is idempotent, so replaying a record the saved files already contain is harmless.
+ */
+public class ReplicationStandby {
+    private static final long RECONNECT_MS = 1000;
+    // Changes applied before an acknowledgement goes out even though more frames are waiting
+    private static final int ACK_EVERY = 512;
+
+    private final DataStore store;
+    private final String host;
+    private final int port;
+    private final File stateFile;
+    private final File journalFile;
+
+    private String epoch;             // primary run the local state comes from, null before the first snapshot
+    private volatile long appliedSeq; // last change applied locally
+    private volatile long primarySeq; // newest change the primary reported
+    private volatile long lastAppliedTime;
+    private volatile long lastApplyDelay;
+    private volatile boolean connected;
+    private volatile boolean running;
+    private boolean syncAcks;
+    private long lastSave = System.currentTimeMillis();
+
+    private DataOutputStream journal;
+    private FileOutputStream journalStream;
+    private Socket socket;
+
+    public ReplicationStandby(DataStore store, String host, int port, File dataDir) {
+        this.store = store;
+        this.host = host;
+        this.port = port;
+        this.stateFile = new File(dataDir, "replica-state.json");
+        this.journalFile = new File(dataDir, "replica.journal");
+    }
+
+    // Recovers the local journal, then follows the primary on a background thread
+    public void start() throws IOException {
+        recover();
+        openJournal(true);
+        running = true;
+        StoreMetrics metrics = StoreMetrics.getInstance();
+        metrics.registerGauge("replication.standby.appliedSeq", this::appliedSequence);
+        metrics.registerGauge("replication.standby.lagRecords", this::lagRecords);
+        metrics.registerGauge("replication.standby.lagMillis", this::lagMillis);
+        Thread follower = new Thread(this::followLoop, "replication-standby");
+        follower.setDaemon(true);
+        follower.start();
+    }
+
+    // Stops following and saves, so a restart resumes from here
+    public synchronized void close() {
+        running = false;
+        try {
+            if (socket != null) socket.close();
+        } catch (IOException e) {
+            // already closed
+        }
+        if (journal != null) save();
+    }
+
+    //----------------------------------------------------------------------
+    // Lag metrics
+    //----------------------------------------------------------------------
+
+    public long appliedSequence() { return appliedSeq; }
+    public long primarySequence() { return Math.max(primarySeq, appliedSeq); }
+    public boolean isConnected() { return connected; }
+    public long lagRecords() { return primarySequence() - appliedSeq; }
+
+    // How far the applied state trails the primary; 0 when caught up
+    public long lagMillis() {
+        return lagRecords() == 0 || lastAppliedTime == 0 ? 0 : System.currentTimeMillis() - lastAppliedTime;
+    }
+
+    // Time between the primary committing the last applied change and the standby applying it
+    public long lastApplyDelayMillis() { return lastApplyDelay; }
+
+    @Override
+    public String toString() {
+        return "standby " + (connected ? "connected" : "disconnected") + " applied=" + appliedSeq
+                + " primary=" + primarySequence() + " lag=" + lagRecords() + " records/" + lagMillis()
+                + " ms apply-delay=" + lastApplyDelay + " ms";
+    }
+
+    //----------------------------------------------------------------------
+    // Following the primary
+    //----------------------------------------------------------------------
+
+    private void followLoop() {
+        while (running) {
+            try (Socket s = new Socket(host, port)) {
+                synchronized (this) {
+                    socket = s;
+                }
+                s.setTcpNoDelay(true);
+                follow(s);
+            } catch (IOException e) {
+                if (running && connected) {
+                    System.err.println("replication: lost primary " + host + ":" + port + " (" + e.getMessage() + ")");
+                }
+            } finally {
+                connected = false;
+            }
+            sleep(RECONNECT_MS);
+        }
+    }
+
+    private void follow(Socket s) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 64 * 1024));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+        ReplicationCodec.writeFrame(out, ReplicationCodec.hello(epoch, appliedSeq));
+        out.flush();
+        connected = true;
+
+        long ackedSeq = -1;
+        while (running) {
+            byte[] frame = ReplicationCodec.readFrame(in);
+            ReplicationCodec.Message m = ReplicationCodec.read(frame);
+            synchronized (this) {
+                switch (m.kind) {
+                    case ReplicationCodec.START -> syncAcks = m.sync;
+                    case ReplicationCodec.SNAPSHOT -> applySnapshot(m);
+                    case ReplicationCodec.EVENT -> {
+                        if (m.seq <= appliedSeq) break; // already have it
+                        ReplicationCodec.writeFrame(journal, frame);
+                        apply(m.event);
+                        appliedSeq = m.seq;
+                        lastAppliedTime = m.time;
+                        lastApplyDelay = System.currentTimeMillis() - m.time;
+                    }
+                    case ReplicationCodec.HEARTBEAT -> primarySeq = m.seq;
+                    default -> { }
+                }
+                primarySeq = Math.max(primarySeq, m.seq);
+                if (System.currentTimeMillis() - lastSave >= StoreConfig.REPLICATION_SAVE_INTERVAL_MS) {
+                    save();
+                }
+            }
+            // Acknowledge once the buffered frames are drained, or every ACK_EVERY changes while the
+            // primary keeps shipping, so its acknowledged sequence never trails a burst by much
+            if (appliedSeq != ackedSeq && (in.available() == 0 || appliedSeq - ackedSeq >= ACK_EVERY)) {
+                synchronized (this) {
+                    flushJournal();
+                }
+                ReplicationCodec.writeFrame(out, ReplicationCodec.ack(appliedSeq));
+                out.flush();
+                ackedSeq = appliedSeq;
+            }
+        }
+    }
+
+    private void applySnapshot(ReplicationCodec.Message m) throws IOException {
+        store.replaceContents(m.wizards, m.artifacts, m.transfers);
+        epoch = m.epoch;
+        appliedSeq = m.seq;
+        lastAppliedTime = 0;
+        // The journal must never be replayed on top of a different snapshot: without a saved
+        // snapshot no change may be journaled, so drop the connection and ask for a new one
+        if (!save()) {
+            epoch = null;
+            throw new IOException("could not save the snapshot at seq " + m.seq);
+        }
+    }
+
+    // Maps a shipped change onto the local store; every branch tolerates being applied twice
+    void apply(StoreEvent e) {
+        switch (e.getType()) {
+            case WIZARD_ADDED -> {
+                if (store.findWizardById(e.getWizardId()) != null) {
+                    store.renameWizard(e.getWizardId(), e.getName());
+                } else {
+                    Wizard w = new Wizard(e.getName());
+                    w.setId(e.getWizardId());
+                    store.restoreWizard(w);
+                }
+            }
+            case WIZARD_UPDATED -> store.renameWizard(e.getWizardId(), e.getName());
+            case WIZARD_DELETED -> store.deleteWizardById(e.getWizardId());
+            case ARTIFACT_ADDED -> {
+                if (store.findArtifactById(e.getArtifactId()) != null) {
+                    store.updateArtifact(e.getArtifactId(), e.getName(), e.getDescription());
+                    store.setArtifactCondition(e.getArtifactId(), e.getCondition());
+                } else {
+                    Artifact a = new Artifact(e.getName(), e.getDescription());
+                    a.setId(e.getArtifactId());
+                    a.setCondition(e.getCondition());
+                    store.restoreArtifact(a);
+                }
+            }
+            case ARTIFACT_UPDATED -> store.updateArtifact(e.getArtifactId(), e.getName(), e.getDescription());
+            case ARTIFACT_DELETED -> store.deleteArtifactById(e.getArtifactId());
+            case CONDITION_CHANGED -> store.setArtifactCondition(e.getArtifactId(), e.getCondition());
+            case ASSIGNED -> {
+                store.restoreOwnership(e.getArtifactId(), e.getWizardId(), e.getCondition());
+                addTransfers(e);
+            }
+            case UNASSIGNED -> {
+                store.detachOwner(e.getArtifactId(), e.getCondition());
+                addTransfers(e);
+            }
+            case HISTORY_RESTORED -> {
+                if (!hasTransfer(e.getTransfers().get(0))) {
+                    store.restoreHistory(e.getArtifactId(), e.getTransfers());
+                }
+            }
+        }
+    }
+
+    private void addTransfers(StoreEvent e) {
+        for (History h : e.getTransfers()) {
+            if (!hasTransfer(h)) store.addHistoryEntry(h.getArtifactId(), h);
+        }
+    }
+
+    private boolean hasTransfer(History h) {
+        List<History> existing = store.getHistoryByArtifactId(h.getArtifactId());
+        for (int i = existing.size() - 1; i >= 0; i--) {
+            History other = existing.get(i);
+            if (other.getTimestamp().equals(h.getTimestamp()) && other.getWizardId() == h.getWizardId()) return true;
+        }
+        return false;
+    }
+
+    //----------------------------------------------------------------------
+    // Local durability
+    //----------------------------------------------------------------------
+
+    // Saves the store, records which sequence it holds and starts an empty journal. The journal
+    // is only emptied once both are on disk; after a failed save it keeps growing and is replayed
+    // on restart as before. Returns false when the save failed.
+    private synchronized boolean save() {
+        lastSave = System.currentTimeMillis();
+        if (!store.saveAll()) {
+            System.err.println("replication: save failed, keeping the journal up to seq " + appliedSeq);
+            return false;
+        }
+        try {
+            writeState();
+            journal.close();
+            openJournal(false);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private void flushJournal() throws IOException {
+        journal.flush();
+        if (syncAcks) {
+            journalStream.getFD().sync(); // a sync ack means the change survives a standby crash
+        }
+    }
+
+    private void openJournal(boolean append) throws IOException {
+        journalStream = new FileOutputStream(journalFile, append);
+        journal = new DataOutputStream(new BufferedOutputStream(journalStream, 64 * 1024));
+    }
+
+    private void recover() throws IOException {
+        readState();
+        if (!journalFile.exists()) return;
+        int replayed = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            while (true) {
+                ReplicationCodec.Message m = ReplicationCodec.read(ReplicationCodec.readFrame(in));
+                if (m.seq > appliedSeq && m.event != null) {
+                    apply(m.event);
+                    appliedSeq = m.seq;
+                    replayed++;
+                }
+            }
+        } catch (EOFException e) {
+            // end of journal; a torn last frame is simply dropped and shipped again
+        }
+        if (replayed > 0) {
+            System.out.println("replication: replayed " + replayed + " journaled changes up to seq " + appliedSeq);
+        }
+    }
+
+    private void writeState() throws IOException {
+        File tmp = new File(stateFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp); JsonGenerator gen = new JsonFactory().createGenerator(out)) {
+            gen.writeStartObject();
+            if (epoch != null) gen.writeStringField("epoch", epoch);
+            gen.writeNumberField("seq", appliedSeq);
+            gen.writeEndObject();
+            gen.flush();
+            out.getFD().sync();
+        }
+        Files.move(tmp.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void readState() throws IOException {
+        if (!stateFile.exists()) return;
+        try (JsonParser parser = new JsonFactory().createParser(stateFile)) {
+            parser.nextToken();
+            while (parser.nextToken() != JsonToken.END_OBJECT) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "epoch": epoch = parser.getText(); break;
+                    case "seq": appliedSeq = parser.getLongValue(); break;
+                    default: parser.skipChildren(); break;
+                }
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
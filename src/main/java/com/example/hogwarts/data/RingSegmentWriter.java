@@ -0,0 +1,250 @@
+package com.example.hogwarts.data;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+/**
+ * Bounded ring of records, drained by one background thread into rolling JSON-lines segment
+ * files; the AuditTrail and ChangeCapture write through it. offer() claims a slot with one CAS
+ * and publishes the record into it. Only a full ring (the disk cannot keep up) makes it wait,
+ * and at most fullWaitMillis: then, or when the writer is gone, the record is dropped and
+ * counted. A batch that cannot be written is counted as failed and the writer carries on with
+ * a new segment. A segment is closed once it reaches segmentBytes and the oldest segments are
+ * deleted beyond maxSegments. The remaining records are written on JVM shutdown.
+ *
+ * Gauges, under the given metrics prefix: pending, written, fullWaits, dropped, failed.
+ */
+final class RingSegmentWriter<T> {
+    private static final int BATCH = 512;
+    private static final long IDLE_PARK_NANOS = 2_000_000;
+    private static final long FULL_PARK_NANOS = 50_000;
+
+    // What the owner puts into the segments; called on the writer thread only
+    interface Format<T> {
+        // File for a new segment that starts with this record
+        File segmentFile(File dir, T first);
+
+        // Existing segments, oldest first
+        List<File> segments(File dir);
+
+        void write(JsonGenerator gen, T record) throws IOException;
+
+        // After each batch, written or not
+        default void afterBatch(List<T> batch) { }
+
+        // After the last batch on shutdown
+        default void afterClose() { }
+    }
+
+    private final String label;
+    private final File dir;
+    private final long segmentBytes;
+    private final int maxSegments;
+    private final long fullWaitNanos;
+    private final Format<T> format;
+
+    // Ring: slot i holds the record of sequence s when published[i] == s
+    private final int mask;
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLongArray published;
+    private final AtomicLong tail = new AtomicLong(); // next sequence to claim
+    private volatile long head;                       // next sequence to drain, written by the writer only
+
+    private final LongAdder fullWaits = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Thread writer;
+    private volatile boolean closing;
+
+    private CountingOutputStream segmentOut;
+    private JsonGenerator gen;
+
+    RingSegmentWriter(String label, String metricsPrefix, File dir, int capacity, long segmentBytes, int maxSegments,
+                      long fullWaitMillis, Format<T> format) {
+        this.label = label;
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = Math.max(1, maxSegments);
+        this.fullWaitNanos = Math.max(0, fullWaitMillis) * 1_000_000L;
+        this.format = format;
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1; // power of two >= capacity
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) published.set(i, -1);
+
+        this.writer = new Thread(this::drainLoop, metricsPrefix + "-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, metricsPrefix + "-shutdown"));
+
+        StoreMetrics metrics = StoreMetrics.getInstance();
+        metrics.registerGauge(metricsPrefix + ".pending", () -> tail.get() - head);
+        metrics.registerGauge(metricsPrefix + ".written", written::sum);
+        metrics.registerGauge(metricsPrefix + ".fullWaits", fullWaits::sum);
+        metrics.registerGauge(metricsPrefix + ".dropped", dropped::sum);
+        metrics.registerGauge(metricsPrefix + ".failed", failed::sum);
+    }
+
+    /**
+     * Publishes the record made for the claimed sequence (0, 1, 2, ... in claim order, so
+     * dropped records leave no hole). Returns false if the record was dropped.
+     */
+    boolean offer(LongFunction<T> record) {
+        if (closing) return false;
+        long seq;
+        long deadline = 0;
+        while (true) {
+            long t = tail.get();
+            if (t - head > mask) {
+                // Full: the writer is behind, give it a moment, but never hold up the caller for long
+                if (deadline == 0) {
+                    fullWaits.increment();
+                    deadline = System.nanoTime() + fullWaitNanos;
+                } else if (System.nanoTime() - deadline > 0 || !writer.isAlive()) {
+                    dropped.increment();
+                    return false;
+                }
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+                continue;
+            }
+            if (tail.compareAndSet(t, t + 1)) {
+                seq = t;
+                break;
+            }
+        }
+        int slot = (int) (seq & mask);
+        slots.set(slot, record.apply(seq));
+        published.set(slot, seq); // makes the record visible to the writer
+        return true;
+    }
+
+    // Sequences claimed so far
+    long claimed() {
+        return tail.get();
+    }
+
+    boolean isClosing() {
+        return closing;
+    }
+
+    boolean isWriterAlive() {
+        return writer.isAlive();
+    }
+
+    // Blocks until everything offered so far is drained (or the timeout passed)
+    boolean flush(long timeoutMillis) {
+        long target = tail.get();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (head < target) {
+            if (System.currentTimeMillis() > deadline || !writer.isAlive()) return false;
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        return true;
+    }
+
+    void close() {
+        closing = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //----------------------------------------------------------------------
+    // Writer thread
+    //----------------------------------------------------------------------
+
+    private void drainLoop() {
+        List<T> batch = new ArrayList<>(BATCH);
+        while (true) {
+            drainTo(batch);
+            if (batch.isEmpty()) {
+                if (closing && head == tail.get()) break;
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            try {
+                write(batch);
+            } catch (Throwable e) {
+                // Whatever it was, the writer keeps going: the next batch starts a new segment
+                failed.add(batch.size());
+                System.err.println(label + ": cannot write " + batch.size() + " records (" + failed.sum()
+                        + " lost so far): " + e);
+                closeSegment();
+            }
+            try {
+                format.afterBatch(batch);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+            batch.clear();
+        }
+        closeSegment();
+        format.afterClose();
+    }
+
+    private void drainTo(List<T> batch) {
+        long h = head;
+        while (batch.size() < BATCH) {
+            int slot = (int) (h & mask);
+            if (published.get(slot) != h) break; // not claimed yet, or claimed and still being filled
+            batch.add(slots.get(slot));
+            slots.set(slot, null);
+            h++;
+        }
+        head = h; // frees the slots for the producers
+    }
+
+    private void write(List<T> batch) throws IOException {
+        if (gen == null) openSegment(batch.get(0));
+        for (T record : batch) {
+            format.write(gen, record);
+            gen.writeRaw('\n');
+        }
+        gen.flush();
+        written.add(batch.size());
+        if (segmentOut.count >= segmentBytes) {
+            closeSegment();
+        }
+    }
+
+    private void openSegment(T first) throws IOException {
+        if (!dir.exists()) dir.mkdirs();
+        File file = format.segmentFile(dir, first);
+        segmentOut = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        gen = new JsonFactory().createGenerator(segmentOut);
+        gen.setRootValueSeparator(new SerializedString(""));
+        // Keeps the newest maxSegments, the one just opened included
+        List<File> all = format.segments(dir);
+        for (int i = 0; i < all.size() - maxSegments; i++) {
+            all.get(i).delete();
+        }
+    }
+
+    private void closeSegment() {
+        if (gen == null) return;
+        try {
+            gen.close();
+        } catch (IOException | RuntimeException e) {
+            System.err.println(label + ": cannot close segment: " + e.getMessage());
+        }
+        gen = null;
+        segmentOut = null;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.hogwarts.data;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A search or filter over the artifacts, wherever it runs (view filter, controller query).
+ */
+@Name("hogwarts.Search")
+@Label("Search")
+@Category({ "Hogwarts", "Search" })
+public final class SearchEvent extends TracedOperation {
+    @Label("Source")
+    String source;
+
+    @Label("Query")
+    String query;
+
+    @Label("Access Path")
+    String access;
+
+    @Label("Scanned")
+    int scanned;
+
+    @Label("Matches")
+    int matches;
+
+    public static SearchEvent start(String source, String query) {
+        SearchEvent event = new SearchEvent();
+        event.source = source;
+        event.query = query;
+        event.start();
+        return event;
+    }
+
+    // A search run through the query API, labelled with the plan's access path
+    public static SearchEvent start(String source, QueryPlan plan) {
+        SearchEvent event = start(source, plan.toString().lines().findFirst().orElse(""));
+        event.access = plan.getAccess().name();
+        return event;
+    }
+
+    public void finish(int scanned, int matches) {
+        this.scanned = scanned;
+        this.matches = matches;
+        finish();
+    }
+
+    @Override
+    protected String describe() {
+        return "search " + source + " \"" + query + "\" (" + (access != null ? access + ", " : "")
+                + scanned + " scanned, " + matches + " matches)";
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.hogwarts.data;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lock domains of the DataStore: one lock per artifact shard plus a striped set of wizard locks.
+ * Lock order is always artifact shards (ascending) before wizard stripes (ascending), which is
+ * what keeps cross-shard operations such as assign and wizard delete deadlock-free.
+ */
+final class ShardLocks {
+    private final ReentrantLock[] artifactLocks;
+    private final ReentrantLock[] wizardLocks;
+
+    ShardLocks(int shards) {
+        this.artifactLocks = new ReentrantLock[shards];
+        this.wizardLocks = new ReentrantLock[shards];
+        for (int i = 0; i < shards; i++) {
+            artifactLocks[i] = new ReentrantLock();
+            wizardLocks[i] = new ReentrantLock();
+        }
+    }
+
+    int shardCount() {
+        return artifactLocks.length;
+    }
+
+    int shardOf(int artifactId) {
+        return Math.floorMod(artifactId, artifactLocks.length);
+    }
+
+    ReentrantLock artifactLock(int artifactId) {
+        return artifactLocks[shardOf(artifactId)];
+    }
+
+    // Locks the stripes of up to two wizards (ids < 0 are ignored) in stripe order
+    void lockWizards(int wizardA, int wizardB) {
+        int a = stripe(wizardA), b = stripe(wizardB);
+        if (a > b) { int t = a; a = b; b = t; }
+        if (a >= 0) wizardLocks[a].lock();
+        if (b >= 0 && b != a) wizardLocks[b].lock();
+    }
+
+    void unlockWizards(int wizardA, int wizardB) {
+        int a = stripe(wizardA), b = stripe(wizardB);
+        if (b >= 0 && b != a) wizardLocks[b].unlock();
+        if (a >= 0) wizardLocks[a].unlock();
+    }
+
+    // Whole-store operations (wizard delete) take every artifact shard first
+    void lockAllArtifacts() {
+        for (ReentrantLock lock : artifactLocks) lock.lock();
+    }
+
+    void unlockAllArtifacts() {
+        for (int i = artifactLocks.length - 1; i >= 0; i--) artifactLocks[i].unlock();
+    }
+
+    // Every lock domain, in lock order; nothing can change the store while they are held
+    void lockAll() {
+        lockAllArtifacts();
+        for (ReentrantLock lock : wizardLocks) lock.lock();
+    }
+
+    void unlockAll() {
+        for (int i = wizardLocks.length - 1; i >= 0; i--) wizardLocks[i].unlock();
+        unlockAllArtifacts();
+    }
+
+    private int stripe(int wizardId) {
+        return wizardId < 0 ? -1 : Math.floorMod(wizardId, wizardLocks.length);
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.History;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Partitioned persistence (hogwarts.shards > 0): artifacts and their history are split by
+ * artifact id into data/shards/shard-N/{artifacts,transfers}.json. Every shard has its own
+ * persistence thread, so load and save run one shard per core. Wizards stay in wizards.json.
+ */
+class ShardedPersistence implements Closeable {
+    private static final String SHARD_PREFIX = "shard-";
+
+    private final File root;
+    private final int shards;
+    private final ExecutorService[] shardThreads;
+    private final PersistenceIo io;
+
+    ShardedPersistence(File root, int shards, PersistenceIo io) {
+        this.root = root;
+        this.io = io;
+        this.shards = shards;
+        this.shardThreads = new ExecutorService[shards];
+        for (int i = 0; i < shards; i++) {
+            String name = "shard-" + i + "-persistence";
+            shardThreads[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    static boolean exists(File root) {
+        return !shardDirs(root).isEmpty();
+    }
+
+    int shardOf(int artifactId) {
+        return Math.floorMod(artifactId, shards);
+    }
+
+    void save(StoreSnapshot snapshot, IoStats stats) throws IOException {
+        // One pass over the snapshot to partition, then every shard serializes its own part in parallel
+        List<List<StoreSnapshot.ArtifactState>> artifactParts = partition();
+        List<List<List<History>>> historyParts = partition();
+        snapshot.forEachArtifact(a -> artifactParts.get(shardOf(a.getId())).add(a));
+        snapshot.forEachHistoryList((artifactId, historyList) -> historyParts.get(shardOf(artifactId)).add(historyList));
+
+        List<Future<?>> writes = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            int shard = i;
+            writes.add(shardThreads[shard].submit(() -> {
+                File dir = new File(root, SHARD_PREFIX + shard);
+                if (!dir.exists()) dir.mkdirs();
+                writeArtifacts(new File(dir, "artifacts.json"), artifactParts.get(shard), stats);
+                writeTransfers(new File(dir, "transfers.json"), historyParts.get(shard), stats);
+                return null;
+            }));
+        }
+        await(writes);
+
+        // Shards left over from a run with a higher shard count would be loaded again; drop them
+        for (File dir : shardDirs(root)) {
+            if (shardNumber(dir) >= shards) {
+                deleteDir(dir);
+            }
+        }
+    }
+
+    // Loads every shard directory found (whatever shard count wrote them), one thread per shard
+    void load(DataStore store, IoStats stats) throws IOException {
+        List<Future<?>> reads = new ArrayList<>();
+        for (File dir : shardDirs(root)) {
+            ExecutorService thread = shardThreads[shardNumber(dir) % shards];
+            reads.add(thread.submit(() -> {
+                readArtifacts(new File(dir, "artifacts.json"), store, stats);
+                readTransfers(new File(dir, "transfers.json"), store, stats);
+                return null;
+            }));
+        }
+        await(reads);
+    }
+
+    static void deleteAll(File root) {
+        for (File dir : shardDirs(root)) {
+            deleteDir(dir);
+        }
+    }
+
+    private <T> List<List<T>> partition() {
+        List<List<T>> parts = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            parts.add(new ArrayList<>());
+        }
+        return parts;
+    }
+
+    private void writeArtifacts(File file, List<StoreSnapshot.ArtifactState> artifacts, IoStats stats) throws IOException {
+        JsonFactory factory = new JsonFactory();
+        try (PersistenceIo.AtomicFileStream out = io.openWrite(file, stats);
+             JsonGenerator gen = factory.createGenerator(out)) {
+            gen.writeStartArray();
+            for (StoreSnapshot.ArtifactState a : artifacts) {
+                ArtifactJson.write(gen, a);
+            }
+            gen.writeEndArray();
+            gen.flush();
+            out.commit();
+        }
+    }
+
+    private void writeTransfers(File file, List<List<History>> logs, IoStats stats) throws IOException {
+        JsonFactory factory = new JsonFactory();
+        try (PersistenceIo.AtomicFileStream out = io.openWrite(file, stats);
+             JsonGenerator gen = factory.createGenerator(out)) {
+            gen.writeStartArray();
+            for (List<History> historyList : logs) {
+                for (History h : historyList) {
+                    HistoryJson.write(gen, h);
+                }
+            }
+            gen.writeEndArray();
+            gen.flush();
+            out.commit();
+        }
+    }
+
+    private void readArtifacts(File file, DataStore store, IoStats stats) throws IOException {
+        if (!file.exists()) return;
+        JsonFactory factory = new JsonFactory();
+        try (JsonParser parser = factory.createParser(io.openRead(file, stats))) {
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+                    store.putLoadedArtifact(ArtifactJson.read(parser));
+                }
+            }
+        }
+    }
+
+    private void readTransfers(File file, DataStore store, IoStats stats) throws IOException {
+        if (!file.exists()) return;
+        JsonFactory factory = new JsonFactory();
+        try (JsonParser parser = factory.createParser(io.openRead(file, stats))) {
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+                    History h = HistoryJson.read(parser);
+                    store.addHistoryEntry(h.getArtifactId(), h);
+                }
+            }
+        }
+    }
+
+    private static void await(List<Future<?>> futures) throws IOException {
+        try {
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for shard persistence", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IOException(e.getCause());
+        }
+    }
+
+    // Stops the shard threads; only for a loader made for one load, the store's own instance lives as long as the app
+    @Override
+    public void close() {
+        for (ExecutorService thread : shardThreads) thread.shutdown();
+    }
+
+    private static List<File> shardDirs(File root) {
+        File[] dirs = root.listFiles(f -> f.isDirectory() && f.getName().startsWith(SHARD_PREFIX));
+        return dirs == null ? List.of() : Arrays.asList(dirs);
+    }
+
+    private static int shardNumber(File dir) {
+        return Integer.parseInt(dir.getName().substring(SHARD_PREFIX.length()));
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) f.delete();
+        }
+        dir.delete();
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.hogwarts.data;
+
+import java.io.File;
+
+/**
+ * Store settings, read once from system properties (e.g. -Dhogwarts.dataDir=...).
+ * Defaults keep the original behaviour of the app.
+ */
+public final class StoreConfig {
+    // Directory holding wizards.json, artifacts.json and transfers.json
+    public static final String DATA_DIR = System.getProperty("hogwarts.dataDir", "data");
+
+    // History retention: 0 or less disables the corresponding rule (the default keeps all history hot)
+    public static final int HISTORY_RETAIN_DAYS = Integer.getInteger("hogwarts.history.retainDays", 0);
+    public static final int HISTORY_RETAIN_ENTRIES = Integer.getInteger("hogwarts.history.retainEntries", -1);
+
+    // Partitioned mode: number of artifact shards (files, locks and persistence threads); 0 keeps the three classic files
+    public static final int SHARDS = Integer.getInteger("hogwarts.shards", 0);
+
+    // Storage engine for the artifacts: "heap" keeps them all in memory, "paged" in a B+tree file
+    // (data/artifacts.db) with an LRU page cache of the given size; the JSON files stay the durable snapshot
+    public static final boolean PAGED_ENGINE = "paged".equals(System.getProperty("hogwarts.engine", "heap"));
+    public static final int ENGINE_CACHE_MB = Integer.getInteger("hogwarts.engine.cacheMb", 64);
+
+    // Compression of the data files: "none", "deflate" or "gzip" (see PersistenceCodecs); loading detects it by itself
+    public static final String PERSIST_CODEC = System.getProperty("hogwarts.persist.codec", "none");
+    public static final int PERSIST_LEVEL = Integer.getInteger("hogwarts.persist.level", 6);
+    public static final int PERSIST_BUFFER_KB = Integer.getInteger("hogwarts.persist.bufferKb", 256);
+    // Print the bytes and time of every save and of the initial load
+    public static final boolean PERSIST_STATS = Boolean.getBoolean("hogwarts.persist.stats");
+
+    // Where the store is loaded from and saved to: "json" (the data files) or "jdbc" (a database, see JdbcPersistence)
+    public static final String PERSIST_BACKEND = System.getProperty("hogwarts.persist.backend", "json");
+    // JDBC URL of H2 or another database with standard SQL MERGE (PostgreSQL 15+) whose driver is on the path;
+    // the default is an embedded H2 file next to the JSON files
+    public static final String JDBC_URL = System.getProperty("hogwarts.jdbc.url",
+            "jdbc:h2:file:" + new File(DATA_DIR, "hogwarts").getAbsolutePath());
+    public static final String JDBC_USER = System.getProperty("hogwarts.jdbc.user", "sa");
+    public static final String JDBC_PASSWORD = System.getProperty("hogwarts.jdbc.password", "");
+    public static final int JDBC_POOL_SIZE = Integer.getInteger("hogwarts.jdbc.poolSize", 4);
+    // Rows per executeBatch() on save, rows per keyset page on load
+    public static final int JDBC_BATCH_SIZE = Integer.getInteger("hogwarts.jdbc.batchSize", 1000);
+    public static final int JDBC_PAGE_SIZE = Integer.getInteger("hogwarts.jdbc.pageSize", 10_000);
+
+    // Build (or restore from data/artifacts.idx) the sort index on a background thread right after loading,
+    // so the first sorted view does not wait for it
+    public static final boolean INDEX_WARMUP = Boolean.parseBoolean(System.getProperty("hogwarts.index.warmup", "true"));
+
+    // Audit trail of user actions (see AuditTrail): ring slots, segment size and how many segments are kept
+    public static final boolean AUDIT_ENABLED = Boolean.parseBoolean(System.getProperty("hogwarts.audit", "true"));
+    public static final int AUDIT_RING_SIZE = Integer.getInteger("hogwarts.audit.ringSize", 8192);
+    public static final int AUDIT_SEGMENT_KB = Integer.getInteger("hogwarts.audit.segmentKb", 4096);
+    public static final int AUDIT_MAX_SEGMENTS = Integer.getInteger("hogwarts.audit.maxSegments", 16);
+    // How long record() waits for a slot when the ring is full before it drops the record (counted in audit.dropped)
+    public static final int AUDIT_FULL_WAIT_MS = Integer.getInteger("hogwarts.audit.fullWaitMs", 100);
+
+    // Consistency check of the object graph in the background after loading (see ConsistencyChecker); repair fixes what it finds
+    public static final boolean CHECK_ON_STARTUP = Boolean.parseBoolean(System.getProperty("hogwarts.check.startup", "true"));
+    public static final boolean CHECK_REPAIR = Boolean.getBoolean("hogwarts.check.repair");
+
+    // Change-data-capture of every store change to data/cdc (see ChangeCapture): ring slots, segment size, segments kept
+    public static final boolean CDC_ENABLED = Boolean.getBoolean("hogwarts.cdc");
+    public static final int CDC_RING_SIZE = Integer.getInteger("hogwarts.cdc.ringSize", 65536);
+    public static final int CDC_SEGMENT_KB = Integer.getInteger("hogwarts.cdc.segmentKb", 8192);
+    public static final int CDC_MAX_SEGMENTS = Integer.getInteger("hogwarts.cdc.maxSegments", 32);
+    // How long a store change waits for a slot when the ring is full before it is dropped (counted in cdc.dropped)
+    public static final int CDC_FULL_WAIT_MS = Integer.getInteger("hogwarts.cdc.fullWaitMs", 100);
+
+    // Condition maintenance (see MaintenanceScheduler): every interval, artifacts in use (owned) and stored ones lose
+    // the given points, then up to repairBudget artifacts below repairBelow are repaired to repairTo, worst first
+    public static final boolean MAINTENANCE_ENABLED = Boolean.getBoolean("hogwarts.maintenance");
+    public static final int MAINTENANCE_INTERVAL_SECONDS = Integer.getInteger("hogwarts.maintenance.intervalSeconds", 3600);
+    public static final int MAINTENANCE_DECAY_IN_USE = Integer.getInteger("hogwarts.maintenance.decayInUse", 1);
+    public static final int MAINTENANCE_DECAY_STORED = Integer.getInteger("hogwarts.maintenance.decayStored", 0);
+    public static final int MAINTENANCE_REPAIR_BELOW = Integer.getInteger("hogwarts.maintenance.repairBelow", 30);
+    public static final int MAINTENANCE_REPAIR_TO = Integer.getInteger("hogwarts.maintenance.repairTo", 100);
+    public static final int MAINTENANCE_REPAIR_BUDGET = Integer.getInteger("hogwarts.maintenance.repairBudget", 100);
+    public static final int MAINTENANCE_THREADS = Integer.getInteger("hogwarts.maintenance.threads", 2);
+
+    // Replication: "primary" listens for standbys, "standby" follows a primary; anything else disables it
+    public static final String REPLICATION_ROLE = System.getProperty("hogwarts.replication.role", "none");
+    public static final String REPLICATION_HOST = System.getProperty("hogwarts.replication.host", "127.0.0.1");
+    public static final int REPLICATION_PORT = Integer.getInteger("hogwarts.replication.port", 7070);
+    // "sync": standbys sync their journal before acknowledging, a standby missing the timeout drops to async,
+    // and ReplicationPrimary.awaitAcks() (save, shutdown) waits for every in-sync standby; "async" ships in the background
+    public static final boolean REPLICATION_SYNC = "sync".equals(System.getProperty("hogwarts.replication.ack", "async"));
+    public static final int REPLICATION_SYNC_TIMEOUT_MS = Integer.getInteger("hogwarts.replication.syncTimeoutMs", 2000);
+    // Records kept on the primary for tail catch-up; a standby further behind gets a snapshot
+    public static final int REPLICATION_JOURNAL_RECORDS = Integer.getInteger("hogwarts.replication.journalRecords", 100_000);
+    // How often a standby saves its store and truncates its local journal
+    public static final int REPLICATION_SAVE_INTERVAL_MS = Integer.getInteger("hogwarts.replication.saveIntervalMs", 5000);
+
+    // Operations (mutations, load/save phases, searches, controller actions) at least this slow are logged; 0 disables
+    public static final long SLOW_OP_MS = Long.getLong("hogwarts.slowOpMillis", 200);
+
+    // Sessions unused for this long are closed (SessionManager); 0 keeps them until logout
+    public static final int SESSION_IDLE_MINUTES = Integer.getInteger("hogwarts.session.idleMinutes", 0);
+
+    private StoreConfig() {
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.History;
+
+import java.util.List;
+
+/**
+ * A single change to the DataStore, delivered to every StoreListener after it was applied.
+ * Only the fields relevant to the type are set; ids that do not apply are -1.
+ */
+public class StoreEvent {
+    public enum Type {
+        WIZARD_ADDED, WIZARD_UPDATED, WIZARD_DELETED,
+        ARTIFACT_ADDED, ARTIFACT_UPDATED, ARTIFACT_DELETED,
+        ASSIGNED, UNASSIGNED, CONDITION_CHANGED,
+        HISTORY_RESTORED
+    }
+
+    private final Type type;
+    private final int artifactId;
+    private final int wizardId;
+    private final String name;
+    private final String description;
+    private final int condition;
+    private final List<History> transfers;
+    private final long timestamp;
+
+    private StoreEvent(Type type, int artifactId, int wizardId, String name, String description, int condition,
+                       List<History> transfers, long timestamp) {
+        this.type = type;
+        this.artifactId = artifactId;
+        this.wizardId = wizardId;
+        this.name = name;
+        this.description = description;
+        this.condition = condition;
+        this.transfers = transfers;
+        this.timestamp = timestamp;
+    }
+
+    private StoreEvent(Type type, int artifactId, int wizardId, String name, String description, int condition) {
+        this(type, artifactId, wizardId, name, description, condition, List.of(), System.currentTimeMillis());
+    }
+
+    static StoreEvent wizard(Type type, int wizardId, String name) {
+        return new StoreEvent(type, -1, wizardId, name, null, -1);
+    }
+
+    static StoreEvent artifact(Type type, int artifactId, String name, String description, int condition) {
+        return new StoreEvent(type, artifactId, -1, name, description, condition);
+    }
+
+    static StoreEvent ownership(Type type, int artifactId, int wizardId, int condition) {
+        return new StoreEvent(type, artifactId, wizardId, null, null, condition);
+    }
+
+    // Ownership change that was logged as a transfer
+    static StoreEvent transfer(Type type, int artifactId, int wizardId, int condition, History logged) {
+        return new StoreEvent(type, artifactId, wizardId, null, null, condition, List.of(logged), System.currentTimeMillis());
+    }
+
+    static StoreEvent historyRestored(int artifactId, List<History> entries) {
+        return new StoreEvent(Type.HISTORY_RESTORED, artifactId, -1, null, null, -1, List.copyOf(entries), System.currentTimeMillis());
+    }
+
+    // Rebuilds an event received from a replication primary
+    static StoreEvent replicated(Type type, int artifactId, int wizardId, String name, String description, int condition,
+                                 List<History> transfers, long timestamp) {
+        return new StoreEvent(type, artifactId, wizardId, name, description, condition, transfers, timestamp);
+    }
+
+    public Type getType() { return type; }
+    public int getArtifactId() { return artifactId; }
+    public int getWizardId() { return wizardId; }
+    public String getName() { return name; }
+    public String getDescription() { return description; }
+    public int getCondition() { return condition; }
+    // History entries this change logged (a real assign/unassign, or restored history); empty otherwise
+    public List<History> getTransfers() { return transfers; }
+    public long getTimestamp() { return timestamp; }
+
+    @Override
+    public String toString() {
+        return type + " artifact=" + artifactId + " wizard=" + wizardId;
+    }
+}
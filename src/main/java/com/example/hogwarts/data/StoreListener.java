@@ -0,0 +1,10 @@
+package com.example.hogwarts.data;
+
+/**
+ * Receives DataStore changes. Called synchronously on the thread that made the change,
+ * so UI listeners have to hop onto the FX thread themselves.
+ */
+@FunctionalInterface
+public interface StoreListener {
+    void onChange(StoreEvent event);
+}
@@ -0,0 +1,64 @@
+package com.example.hogwarts.data;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Central metrics surface: named gauges that are evaluated when a snapshot is taken.
+ * The store registers its memory and persistence figures, replication its lag, and the
+ * views the size of their row caches (names are dotted, e.g. memory.data.artifacts.bytes).
+ */
+public class StoreMetrics {
+    private static volatile StoreMetrics instance;
+
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    private StoreMetrics() {
+    }
+
+    public static StoreMetrics getInstance() {
+        if (instance == null) {
+            synchronized (StoreMetrics.class) {
+                if (instance == null) {
+                    instance = new StoreMetrics();
+                }
+            }
+        }
+        return instance;
+    }
+
+    // Replaces a gauge registered under the same name
+    public void registerGauge(String name, LongSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    public void unregisterGauge(String name) {
+        gauges.remove(name);
+    }
+
+    // Current value of every gauge, sorted by name
+    public Map<String, Long> snapshot() {
+        return snapshot("");
+    }
+
+    public Map<String, Long> snapshot(String prefix) {
+        Map<String, Long> values = new TreeMap<>();
+        for (Map.Entry<String, LongSupplier> e : gauges.entrySet()) {
+            if (e.getKey().startsWith(prefix)) {
+                values.put(e.getKey(), e.getValue().getAsLong());
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> e : snapshot().entrySet()) {
+            sb.append(e.getKey()).append(' ').append(e.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+}
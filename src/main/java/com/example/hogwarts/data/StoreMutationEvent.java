@@ -0,0 +1,43 @@
+package com.example.hogwarts.data;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One DataStore mutation, from before its locks are taken until its listeners ran,
+ * so lock waits and slow listeners both show up in the duration.
+ */
+@Name("hogwarts.StoreMutation")
+@Label("Store Mutation")
+@Category({ "Hogwarts", "Store" })
+final class StoreMutationEvent extends TracedOperation {
+    @Label("Operation")
+    String operation;
+
+    @Label("Artifact Id")
+    int artifactId;
+
+    @Label("Wizard Id")
+    int wizardId;
+
+    @Label("Items")
+    @Description("Artifacts or history entries touched besides the main entity")
+    int items;
+
+    static StoreMutationEvent start(String operation, int artifactId, int wizardId) {
+        StoreMutationEvent event = new StoreMutationEvent();
+        event.operation = operation;
+        event.artifactId = artifactId;
+        event.wizardId = wizardId;
+        event.start();
+        return event;
+    }
+
+    @Override
+    protected String describe() {
+        return "store " + operation + " (artifact " + artifactId + ", wizard " + wizardId
+                + (items > 0 ? ", " + items + " items" : "") + ")";
+    }
+}
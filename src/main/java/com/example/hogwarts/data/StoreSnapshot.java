@@ -0,0 +1,228 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.Artifact;
+import com.example.hogwarts.model.History;
+import com.example.hogwarts.model.Wizard;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Point-in-time view of the store for long readers (saves, exports, reports, the as-of
+ * index). Opening one only pauses writers for an instant; afterwards they keep going and
+ * the snapshot keeps returning the state of the moment it opened, read from the live store
+ * or, for whatever changed since, from the before-images in the VersionLog. Close it when
+ * done (try-with-resources) so those images can be dropped.
+ *
+ * Every artifact's owner id refers to a wizard of the same snapshot, and every history list
+ * is the one that belonged to that state.
+ */
+public class StoreSnapshot implements AutoCloseable {
+    /** An artifact as of the snapshot; the owner is an id, since Wizards link live objects. */
+    public static final class ArtifactState {
+        private final int id;
+        private final String name;
+        private final String description;
+        private final int condition;
+        private final int ownerId;
+
+        ArtifactState(int id, String name, String description, int condition, int ownerId) {
+            this.id = id;
+            this.name = name;
+            this.description = description;
+            this.condition = condition;
+            this.ownerId = ownerId;
+        }
+
+        static ArtifactState of(Artifact a) {
+            return new ArtifactState(a.getId(), a.getName(), a.getDescription(), a.getCondition(),
+                    a.hasOwner() ? a.getOwner().getId() : ArtifactJson.NO_OWNER);
+        }
+
+        public int getId() { return id; }
+        public String getName() { return name; }
+        public String getDescription() { return description; }
+        public int getCondition() { return condition; }
+        public boolean hasOwner() { return ownerId != ArtifactJson.NO_OWNER; }
+        // -1 when unassigned
+        public int getOwnerId() { return ownerId; }
+    }
+
+    public static final class WizardState {
+        private final int id;
+        private final String name;
+
+        WizardState(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        static WizardState of(Wizard w) {
+            return new WizardState(w.getId(), w.getName());
+        }
+
+        public int getId() { return id; }
+        public String getName() { return name; }
+    }
+
+    private final DataStore store;
+    private final VersionLog versions;
+    private final ShardLocks locks;
+    private final long epoch;
+    private final long artifactTableWrites; // ArtifactTable.writeCount() at the snapshot's instant
+    private volatile boolean closed;
+    // History entries the save moves to the archive; left out of forEachHistoryList
+    private volatile Set<History> archived = Set.of();
+
+    StoreSnapshot(DataStore store, VersionLog versions, ShardLocks locks, long epoch, long artifactTableWrites) {
+        this.store = store;
+        this.versions = versions;
+        this.locks = locks;
+        this.epoch = epoch;
+        this.artifactTableWrites = artifactTableWrites;
+    }
+
+    public long getVersion() {
+        return epoch;
+    }
+
+    long artifactTableWrites() {
+        return artifactTableWrites;
+    }
+
+    public List<WizardState> wizards() {
+        checkOpen();
+        List<WizardState> result = new ArrayList<>();
+        BitSet seen = new BitSet();
+        for (Wizard live : store.findAllWizards()) {
+            seen.set(live.getId());
+            WizardState state = read(live);
+            if (state != null) result.add(state);
+        }
+        // Wizards deleted since the snapshot opened
+        versions.wizards.forEach((id, head) -> {
+            VersionLog.Image<WizardState> image = VersionLog.imageAt(head, epoch);
+            if (!seen.get(id) && image != null && image.state != null) result.add(image.state);
+        });
+        return result;
+    }
+
+    public void forEachArtifact(Consumer<ArtifactState> action) {
+        checkOpen();
+        BitSet seen = new BitSet();
+        for (Artifact live : store.findAllArtifacts()) {
+            seen.set(live.getId());
+            ArtifactState state = read(live);
+            if (state != null) action.accept(state);
+        }
+        versions.artifacts.forEach((id, head) -> {
+            VersionLog.Image<ArtifactState> image = VersionLog.imageAt(head, epoch);
+            if (!seen.get(id) && image != null && image.state != null) action.accept(image.state);
+        });
+    }
+
+    // Null when the artifact did not exist when the snapshot opened
+    public ArtifactState artifact(int id) {
+        checkOpen();
+        ReentrantLock lock = locks.artifactLock(id);
+        lock.lock();
+        try {
+            VersionLog.Image<ArtifactState> image = VersionLog.imageAt(versions.artifacts.get(id), epoch);
+            if (image != null) return image.state;
+            Artifact live = store.findArtifactById(id);
+            return live == null ? null : ArtifactState.of(live);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Hot (not archived) history per artifact id, as it was when the snapshot opened
+    public void forEachHistoryList(BiConsumer<Integer, List<History>> action) {
+        checkOpen();
+        BitSet seen = new BitSet();
+        for (Map.Entry<Integer, List<History>> e : store.historyLists().entrySet()) {
+            seen.set(e.getKey());
+            List<History> entries = withoutArchived(history(e.getKey()));
+            if (!entries.isEmpty()) action.accept(e.getKey(), entries);
+        }
+        versions.histories.forEach((id, head) -> {
+            VersionLog.Image<List<History>> image = VersionLog.imageAt(head, epoch);
+            if (!seen.get(id) && image != null && image.state != null) {
+                List<History> entries = withoutArchived(image.state);
+                if (!entries.isEmpty()) action.accept(id, entries);
+            }
+        });
+    }
+
+    // Entries (compared by identity) that forEachHistoryList no longer returns
+    void excludeArchived(List<History> entries) {
+        Set<History> set = Collections.newSetFromMap(new IdentityHashMap<>());
+        set.addAll(entries);
+        archived = set;
+    }
+
+    private List<History> withoutArchived(List<History> entries) {
+        Set<History> excluded = archived;
+        if (excluded.isEmpty()) return entries;
+        List<History> kept = new ArrayList<>(entries.size());
+        for (History h : entries) {
+            if (!excluded.contains(h)) kept.add(h);
+        }
+        return kept;
+    }
+
+    public List<History> history(int artifactId) {
+        checkOpen();
+        ReentrantLock lock = locks.artifactLock(artifactId);
+        lock.lock();
+        try {
+            VersionLog.Image<List<History>> image = VersionLog.imageAt(versions.histories.get(artifactId), epoch);
+            if (image != null) return image.state == null ? List.of() : image.state;
+            List<History> live = store.historyLists().get(artifactId);
+            return live == null ? List.of() : Collections.unmodifiableList(new ArrayList<>(live));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        versions.close(epoch);
+    }
+
+    // Under the artifact's lock: either an image exists, or the live fields are still those of the snapshot
+    private ArtifactState read(Artifact live) {
+        ReentrantLock lock = locks.artifactLock(live.getId());
+        lock.lock();
+        try {
+            VersionLog.Image<ArtifactState> image = VersionLog.imageAt(versions.artifacts.get(live.getId()), epoch);
+            return image != null ? image.state : ArtifactState.of(live);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private WizardState read(Wizard live) {
+        locks.lockWizards(live.getId(), -1);
+        try {
+            VersionLog.Image<WizardState> image = VersionLog.imageAt(versions.wizards.get(live.getId()), epoch);
+            return image != null ? image.state : WizardState.of(live);
+        } finally {
+            locks.unlockWizards(live.getId(), -1);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) throw new IllegalStateException("snapshot " + epoch + " is closed");
+    }
+}
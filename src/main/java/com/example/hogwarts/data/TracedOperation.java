@@ -0,0 +1,40 @@
+package com.example.hogwarts.data;
+
+import jdk.jfr.Event;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base of the app's Flight Recorder events. start() and finish() bracket an operation: the
+ * event is committed when a recording has it enabled, and an operation that took at least
+ * hogwarts.slowOpMillis is written to stderr together with its context. Without a recording
+ * an operation costs two nanoTime calls.
+ */
+public abstract class TracedOperation extends Event {
+    private static final long SLOW_NANOS = StoreConfig.SLOW_OP_MS * 1_000_000;
+    private static final AtomicLong slowOperations = new AtomicLong();
+
+    private transient long startNanos; // transient: not part of the recorded event
+
+    public void start() {
+        startNanos = System.nanoTime();
+        begin();
+    }
+
+    public void finish() {
+        long nanos = System.nanoTime() - startNanos;
+        commit();
+        if (SLOW_NANOS > 0 && nanos >= SLOW_NANOS) {
+            slowOperations.incrementAndGet();
+            System.err.println("slow operation: " + describe() + " took " + nanos / 1_000_000 + " ms on "
+                    + Thread.currentThread().getName());
+        }
+    }
+
+    // Operation and its context (ids, sizes) for the slow-operation log
+    protected abstract String describe();
+
+    public static long slowOperationCount() {
+        return slowOperations.get();
+    }
+}
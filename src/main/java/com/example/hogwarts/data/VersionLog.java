@@ -0,0 +1,122 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.History;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Before-images behind StoreSnapshot. Every snapshot gets the next epoch when it opens. While
+ * any snapshot is open, a writer first records the state an entity had before its change,
+ * tagged with the current epoch, at most once per entity and epoch; with no snapshot open
+ * nothing is recorded. A snapshot of epoch V reads an entity from the oldest image tagged V
+ * or later, and from the live store when there is none (nothing changed it since V).
+ * Images older than the oldest open snapshot are dropped when a snapshot closes.
+ *
+ * Writers record under the lock domain that guards the entity, and snapshots open with
+ * every lock domain held, so a change is either entirely before a snapshot or recorded.
+ */
+final class VersionLog {
+    static final class Image<T> {
+        final long epoch;
+        final T state;             // null: the entity did not exist
+        volatile Image<T> older;
+
+        Image(long epoch, T state, Image<T> older) {
+            this.epoch = epoch;
+            this.state = state;
+            this.older = older;
+        }
+    }
+
+    // Newest image first
+    final Map<Integer, Image<StoreSnapshot.ArtifactState>> artifacts = new ConcurrentHashMap<>();
+    final Map<Integer, Image<StoreSnapshot.WizardState>> wizards = new ConcurrentHashMap<>();
+    final Map<Integer, Image<List<History>>> histories = new ConcurrentHashMap<>();
+
+    private final TreeMap<Long, Integer> open = new TreeMap<>(); // epoch -> open snapshots, guarded by this
+    private volatile int openCount;
+    private volatile long epoch;
+
+    // Caller holds every lock domain of the store
+    synchronized long open() {
+        long e = ++epoch;
+        open.merge(e, 1, Integer::sum);
+        openCount++;
+        return e;
+    }
+
+    synchronized void close(long snapshotEpoch) {
+        Integer left = open.get(snapshotEpoch);
+        if (left == null) return;
+        if (left == 1) open.remove(snapshotEpoch); else open.put(snapshotEpoch, left - 1);
+        openCount--;
+        if (openCount == 0) {
+            artifacts.clear();
+            wizards.clear();
+            histories.clear();
+        } else {
+            long oldest = open.firstKey();
+            prune(artifacts, oldest);
+            prune(wizards, oldest);
+            prune(histories, oldest);
+        }
+    }
+
+    int openSnapshots() {
+        return openCount;
+    }
+
+    // Caller holds the lock domain of the entity; before is only evaluated when an image is needed.
+    // A writer racing the last close may leave an image behind; no later snapshot reads it (its
+    // epoch is older) and the next close drops it.
+    <T> void record(Map<Integer, Image<T>> chains, int id, Supplier<T> before) {
+        if (openCount == 0) return;
+        long e = epoch;
+        chains.compute(id, (k, head) -> head != null && head.epoch == e ? head : new Image<>(e, before.get(), head));
+    }
+
+    // Image a snapshot of the given epoch reads the entity from; null when the live state is still valid for it
+    static <T> Image<T> imageAt(Image<T> head, long snapshotEpoch) {
+        Image<T> found = null;
+        for (Image<T> image = head; image != null && image.epoch >= snapshotEpoch; image = image.older) {
+            found = image;
+        }
+        return found;
+    }
+
+    long images() {
+        return count(artifacts) + count(wizards) + count(histories);
+    }
+
+    long estimatedBytes() {
+        long bytes = MemoryEstimator.concurrentMap(artifacts.size()) + MemoryEstimator.concurrentMap(wizards.size())
+                + MemoryEstimator.concurrentMap(histories.size());
+        // Image plus state object; the strings and History entries are shared with the store
+        return bytes + images() * (MemoryEstimator.object(2, 8) + MemoryEstimator.object(3, 12));
+    }
+
+    private static <T> long count(Map<Integer, Image<T>> chains) {
+        long n = 0;
+        for (Image<T> head : chains.values()) {
+            for (Image<T> image = head; image != null; image = image.older) n++;
+        }
+        return n;
+    }
+
+    // No open snapshot reads images older than the oldest epoch; chains that end up empty go away
+    private static <T> void prune(Map<Integer, Image<T>> chains, long oldest) {
+        for (Integer id : chains.keySet()) {
+            chains.computeIfPresent(id, (k, head) -> {
+                if (head.epoch < oldest) return null;
+                Image<T> keep = head;
+                while (keep.older != null && keep.older.epoch >= oldest) keep = keep.older;
+                keep.older = null;
+                return head;
+            });
+        }
+    }
+}
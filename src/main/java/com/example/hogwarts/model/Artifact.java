@@ -27,6 +27,10 @@ public class Artifact {
         }
     }
 
+    public boolean hasOwner() { return owner != null; }
+    // Owner name without allocating the "--" placeholder wizard
+    public String getOwnerName() { return owner == null ? "--" : owner.getName(); }
+
     public void setId(int id) { this.id = id; }
     public void setName(String name) {
         this.name = Objects.requireNonNullElse(name, "name must not be null");
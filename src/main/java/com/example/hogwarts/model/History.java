@@ -2,15 +2,29 @@ package com.example.hogwarts.model;
 import java.util.Date;
 
 public class History {
+    // wizardId of an unassignment, or of entries written before ids were recorded
+    public static final int NO_WIZARD = -1;
+    public static final int UNKNOWN_CONDITION = -1;
+    // wizardId of the entry logged when the artifact was deleted; nobody owns it from then on
+    public static final int DELETED = -2;
+
     private final int artifactId;
     private final String artifactName;
+    private final int wizardId;
     private final String wizardName;
+    private final int condition; // artifact condition right after the transfer
     private final Date timestamp;
 
     public History(int artifactId, String artifactName, String wizardName, Date timestamp) {
+        this(artifactId, artifactName, NO_WIZARD, wizardName, UNKNOWN_CONDITION, timestamp);
+    }
+
+    public History(int artifactId, String artifactName, int wizardId, String wizardName, int condition, Date timestamp) {
         this.artifactId = artifactId;
         this.artifactName = artifactName;
+        this.wizardId = wizardId;
         this.wizardName = wizardName;
+        this.condition = condition;
         this.timestamp = timestamp;
     }
 
@@ -21,16 +35,29 @@ public class History {
         return artifactName;
     }
 
+    public int getWizardId() {
+        return wizardId;
+    }
+
     public String getWizardName() {
         return wizardName;
     }
 
+    public int getCondition() {
+        return condition;
+    }
+
     public Date getTimestamp() {
         return timestamp;
     }
 
+    public boolean isDeletion() {
+        return wizardId == DELETED;
+    }
+
     @Override
     public String toString() {
+        if (isDeletion()) return String.format("Artifact '%s' deleted at %s", artifactName, timestamp);
         return String.format("Artifact '%s' assigned to Wizard '%s' at %s", artifactName, wizardName, timestamp);
     }
 }
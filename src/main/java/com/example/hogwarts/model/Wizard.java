@@ -47,6 +47,11 @@ public class Wizard {
         return removed;
     }
 
+    // Drops one entry from the list without touching the artifact's owner (consistency repair)
+    public boolean dropListing(Artifact artifact) {
+        return artifacts.remove(artifact);
+    }
+
     public boolean removeAllArtifacts() {
         if (artifacts.isEmpty()) return false;
 
@@ -0,0 +1,99 @@
+package com.example.hogwarts.view;
+
+import com.example.hogwarts.model.Artifact;
+import javafx.application.Platform;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+
+import java.util.List;
+
+/**
+ * Type-ahead list over a paged artifact query. Opening it or typing reads only the first
+ * page of matches; the next page is read, from the last id shown on (keyset paging), when
+ * the list is scrolled to its last row. The ListView only builds cells for the visible rows,
+ * so neither opening nor scrolling costs more with a bigger catalog.
+ */
+public class ArtifactPicker extends VBox {
+    // Reads up to limit matches for the typed text ("" for everything) in id order, starting
+    // above afterId: the id of the last row shown, Integer.MIN_VALUE for the first page
+    public interface PageSource {
+        List<Artifact> page(String text, int afterId, int limit);
+    }
+
+    private static final int PAGE_SIZE = 100;
+
+    private final PageSource source;
+    private final TextField searchField = new TextField();
+    private final ListView<Artifact> list = new ListView<>();
+    private final Label status = new Label();
+    private String text = "";
+    private boolean more;             // the last page was full, there may be further matches
+    private boolean loadPending;      // a next-page read is already queued
+
+    public ArtifactPicker(String prompt, String emptyText, PageSource source) {
+        super(5);
+        this.source = source;
+        searchField.setPromptText(prompt);
+        searchField.textProperty().addListener((obs, oldVal, newVal) -> reload(newVal));
+
+        list.setPlaceholder(new Label(emptyText));
+        list.setPrefHeight(300);
+        list.setCellFactory(view -> new ListCell<>() {
+            @Override
+            protected void updateItem(Artifact artifact, boolean empty) {
+                super.updateItem(artifact, empty);
+                setText(empty || artifact == null ? null : describe(artifact));
+                if (!empty && getIndex() == list.getItems().size() - 1) requestNextPage();
+            }
+        });
+        VBox.setVgrow(list, Priority.ALWAYS);
+
+        getChildren().addAll(searchField, list, status);
+        reload("");
+    }
+
+    public ListView<Artifact> getList() {
+        return list;
+    }
+
+    public Artifact getSelected() {
+        return list.getSelectionModel().getSelectedItem();
+    }
+
+    private void reload(String newText) {
+        text = newText == null ? "" : newText.trim();
+        List<Artifact> page = source.page(text, Integer.MIN_VALUE, PAGE_SIZE);
+        more = page.size() == PAGE_SIZE;
+        list.getItems().setAll(page);
+        list.scrollTo(0);
+        updateStatus();
+    }
+
+    // Cells are laid out while this runs, so the items are only extended after the pulse
+    private void requestNextPage() {
+        if (!more || loadPending) return;
+        loadPending = true;
+        Platform.runLater(() -> {
+            loadPending = false;
+            if (!more) return;
+            List<Artifact> items = list.getItems();
+            List<Artifact> page = source.page(text, items.get(items.size() - 1).getId(), PAGE_SIZE);
+            more = page.size() == PAGE_SIZE;
+            items.addAll(page);
+            updateStatus();
+        });
+    }
+
+    private void updateStatus() {
+        int shown = list.getItems().size();
+        status.setText(shown == 0 ? "" : shown + (more ? " shown, scroll for more" : " shown"));
+    }
+
+    private static String describe(Artifact artifact) {
+        return artifact.getName() + " (ID: " + artifact.getId() + ", condition " + artifact.getCondition() + ")";
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.hogwarts.view;
+
+import com.example.hogwarts.model.Artifact;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+
+/**
+ * Table row view-model for one artifact: its id and the values shown, copied in when the row
+ * is made (when ArtifactRowList reads its page). It keeps no reference to the Artifact, so the
+ * rows a table holds never keep artifacts of a paged store in memory; actions look the
+ * artifact up by id. The properties live as long as the row, so cell value factories just
+ * hand them out instead of allocating a wrapper per render.
+ */
+public class ArtifactRow {
+    // Estimated heap per row: the row, four property wrappers with their read-only views
+    // and its slot in a page of ArtifactRowList
+    public static final long ESTIMATED_BYTES = 344;
+
+    private final ReadOnlyIntegerWrapper id;
+    private final ReadOnlyStringWrapper name;
+    private final ReadOnlyStringWrapper ownerName;
+    private final ReadOnlyIntegerWrapper condition;
+
+    public ArtifactRow(Artifact artifact) {
+        this(artifact.getId(), artifact.getName(), artifact.getOwnerName(), artifact.getCondition());
+    }
+
+    // A row for an artifact that is not in the store (deleted), showing only its id and name
+    public ArtifactRow(int id, String name) {
+        this(id, name, "", 0);
+    }
+
+    private ArtifactRow(int id, String name, String ownerName, int condition) {
+        this.id = new ReadOnlyIntegerWrapper(id);
+        this.name = new ReadOnlyStringWrapper(name);
+        this.ownerName = new ReadOnlyStringWrapper(ownerName);
+        this.condition = new ReadOnlyIntegerWrapper(condition);
+    }
+
+    public ReadOnlyIntegerProperty idProperty() { return id.getReadOnlyProperty(); }
+    public ReadOnlyStringProperty nameProperty() { return name.getReadOnlyProperty(); }
+    public ReadOnlyStringProperty ownerNameProperty() { return ownerName.getReadOnlyProperty(); }
+    public ReadOnlyIntegerProperty conditionProperty() { return condition.getReadOnlyProperty(); }
+
+    public int getId() { return id.get(); }
+    public String getName() { return name.get(); }
+    public String getOwnerName() { return ownerName.get(); }
+}
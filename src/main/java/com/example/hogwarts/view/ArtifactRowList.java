@@ -0,0 +1,155 @@
+package com.example.hogwarts.view;
+
+import com.example.hogwarts.data.ArtifactSortIndex;
+import javafx.collections.ObservableListBase;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntFunction;
+
+/**
+ * Items of an artifact table that are read a page at a time instead of held. The list knows
+ * its row count and how to read the ids of one page (Source); the TableView only asks for
+ * the rows of its visible window, so only those pages are read, and the few last shown are
+ * kept for scrolling back. A new source (another order, a search, a later state of the store)
+ * drops the pages; rows are made again from the store as they are shown.
+ */
+class ArtifactRowList extends ObservableListBase<ArtifactRow> {
+    static final int PAGE_SIZE = 100;
+    // Id that makes a blank row: the artifact of that slot went away since the source was made
+    static final int NO_ARTIFACT = -1;
+    private static final int MAX_PAGES = 8;
+
+    /** What the list pages through. */
+    interface Source {
+        int size();
+        int pageSize();
+        // Ids of one page; shorter than pageSize for the last page, or when rows went away since
+        int[] page(int page);
+        // Row of the artifact, -1 when it is not in the source
+        int position(int id);
+    }
+
+    private static final Source EMPTY = ids(new int[0]);
+
+    private final IntFunction<ArtifactRow> rowFactory;
+    private Source source = EMPTY;
+    // Page number -> its rows, least recently shown first
+    private final Map<Integer, ArtifactRow[]> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, ArtifactRow[]> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+    private volatile int heldRows; // read by the memory gauge off the FX thread
+
+    // rowFactory makes the row for an id, a blank one for NO_ARTIFACT or an id the store no longer has
+    ArtifactRowList(IntFunction<ArtifactRow> rowFactory) {
+        this.rowFactory = rowFactory;
+    }
+
+    // Rows of the page map of a sort index
+    static Source pages(ArtifactSortIndex index, ArtifactSortIndex.PageMap map) {
+        return new Source() {
+            @Override public int size() { return map.size(); }
+            @Override public int pageSize() { return map.getPageSize(); }
+            @Override public int[] page(int page) { return index.page(map, page); }
+            @Override public int position(int id) { return index.position(map, id); }
+        };
+    }
+
+    // Rows of a fixed list of ids, sorted ascending
+    static Source ids(int[] sortedIds) {
+        return new Source() {
+            @Override public int size() { return sortedIds.length; }
+            @Override public int pageSize() { return PAGE_SIZE; }
+
+            @Override
+            public int[] page(int page) {
+                int from = page * PAGE_SIZE;
+                return Arrays.copyOfRange(sortedIds, from, Math.min(sortedIds.length, from + PAGE_SIZE));
+            }
+
+            @Override
+            public int position(int id) {
+                return Math.max(-1, Arrays.binarySearch(sortedIds, id));
+            }
+        };
+    }
+
+    // Shows what the new source holds. Only a change in the row count is reported as a list change
+    // (rows added or removed at the end): the caller refreshes the table to re-read the rows it shows
+    void setSource(Source newSource) {
+        int oldSize = size();
+        source = newSource;
+        pages.clear();
+        heldRows = 0;
+        int newSize = newSource.size();
+        if (newSize == oldSize) return;
+        beginChange();
+        if (newSize > oldSize) {
+            nextAdd(oldSize, newSize);
+        } else {
+            nextRemove(newSize, Collections.nCopies(oldSize - newSize, (ArtifactRow) null));
+        }
+        endChange();
+    }
+
+    Source getSource() {
+        return source;
+    }
+
+    // Rows currently held, for the memory gauge
+    int heldRows() {
+        return heldRows;
+    }
+
+    @Override
+    public ArtifactRow get(int index) {
+        Objects.checkIndex(index, size());
+        int pageSize = source.pageSize();
+        ArtifactRow[] rows = pages.get(index / pageSize);
+        if (rows == null) {
+            rows = read(index / pageSize);
+            pages.put(index / pageSize, rows);
+            heldRows = pages.values().stream().mapToInt(r -> r.length).sum();
+        }
+        return rows[index % pageSize];
+    }
+
+    private ArtifactRow[] read(int page) {
+        int pageSize = source.pageSize();
+        int[] ids = source.page(page);
+        ArtifactRow[] rows = new ArtifactRow[Math.min(pageSize, size() - page * pageSize)];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = rowFactory.apply(i < ids.length ? ids[i] : NO_ARTIFACT);
+        }
+        return rows;
+    }
+
+    @Override
+    public int size() {
+        return source.size();
+    }
+
+    // By id through the source, so selecting a row never walks the list
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof ArtifactRow row) || row.getId() == NO_ARTIFACT) return -1;
+        int position = source.position(row.getId());
+        return position < size() ? position : -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+}
@@ -1,151 +1,427 @@
 package com.example.hogwarts.view;
 
 import com.example.hogwarts.controller.ArtifactController;
+import com.example.hogwarts.controller.Permission;
+import com.example.hogwarts.controller.Session;
+import com.example.hogwarts.data.ArtifactQuery;
+import com.example.hogwarts.data.ArtifactSortIndex;
 import com.example.hogwarts.data.DataStore;
+import com.example.hogwarts.data.OwnershipSnapshot;
+import com.example.hogwarts.data.StoreEvent;
+import com.example.hogwarts.data.StoreListener;
+import com.example.hogwarts.data.StoreMetrics;
 import com.example.hogwarts.model.Artifact;
 import com.example.hogwarts.model.History;
-import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.collections.transformation.SortedList;
 import javafx.geometry.Insets;
+import javafx.geometry.Side;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
-import javafx.collections.transformation.FilteredList;
+
+import java.io.IOException;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
 
 public class ArtifactView extends VBox{
+    private static final String ROWS_GAUGE = "memory.ui.artifactRows.bytes";
+    private static final int NO_SELECTION = -1;
+
     private final ArtifactController controller;
-    private final TableView<Artifact> artifactTable;
-    private final ObservableList<Artifact> artifactData;
-    FilteredList<Artifact> filteredData;
+    private final TableView<ArtifactRow> artifactTable;
+    private final TableView<ArtifactRow> asOfTable = new TableView<>();
+    // Paged from the store's sort index: only the rows of the visible window exist
+    private final ArtifactRowList artifactData = new ArtifactRowList(ArtifactView::liveRow);
+    private ArtifactRowList asOfData;
+    private OwnershipSnapshot asOfSnapshot; // while the as-of table is shown
+    private final StoreListener storeListener = this::onStoreChange;
+    private final AtomicBoolean listening = new AtomicBoolean();
+    // Any number of store events until the FX thread gets to them is one reload
+    private final AtomicBoolean reloadScheduled = new AtomicBoolean();
+    private boolean reloadRunning;
+    private boolean reloadAgain;  // something changed while the running layout was made
+    private int layouts;          // layouts started so far
+    // Artifact to select once a layout started after layoutsBeforeSelect places it (a new artifact)
+    private int selectAfterReload = NO_SELECTION;
+    private int layoutsBeforeSelect;
+    // Resolved once from the session's permissions
+    private final boolean admin;
+    // Single action menu shared by all rows; actionTarget is the row it was opened for
+    private final ContextMenu actionMenu;
+    private ArtifactRow actionTarget;
     TextField searchBar;
-
-    public ArtifactView() {
-        this.controller = new ArtifactController();
-        this.artifactTable = new TableView<>();
-        this.artifactData = FXCollections.observableArrayList(controller.findAllArtifacts());
-        this.filteredData = new FilteredList<>(artifactData, p -> true); //Allow filtering (via search bar)
-        SortedList<Artifact> sortedData = new SortedList<>(filteredData);
-        sortedData.comparatorProperty().bind(artifactTable.comparatorProperty()); //Allows sorting by clicking column headers
-        artifactTable.setItems(sortedData);
-        this.searchBar = createSearchBar(filteredData);
+    private String searchText = "";
+
+    public ArtifactView(Session session) {
+        this.controller = new ArtifactController(session);
+        this.admin = session.can(Permission.EDIT_ARTIFACTS);
+        this.artifactTable = new TableView<>(artifactData);
+        artifactTable.setSortPolicy(table -> { //Column header clicks lay the rows out again from the store's indexes
+            reloadRows();
+            return true;
+        });
+        this.searchBar = createSearchBar();
+        this.actionMenu = createActionMenu();
+        StoreMetrics.getInstance().registerGauge(ROWS_GAUGE, () -> (long) artifactData.heldRows() * ArtifactRow.ESTIMATED_BYTES);
 
         setSpacing(10);
         setPadding(new Insets(10));
-        getChildren().addAll(searchBar, createTable(), createButtons());
+        getChildren().addAll(searchBar, createAsOfBar(), createTable(), createButtons());
+        reloadRows();
     }
 
-    private TableView<Artifact> createTable() {
-        TableColumn<Artifact, Number> idCol = new TableColumn<>("ID");
-        idCol.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getId()));
+    // Row of the live table; blank for an artifact deleted since the layout, until the next one
+    private static ArtifactRow liveRow(int id) {
+        Artifact artifact = DataStore.getInstance().findArtifactById(id);
+        return artifact != null ? new ArtifactRow(artifact) : new ArtifactRow(id, "");
+    }
 
-        TableColumn<Artifact, String> nameCol = new TableColumn<>("Name");
-        nameCol.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().getName()));
+    // Store events can come from any thread. Any change to an artifact (or an owner's name) can move
+    // rows in the current order, so the table is laid out again: one reload for however many events
+    // arrive before the FX thread gets to it
+    private void onStoreChange(StoreEvent event) {
+        switch (event.getType()) {
+            case ARTIFACT_ADDED, ARTIFACT_DELETED, ARTIFACT_UPDATED, CONDITION_CHANGED, ASSIGNED, UNASSIGNED,
+                 WIZARD_UPDATED -> { }
+            default -> {
+                return;
+            }
+        }
+        if (reloadScheduled.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                reloadScheduled.set(false);
+                reloadRows();
+            });
+        }
+    }
 
-        TableColumn<Artifact, Number> conditionCol = new TableColumn<>("Condition");
-        conditionCol.setCellValueFactory(cell -> new ReadOnlyObjectWrapper(cell.getValue().getCondition()));
+    // Makes the page map of the current sort order and search on a worker thread (it walks the
+    // index, and a new multi-column order is indexed first), then swaps it in. A request made while
+    // one runs is folded into a single run after it.
+    private void reloadRows() {
+        if (reloadRunning) {
+            reloadAgain = true;
+            return;
+        }
+        reloadRunning = true;
+        int layout = ++layouts;
+        List<ArtifactSortIndex.SortKey> order = sortOrder();
+        String text = searchText;
+        Task<ArtifactRowList.Source> task = new Task<>() {
+            @Override
+            protected ArtifactRowList.Source call() {
+                DataStore store = DataStore.getInstance();
+                ArtifactSortIndex index = store.getSortIndex(); // the first time, waits for the warm-up build
+                // Listen after the index does: it has then applied a change before the reload the change causes
+                if (listening.compareAndSet(false, true)) store.addListener(storeListener);
+                return ArtifactRowList.pages(index, controller.pageArtifacts(order, text, ArtifactRowList.PAGE_SIZE));
+            }
+        };
+        task.setOnSucceeded(e -> {
+            showRows(task.getValue(), layout);
+            reloadDone();
+        });
+        task.setOnFailed(e -> {
+            System.err.println("Could not lay out the artifact table: " + task.getException());
+            reloadDone();
+        });
+        Thread worker = new Thread(task, "artifact-rows");
+        worker.setDaemon(true);
+        worker.start();
+    }
 
-        TableColumn<Artifact, String> ownerCol = createOwnerColumn();
+    private void reloadDone() {
+        reloadRunning = false;
+        if (reloadAgain) {
+            reloadAgain = false;
+            reloadRows();
+        }
+    }
 
-        TableColumn<Artifact, Void> actionCol = new TableColumn<>("Actions");
-        actionCol.setCellFactory(col -> new TableCell<>() {
-            private final Button viewButton = new Button("View");
-            private final Button editButton = new Button("Edit");
-            private final Button deleteButton = new Button("Delete");
-            private final Button unassignButton = new Button("Unassign");
-            private final Button historyButton = new Button("History");
-            private final Button repairButton = new Button("Repair");
-            private final HBox buttons = new HBox(5);
+    // Swaps in a new layout; the selected artifact stays selected wherever it moved
+    private void showRows(ArtifactRowList.Source source, int layout) {
+        ArtifactRow selected = artifactTable.getSelectionModel().getSelectedItem();
+        int selectId = selected != null ? selected.getId() : NO_SELECTION;
+        if (selectAfterReload != NO_SELECTION) {
+            if (source.position(selectAfterReload) >= 0) {
+                selectId = selectAfterReload;
+                selectAfterReload = NO_SELECTION;
+            } else if (layout > layoutsBeforeSelect) {
+                selectAfterReload = NO_SELECTION; // made after the artifact was added, and it is not there
+            }
+        }
+        artifactData.setSource(source);
+        artifactTable.refresh();
+        if (selectId == NO_SELECTION) return;
+        int row = source.position(selectId);
+        if (row >= 0) {
+            artifactTable.getSelectionModel().clearAndSelect(row);
+        } else {
+            artifactTable.getSelectionModel().clearSelection();
+        }
+    }
 
-            {
-                viewButton.setOnAction(e -> {
-                    Artifact artifact = getTableView().getItems().get(getIndex());
-                    showViewArtifactDialog(artifact);
-                });
+    // The table's sort columns as index keys; unsorted is id order
+    private List<ArtifactSortIndex.SortKey> sortOrder() {
+        List<ArtifactSortIndex.SortKey> order = new ArrayList<>();
+        for (TableColumn<ArtifactRow, ?> column : artifactTable.getSortOrder()) {
+            order.add(new ArtifactSortIndex.SortKey((ArtifactSortIndex.Column) column.getUserData(),
+                    column.getSortType() == TableColumn.SortType.ASCENDING));
+        }
+        return order.isEmpty() ? List.of(new ArtifactSortIndex.SortKey(ArtifactSortIndex.Column.ID, true)) : order;
+    }
 
-                editButton.setOnAction(e -> {
-                    Artifact artifact = getTableView().getItems().get(getIndex());
-                    showEditArtifactDialog(artifact);
-                });
+    // Stops listening to the store; called when the dashboard is closed
+    public void dispose() {
+        listening.set(true); // a layout still running must not start listening
+        DataStore.getInstance().removeListener(storeListener);
+        StoreMetrics.getInstance().unregisterGauge(ROWS_GAUGE);
+    }
 
-                deleteButton.setOnAction(e -> {
-                    Artifact artifact = getTableView().getItems().get(getIndex());
-                    Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
-                    confirm.setTitle("Confirm Deletion");
-                    confirm.setHeaderText("Delete Artifact");
-                    confirm.setContentText("Are you sure you want to delete \"" + artifact.getName() + "\"?");
-
-                    confirm.showAndWait().ifPresent(response -> {
-                        if (response == ButtonType.OK) {
-                            controller.deleteArtifact(artifact.getId());
-                            artifactData.setAll(controller.findAllArtifacts());
-                        }
-                    });
-                });
-                unassignButton.setOnAction(e -> {
-                    Artifact artifact = getTableView().getItems().get(getIndex());
-                    if(!artifact.getOwner().getName().equals("--")){//Do nothing if already unassigned
-                        //Confirmation unassignment
-                        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
-                        confirm.setTitle("Confirm Unassignment");
-                        confirm.setHeaderText("Unassign Artifact Owner");
-                        confirm.setContentText("Are you sure you want to unassign the owner of \"" + artifact.getName() + "\"?");
-                        confirm.showAndWait().ifPresent(response -> {
-                            if (response == ButtonType.OK) { //Proceed only if confirmed
-                                    controller.unassignArtifactOwner(artifact.getId());
-                                    refreshArtifactView();
-                            }
-                        });
-                    }
-                });
+    // Read-only "as of" mode: swaps the live table for one showing owners/conditions at a past time
+    private HBox createAsOfBar() {
+        DatePicker datePicker = new DatePicker();
+        datePicker.setPromptText("As of date");
+        TextField timeField = new TextField();
+        timeField.setPromptText("HH:mm");
+        timeField.setPrefColumnCount(5);
+        Button showButton = new Button("Show as of");
+        Button liveButton = new Button("Back to live");
+        liveButton.setDisable(true);
+
+        showButton.setOnAction(e -> {
+            if (datePicker.getValue() == null) return;
+            LocalTime time = LocalTime.MAX; // whole day by default
+            if (!timeField.getText().isBlank()) {
+                try {
+                    time = LocalTime.parse(timeField.getText().trim());
+                } catch (DateTimeParseException ex) {
+                    new Alert(Alert.AlertType.ERROR, "Time must look like 14:30.", ButtonType.OK).showAndWait();
+                    return;
+                }
+            }
+            Date when = Date.from(datePicker.getValue().atTime(time).atZone(ZoneId.systemDefault()).toInstant());
+            // The first query builds the timeline from all history and the archive; not on the FX thread
+            String text = searchText;
+            Task<ArtifactRowList> query = new Task<>() {
+                @Override
+                protected ArtifactRowList call() throws IOException {
+                    asOfSnapshot = DataStore.getInstance().getOwnershipAsOf(when);
+                    return asOfRows(asOfSnapshot, text);
+                }
+            };
+            showButton.setDisable(true);
+            query.setOnSucceeded(ev -> {
+                showButton.setDisable(false);
+                showAsOf(query.getValue());
+                liveButton.setDisable(false);
+            });
+            query.setOnFailed(ev -> {
+                showButton.setDisable(false);
+                new Alert(Alert.AlertType.ERROR, "Could not read the history archive.", ButtonType.OK).showAndWait();
+            });
+            Thread worker = new Thread(query, "as-of-query");
+            worker.setDaemon(true);
+            worker.start();
+        });
+        liveButton.setOnAction(e -> {
+            getChildren().set(getChildren().indexOf(asOfTable), artifactTable);
+            asOfSnapshot = null;
+            asOfData = null;
+            asOfTable.setItems(null);
+            liveButton.setDisable(true);
+        });
 
-                historyButton.setOnAction(e -> {
-                    Artifact artifact = getTableView().getItems().get(getIndex());
-                    showArtifactHistoryDialog(artifact);
-                });
+        HBox box = new HBox(10, new Label("As of:"), datePicker, timeField, showButton, liveButton);
+        return box;
+    }
 
-                repairButton.setOnAction(e -> {
-                    Artifact artifact = getTableView().getItems().get(getIndex());
-                    showArtifactRepairDialog(artifact);
-                });
+    // Artifacts of the as-of table, by id: live ones not deleted by then, plus those that existed then
+    // and were deleted since (shown with their name as of then); only names containing the search text.
+    // Reads every artifact, so it runs on a worker thread.
+    private static ArtifactRowList asOfRows(OwnershipSnapshot snapshot, String text) {
+        DataStore store = DataStore.getInstance();
+        ArtifactQuery match = text.isEmpty() ? null : ArtifactQuery.all().nameContains(text);
+        Map<Integer, String> deletedNames = new HashMap<>();
+        snapshot.forEachArtifact((id, name) -> {
+            if (store.findArtifactById(id) == null && (match == null || match.matches(new Artifact(name, "")))) {
+                deletedNames.put(id, name);
+            }
+        });
+        int[] ids = IntStream.concat(
+                store.findAllArtifacts().stream()
+                        .filter(a -> !snapshot.isDeleted(a.getId()) && (match == null || match.matches(a)))
+                        .mapToInt(Artifact::getId),
+                deletedNames.keySet().stream().mapToInt(Integer::intValue)).sorted().toArray();
+        ArtifactRowList rows = new ArtifactRowList(id -> {
+            String deletedName = deletedNames.get(id);
+            return deletedName != null ? new ArtifactRow(id, deletedName) : liveRow(id);
+        });
+        rows.setSource(ArtifactRowList.ids(ids));
+        return rows;
+    }
+
+    // Search text changed while the as-of table is shown: filter it again from the same snapshot
+    private void reloadAsOf() {
+        OwnershipSnapshot snapshot = asOfSnapshot;
+        String text = searchText;
+        Task<ArtifactRowList> filter = new Task<>() {
+            @Override
+            protected ArtifactRowList call() {
+                return asOfRows(snapshot, text);
             }
+        };
+        filter.setOnSucceeded(e -> {
+            if (asOfSnapshot == snapshot) showAsOf(filter.getValue());
+        });
+        Thread worker = new Thread(filter, "as-of-query");
+        worker.setDaemon(true);
+        worker.start();
+    }
 
+    private void showAsOf(ArtifactRowList rows) {
+        OwnershipSnapshot snapshot = asOfSnapshot;
+        TableColumn<ArtifactRow, Number> idCol = new TableColumn<>("ID");
+        idCol.setCellValueFactory(cell -> cell.getValue().idProperty());
+
+        TableColumn<ArtifactRow, String> nameCol = new TableColumn<>("Name");
+        nameCol.setCellValueFactory(cell -> cell.getValue().nameProperty());
+
+        TableColumn<ArtifactRow, String> ownerCol = new TableColumn<>("Owner (as of)");
+        ownerCol.setCellValueFactory(cell -> new ReadOnlyStringWrapper(snapshot.getOwnerName(cell.getValue().getId())));
+
+        TableColumn<ArtifactRow, String> conditionCol = new TableColumn<>("Condition (as of)");
+        conditionCol.setCellValueFactory(cell -> {
+            int condition = snapshot.getCondition(cell.getValue().getId());
+            return new ReadOnlyStringWrapper(condition == History.UNKNOWN_CONDITION ? "?" : String.valueOf(condition));
+        });
+
+        asOfData = rows;
+        asOfTable.getColumns().setAll(idCol, nameCol, ownerCol, conditionCol);
+        asOfTable.setItems(asOfData);
+        asOfTable.setPrefHeight(300);
+        int index = getChildren().indexOf(artifactTable);
+        if (index >= 0) {
+            getChildren().set(index, asOfTable);
+        }
+    }
+
+    private TableView<ArtifactRow> createTable() {
+        TableColumn<ArtifactRow, Number> idCol = new TableColumn<>("ID");
+        idCol.setCellValueFactory(cell -> cell.getValue().idProperty());
+
+        TableColumn<ArtifactRow, String> nameCol = new TableColumn<>("Name");
+        nameCol.setCellValueFactory(cell -> cell.getValue().nameProperty());
+
+        TableColumn<ArtifactRow, Number> conditionCol = new TableColumn<>("Condition");
+        conditionCol.setCellValueFactory(cell -> cell.getValue().conditionProperty());
+
+        TableColumn<ArtifactRow, String> ownerCol = createOwnerColumn();
+
+        // One button per visible cell; it opens the shared action menu for its row
+        TableColumn<ArtifactRow, Void> actionCol = new TableColumn<>("Actions");
+        actionCol.setCellFactory(col -> new TableCell<>() {
+            private final Button actionsButton = new Button("Actions \u25BE");
+
+            {
+                actionsButton.setOnAction(e -> {
+                    actionTarget = getTableRow().getItem();
+                    actionMenu.show(actionsButton, Side.BOTTOM, 0, 0);
+                });
+            }
 
             @Override
             protected void updateItem(Void item, boolean empty) {
                 super.updateItem(item, empty);
-                if (empty || getIndex() >= artifactData.size()) {
-                    setGraphic(null);
-                } else {
-                    buttons.getChildren().clear();
-                    //buttons.getChildren().add(viewButton);
-                    buttons.getChildren().addAll(viewButton, unassignButton, historyButton, repairButton);
-                    if (DataStore.getInstance().getCurrentUser().isAdmin()) {
-                        buttons.getChildren().addAll(editButton, deleteButton);
-                    }
-                    setGraphic(buttons);
-                }
+                setGraphic(empty ? null : actionsButton);
             }
         });
 
+        idCol.setUserData(ArtifactSortIndex.Column.ID);
+        nameCol.setUserData(ArtifactSortIndex.Column.NAME);
+        ownerCol.setUserData(ArtifactSortIndex.Column.OWNER);
+        conditionCol.setUserData(ArtifactSortIndex.Column.CONDITION);
+        actionCol.setSortable(false);
         artifactTable.getColumns().setAll(idCol, nameCol, ownerCol, conditionCol, actionCol);
-        //No longer needed as we use filtered list
-        //artifactTable.setItems(artifactData);
         artifactTable.setPrefHeight(300);
         return artifactTable;
     }
 
-    private TextField createSearchBar(FilteredList<Artifact> filteredData) {
+    private ContextMenu createActionMenu() {
+        MenuItem viewItem = new MenuItem("View");
+        MenuItem unassignItem = new MenuItem("Unassign");
+        MenuItem historyItem = new MenuItem("History");
+        MenuItem repairItem = new MenuItem("Repair");
+        MenuItem editItem = new MenuItem("Edit");
+        MenuItem deleteItem = new MenuItem("Delete");
+
+        viewItem.setOnAction(e -> showViewArtifactDialog(targetArtifact()));
+        historyItem.setOnAction(e -> showArtifactHistoryDialog(targetArtifact()));
+        repairItem.setOnAction(e -> showArtifactRepairDialog(targetArtifact()));
+        editItem.setOnAction(e -> showEditArtifactDialog(targetArtifact()));
+
+        deleteItem.setOnAction(e -> {
+            Artifact artifact = targetArtifact();
+            if (artifact == null) return;
+            Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
+            confirm.setTitle("Confirm Deletion");
+            confirm.setHeaderText("Delete Artifact");
+            confirm.setContentText("Are you sure you want to delete \"" + artifact.getName() + "\"?");
+
+            confirm.showAndWait().ifPresent(response -> {
+                if (response == ButtonType.OK) {
+                    controller.deleteArtifact(artifact.getId());
+                }
+            });
+        });
+        unassignItem.setOnAction(e -> {
+            Artifact artifact = targetArtifact();
+            if(artifact != null && artifact.hasOwner()){//Do nothing if already unassigned
+                //Confirmation unassignment
+                Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
+                confirm.setTitle("Confirm Unassignment");
+                confirm.setHeaderText("Unassign Artifact Owner");
+                confirm.setContentText("Are you sure you want to unassign the owner of \"" + artifact.getName() + "\"?");
+                confirm.showAndWait().ifPresent(response -> {
+                    if (response == ButtonType.OK) { //Proceed only if confirmed
+                        controller.unassignArtifactOwner(artifact.getId());
+                    }
+                });
+            }
+        });
+
+        ContextMenu menu = new ContextMenu(viewItem, unassignItem, historyItem, repairItem);
+        if (admin) {
+            menu.getItems().addAll(editItem, deleteItem);
+        }
+        return menu;
+    }
+
+    // Looked up when the action runs: the row only has the id; null once the artifact is deleted
+    private Artifact targetArtifact() {
+        return actionTarget == null ? null : DataStore.getInstance().findArtifactById(actionTarget.getId());
+    }
+
+    private TextField createSearchBar() {
         TextField searchField = new TextField();
         searchField.setPromptText("Search by name...");
 
+        // The store's index tests the name while it lays the rows out; the table never filters rows itself
         searchField.textProperty().addListener((obs, oldVal, newVal) -> {
-            String filter = newVal.toLowerCase();
-            filteredData.setPredicate(artifact -> {
-                if (filter.isEmpty()) return true;
-                return artifact.getName().toLowerCase().contains(filter);
-            });
+            searchText = newVal;
+            reloadRows();
+            if (asOfSnapshot != null) reloadAsOf();
         });
 
         return searchField;
@@ -155,30 +431,20 @@ public class ArtifactView extends VBox{
     private HBox createButtons() {
         Button addBtn = new Button("Add");
         HBox box = new HBox(10);
-        if (DataStore.getInstance().getCurrentUser().isAdmin()) {
+        if (admin) {
             addBtn.setOnAction(e -> showAddArtifactDialog());
             box.getChildren().add(addBtn);
         }
         return box;
     }
 
-    private TableColumn<Artifact, String> createOwnerColumn() {
-        TableColumn<Artifact, String> ownerCol = new TableColumn<>("Owner");
+    private TableColumn<ArtifactRow, String> createOwnerColumn() {
+        TableColumn<ArtifactRow, String> ownerCol = new TableColumn<>("Owner");
 
-        // Set cell value (handle null owners)
-        ownerCol.setCellValueFactory(cell -> {
-            String ownerName = cell.getValue().getOwner() != null ? cell.getValue().getOwner().getName() : "";
-            return new ReadOnlyStringWrapper(ownerName);
-        });
+        // Unowned artifacts show "--"
+        ownerCol.setCellValueFactory(cell -> cell.getValue().ownerNameProperty());
+        // Sorting goes through the store's owner index (unowned last, case-insensitive)
         ownerCol.setSortable(true);
-        ownerCol.setComparator((o1, o2) -> {
-            boolean o1IsDummy = o1 == null || o1.equals("--");
-            boolean o2IsDummy = o2 == null || o2.equals("--");
-            if (o1IsDummy && o2IsDummy) return 0;
-            if (o1IsDummy) return 1; // put o1 after o2
-            if (o2IsDummy) return -1; // put o2 after o1
-            return o1.compareToIgnoreCase(o2);
-        });
         return ownerCol;
     }
 
@@ -203,9 +469,10 @@ public class ArtifactView extends VBox{
             return null;
         });
 
+        // Selected once the reload its store event causes has placed it
         dialog.showAndWait().ifPresent(artifact -> {
-            artifactData.setAll(controller.findAllArtifacts());
-            artifactTable.getSelectionModel().select(artifact);
+            selectAfterReload = artifact.getId();
+            layoutsBeforeSelect = layouts;
         });
         refreshArtifactView();
     }
@@ -229,7 +496,6 @@ public class ArtifactView extends VBox{
         dialog.setResultConverter(button -> {
             if (button == ButtonType.OK) {
                 controller.updateArtifact(artifact.getId(), nameField.getText(), descField.getText());
-                artifactData.setAll(controller.findAllArtifacts());
             }
             return null;
         });
@@ -244,7 +510,7 @@ public class ArtifactView extends VBox{
         dialog.setTitle("Artifact Details");
         dialog.setHeaderText("Viewing: " + artifact.getName());
 
-        String ownerName = artifact.getOwner() != null ? artifact.getOwner().getName() : "Unassigned";
+        String ownerName = artifact.hasOwner() ? artifact.getOwnerName() : "Unassigned";
         TextArea details = new TextArea(
                 "ID: " + artifact.getId() + "\n" +
                         "Name: " + artifact.getName() + "\n" +
@@ -295,7 +561,19 @@ public class ArtifactView extends VBox{
         historyTable.getColumns().addAll(wizardCol, timeCol);
         historyTable.setPrefHeight(300); // make the table taller so multiple rows fit
 
-        VBox content = new VBox(historyTable);
+        // Older entries live in the compressed archive; only read them when asked for
+        Button archiveButton = new Button("Show archived");
+        archiveButton.setOnAction(e -> {
+            try {
+                historyList.addAll(0, DataStore.getInstance().getArchivedHistoryByArtifactId(artifact.getId()));
+                archiveButton.setDisable(true);
+            } catch (IOException ex) {
+                Alert alert = new Alert(Alert.AlertType.ERROR, "Could not read the history archive.", ButtonType.OK);
+                alert.showAndWait();
+            }
+        });
+
+        VBox content = new VBox(10, historyTable, archiveButton);
         content.setPadding(new Insets(10));
 
         dialog.getDialogPane().setContent(content);
@@ -377,4 +655,6 @@ public class ArtifactView extends VBox{
     public void refreshArtifactView() {
         artifactTable.refresh();
     }
+
+
 }
\ No newline at end of file
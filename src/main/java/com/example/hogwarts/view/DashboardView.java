@@ -1,38 +1,64 @@
 package com.example.hogwarts.view;
 
+import com.example.hogwarts.controller.CommandLog;
 import com.example.hogwarts.controller.DashboardController;
-import com.example.hogwarts.data.DataStore;
+import com.example.hogwarts.controller.Session;
 import javafx.geometry.Insets;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.Tooltip;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 
 public class DashboardView extends BorderPane {
     private DashboardController controller;
-    private final ArtifactView artifactView;
-    private final WizardView wizardView;
-
-    public DashboardView() {
-        this.artifactView = new ArtifactView();
-        this.wizardView = new WizardView();
+    private final Session session;
+    // Tabs are built the first time they are shown, so an unopened tab costs nothing
+    private ArtifactView artifactView;
+    private WizardView wizardView;
 
+    public DashboardView(Session session) {
+        this.session = session;
         setTop(createHeader());
         setLeft(createSidebar());
-        setCenter(this.artifactView); // Default center view
+        setCenter(getArtifactView()); // Default center view
+    }
+
+    private ArtifactView getArtifactView() {
+        if (artifactView == null) {
+            artifactView = new ArtifactView(session);
+        }
+        return artifactView;
+    }
+
+    private WizardView getWizardView() {
+        if (wizardView == null) {
+            wizardView = new WizardView(session);
+        }
+        return wizardView;
     }
 
     private HBox createHeader() {
         Label title = new Label("Hogwarts Artifacts Management System");
-        Label userLabel = new Label("Logged in as: " + DataStore.getInstance().getCurrentUser().getUsername());
+        Label userLabel = new Label("Logged in as: " + session.getUser().getUsername());
         Button logoutButton = new Button("Logout");
+        Button undoButton = new Button("Undo");
+        Button redoButton = new Button("Redo");
 
         logoutButton.setOnAction(e -> {
             this.controller.handleLogout(); // Assuming handleLogout is defined in the controller
         });
+        // The open views follow the store's change events, so there is nothing to reload
+        // Undo/redo only ever touch this session's own actions
+        CommandLog commandLog = session.getCommandLog();
+        undoButton.setOnAction(e -> commandLog.undo());
+        redoButton.setOnAction(e -> commandLog.redo());
+        // Tell the user what would be undone/redone before they click
+        undoButton.setOnMouseEntered(e -> undoButton.setTooltip(describe("Undo", commandLog.peekUndo())));
+        redoButton.setOnMouseEntered(e -> redoButton.setTooltip(describe("Redo", commandLog.peekRedo())));
 
-        HBox header = new HBox(20, title, userLabel, logoutButton);
+        HBox header = new HBox(20, title, userLabel, undoButton, redoButton, logoutButton);
         header.setPadding(new Insets(10));
         header.setStyle("-fx-background-color: #d0d0d0;");
         return header;
@@ -49,16 +75,26 @@ public class DashboardView extends BorderPane {
         wizardBtn.setMaxWidth(Double.MAX_VALUE);
 
         artifactBtn.setOnAction (e -> {
-            this.setCenter(artifactView);
+            this.setCenter(getArtifactView());
             artifactView.refreshArtifactView();
         });
-        wizardBtn.setOnAction(e -> this.setCenter(wizardView));
+        wizardBtn.setOnAction(e -> this.setCenter(getWizardView()));
 
 
         menu.getChildren().addAll(artifactBtn, wizardBtn);
         return menu;
     }
 
+    private Tooltip describe(String action, String command) {
+        return new Tooltip(command == null ? "Nothing to " + action.toLowerCase() : action + " " + command);
+    }
+
+    // Detaches the tabs from the store so a closed dashboard is not kept alive by its listeners
+    public void dispose() {
+        if (artifactView != null) artifactView.dispose();
+        if (wizardView != null) wizardView.dispose();
+    }
+
     public void setController(DashboardController dashboardController) {
         this.controller = dashboardController;
     }
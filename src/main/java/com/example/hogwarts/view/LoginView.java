@@ -5,7 +5,9 @@ import javafx.geometry.Insets;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.PasswordField;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.TextField;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 
 public class LoginView extends VBox{
@@ -17,6 +19,7 @@ public class LoginView extends VBox{
     private PasswordField passField;
     private Button loginButton;
     private Label messageLabel;
+    private ProgressIndicator loadingIndicator;
 
     public LoginView() {
         this.userLabel = new Label("Username:");
@@ -25,6 +28,9 @@ public class LoginView extends VBox{
         this.passField = new PasswordField();
         this.loginButton = new Button("Login");
         this.messageLabel = new Label();
+        this.loadingIndicator = new ProgressIndicator();
+        this.loadingIndicator.setPrefSize(24, 24);
+        this.loadingIndicator.setVisible(false);
         this.loginButton.setOnAction(e ->
                 controller.handleLogin(this.userField.getText(), this.passField.getText())
         );
@@ -32,7 +38,15 @@ public class LoginView extends VBox{
         setSpacing(10);
         setPrefWidth(300);
         setPadding(new Insets(20));
-        getChildren().addAll(this.userLabel, this.userField, this.passLabel, this.passField, this.loginButton, this.messageLabel);
+        HBox loginRow = new HBox(10, this.loginButton, this.loadingIndicator);
+        getChildren().addAll(this.userLabel, this.userField, this.passLabel, this.passField, loginRow, this.messageLabel);
+    }
+
+    // While the data store is loading in the background, login waits for it
+    public void setLoading(boolean loading) {
+        this.loadingIndicator.setVisible(loading);
+        this.loginButton.setDisable(loading);
+        this.messageLabel.setText(loading ? "Loading data..." : "");
     }
 
     public void setController(LoginController loginController) {
@@ -0,0 +1,34 @@
+package com.example.hogwarts.view;
+
+import com.example.hogwarts.model.Wizard;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+
+/**
+ * Table row view-model for one wizard (see ArtifactRow).
+ */
+public class WizardRow {
+    // Estimated heap per row, counted like ArtifactRow.ESTIMATED_BYTES
+    public static final long ESTIMATED_BYTES = 208;
+
+    private final Wizard wizard;
+    private final ReadOnlyIntegerWrapper id;
+    private final ReadOnlyStringWrapper name = new ReadOnlyStringWrapper();
+
+    public WizardRow(Wizard wizard) {
+        this.wizard = wizard;
+        this.id = new ReadOnlyIntegerWrapper(wizard.getId());
+        update();
+    }
+
+    public void update() {
+        name.set(wizard.getName());
+    }
+
+    public Wizard getWizard() { return wizard; }
+
+    public ReadOnlyIntegerProperty idProperty() { return id.getReadOnlyProperty(); }
+    public ReadOnlyStringProperty nameProperty() { return name.getReadOnlyProperty(); }
+}
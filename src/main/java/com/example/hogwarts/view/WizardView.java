@@ -1,92 +1,126 @@
 package com.example.hogwarts.view;
 
+import com.example.hogwarts.controller.Permission;
+import com.example.hogwarts.controller.Session;
 import com.example.hogwarts.controller.WizardController;
 import com.example.hogwarts.data.DataStore;
+import com.example.hogwarts.data.StoreEvent;
+import com.example.hogwarts.data.StoreListener;
+import com.example.hogwarts.data.StoreMetrics;
 import com.example.hogwarts.model.Artifact;
 import com.example.hogwarts.model.Wizard;
-import javafx.beans.property.ReadOnlyObjectWrapper;
-import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
+import javafx.geometry.Side;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class WizardView extends VBox{
-    private final WizardController controller;
-    private final TableView<Wizard> wizardTable;
-    private final ObservableList<Wizard> wizardData;
+    private static final String ROWS_GAUGE = "memory.ui.wizardRows.bytes";
 
-    public WizardView() {
-        this.controller = new WizardController();
+    private final WizardController controller;
+    private final TableView<WizardRow> wizardTable;
+    private final ObservableList<WizardRow> wizardData;
+    // One long-lived row per wizard, kept up to date from store events
+    private final Map<Integer, WizardRow> rowsById = new HashMap<>();
+    private final StoreListener storeListener = this::onStoreChange;
+    // Resolved once from the session's permissions
+    private final boolean admin;
+    // Single action menu shared by all rows; actionTarget is the row it was opened for
+    private final ContextMenu actionMenu;
+    private WizardRow actionTarget;
+
+    public WizardView(Session session) {
+        this.controller = new WizardController(session);
+        this.admin = session.can(Permission.MANAGE_WIZARDS);
         this.wizardTable = new TableView<>();
-        this.wizardData = FXCollections.observableArrayList(controller.findAllWizards());
+        this.wizardData = FXCollections.observableArrayList();
+        for (Wizard wizard : controller.findAllWizards()) {
+            wizardData.add(rowFor(wizard));
+        }
+        this.actionMenu = createActionMenu();
+        DataStore.getInstance().addListener(storeListener);
+        StoreMetrics.getInstance().registerGauge(ROWS_GAUGE, () -> rowsById.size() * WizardRow.ESTIMATED_BYTES);
 
         setSpacing(10);
         setPadding(new Insets(10));
         getChildren().addAll(createTable(), createButtons());
     }
 
-    private TableView<Wizard> createTable() {
-        TableColumn<Wizard, Number> idCol = new TableColumn<>("ID");
-        idCol.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().getId()));
+    private WizardRow rowFor(Wizard wizard) {
+        return rowsById.computeIfAbsent(wizard.getId(), id -> new WizardRow(wizard));
+    }
 
-        TableColumn<Wizard, String> nameCol = new TableColumn<>("Name");
-        nameCol.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().getName()));
+    // Store events can come from any thread; rows are only touched on the FX thread
+    private void onStoreChange(StoreEvent event) {
+        // Only wizard events change a row; artifact changes (e.g. a maintenance sweep) never reach the FX thread
+        switch (event.getType()) {
+            case WIZARD_ADDED, WIZARD_DELETED, WIZARD_UPDATED -> { }
+            default -> {
+                return;
+            }
+        }
+        if (Platform.isFxApplicationThread()) {
+            applyStoreChange(event);
+        } else {
+            Platform.runLater(() -> applyStoreChange(event));
+        }
+    }
 
-        TableColumn<Wizard, Void> actionCol = new TableColumn<>("Actions");
+    private void applyStoreChange(StoreEvent event) {
+        switch (event.getType()) {
+            case WIZARD_ADDED -> {
+                Wizard wizard = DataStore.getInstance().findWizardById(event.getWizardId());
+                if (wizard != null && !rowsById.containsKey(wizard.getId())) {
+                    wizardData.add(rowFor(wizard));
+                }
+            }
+            case WIZARD_DELETED -> {
+                WizardRow row = rowsById.remove(event.getWizardId());
+                if (row != null) wizardData.remove(row);
+            }
+            case WIZARD_UPDATED -> {
+                WizardRow row = rowsById.get(event.getWizardId());
+                if (row != null) row.update();
+            }
+            default -> { }
+        }
+    }
 
-        actionCol.setCellFactory(col -> new TableCell<>() {
-            private final Button viewButton = new Button("View");
-            private final Button editButton = new Button("Edit");
-            private final Button deleteButton = new Button("Delete");
-            private final Button assignButton = new Button("Assign");
-            private final HBox buttons = new HBox(5);
+    // Stops listening to the store; called when the dashboard is closed
+    public void dispose() {
+        DataStore.getInstance().removeListener(storeListener);
+        StoreMetrics.getInstance().unregisterGauge(ROWS_GAUGE);
+    }
 
-            {
-                viewButton.setOnAction(e -> {
-                    Wizard wizard = getTableView().getItems().get(getIndex());
-                    showViewWizardDialog(wizard);
-                });
+    private TableView<WizardRow> createTable() {
+        TableColumn<WizardRow, Number> idCol = new TableColumn<>("ID");
+        idCol.setCellValueFactory(cell -> cell.getValue().idProperty());
 
-                editButton.setOnAction(e -> {
-                    Wizard wizard = getTableView().getItems().get(getIndex());
-                    showEditWizardDialog(wizard);
-                });
+        TableColumn<WizardRow, String> nameCol = new TableColumn<>("Name");
+        nameCol.setCellValueFactory(cell -> cell.getValue().nameProperty());
 
-                deleteButton.setOnAction(e -> {
-                    Wizard wizard = getTableView().getItems().get(getIndex());
-                    Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
-                    confirm.setTitle("Confirm Deletion");
-                    confirm.setHeaderText("Delete Wizard");
-                    confirm.setContentText("Are you sure you want to delete \"" + wizard.getName() + "\" and unassign their artifacts?");
-                    confirm.showAndWait().ifPresent(response -> {
-                        if (response == ButtonType.OK) {
-                            controller.deleteWizard(wizard.getId());
-                            wizardData.setAll(controller.findAllWizards());
-                        }
-                    });
-                });
+        // One button per visible cell; it opens the shared action menu for its row
+        TableColumn<WizardRow, Void> actionCol = new TableColumn<>("Actions");
+        actionCol.setCellFactory(col -> new TableCell<>() {
+            private final Button actionsButton = new Button("Actions \u25BE");
 
-                assignButton.setOnAction(e -> {
-                    Wizard wizard = getTableView().getItems().get(getIndex());
-                    showAssignArtifactDialogFor(wizard);
+            {
+                actionsButton.setOnAction(e -> {
+                    actionTarget = getTableRow().getItem();
+                    actionMenu.show(actionsButton, Side.BOTTOM, 0, 0);
                 });
             }
 
             @Override
             protected void updateItem(Void item, boolean empty) {
                 super.updateItem(item, empty);
-                if (empty || getIndex() >= wizardData.size()) {
-                    setGraphic(null);
-                } else {
-                    buttons.getChildren().clear();
-                    buttons.getChildren().add(viewButton);
-                    if (DataStore.getInstance().getCurrentUser().isAdmin()) {
-                        buttons.getChildren().addAll(editButton, deleteButton, assignButton);
-                    }
-                    setGraphic(buttons);
-                }
+                setGraphic(empty ? null : actionsButton);
             }
         });
 
@@ -96,10 +130,46 @@ public class WizardView extends VBox{
         return wizardTable;
     }
 
+    private ContextMenu createActionMenu() {
+        MenuItem viewItem = new MenuItem("View");
+        MenuItem editItem = new MenuItem("Edit");
+        MenuItem deleteItem = new MenuItem("Delete");
+        MenuItem assignItem = new MenuItem("Assign");
+
+        viewItem.setOnAction(e -> showViewWizardDialog(targetWizard()));
+        editItem.setOnAction(e -> showEditWizardDialog(targetWizard()));
+        assignItem.setOnAction(e -> {
+            if (targetWizard() != null) showAssignArtifactDialogFor(targetWizard());
+        });
+        deleteItem.setOnAction(e -> {
+            Wizard wizard = targetWizard();
+            if (wizard == null) return;
+            Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
+            confirm.setTitle("Confirm Deletion");
+            confirm.setHeaderText("Delete Wizard");
+            confirm.setContentText("Are you sure you want to delete \"" + wizard.getName() + "\" and unassign their artifacts?");
+            confirm.showAndWait().ifPresent(response -> {
+                if (response == ButtonType.OK) {
+                    controller.deleteWizard(wizard.getId());
+                }
+            });
+        });
+
+        ContextMenu menu = new ContextMenu(viewItem);
+        if (admin) {
+            menu.getItems().addAll(editItem, deleteItem, assignItem);
+        }
+        return menu;
+    }
+
+    private Wizard targetWizard() {
+        return actionTarget == null ? null : actionTarget.getWizard();
+    }
+
     private HBox createButtons() {
         Button addBtn = new Button("Add");
         HBox buttonBox = new HBox(10);
-        if (DataStore.getInstance().getCurrentUser().isAdmin()) {
+        if (admin) {
             addBtn.setOnAction(e -> showAddWizardDialog());
             buttonBox.getChildren().add(addBtn);
         }
@@ -114,8 +184,7 @@ public class WizardView extends VBox{
         dialog.showAndWait().ifPresent(name -> {
             if (!name.isBlank()) {
                 Wizard wizard = controller.addWizard(name);
-                wizardData.setAll(controller.findAllWizards());
-                wizardTable.getSelectionModel().select(wizard);
+                wizardTable.getSelectionModel().select(rowsById.get(wizard.getId()));
             }
         });
     }
@@ -130,36 +199,36 @@ public class WizardView extends VBox{
         dialog.showAndWait().ifPresent(name -> {
             if (!name.isBlank()) {
                 controller.updateWizard(wizard.getId(), name);
-                wizardData.setAll(controller.findAllWizards());
             }
         });
     }
 
     private void showAssignArtifactDialogFor(Wizard wizard) {
-        var unowned = FXCollections.observableArrayList(controller.getUnassignedArtifacts());
+        ArtifactPicker picker = new ArtifactPicker("Search unassigned artifacts...",
+                "No unassigned artifacts in condition " + WizardController.MIN_ASSIGN_CONDITION + " or better.",
+                controller::findAssignableArtifacts);
+        picker.setPadding(new Insets(10));
 
-        if (unowned.isEmpty()) {
-            Alert alert = new Alert(Alert.AlertType.INFORMATION, "No unassigned artifacts available.");
-            alert.setHeaderText("Nothing to assign");
-            alert.showAndWait();
-            return;
-        }
-
-        ChoiceDialog<Artifact> dialog = new ChoiceDialog<>(unowned.get(0), unowned);
+        Dialog<Artifact> dialog = new Dialog<>();
         dialog.setTitle("Assign Artifact");
         dialog.setHeaderText("Assign to " + wizard.getName());
+        dialog.getDialogPane().setContent(picker);
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+        dialog.getDialogPane().lookupButton(ButtonType.OK).disableProperty()
+                .bind(picker.getList().getSelectionModel().selectedItemProperty().isNull());
+        dialog.setResultConverter(button -> button == ButtonType.OK ? picker.getSelected() : null);
 
         dialog.showAndWait().ifPresent(artifact -> {
-            if (artifact.getCondition() < 10) {
+            // The list is pre-filtered, but the condition may have dropped since it was read
+            if (artifact.getCondition() < WizardController.MIN_ASSIGN_CONDITION) {
                 Alert alert = new Alert(Alert.AlertType.ERROR,
-                        "Condition < 10. Repair item first.",
+                        "Condition < " + WizardController.MIN_ASSIGN_CONDITION + ". Repair item first.",
                         ButtonType.OK);
                 alert.setHeaderText("Cannot Assign Artifact");
                 alert.showAndWait();
             } else {
                 controller.assignArtifactToWizard(wizard, artifact);
-                wizardData.setAll(controller.findAllWizards());
-                wizardTable.getSelectionModel().select(wizard);
+                wizardTable.getSelectionModel().select(rowsById.get(wizard.getId()));
             }
         });
     }
@@ -172,19 +241,15 @@ public class WizardView extends VBox{
         dialog.setTitle("Wizard Details");
         dialog.setHeaderText("Viewing: " + wizard.getName());
 
-        StringBuilder sb = new StringBuilder();
-        sb.append("ID: ").append(wizard.getId()).append("\n");
-        sb.append("Name: ").append(wizard.getName()).append("\n");
-        sb.append("Artifacts:\n");
-        for (Artifact a : wizard.getArtifacts()) {
-            sb.append("  - ").append(a.getName()).append(" (ID: ").append(a.getId()).append(")\n");
-        }
-
-        TextArea details = new TextArea(sb.toString());
-        details.setEditable(false);
-        details.setWrapText(true);
+        // The artifacts are paged in as the list scrolls instead of being written out in one text
+        ArtifactPicker artifacts = new ArtifactPicker("Filter artifacts by name...", "No artifacts.",
+                (text, afterId, limit) -> controller.findWizardArtifacts(wizard.getId(), text, afterId, limit));
 
-        VBox content = new VBox(details);
+        VBox content = new VBox(10,
+                new Label("ID: " + wizard.getId()),
+                new Label("Name: " + wizard.getName()),
+                new Label("Artifacts (" + wizard.getArtifacts().size() + "):"),
+                artifacts);
         content.setPadding(new Insets(10));
 
         dialog.getDialogPane().setContent(content);
@@ -192,4 +257,3 @@ public class WizardView extends VBox{
         dialog.showAndWait();
     }
 }
-
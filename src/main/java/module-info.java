@@ -1,6 +1,9 @@
 module javafxapp {
     requires javafx.controls;
     requires java.desktop;
+    requires java.management; // heap and GC figures of the workload simulator
+    requires jdk.jfr; // custom Flight Recorder events (TracedOperation)
+    requires java.sql; // JDBC persistence backend; the driver (H2 by default) is found through DriverManager
     //requires javafxapp;
     exports com.example.hogwarts;
     exports com.example.hogwarts.model;
@@ -0,0 +1,67 @@
+package com.example.hogwarts;
+
+import com.example.hogwarts.data.DataStore;
+import com.example.hogwarts.model.Artifact;
+import com.example.hogwarts.model.Wizard;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * A short simulator run with more threads than wizards, so assigns, unassigns and deletes
+ * race on the same owners; afterwards every artifact has at most one owner and the wizards'
+ * lists agree with the artifacts' owner references.
+ */
+class WorkloadSimulatorTest {
+    private final DataStore store = DataStore.getInstance();
+    private int lastWizardId;
+    private int lastArtifactId;
+
+    @BeforeEach
+    void setUp() {
+        for (Wizard w : store.findAllWizards()) lastWizardId = Math.max(lastWizardId, w.getId());
+        for (Artifact a : store.findAllArtifacts()) lastArtifactId = Math.max(lastArtifactId, a.getId());
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (Artifact a : store.findAllArtifacts()) {
+            if (a.getId() > lastArtifactId) store.deleteArtifactById(a.getId());
+        }
+        for (Wizard w : store.findAllWizards()) {
+            if (w.getId() > lastWizardId) store.deleteWizardById(w.getId());
+        }
+    }
+
+    @Test
+    void ownershipAgreesAfterAConcurrentRun() throws InterruptedException {
+        WorkloadSimulator simulator = new WorkloadSimulator(8, 2, 1, "read:20,assign:50,repair:10,add:10,delete:10",
+                store.findAllWizards().size() + 4, store.findAllArtifacts().size() + 500);
+        assertEquals(0, simulator.run(), "the simulator found broken invariants");
+
+        Map<Integer, Integer> listedBy = new HashMap<>();
+        for (Wizard w : store.findAllWizards()) {
+            for (Artifact a : w.getArtifacts()) {
+                Integer other = listedBy.put(a.getId(), w.getId());
+                assertNull(other, () -> "artifact " + a.getId() + " has two owners");
+                assertSame(w, a.getOwner(), () -> "artifact " + a.getId() + " is listed by a wizard that does not own it");
+                assertSame(a, store.findArtifactById(a.getId()), () -> "artifact " + a.getId() + " is listed but deleted");
+            }
+        }
+        for (Artifact a : store.findAllArtifacts()) {
+            if (a.hasOwner()) {
+                assertEquals(Integer.valueOf(a.getOwner().getId()), listedBy.get(a.getId()), () -> "artifact " + a.getId() + " is not listed by its owner");
+            } else {
+                assertFalse(listedBy.containsKey(a.getId()), () -> "artifact " + a.getId() + " is listed without an owner");
+            }
+        }
+    }
+}
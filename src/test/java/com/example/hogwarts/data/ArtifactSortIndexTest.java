@@ -0,0 +1,95 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.Artifact;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A page map reads a filtered, multi-column order page by page: the pages together hold every
+ * matching artifact once and in order, position() finds each row, and a map made after a change
+ * shows the change.
+ */
+class ArtifactSortIndexTest {
+    private static final String PREFIX = "Pagemap Probe ";
+    private static final int COUNT = 250;
+    private static final int PAGE = 100;
+    private static final List<ArtifactSortIndex.SortKey> ORDER = List.of(
+            new ArtifactSortIndex.SortKey(ArtifactSortIndex.Column.CONDITION, false),
+            new ArtifactSortIndex.SortKey(ArtifactSortIndex.Column.NAME, true));
+
+    private final DataStore store = DataStore.getInstance();
+    private final ArtifactQuery probes = ArtifactQuery.all().nameContains(PREFIX);
+    private final List<Artifact> artifacts = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < COUNT; i++) {
+            Artifact a = new Artifact(PREFIX + String.format("%03d", (i * 7) % COUNT), "");
+            a.setCondition(i % 10);
+            artifacts.add(store.addArtifact(a));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (Artifact a : artifacts) store.deleteArtifactById(a.getId());
+    }
+
+    @Test
+    void pagesHoldTheOrderOnce() {
+        ArtifactSortIndex index = store.getSortIndex();
+        ArtifactSortIndex.PageMap map = index.pageMap(ORDER, probes, PAGE);
+        assertEquals(COUNT, map.size());
+        int[] expected = expectedOrder();
+        assertArrayEquals(expected, read(index, map));
+        for (int row = 0; row < expected.length; row++) {
+            assertEquals(row, index.position(map, expected[row]));
+        }
+        assertEquals(-1, index.position(map, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void newMapShowsAChange() {
+        ArtifactSortIndex index = store.getSortIndex();
+        Artifact moved = artifacts.get(3);
+        store.updateArtifactCondition(moved.getId(), c -> 100);
+        ArtifactSortIndex.PageMap map = index.pageMap(ORDER, probes, PAGE);
+        assertEquals(0, index.position(map, moved.getId()));
+
+        store.deleteArtifactById(moved.getId());
+        map = index.pageMap(ORDER, probes, PAGE);
+        assertEquals(COUNT - 1, map.size());
+        assertEquals(-1, index.position(map, moved.getId()));
+        assertArrayEquals(expectedOrder(), read(index, map));
+    }
+
+    private int[] read(ArtifactSortIndex index, ArtifactSortIndex.PageMap map) {
+        int[] ids = new int[map.size()];
+        int filled = 0;
+        for (int page = 0; filled < ids.length; page++) {
+            int[] part = index.page(map, page);
+            System.arraycopy(part, 0, ids, filled, part.length);
+            filled += part.length;
+        }
+        return ids;
+    }
+
+    // Condition descending, then name (zero-padded, so plain string order), then id
+    private int[] expectedOrder() {
+        return artifacts.stream()
+                .filter(a -> store.findArtifactById(a.getId()) == a)
+                .sorted(Comparator.comparingInt(Artifact::getCondition).reversed()
+                        .thenComparing(Artifact::getName)
+                        .thenComparingInt(Artifact::getId))
+                .mapToInt(Artifact::getId)
+                .toArray();
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.hogwarts.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The tree against a TreeMap under random puts and removes, with a cache small enough that
+ * nodes are written out and read back, and values large enough for overflow pages; and the
+ * clean flag: only a tree flushed with the write count of its snapshot is reopened.
+ */
+class BPlusTreeTest {
+    // The smallest cache the tree allows (16 pages), so most nodes live on disk
+    private static final long SMALL_CACHE = 0;
+
+    private Path dir;
+    private File file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("bplustree");
+        file = dir.resolve("artifacts.db").toFile();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+        }
+    }
+
+    @Test
+    void matchesATreeMapUnderRandomWrites() throws IOException {
+        BPlusTree tree = new BPlusTree(file, SMALL_CACHE);
+        TreeMap<Integer, byte[]> expected = new TreeMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 30_000; i++) {
+            int key = random.nextInt(20_000);
+            if (random.nextInt(4) == 0) {
+                assertEquals(expected.remove(key) != null, tree.remove(key));
+            } else {
+                byte[] value = value(key, i, random);
+                tree.put(key, value);
+                expected.put(key, value);
+            }
+        }
+        assertSameContent(expected, tree);
+        assertTrue(tree.cacheMisses() > 0, "the cache held the whole tree");
+    }
+
+    @Test
+    void scanPagesThroughTheLeavesInKeyOrder() throws IOException {
+        BPlusTree tree = new BPlusTree(file, SMALL_CACHE);
+        for (int key = 0; key < 5000; key += 2) tree.put(key, new byte[] { (byte) key });
+        int[] keys = new int[700];
+        byte[][] values = new byte[700][];
+        // From a key that is not in the tree: starts at the next one
+        assertEquals(700, tree.scan(1001, keys, values));
+        for (int i = 0; i < 700; i++) {
+            assertEquals(1002 + 2 * i, keys[i]);
+            assertArrayEquals(new byte[] { (byte) keys[i] }, values[i]);
+        }
+        assertEquals(1, tree.scan(4998, keys, values));
+        assertEquals(0, tree.scan(5000, keys, values));
+        assertEquals(0, tree.scan((long) Integer.MAX_VALUE + 1, keys, values));
+    }
+
+    @Test
+    void lastKeySkipsLeavesEmptiedByRemoves() throws IOException {
+        BPlusTree tree = new BPlusTree(file, SMALL_CACHE);
+        for (int key = 1; key <= 3000; key++) tree.put(key, new byte[100]);
+        for (int key = 1000; key <= 3000; key++) tree.remove(key);
+        assertEquals(999, tree.lastKey());
+        assertEquals(999, tree.size());
+    }
+
+    @Test
+    void treeFlushedAtItsSnapshotIsRestored() throws IOException {
+        BPlusTree tree = new BPlusTree(file, SMALL_CACHE);
+        TreeMap<Integer, byte[]> expected = fill(tree, 4000);
+        tree.flush(tree.writeCount());
+
+        BPlusTree reopened = new BPlusTree(file, SMALL_CACHE);
+        assertTrue(reopened.isRestored());
+        assertSameContent(expected, reopened);
+    }
+
+    @Test
+    void treeChangedAfterItsSnapshotIsStartedOver() throws IOException {
+        BPlusTree tree = new BPlusTree(file, SMALL_CACHE);
+        fill(tree, 4000);
+        long snapshotWrites = tree.writeCount();
+        tree.put(4000, new byte[] { 1 }); // after the snapshot was taken, before the flush
+        tree.flush(snapshotWrites);
+
+        BPlusTree reopened = new BPlusTree(file, SMALL_CACHE);
+        assertFalse(reopened.isRestored());
+        assertEquals(0, reopened.size());
+    }
+
+    @Test
+    void treeWrittenAfterItsFlushIsStartedOver() throws IOException {
+        BPlusTree tree = new BPlusTree(file, SMALL_CACHE);
+        fill(tree, 4000);
+        tree.flush(tree.writeCount());
+        tree.remove(17); // the process ends before the next flush
+
+        BPlusTree reopened = new BPlusTree(file, SMALL_CACHE);
+        assertFalse(reopened.isRestored());
+        assertEquals(0, reopened.size());
+    }
+
+    @Test
+    void clearEmptiesTheTree() throws IOException {
+        BPlusTree tree = new BPlusTree(file, SMALL_CACHE);
+        fill(tree, 2000);
+        tree.clear();
+        assertEquals(0, tree.size());
+        assertNull(tree.get(5));
+        assertEquals(0, tree.scan(Long.MIN_VALUE, new int[10], new byte[10][]));
+    }
+
+    private static TreeMap<Integer, byte[]> fill(BPlusTree tree, int count) {
+        TreeMap<Integer, byte[]> expected = new TreeMap<>();
+        Random random = new Random(count);
+        for (int key = 0; key < count; key++) {
+            byte[] value = value(key, 0, random);
+            tree.put(key, value);
+            expected.put(key, value);
+        }
+        return expected;
+    }
+
+    // Mostly small values; every 50th is past a quarter page and goes to an overflow chain
+    private static byte[] value(int key, int version, Random random) {
+        int length = random.nextInt(50) == 0 ? BPlusTree.PAGE_SIZE / 4 + random.nextInt(3 * BPlusTree.PAGE_SIZE) : random.nextInt(200);
+        byte[] value = new byte[length];
+        random.nextBytes(value);
+        if (length >= 8) {
+            value[0] = (byte) key;
+            value[1] = (byte) version;
+        }
+        return value;
+    }
+
+    private static void assertSameContent(TreeMap<Integer, byte[]> expected, BPlusTree tree) {
+        assertEquals(expected.size(), tree.size());
+        for (Map.Entry<Integer, byte[]> e : expected.entrySet()) {
+            assertArrayEquals(e.getValue(), tree.get(e.getKey()), () -> "key " + e.getKey());
+        }
+        int[] keys = new int[expected.size() + 1];
+        byte[][] values = new byte[keys.length][];
+        assertEquals(expected.size(), tree.scan(Long.MIN_VALUE, keys, values));
+        int i = 0;
+        for (Map.Entry<Integer, byte[]> e : expected.entrySet()) {
+            assertEquals(e.getKey(), keys[i]);
+            assertArrayEquals(e.getValue(), values[i]);
+            i++;
+        }
+        assertEquals(expected.lastKey(), tree.lastKey());
+        assertEquals(0, tree.scan(expected.lastKey() + 1L, new int[1], new byte[1][]));
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.Artifact;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The queue fed with store events directly: artifacts move between condition levels, the
+ * lowest ones come out worst first and deletes drop them; and a rebuild reads the store.
+ */
+class ConditionQueueTest {
+    private final DataStore store = DataStore.getInstance();
+    private final List<Artifact> artifacts = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (Artifact a : artifacts) store.deleteArtifactById(a.getId());
+    }
+
+    @Test
+    void eventsMoveArtifactsBetweenLevels() {
+        ConditionQueue queue = new ConditionQueue(store);
+        added(queue, 1, 40);
+        added(queue, 2, 10);
+        added(queue, 3, 70);
+        added(queue, 4, 25);
+        assertEquals(4, queue.size());
+        assertEquals(List.of(2, 4, 1), queue.lowest(50, 10));
+        assertEquals(3, queue.countBelow(50));
+
+        queue.onChange(StoreEvent.ownership(StoreEvent.Type.CONDITION_CHANGED, 3, -1, 5));
+        queue.onChange(StoreEvent.ownership(StoreEvent.Type.ASSIGNED, 2, 7, 60));
+        assertEquals(List.of(3, 4, 1), queue.lowest(50, 10));
+        assertEquals(4, queue.size(), "a move left the artifact in two levels");
+
+        queue.onChange(StoreEvent.artifact(StoreEvent.Type.ARTIFACT_DELETED, 4, "Artifact 4", "", -1));
+        assertEquals(List.of(3, 1), queue.lowest(50, 10));
+        assertEquals(3, queue.size());
+    }
+
+    @Test
+    void eventsWithoutAConditionAreIgnored() {
+        ConditionQueue queue = new ConditionQueue(store);
+        added(queue, 1, 30);
+        queue.onChange(StoreEvent.ownership(StoreEvent.Type.UNASSIGNED, 1, 7, -1));
+        queue.onChange(StoreEvent.wizard(StoreEvent.Type.WIZARD_UPDATED, 7, "Owner"));
+        assertEquals(List.of(1), queue.lowest(31, 10));
+        assertEquals(0, queue.countBelow(30));
+    }
+
+    @Test
+    void conditionsOutOfRangeAreClamped() {
+        ConditionQueue queue = new ConditionQueue(store);
+        added(queue, 1, 250);
+        added(queue, 2, 100);
+        assertEquals(2, queue.countBelow(ConditionQueue.LEVELS));
+        assertEquals(0, queue.countBelow(100));
+        Set<Integer> top = new HashSet<>();
+        queue.forEachFrom(100, top::add);
+        assertEquals(Set.of(1, 2), top);
+    }
+
+    @Test
+    void lowestStopsAtTheLimit() {
+        ConditionQueue queue = new ConditionQueue(store);
+        for (int id = 1; id <= 50; id++) added(queue, id, id % 5);
+        List<Integer> lowest = queue.lowest(ConditionQueue.LEVELS, 12);
+        assertEquals(12, lowest.size());
+        // Ten artifacts at level 0, then two of the ten at level 1
+        for (int i = 0; i < 10; i++) assertEquals(0, lowest.get(i) % 5);
+        for (int i = 10; i < 12; i++) assertEquals(1, lowest.get(i) % 5);
+        assertEquals(List.of(), queue.lowest(0, 12));
+    }
+
+    @Test
+    void rebuildReadsEveryArtifactOfTheStore() {
+        for (int i = 0; i < 20; i++) {
+            Artifact artifact = new Artifact("Queued Artifact " + i, "Condition queue test");
+            artifact.setCondition(i * 5);
+            artifacts.add(store.addArtifact(artifact));
+        }
+        ConditionQueue queue = new ConditionQueue(store);
+        queue.rebuild();
+
+        Collection<Artifact> all = store.findAllArtifacts();
+        assertEquals(all.size(), queue.size());
+        for (int threshold : new int[] { 0, 1, 33, 50, 100, ConditionQueue.LEVELS }) {
+            int expected = 0;
+            for (Artifact a : all) if (a.getCondition() < threshold) expected++;
+            assertEquals(expected, queue.countBelow(threshold), "below " + threshold);
+        }
+        List<Integer> lowest = queue.lowest(ConditionQueue.LEVELS, all.size());
+        for (int i = 1; i < lowest.size(); i++) {
+            assertTrue(store.findArtifactById(lowest.get(i - 1)).getCondition()
+                    <= store.findArtifactById(lowest.get(i)).getCondition(), "not worst first");
+        }
+
+        queue.clear();
+        assertEquals(0, queue.size());
+        assertEquals(0, queue.countBelow(ConditionQueue.LEVELS));
+    }
+
+    private static void added(ConditionQueue queue, int id, int condition) {
+        queue.onChange(StoreEvent.artifact(StoreEvent.Type.ARTIFACT_ADDED, id, "Artifact " + id, "", condition));
+    }
+}
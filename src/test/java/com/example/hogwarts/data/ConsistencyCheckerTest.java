@@ -0,0 +1,149 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.data.ConsistencyReport.Finding;
+import com.example.hogwarts.data.ConsistencyReport.Problem;
+import com.example.hogwarts.model.Artifact;
+import com.example.hogwarts.model.History;
+import com.example.hogwarts.model.Wizard;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Each test breaks the object graph of the store in one way, then checks that a check reports
+ * it without touching it, that a repair fixes it and tells the listeners like any mutation,
+ * and that a check afterwards finds the store consistent again.
+ */
+class ConsistencyCheckerTest {
+    private final DataStore store = DataStore.getInstance();
+    private final List<StoreEvent> events = new CopyOnWriteArrayList<>();
+    private final StoreListener listener = events::add;
+    private final List<Wizard> wizards = new ArrayList<>();
+    private final List<Artifact> artifacts = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        assertTrue(store.checkConsistency(false).isConsistent(), "store is broken before the test");
+        store.addListener(listener);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.removeListener(listener);
+        for (Artifact a : artifacts) {
+            if (store.findArtifactById(a.getId()) != null) store.deleteArtifactById(a.getId());
+        }
+        for (Wizard w : wizards) store.deleteWizardById(w.getId());
+    }
+
+    @Test
+    void artifactNotListedByItsOwnerIsListedAgain() {
+        Wizard owner = wizard("Unlisting Owner");
+        Artifact artifact = assigned("Unlisted Wand", owner);
+        owner.dropListing(artifact);
+
+        assertFinding(store.checkConsistency(false), Problem.NOT_LISTED, artifact.getId(), false);
+        assertFalse(owner.getArtifacts().contains(artifact));
+        assertTrue(events.isEmpty(), "a check without repair changed the store");
+
+        assertFinding(store.checkConsistency(true), Problem.NOT_LISTED, artifact.getId(), true);
+        assertTrue(owner.getArtifacts().contains(artifact));
+        assertSame(owner, artifact.getOwner());
+        assertEvent(StoreEvent.Type.ASSIGNED, artifact.getId(), owner.getId());
+        assertEvent(StoreEvent.Type.WIZARD_UPDATED, -1, owner.getId());
+        assertTrue(store.checkConsistency(false).isConsistent());
+    }
+
+    @Test
+    void listingOfAnArtifactNotInTheStoreIsDropped() {
+        Wizard wizard = wizard("Ghost Lister");
+        Artifact ghost = new Artifact("Ghost Cup", "Never added to the store");
+        ghost.setId(store.nextArtifactId() + 1000);
+        wizard.addArtifact(ghost);
+
+        assertFinding(store.checkConsistency(false), Problem.STALE_LISTING, ghost.getId(), false);
+        assertTrue(wizard.getArtifacts().contains(ghost));
+
+        assertFinding(store.checkConsistency(true), Problem.STALE_LISTING, ghost.getId(), true);
+        assertFalse(wizard.getArtifacts().contains(ghost));
+        assertEvent(StoreEvent.Type.WIZARD_UPDATED, -1, wizard.getId());
+        assertTrue(store.checkConsistency(false).isConsistent());
+    }
+
+    @Test
+    void artifactOfAMissingOwnerIsUnassigned() {
+        Wizard owner = wizard("Real Owner");
+        Artifact artifact = assigned("Orphaned Ring", owner);
+        // Moves the artifact to a wizard the store does not know
+        Wizard missing = new Wizard("Missing Owner");
+        missing.setId(store.nextWizardId() + 1000);
+        missing.addArtifact(artifact);
+
+        assertFinding(store.checkConsistency(false), Problem.OWNER_MISSING, artifact.getId(), false);
+        assertSame(missing, artifact.getOwner());
+
+        assertFinding(store.checkConsistency(true), Problem.OWNER_MISSING, artifact.getId(), true);
+        assertFalse(artifact.hasOwner());
+        assertEvent(StoreEvent.Type.UNASSIGNED, artifact.getId(), missing.getId());
+        assertTrue(store.checkConsistency(false).isConsistent());
+    }
+
+    @Test
+    void historyOfADeletedArtifactIsClosed() {
+        Artifact artifact = assigned("Deleted Quill", wizard("Quill Owner"));
+        store.deleteArtifactById(artifact.getId());
+        // Deleted without its deletion marker
+        List<History> history = store.historyMap().get(artifact.getId());
+        history.remove(history.size() - 1);
+        assertFalse(history.get(history.size() - 1).isDeletion());
+
+        assertFinding(store.checkConsistency(false), Problem.ORPHAN_HISTORY, artifact.getId(), false);
+
+        assertFinding(store.checkConsistency(true), Problem.ORPHAN_HISTORY, artifact.getId(), true);
+        List<History> repaired = store.getHistoryByArtifactId(artifact.getId());
+        assertTrue(repaired.get(repaired.size() - 1).isDeletion());
+        assertEquals(2, repaired.size()); // the transfer is kept
+        assertTrue(store.checkConsistency(false).isConsistent());
+    }
+
+    private Wizard wizard(String name) {
+        Wizard wizard = store.addWizard(new Wizard(name));
+        wizards.add(wizard);
+        return wizard;
+    }
+
+    private Artifact assigned(String name, Wizard owner) {
+        Artifact artifact = store.addArtifact(new Artifact(name, "Consistency test"));
+        artifacts.add(artifact);
+        assertTrue(store.assignArtifactToWizard(artifact.getId(), owner.getId()));
+        events.clear();
+        return artifact;
+    }
+
+    private static void assertFinding(ConsistencyReport report, Problem problem, int artifactId, boolean repaired) {
+        assertEquals(1, report.getProblemCount(), report::toString);
+        Finding finding = report.getFindings().get(0);
+        assertEquals(problem, finding.getProblem());
+        assertEquals(artifactId, finding.getArtifactId());
+        assertEquals(repaired, finding.isRepaired());
+        assertEquals(repaired ? 1 : 0, report.getRepairedCount());
+    }
+
+    private void assertEvent(StoreEvent.Type type, int artifactId, int wizardId) {
+        StoreEvent found = null;
+        for (StoreEvent e : events) {
+            if (e.getType() == type && e.getArtifactId() == artifactId && e.getWizardId() == wizardId) found = e;
+        }
+        assertNotNull(found, () -> "no " + type + " event among " + events.size());
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.History;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Lookups by artifact go through the per-segment id index: they find every entry of the
+ * artifact, oldest first, without opening the segments that do not hold it, and an index
+ * that is missing is rebuilt from its segment.
+ */
+class HistoryArchiveTest {
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    private Path dir;
+    private HistoryArchive archive;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("archive");
+        archive = new HistoryArchive(dir.toFile());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+        }
+    }
+
+    @Test
+    void findsTheEntriesOfOneArtifactAcrossSegments() throws IOException {
+        // Artifact 1 every 40 days over a year, artifact 2 only in the first month
+        List<History> entries = new ArrayList<>();
+        long start = 1_700_000_000_000L;
+        for (int i = 0; i < 10; i++) entries.add(entry(1, start + i * 40 * DAY));
+        entries.add(entry(2, start + DAY));
+        entries.add(entry(2, start + 2 * DAY));
+        List<File> segments = archive.append(entries);
+        assertTrue(segments.size() > 5);
+
+        List<History> found = archive.findByArtifactId(1);
+        assertEquals(10, found.size());
+        for (int i = 0; i < 10; i++) assertEquals(start + i * 40 * DAY, found.get(i).getTimestamp().getTime());
+        assertEquals(2, archive.findByArtifactId(2).size());
+        assertEquals(0, archive.findByArtifactId(3).size());
+    }
+
+    @Test
+    void segmentsWithoutTheArtifactAreNotOpened() throws IOException {
+        long start = 1_700_000_000_000L;
+        archive.append(List.of(entry(1, start), entry(2, start + 60 * DAY)));
+        // Break the segment of artifact 2: reading it would fail
+        File second = archive.segments().get(1);
+        Files.write(second.toPath(), new byte[] { 1, 2, 3 });
+
+        assertEquals(1, archive.findByArtifactId(1).size());
+    }
+
+    @Test
+    void missingIndexIsRebuilt() throws IOException {
+        long start = 1_700_000_000_000L;
+        archive.append(List.of(entry(7, start), entry(8, start + 60 * DAY)));
+        File[] indexes = dir.toFile().listFiles((d, name) -> name.endsWith(".ids"));
+        assertEquals(2, indexes.length);
+        for (File f : indexes) Files.delete(f.toPath());
+
+        // A fresh archive has nothing cached: it reads the segments once and writes the indexes again
+        HistoryArchive reopened = new HistoryArchive(dir.toFile());
+        assertEquals(1, reopened.findByArtifactId(8).size());
+        assertEquals(2, dir.toFile().listFiles((d, name) -> name.endsWith(".ids")).length);
+    }
+
+    @Test
+    void discardRemovesSegmentsAndIndexes() throws IOException {
+        List<File> written = archive.append(List.of(entry(1, 1_700_000_000_000L)));
+        archive.discard(written);
+        assertEquals(0, dir.toFile().list().length);
+        assertEquals(0, archive.findByArtifactId(1).size());
+    }
+
+    private static History entry(int artifactId, long time) {
+        return new History(artifactId, "Artifact " + artifactId, 1, "Archivist", 50, new Date(time));
+    }
+}
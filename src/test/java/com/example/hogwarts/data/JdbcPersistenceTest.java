@@ -0,0 +1,140 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.Artifact;
+import com.example.hogwarts.model.History;
+import com.example.hogwarts.model.Wizard;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Save and load through an in-memory H2 database: new, changed and deleted rows go out as
+ * MERGE and DELETE batches, and a load brings back the store that was saved.
+ */
+class JdbcPersistenceTest {
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private final DataStore store = DataStore.getInstance();
+    private JdbcPersistence jdbc;
+    private Wizard wizard;
+    private Artifact kept;
+    private Artifact deleted;
+
+    @BeforeEach
+    void setUp() {
+        // Batches and pages of a few rows, so both take several round trips
+        JdbcConnectionPool pool = new JdbcConnectionPool("jdbc:h2:mem:jdbc-test-" + DATABASES.incrementAndGet(), "sa", "", 2);
+        jdbc = new JdbcPersistence(store, pool, 3, 2);
+        wizard = store.addWizard(new Wizard("JDBC Tester"));
+        kept = store.addArtifact(new Artifact("JDBC Lamp", "Saved to a database"));
+        deleted = store.addArtifact(new Artifact("JDBC Mug", "Deleted after the first save"));
+        store.assignArtifactToWizard(kept.getId(), wizard.getId());
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.unassignArtifactFromWizard(kept.getId());
+        store.deleteArtifactById(kept.getId());
+        if (store.findArtifactById(deleted.getId()) != null) store.deleteArtifactById(deleted.getId());
+        store.deleteWizardById(wizard.getId());
+    }
+
+    @Test
+    void firstSaveWritesEveryRow() throws IOException {
+        assertFalse(jdbc.hasData());
+        save();
+        assertTrue(jdbc.hasData());
+        // A history list goes out as one DELETE for the artifact plus an INSERT per entry
+        long historyRows = 0;
+        for (List<History> entries : store.historyMap().values()) historyRows += 1 + entries.size();
+        assertEquals(store.findAllWizards().size() + store.findAllArtifacts().size() + historyRows, lastSaveRows());
+    }
+
+    @Test
+    void saveThenLoadGivesTheSameStore() throws IOException {
+        save();
+        // Updates and deletes of rows the database already holds
+        store.renameWizard(wizard.getId(), "JDBC Tester, renamed");
+        store.setArtifactCondition(kept.getId(), 42);
+        store.deleteArtifactById(deleted.getId());
+        save();
+        // Wizard and artifact merged, artifact deleted, and the deletion marker added to its history:
+        // that list is replaced, one DELETE and one INSERT
+        assertEquals(5, lastSaveRows());
+
+        List<String> saved = contents();
+        store.replaceContents(List.of(), List.of(), List.of());
+        try {
+            jdbc.load(new IoStats("jdbc"));
+            assertEquals(saved, contents());
+            // The load leaves the saved hashes in line with the database: nothing to write
+            save();
+            assertEquals(0, lastSaveRows());
+        } finally {
+            reindex();
+        }
+    }
+
+    private void save() throws IOException {
+        try (StoreSnapshot snapshot = store.openSnapshot()) {
+            jdbc.save(snapshot, new IoStats("jdbc"));
+        }
+    }
+
+    private static long lastSaveRows() {
+        return StoreMetrics.getInstance().snapshot("jdbc.").get("jdbc.lastSave.rows");
+    }
+
+    // Every wizard, artifact and history entry (deleted artifacts' included) as one line, sorted
+    private List<String> contents() {
+        List<String> lines = new ArrayList<>();
+        for (Wizard w : store.findAllWizards()) {
+            List<Integer> owned = new ArrayList<>();
+            for (Artifact a : w.getArtifacts()) owned.add(a.getId());
+            owned.sort(null);
+            lines.add("wizard " + w.getId() + " " + w.getName() + " " + owned);
+        }
+        for (Artifact a : store.findAllArtifacts()) {
+            lines.add("artifact " + a.getId() + " " + a.getName() + " / " + a.getDescription() + " " + a.getCondition()
+                    + " " + (a.hasOwner() ? a.getOwner().getId() : "-"));
+        }
+        store.historyMap().forEach((artifactId, entries) -> {
+            for (int i = 0; i < entries.size(); i++) {
+                History h = entries.get(i);
+                lines.add("history " + artifactId + " #" + i + " " + h.getArtifactName() + " " + h.getWizardId() + " "
+                        + h.getWizardName() + " " + h.getCondition() + " " + h.getTimestamp().getTime());
+            }
+        });
+        lines.sort(null);
+        return lines;
+    }
+
+    // The load put the rows without events; handing them over once more rebuilds the store's indexes
+    private void reindex() {
+        List<Wizard> wizards = new ArrayList<>();
+        for (Wizard w : store.findAllWizards()) {
+            Wizard copy = new Wizard(w.getName());
+            copy.setId(w.getId());
+            wizards.add(copy);
+        }
+        List<ArtifactJson.Loaded> artifacts = new ArrayList<>();
+        for (Artifact a : store.findAllArtifacts()) {
+            Artifact copy = new Artifact(a.getName(), a.getDescription());
+            copy.setId(a.getId());
+            copy.setCondition(a.getCondition());
+            artifacts.add(new ArtifactJson.Loaded(copy, a.hasOwner() ? a.getOwner().getId() : ArtifactJson.NO_OWNER));
+        }
+        List<History> history = new ArrayList<>();
+        store.historyMap().values().forEach(history::addAll);
+        store.replaceContents(wizards, artifacts, history);
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.Artifact;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Artifacts written through PersistenceIo with each built-in codec read back the same, with
+ * the codec detected from the file whatever the reader is configured with; a write that is
+ * not committed leaves the previous file alone.
+ */
+class PersistenceCodecsTest {
+    private static final PersistenceCodec[] CODECS = {
+            PersistenceCodecs.NONE, PersistenceCodecs.DEFLATE, PersistenceCodecs.GZIP };
+
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("codecs");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+        }
+    }
+
+    @Test
+    void everyCodecRoundTrips() throws IOException {
+        List<Artifact> artifacts = artifacts(2000);
+        for (PersistenceCodec codec : CODECS) {
+            File file = dir.resolve("artifacts-" + codec.name() + ".json").toFile();
+            IoStats written = new IoStats(codec.name());
+            write(new PersistenceIo(codec, 8 * 1024), file, artifacts, written);
+
+            // Read with the plain codec configured: the file's own codec is detected from its header
+            IoStats read = new IoStats("none");
+            List<ArtifactJson.Loaded> loaded = read(new PersistenceIo(PersistenceCodecs.NONE, 8 * 1024), file, read);
+            assertEquals(artifacts.size(), loaded.size(), codec.name());
+            for (int i = 0; i < artifacts.size(); i++) {
+                Artifact expected = artifacts.get(i);
+                ArtifactJson.Loaded actual = loaded.get(i);
+                assertEquals(expected.getId(), actual.artifact.getId());
+                assertEquals(expected.getName(), actual.artifact.getName());
+                assertEquals(expected.getDescription(), actual.artifact.getDescription());
+                assertEquals(expected.getCondition(), actual.artifact.getCondition());
+                assertEquals(ArtifactJson.NO_OWNER, actual.ownerId);
+            }
+
+            assertEquals(file.length(), written.getDiskBytes(), codec.name());
+            assertEquals(written.getRawBytes(), read.getRawBytes(), codec.name());
+            assertEquals(written.getDiskBytes(), read.getDiskBytes(), codec.name());
+            if (codec != PersistenceCodecs.NONE) {
+                assertTrue(written.getDiskBytes() < written.getRawBytes() / 2, codec.name() + " did not compress");
+            }
+        }
+    }
+
+    @Test
+    void detectsEachCodecFromItsHeader() throws IOException {
+        for (PersistenceCodec codec : CODECS) {
+            File file = dir.resolve("detect-" + codec.name()).toFile();
+            write(new PersistenceIo(codec, 1024), file, artifacts(3), new IoStats(codec.name()));
+            byte[] header = new byte[4];
+            int length;
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                length = in.readNBytes(header, 0, header.length);
+            }
+            assertSame(codec, PersistenceCodecs.detect(header, length));
+        }
+    }
+
+    @Test
+    void uncommittedWriteKeepsThePreviousFile() throws IOException {
+        File file = dir.resolve("artifacts.json").toFile();
+        PersistenceIo io = new PersistenceIo(PersistenceCodecs.GZIP, 1024);
+        write(io, file, artifacts(5), new IoStats("gzip"));
+        byte[] before = Files.readAllBytes(file.toPath());
+
+        try (PersistenceIo.AtomicFileStream out = io.openWrite(file, new IoStats("gzip"))) {
+            out.write(new byte[100_000]);
+            // closed without commit(), like a save that failed halfway
+        }
+        assertArrayEquals(before, Files.readAllBytes(file.toPath()));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+        assertEquals(5, read(io, file, new IoStats("gzip")).size());
+    }
+
+    @Test
+    void unknownCodecNameIsRejected() {
+        assertSame(PersistenceCodecs.DEFLATE, PersistenceCodecs.forName("deflate"));
+        assertThrows(IllegalArgumentException.class, () -> PersistenceCodecs.forName("lz77"));
+    }
+
+    private static List<Artifact> artifacts(int count) {
+        List<Artifact> artifacts = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            Artifact a = new Artifact("Artifact " + i, "Description of artifact " + i + ", \"quoted\" ünïcödé");
+            a.setId(i);
+            a.setCondition(i % 101);
+            artifacts.add(a);
+        }
+        return artifacts;
+    }
+
+    private static void write(PersistenceIo io, File file, List<Artifact> artifacts, IoStats stats) throws IOException {
+        try (PersistenceIo.AtomicFileStream out = io.openWrite(file, stats);
+             JsonGenerator gen = new JsonFactory().createGenerator(out)) {
+            gen.writeStartArray();
+            for (Artifact a : artifacts) ArtifactJson.write(gen, a);
+            gen.writeEndArray();
+            gen.flush();
+            out.commit();
+        }
+    }
+
+    private static List<ArtifactJson.Loaded> read(PersistenceIo io, File file, IoStats stats) throws IOException {
+        List<ArtifactJson.Loaded> loaded = new ArrayList<>();
+        try (JsonParser parser = new JsonFactory().createParser(io.openRead(file, stats))) {
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() == JsonToken.START_OBJECT) loaded.add(ArtifactJson.read(parser));
+            }
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.hogwarts.data;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A ring of a few slots, wrapped around many times by concurrent producers: every record is
+ * written once, in sequence order, across rolled segments of which only the newest are kept;
+ * and a ring the writer cannot drain drops records after the wait instead of blocking.
+ */
+class RingSegmentWriterTest {
+    private static final AtomicInteger WRITERS = new AtomicInteger();
+
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("ring");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+        }
+    }
+
+    @Test
+    void wrappedRingWritesEveryRecordInOrder() throws Exception {
+        RingSegmentWriter<Long> ring = ring(4, 2000, 1000, 10_000, new SequenceFormat());
+        int producers = 4;
+        int perProducer = 500; // the ring wraps around 500 times
+        AtomicInteger refused = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            Thread t = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    if (!ring.offer(seq -> seq)) refused.incrementAndGet();
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) t.join();
+        assertTrue(ring.flush(10_000));
+        ring.close();
+
+        assertEquals(0, refused.get());
+        assertEquals(producers * perProducer, ring.claimed());
+        File[] segments = segments();
+        assertTrue(segments.length > 1, "no segment was rolled");
+        List<Long> records = read(segments);
+        assertEquals(producers * perProducer, records.size());
+        for (int i = 0; i < records.size(); i++) assertEquals(i, records.get(i));
+    }
+
+    @Test
+    void onlyTheNewestSegmentsAreKept() throws Exception {
+        RingSegmentWriter<Long> ring = ring(8, 100, 3, 10_000, new SequenceFormat());
+        int count = 3000;
+        for (int i = 0; i < count; i++) {
+            assertTrue(ring.offer(seq -> seq));
+            if (i % 50 == 49) assertTrue(ring.flush(10_000)); // segments of a few batches each
+        }
+        ring.close();
+
+        File[] segments = segments();
+        assertEquals(3, segments.length);
+        // What is left is the tail of the sequence, without holes
+        List<Long> records = read(segments);
+        for (int i = 0; i < records.size(); i++) assertEquals(count - records.size() + i, records.get(i));
+    }
+
+    @Test
+    void fullRingDropsInsteadOfBlocking() throws Exception {
+        CountDownLatch diskBack = new CountDownLatch(1);
+        SequenceFormat stalled = new SequenceFormat() {
+            @Override
+            public void write(JsonGenerator gen, Long record) throws IOException {
+                try {
+                    diskBack.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.write(gen, record);
+            }
+        };
+        RingSegmentWriter<Long> ring = ring(4, 1 << 20, 10, 20, stalled);
+        int accepted = 0;
+        int dropped = 0;
+        long started = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            if (ring.offer(seq -> seq)) accepted++;
+            else dropped++;
+        }
+        // Each drop waited about fullWaitMillis, not until the disk came back
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5));
+        assertTrue(dropped > 0, "a stalled writer never filled the ring");
+        assertFalse(accepted > 2 * 4, "more records than the ring and the writer's batch can hold");
+
+        diskBack.countDown();
+        assertTrue(ring.flush(10_000));
+        ring.close();
+        // Dropped records never got a sequence: the accepted ones are 0..accepted-1
+        assertEquals(accepted, ring.claimed());
+        List<Long> records = read(segments());
+        assertEquals(accepted, records.size());
+        for (int i = 0; i < accepted; i++) assertEquals(i, records.get(i));
+    }
+
+    private RingSegmentWriter<Long> ring(int capacity, long segmentBytes, int maxSegments, long fullWaitMillis,
+                                         SequenceFormat format) {
+        return new RingSegmentWriter<>("ring test", "ringtest" + WRITERS.incrementAndGet(), dir.toFile(), capacity,
+                segmentBytes, maxSegments, fullWaitMillis, format);
+    }
+
+    private File[] segments() {
+        File[] files = dir.toFile().listFiles((d, name) -> name.endsWith(".jsonl"));
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static List<Long> read(File[] segments) throws IOException {
+        List<Long> records = new ArrayList<>();
+        for (File f : segments) {
+            for (String line : Files.readAllLines(f.toPath())) records.add(Long.parseLong(line));
+        }
+        return records;
+    }
+
+    // One number per line, the record's sequence; segments named after their first record
+    private static class SequenceFormat implements RingSegmentWriter.Format<Long> {
+        @Override
+        public File segmentFile(File dir, Long first) {
+            return new File(dir, String.format("segment-%012d.jsonl", first));
+        }
+
+        @Override
+        public List<File> segments(File dir) {
+            File[] files = dir.listFiles((d, name) -> name.endsWith(".jsonl"));
+            if (files == null) throw new UncheckedIOException(new IOException("cannot list " + dir));
+            Arrays.sort(files);
+            return Arrays.asList(files);
+        }
+
+        @Override
+        public void write(JsonGenerator gen, Long record) throws IOException {
+            gen.writeNumber(record);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.hogwarts.data;
+
+import com.example.hogwarts.model.Artifact;
+import com.example.hogwarts.model.History;
+import com.example.hogwarts.model.Wizard;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * transferArtifact changes owner and condition as one mutation: one event carrying the new
+ * condition and one history entry, or nothing at all when the move is not possible.
+ */
+class TransferArtifactTest {
+    private final DataStore store = DataStore.getInstance();
+    private final List<StoreEvent> events = new CopyOnWriteArrayList<>();
+    private final StoreListener listener = events::add;
+    private Wizard wizard;
+    private Artifact artifact;
+
+    @BeforeEach
+    void setUp() {
+        wizard = store.addWizard(new Wizard("Transfer Tester"));
+        Artifact a = new Artifact("Transfer Cloak", "Moved between owners");
+        a.setCondition(80);
+        artifact = store.addArtifact(a);
+        store.addListener(listener);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.removeListener(listener);
+        store.deleteArtifactById(artifact.getId());
+        store.deleteWizardById(wizard.getId());
+    }
+
+    @Test
+    void assignAndWearAreOneChange() {
+        assertEquals(80, store.transferArtifact(artifact.getId(), wizard.getId(), c -> c - 5));
+        assertSame(wizard, artifact.getOwner());
+        assertEquals(75, artifact.getCondition());
+        assertEquals(1, events.size());
+        StoreEvent e = events.get(0);
+        assertEquals(StoreEvent.Type.ASSIGNED, e.getType());
+        assertEquals(75, e.getCondition());
+        List<History> history = store.getHistoryByArtifactId(artifact.getId());
+        assertEquals(75, history.get(history.size() - 1).getCondition());
+
+        events.clear();
+        assertEquals(75, store.transferArtifact(artifact.getId(), History.NO_WIZARD, c -> c - 5));
+        assertFalse(artifact.hasOwner());
+        assertFalse(wizard.getArtifacts().contains(artifact));
+        assertEquals(1, events.size());
+        assertEquals(StoreEvent.Type.UNASSIGNED, events.get(0).getType());
+        assertEquals(70, events.get(0).getCondition());
+    }
+
+    @Test
+    void impossibleMoveChangesNothing() {
+        // No owner to remove, and a wizard the store does not know
+        assertEquals(-1, store.transferArtifact(artifact.getId(), History.NO_WIZARD, c -> c - 5));
+        assertEquals(-1, store.transferArtifact(artifact.getId(), store.nextWizardId() + 1000, c -> c - 5));
+        assertEquals(80, artifact.getCondition());
+        assertTrue(events.isEmpty());
+    }
+}